@@ -0,0 +1,46 @@
+package fr.univlr.info.AppointmentAPIV1;
+
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rend l'application compatible avec un checkpoint/restore (CRaC) : on peut figer une instance déjà démarrée
+ * et la relancer depuis cette image en quelques dizaines de millisecondes.
+ *
+ * Avant le checkpoint, tous les beans Lifecycle sont arrêtés (dont le serveur Tomcat, qui ferme son port d'écoute) ;
+ * après la reprise, ils sont redémarrés. Sur une JVM sans CRaC, l'enregistrement ne fait rien.
+ * La base H2 est en mémoire : ses connexions n'ont ni socket ni fichier à rouvrir.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "appointment.startup.checkpoint-restore", havingValue = "true")
+public class CheckpointRestoreSupport implements Resource {
+    private static final Logger log = LoggerFactory.getLogger(CheckpointRestoreSupport.class);
+
+    private final ConfigurableApplicationContext applicationContext;
+
+    public CheckpointRestoreSupport(ConfigurableApplicationContext applicationContext) {
+        this.applicationContext = applicationContext;
+        // le contexte CRaC ne garde qu'une référence faible : le bean Spring la maintient en vie
+        Core.getGlobalContext().register(this);
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        log.info("Stopping lifecycle beans before checkpoint");
+        applicationContext.stop();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        applicationContext.start();
+        log.info("Lifecycle beans restarted after restore");
+    }
+}
@@ -0,0 +1,52 @@
+package fr.univlr.info.AppointmentAPIV1;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exécution "d'entraînement" pour l'archive de classes partagées (AppCDS, voir le profil Maven cds) :
+ * l'application démarre, sert quelques requêtes pour charger aussi les classes du traitement d'une requête,
+ * puis s'arrête. La JVM écrit alors l'archive (-XX:ArchiveClassesAtExit).
+ */
+@Component
+@ConditionalOnProperty(name = "appointment.startup.training-run", havingValue = "true")
+public class TrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+    private static final Logger log = LoggerFactory.getLogger(TrainingRun.class);
+    private static final List<String> PATHS = Arrays.asList("/api/doctors", "/api/appointments", "/api/appointments?status=UPCOMING");
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        RestTemplate rest = new RestTemplate();
+        for (MediaType type : Arrays.asList(MediaType.APPLICATION_JSON, MediaType.parseMediaType("application/hal+json"))) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setAccept(Arrays.asList(type));
+            for (String path : PATHS) {
+                try {
+                    rest.exchange("http://localhost:" + port + path, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+                } catch (RestClientException e) {
+                    log.warn("Training request {} failed: {}", path, e.getMessage());
+                }
+            }
+        }
+        log.info("Training run done, exiting");
+        System.exit(SpringApplication.exit(context));
+    }
+}
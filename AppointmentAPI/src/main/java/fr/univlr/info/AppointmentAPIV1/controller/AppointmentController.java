@@ -1,10 +1,21 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
-import fr.univlr.info.AppointmentAPIV1.model.Doctor;
-import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
-import fr.univlr.info.AppointmentAPIV1.store.DoctorRepository;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentStatus;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentEventLog;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentService;
+import fr.univlr.info.AppointmentAPIV1.service.CalendarSnapshots;
+import fr.univlr.info.AppointmentAPIV1.service.ParallelListing;
+import fr.univlr.info.AppointmentAPIV1.service.Waitlist;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentFilter;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRebalancer;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import fr.univlr.info.AppointmentAPIV1.store.TraceContext;
+import fr.univlr.info.AppointmentAPIV1.store.TraceSpan;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
@@ -13,16 +24,22 @@ import org.springframework.hateoas.mediatype.problem.Problem;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import javax.validation.Valid;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
@@ -30,33 +47,67 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 @RestController
 @RequestMapping(path = "/api")
-@Validated
 public class AppointmentController {
-    private final AppointmentRepository apptRepository;
-    private final DoctorRepository doctorRepository;
+    // Les accès à la base passent par le service (une transaction par appel), sur le shard choisi ici
+    private final AppointmentService appointmentService;
     private final AppointmentModelAssembler appointmentModelAssembler;
-
-
-    public AppointmentController(AppointmentRepository apptRepository, DoctorRepository doctorRepository, AppointmentModelAssembler appointmentModelAssembler, AppointmentRepository appointmentRepository) {
-        this.doctorRepository = doctorRepository;
-        this.apptRepository = apptRepository;
+    private final ShardRouter shardRouter;
+    private final ObjectProvider<ShardRebalancer> shardRebalancer;
+    private final IdempotencyStore idempotencyStore;
+    private final AppointmentDateValidator dateValidator;
+    // Agendas en mémoire des médecins, mis à jour après chaque écriture validée
+    private final CalendarSnapshots calendars;
+    // Listing découpé par médecin, en parallèle (si activé)
+    private final ParallelListing parallelListing;
+    // Journal des changements (si activé), alimenté après chaque écriture validée, comme les agendas
+    private final AppointmentEventLog events;
+    // Liste d'attente : un créneau libéré par une annulation est proposé au patient suivant
+    private final Waitlist waitlist;
+    // Mode cluster : les écritures d'un médecin sont transmises à son instance propriétaire
+    private final ClusterCoordinator cluster;
+    private final int seriesHorizonDays;
+
+    // Champs acceptés par le paramètre "sort" du listing
+    private static final Set<String> SORTABLE = new HashSet<>(Arrays.asList("startDate", "endDate", "doctor", "patient"));
+
+
+    public AppointmentController(AppointmentService appointmentService, AppointmentModelAssembler appointmentModelAssembler,
+                                 ShardRouter shardRouter, ObjectProvider<ShardRebalancer> shardRebalancer,
+                                 IdempotencyStore idempotencyStore, AppointmentDateValidator dateValidator, CalendarSnapshots calendars,
+                                 ParallelListing parallelListing, AppointmentEventLog events, Waitlist waitlist,
+                                 ClusterCoordinator cluster, @Value("${appointment.series.horizon-days:365}") int seriesHorizonDays) {
+        this.appointmentService = appointmentService;
         this.appointmentModelAssembler = appointmentModelAssembler;
+        this.shardRouter = shardRouter;
+        this.shardRebalancer = shardRebalancer;
+        this.idempotencyStore = idempotencyStore;
+        this.dateValidator = dateValidator;
+        this.calendars = calendars;
+        this.parallelListing = parallelListing;
+        this.events = events;
+        this.waitlist = waitlist;
+        this.cluster = cluster;
+        this.seriesHorizonDays = seriesHorizonDays;
     }
 
 
     // Si le client spécifie dans l'en-tête de la requête Accept: application/json alors le serveur lui retournera un json classique
-    @GetMapping(value = "/appointments", produces = "application/json")
+    // (ou du Smile binaire avec Accept: application/x-jackson-smile, voir SmileConfiguration)
+    // Tous les filtres sont facultatifs, par exemple ?patient=jdoe&from=2030-01-01&to=2030-01-31&status=UPCOMING&sort=startDate,desc
+    @GetMapping(value = "/appointments", produces = {"application/json", SmileConfiguration.SMILE_VALUE})
     ResponseEntity<Collection<Appointment>> all(@RequestParam(value = "date", required = false)
-                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date date) {
-        List<Appointment> appts;
-
-        // Si ma requête contient un parametre d'URL date, alors j'appelle la méthode définit dans mon interface.
-        // c’est une méthode de requête dérivée JPA. Il n'est pas nécessaire que je l'implémente
-        if (date != null) {
-            appts = apptRepository.findByStartDateAfter(date);
-        } else {
-            appts = apptRepository.findAll();
-        }
+                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date date,
+                                                @RequestParam(value = "from", required = false)
+                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                @RequestParam(value = "to", required = false)
+                                                @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to,
+                                                @RequestParam(value = "patient", required = false) String patient,
+                                                @RequestParam(value = "doctor", required = false) String doctor,
+                                                @RequestParam(value = "status", required = false) AppointmentStatus status,
+                                                @RequestParam(value = "sort", required = false) List<String> sort) {
+        // Les critères sont traduits en une seule requête (Specification JPA) qui s'appuie sur les index de la table
+        List<Appointment> appts = findAppointments(filter(date, from, to, patient, doctor, status), sortOrder(sort),
+                Function.identity());
 
         return new ResponseEntity<>(appts, HttpStatus.OK);
     }
@@ -65,81 +116,208 @@ public class AppointmentController {
     @GetMapping(value = "/appointments", produces = "application/hal+json")
     public CollectionModel<EntityModel<Appointment>> allHal(
             @RequestParam(value = "date", required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date date) {
-
-        List<Appointment> appts = (date != null)
-                ? apptRepository.findByStartDateAfter(date)
-                : apptRepository.findAll();
-
-        List<EntityModel<Appointment>> appointmentResources = appts.stream()
-                .map(appointmentModelAssembler::toModel)
-                .collect(Collectors.toList());
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date date,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to,
+            @RequestParam(value = "patient", required = false) String patient,
+            @RequestParam(value = "doctor", required = false) String doctor,
+            @RequestParam(value = "status", required = false) AppointmentStatus status,
+            @RequestParam(value = "sort", required = false) List<String> sort) {
+
+        List<EntityModel<Appointment>> appointmentResources = findAppointments(filter(date, from, to, patient, doctor, status),
+                sortOrder(sort), appointmentModelAssembler::toModel);
 
         return CollectionModel.of(
                 appointmentResources,
-                linkTo(methodOn(AppointmentController.class).allHal(null)).withSelfRel()
+                linkTo(methodOn(AppointmentController.class).allHal(null, null, null, null, null, null, null)).withSelfRel()
         );
     }
 
+    // "date" est l'ancien nom de la borne basse, gardé pour les clients existants
+    private static AppointmentFilter filter(Date date, Date from, Date to, String patient, String doctor, AppointmentStatus status) {
+        return new AppointmentFilter(patient, doctor, from != null ? from : date, to, status, new Date());
+    }
+
+    // Le listing interroge chaque shard (scatter) puis fusionne les résultats triés dans l'ordre demandé (gather) ;
+    // avec un filtre sur le médecin, seul son shard est interrogé.
+    // Les occurrences des séries sont calculées sur la fenêtre [from, to] seulement (to par défaut : l'horizon configuré).
+    // view met chaque rendez-vous en forme (lui-même, ou son EntityModel pour HAL) ; en mode parallèle,
+    // c'est fait dans la tâche de chaque médecin (voir ParallelListing)
+    private <T> List<T> findAppointments(AppointmentFilter filter, Sort sort, Function<Appointment, T> view) {
+        Comparator<Appointment> order = comparator(sort);
+        Date windowStart = filter.getFrom() != null ? filter.getFrom() : new Date(0);
+        Date windowEnd = filter.getTo() != null ? filter.getTo() : SeriesController.horizon(windowStart, seriesHorizonDays);
+        if (filter.getDoctor() == null && parallelListing.isEnabled()) {
+            // les tâches par médecin tournent sur d'autres threads : une seule étape pour tout le listing
+            try (TraceSpan span = TraceContext.span("listing.parallel")) {
+                List<T> listed = parallelListing.byDoctor(doctor -> appointmentService.search(filter.forDoctor(doctor), sort, order,
+                        windowStart, windowEnd), view, order);
+                span.rows(listed.size());
+                return listed;
+            }
+        }
+        Supplier<List<Appointment>> work = () -> appointmentService.search(filter, sort, order, windowStart, windowEnd);
+        List<Appointment> appts = filter.getDoctor() != null
+                ? shardRouter.onDoctor(filter.getDoctor(), work)
+                : shardRouter.scatter(work, order);
+        try (TraceSpan span = TraceContext.span("assemble")) {
+            span.rows(appts.size());
+            return appts.stream().map(view).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Paramètre "sort" au format de Spring Data, sur les champs de SORTABLE : "patient", "startDate,desc",
+     * "doctor,startDate,desc"... (une direction s'applique aux champs qui la précèdent).
+     * La date de début puis l'id terminent toujours l'ordre : les listes des shards se fusionnent sans ambiguïté.
+     */
+    static Sort sortOrder(List<String> sort) {
+        Sort order = Sort.unsorted();
+        List<String> pending = new ArrayList<>();
+        if (sort != null) {
+            for (String token : sort) {
+                String value = token.trim();
+                Optional<Sort.Direction> direction = Sort.Direction.fromOptionalString(value);
+                if (direction.isPresent()) {
+                    if (pending.isEmpty()) {
+                        throw new InvalidSearchException("sort", String.join(",", sort));
+                    }
+                    order = order.and(Sort.by(direction.get(), pending.toArray(new String[0])));
+                    pending.clear();
+                } else if (SORTABLE.contains(value)) {
+                    pending.add(value);
+                } else {
+                    throw new InvalidSearchException("sort", value);
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            order = order.and(Sort.by(pending.toArray(new String[0])));
+        }
+        if (order.getOrderFor("startDate") == null) {
+            order = order.and(Sort.by("startDate"));
+        }
+        return order.and(Sort.by("id"));
+    }
+
+    // Le même ordre en mémoire, pour les occurrences et la fusion entre shards
+    // (H2 classe les valeurs nulles en premier dans l'ordre croissant : on fait pareil)
+    static Comparator<Appointment> comparator(Sort sort) {
+        Comparator<Appointment> order = (a, b) -> 0;
+        for (Sort.Order o : sort) {
+            Comparator<Appointment> property;
+            switch (o.getProperty()) {
+                case "endDate":
+                    property = Comparator.comparing(Appointment::getEndDate);
+                    break;
+                case "doctor":
+                    property = Comparator.comparing(Appointment::getDoctor, Comparator.nullsFirst(Comparator.naturalOrder()));
+                    break;
+                case "patient":
+                    property = Comparator.comparing(Appointment::getPatient, Comparator.nullsFirst(Comparator.naturalOrder()));
+                    break;
+                case "id":
+                    // les occurrences de séries n'ont pas d'id
+                    property = Comparator.comparing(Appointment::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+                    break;
+                default:
+                    property = Comparator.comparing(Appointment::getStartDate);
+            }
+            order = order.thenComparing(o.isDescending() ? property.reversed() : property);
+        }
+        return order;
+    }
+
+    // L'identifiant ne dit pas sur quel shard se trouve le rendez-vous : on les interroge jusqu'à le trouver
+    private Appointment findAppointment(Long id) {
+        return shardRouter.scatterFirst(() -> appointmentService.findById(id))
+                .orElseThrow(() -> new AppointmentNotFoundException(id));
+    }
+
+    // Un identifiant inconnu (lien périmé, énumération) est fréquent : 404 direct depuis l'Optional, sans exception
     @GetMapping("/appointments/{id}")
-    public EntityModel<Appointment> getAppointmentById(@PathVariable Long id) {
-        Appointment appt = apptRepository.findById(id).orElseThrow(()-> new AppointmentNotFoundException(id));
-        return EntityModel.of(appt, //
+    public ResponseEntity<?> getAppointmentById(@PathVariable Long id) {
+        Optional<Appointment> appt = shardRouter.scatterFirst(() -> appointmentService.findById(id));
+        if (!appt.isPresent()) {
+            return GlobalExceptionHandler.notFound(AppointmentNotFoundException.message(id));
+        }
+        return ResponseEntity.ok(EntityModel.of(appt.get(), //
                 linkTo(methodOn(AppointmentController.class).getAppointmentById(id)).withSelfRel(),
-                linkTo(methodOn(AppointmentController.class).all(null)).withRel("appointments"));
+                linkTo(methodOn(AppointmentController.class).all(null, null, null, null, null, null, null)).withRel("appointments")));
     }
 
     @PostMapping("/appointments")
-    public ResponseEntity<Appointment> newAppointment(@Valid @RequestBody Appointment appt) {
-        Doctor doctor = doctorRepository.findByName(appt.getDoctor());
-
-        // Validation de la date de début et de fin
-        // Je vérifie que les dates de début et de fin du rendez-vous sont valides.
-        // Si l'une des deux est dans le passé (avant la date et l'heure actuelles), cela signifie
-        // que l'utilisateur essaie de créer un rendez-vous rétroactif, ce qui est interdit.
-        // Dans ce cas, je retourne une réponse HTTP 400 (Bad Request), avec un corps vide,
-        // pour indiquer clairement que la requête envoyée est incorrecte.
-
-        if (appt.getStartDate().before(new Date()) || appt.getEndDate().before(new Date())) {
-            // Si la date de début ou de fin est dans le passé, je retourne une erreur 400 (Bad Request)
-            return ResponseEntity.badRequest().body(null);
-        }
-
-        // Ici je vérifie les conflits avec les rendez-vous existants du médecin
-        List<Appointment> existingAppointments = apptRepository.findByDoctor(doctor.getName());
-        for (Appointment existingAppointment : existingAppointments) {
-            // Vérification si les plages horaires se chevauchent
-            if (isTimeOverlap(appt, existingAppointment)) {
-                return ResponseEntity.status(HttpStatus.CONFLICT).build();
-            }
+    public ResponseEntity<?> newAppointment(@RequestBody Appointment appt,
+                                            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        // Dates absentes, incohérentes ou dans le passé : 406 tout de suite, avant l'idempotence et la réservation
+        String invalid;
+        try (TraceSpan span = TraceContext.span("validate")) {
+            invalid = dateValidator.validate(appt);
+        }
+        if (invalid != null) {
+            return notAcceptable(invalid);
         }
+        // En mode cluster, réservation (et idempotence) sur l'instance propriétaire du médecin
+        Optional<ResponseEntity<byte[]>> forwarded;
+        try (TraceSpan span = TraceContext.span("cluster.forward")) {
+            forwarded = cluster.forward(appt.getDoctor(), appt);
+        }
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
+        // Une relance avec la même clé renvoie le 201 d'origine sans refaire la réservation
+        // Toute la réservation se fait sur le shard du médecin
+        return idempotencyStore.execute(idempotencyKey, fingerprint(appt),
+                () -> shardRouter.onDoctor(appt.getDoctor(), () -> book(appt)));
+    }
 
-        // J'appelle le repository pour me permettre de communiquer avec la BDD et persister ma ressource
-        Appointment savedAppointment = apptRepository.save(appt);
+    // Refus de la validation des dates : le message en corps de réponse, sans exception
+    private static ResponseEntity<String> notAcceptable(String message) {
+        return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).body(message);
+    }
 
-        // Si le rendez-vous a un docteur associé, on l'ajoute à la liste de ses rendez-vous
-        if (appt.getDoctor() != null) {
-                doctor.getAppointments().add(savedAppointment);
-                doctorRepository.save(doctor);
-            }
+    // Empreinte du corps de la requête, pour reconnaître une vraie relance
+    private static String fingerprint(Appointment appt) {
+        return appt.getDoctor() + '|' + appt.getStartDate().getTime() + '|' + appt.getEndDate().getTime() + '|' + appt.getPatient()
+                + '|' + appt.getRoom() + '|' + appt.getDevice();
+    }
 
+    // Les dates ont déjà été validées par dateValidator (pas de rendez-vous rétroactif)
+    private ResponseEntity<Appointment> book(Appointment appt) {
+        // Recherche du médecin, vérification des conflits et insertion : une seule transaction (voir AppointmentService),
+        // journalisée avant qu'un effacement complet ne passe (voir AppointmentEventLog)
+        Optional<Appointment> booked = events.ordered(null, () -> {
+            Optional<Appointment> saved = appointmentService.book(appt);
+            if (saved.isPresent()) {
+                try (TraceSpan span = TraceContext.span("calendar.update")) {
+                    calendars.booked(saved.get());
+                }
+                try (TraceSpan span = TraceContext.span("journal")) {
+                    events.booked(saved.get());
+                }
+            }
+            return saved;
+        });
+        if (!booked.isPresent()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        Appointment savedAppointment = booked.get();
 
         // À partir d'ici et après la sauvegarde en BDD, je crée l'URL
-        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
-                .path("/{id}")
-                .buildAndExpand(savedAppointment.getId())
-                .toUri();
+        URI location;
+        try (TraceSpan span = TraceContext.span("location")) {
+            location = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .path("/{id}")
+                    .buildAndExpand(savedAppointment.getId())
+                    .toUri();
+        }
 
         // Enfin, dernière étape. Je retourne une réponse avec le code 201 (Created) et l'URL de la ressource en question
         return ResponseEntity.created(location).body(savedAppointment);
     }
 
-
-    // Méthode pour vérifier si les créneaux horaires se chevauchent. Par exemple, si la date de fin est avant la date de début je retourne false
-    private boolean isTimeOverlap(Appointment appt1, Appointment appt2) {
-        return !(appt1.getEndDate().toInstant().isBefore(appt2.getStartDate().toInstant()) || appt1.getStartDate().toInstant().isAfter(appt2.getEndDate().toInstant()));
-    }
-
     /**
      * Cette fois, avec cette méthode, je récupère un Appointment à partir de son identifiant (id).
      *
@@ -152,28 +330,75 @@ public class AppointmentController {
      */
 
     @PutMapping("/appointments/{id}")
-    public ResponseEntity<Appointment> updateAppointment(@PathVariable Long id, @Valid @RequestBody Appointment appt) {
+    public ResponseEntity<?> updateAppointment(@PathVariable Long id, @RequestBody Appointment appt) {
+        // Mêmes règles de dates qu'à la création
+        String invalid = dateValidator.validate(appt);
+        if (invalid != null) {
+            return notAcceptable(invalid);
+        }
+
         // Vérifier si le rendez-vous existe
-        Appointment existingAppt = apptRepository.findById(id).orElseThrow(() -> new AppointmentNotFoundException(id));
+        Appointment existingAppt = findAppointment(id);
+        String previousDoctor = existingAppt.getDoctor();
+        // En cluster, chez le propriétaire du médecin qui reçoit le rendez-vous : c'est son créneau qui est pris,
+        // l'ancien médecin ne fait que le libérer (son agenda suit par invalidation)
+        Optional<ResponseEntity<byte[]>> forwarded = cluster.forward(appt.getDoctor() != null ? appt.getDoctor() : previousDoctor, appt);
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
+        // Médecin et dates d'avant la modification, pour ses statistiques
+        Appointment previous = new Appointment(previousDoctor, existingAppt.getStartDate(), existingAppt.getEndDate(),
+                existingAppt.getPatient());
 
         // Mettre à jour les champs nécessaires du rendez-vous
         BeanUtils.copyProperties(appt, existingAppt, "id"); // J'exclus l'ID de la copie car je ne veux pas modifier l'identifiant
 
-        // Sauvegarder les modifications dans la base de données
-        Appointment updatedAppointment = apptRepository.save(existingAppt);
+        // Sauvegarder les modifications dans la base de données, si le nouveau créneau est libre (409 sinon, comme à la création).
+        // Deux modifications du même rendez-vous sont journalisées dans l'ordre de leurs commits (voir AppointmentEventLog)
+        Optional<Appointment> updated = events.ordered(id, () -> {
+            Optional<Appointment> saved = shardRouter.onDoctor(previousDoctor, () -> appointmentService.update(previous, existingAppt));
+            if (!saved.isPresent()) {
+                return saved;
+            }
+            // Si le nouveau médecin vit sur un autre shard, le rendez-vous le suit (en gardant son identifiant)
+            String from = shardRouter.shardFor(previousDoctor);
+            String to = shardRouter.shardFor(saved.get().getDoctor());
+            if (!from.equals(to)) {
+                shardRebalancer.getObject().moveAppointment(id, from, to);
+            }
+            calendars.updated(previousDoctor, saved.get());
+            events.updated(previousDoctor, saved.get());
+            return saved;
+        });
+        if (!updated.isPresent()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
 
-        return new ResponseEntity<>(updatedAppointment, HttpStatus.OK);
+        return new ResponseEntity<>(updated.get(), HttpStatus.OK);
 
     }
 
     @DeleteMapping("appointments/{id}")
-    public ResponseEntity<Appointment> deleteAppointment(@PathVariable Long id) {
-        Appointment existingAppt = apptRepository.findById(id).orElseThrow(() -> new AppointmentNotFoundException(id));
+    public ResponseEntity<?> deleteAppointment(@PathVariable Long id) {
+        Appointment existingAppt = findAppointment(id);
+        Optional<ResponseEntity<byte[]>> forwarded = cluster.forward(existingAppt.getDoctor(), null);
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
         try{
-            apptRepository.delete(existingAppt);
+            events.ordered(id, () -> {
+                shardRouter.onDoctor(existingAppt.getDoctor(), () -> {
+                    appointmentService.delete(existingAppt);
+                    return null;
+                });
+                calendars.removed(existingAppt.getDoctor(), id);
+                events.deleted(existingAppt);
+                return null;
+            });
         } catch (HttpStatusCodeException e){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
+        waitlist.slotFreed(existingAppt);
 
         return new ResponseEntity<>(existingAppt, HttpStatus.OK);
     }
@@ -182,8 +407,12 @@ public class AppointmentController {
     public ResponseEntity<?> cancelAppointment(@PathVariable Long id) {
 
         // Je tente d'abord d'aller récupérer le rendez-vous avec son id
-        Appointment appointment = apptRepository.findById(id)
-                .orElseThrow(() -> new AppointmentNotFoundException(id));
+        Appointment appointment = findAppointment(id);
+        // Le créneau libéré doit être proposé à la liste d'attente, qui vit sur l'instance propriétaire du médecin
+        Optional<ResponseEntity<byte[]>> forwarded = cluster.forward(appointment.getDoctor(), null);
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
 
         // J'évacue d'abord les scénarios d'erreur et je vérifie si la date de début du rendez-vous est dans le passé
         if (appointment.getStartDate().before(new Date())) {
@@ -196,8 +425,16 @@ public class AppointmentController {
         }
 
         // Si le rendez-vous peut être annulé, je le supprime
-        apptRepository.delete(appointment);
-        apptRepository.save(appointment);
+        events.ordered(id, () -> {
+            shardRouter.onDoctor(appointment.getDoctor(), () -> {
+                appointmentService.cancel(appointment);
+                return null;
+            });
+            calendars.removed(appointment.getDoctor(), id);
+            events.cancelled(appointment);
+            return null;
+        });
+        waitlist.slotFreed(appointment);
 
         // je retourne une réponse indiquant que l'annulation a réussi
         return ResponseEntity.ok(appointmentModelAssembler.toModel(appointment));
@@ -208,10 +445,21 @@ public class AppointmentController {
     @DeleteMapping("appointments")
     public ResponseEntity<Appointment> deleteAllAppointments() {
         // J'évacue le scénario où je n'aurai rien en bdd
-        if(apptRepository.findAll().isEmpty()) {
+        // (un simple comptage par shard, sans charger les rendez-vous)
+        long count = 0;
+        for (String shard : shardRouter.getShards()) {
+            count += shardRouter.onShard(shard, appointmentService::count);
+        }
+        if (count == 0) {
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         }
-        apptRepository.deleteAll();
+        // Aucune écriture de rendez-vous ne passe entre l'effacement et son événement (voir AppointmentEventLog)
+        events.clearing(() -> {
+            shardRouter.forEachShard(appointmentService::deleteAll);
+            calendars.invalidateAll();
+            events.cleared();
+            return null;
+        });
 
         return new ResponseEntity<>(null, HttpStatus.OK);
     }
@@ -1,47 +1,52 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
-
-import javax.validation.ConstraintValidator;
-import javax.validation.ConstraintValidatorContext;
-import java.util.Date;
-
-public class AppointmentDateValidator
-        implements ConstraintValidator<AppointmentDateConstraint, Appointment> {
-    @Override
-    public void initialize(AppointmentDateConstraint dateCst) {
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+
+/**
+ * Validation des dates d'un rendez-vous, en une seule passe, avant la réservation ou la modification.
+ *
+ * Elle remplace la contrainte Bean Validation et son advice : un rendez-vous refusé ne crée ni ConstraintViolation,
+ * ni MethodArgumentNotValidException (avec sa pile d'appels), le contrôleur renvoie directement le 406 et un message constant.
+ * L'heure courante vient d'une {@link Clock} injectable (un bean Clock s'il y en a un, sinon l'horloge système),
+ * les comparaisons se font sur les millisecondes.
+ */
+@Component
+public class AppointmentDateValidator {
+    public static final String MISSING_DATES = "Start date or end date cannot be null";
+    public static final String INCOHERENT_DATES = "Incoherent start and end dates";
+
+    private final Clock clock;
+
+    @Autowired
+    public AppointmentDateValidator(ObjectProvider<Clock> clock) {
+        this(clock.getIfAvailable(Clock::systemUTC));
     }
 
-    @Override
-    public boolean isValid(Appointment appointment, ConstraintValidatorContext ctxt) {
-        if (appointment == null) {
-            return true; // Si l'objet est null, on laisse la validation se faire ailleurs
-        }
-
-        // Ici grâce aux getter de mon objet appointment, je récupère la date dans le but de controler ce qu'il contient
-        Date startDate = appointment.getStartDate();
-        Date endDate = appointment.getEndDate();
+    public AppointmentDateValidator(Clock clock) {
+        this.clock = clock;
+    }
 
+    /**
+     * @return null si les dates sont valides, sinon le message d'erreur pour le client
+     */
+    public String validate(Appointment appointment) {
         // Je vérifie que l'une des deux dates n'est pas null
-        if (startDate == null || endDate == null) {
-            ctxt.disableDefaultConstraintViolation();
-            ctxt.buildConstraintViolationWithTemplate("Start date or end date cannot be null")
-                    .addConstraintViolation();
-            return false;
+        if (appointment.getStartDate() == null || appointment.getEndDate() == null) {
+            return MISSING_DATES;
         }
+        long start = appointment.getStartDate().getTime();
+        long end = appointment.getEndDate().getTime();
+        long now = clock.millis();
 
-        // Je m'assure que la date de début est bien avant la date de fin
-        if (startDate.after(endDate)) {
-            return false;
+        // La date de début doit être avant la date de fin, et les deux dans le futur (pas de rendez-vous rétroactif)
+        if (start > end || start < now || end < now) {
+            return INCOHERENT_DATES;
         }
-
-        // Je vérifie que les deux dates sont dans le futur par rapport à la date actuelle
-        Date currentDate = new Date();
-        if (startDate.before(currentDate) || endDate.before(currentDate)) {
-            return false; // Parce que l'une des dates est dans le passé
-        }
-
-        return true;
+        return null;
     }
-
 }
@@ -15,10 +15,16 @@ public class AppointmentModelAssembler implements RepresentationModelAssembler<A
 
     @Override
     public EntityModel<Appointment> toModel(Appointment appointment) {
+        // Une occurrence de série n'a pas d'adresse propre : elle renvoie vers sa série
+        if (appointment.getSeriesId() != null) {
+            return EntityModel.of(appointment,
+                    linkTo(methodOn(SeriesController.class).getSeries(appointment.getSeriesId())).withRel("series"),
+                    linkTo(methodOn(AppointmentController.class).all(null, null, null, null, null, null, null)).withRel("appointments"));
+        }
         // On ajoute les liens HAL à l'Appointment
         return EntityModel.of(appointment,
                 linkTo(methodOn(AppointmentController.class).getAppointmentById(appointment.getId())).withSelfRel(), // Lien vers la ressource elle-même
-                linkTo(methodOn(AppointmentController.class).all(null)).withRel("appointments") // Lien vers la collection des rendez-vous
+                linkTo(methodOn(AppointmentController.class).all(null, null, null, null, null, null, null)).withRel("appointments") // Lien vers la collection des rendez-vous
         );
     }
 }
@@ -1,7 +1,12 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
 
-public class AppointmentNotFoundException extends RuntimeException {
+public class AppointmentNotFoundException extends NotFoundException {
     public AppointmentNotFoundException(Long id) {
-        super("Could not find appointment " + id);
+        super(message(id));
+    }
+
+    // Aussi utilisé sans exception, quand le contrôleur renvoie directement le 404
+    public static String message(Long id) {
+        return "Could not find appointment " + id;
     }
 }
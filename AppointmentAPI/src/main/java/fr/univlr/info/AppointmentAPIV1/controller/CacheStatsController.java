@@ -0,0 +1,87 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistiques et éviction du cache de second niveau Hibernate, région par région.
+ *
+ * GET /api/admin/caches renvoie, pour chaque région, les hits/misses/puts et sa taille estimée.
+ * DELETE /api/admin/caches/{region} vide une région (par exemple après une modification directe en base).
+ */
+@RestController
+@RequestMapping(path = "/api/admin/caches")
+public class CacheStatsController {
+    private final SessionFactory sessionFactory;
+    private final CacheManager cacheManager;
+
+    public CacheStatsController(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        RegionFactory regionFactory = sessionFactory.unwrap(SessionFactoryImplementor.class).getCache().getRegionFactory();
+        this.cacheManager = regionFactory instanceof JCacheRegionFactory
+                ? ((JCacheRegionFactory) regionFactory).getCacheManager()
+                : null;
+    }
+
+    @GetMapping(produces = "application/json")
+    public ResponseEntity<Map<String, Object>> stats() {
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, Object> regions = new TreeMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStats = statistics.getCacheRegionStatistics(region);
+            if (regionStats == null) {
+                continue;
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("hits", regionStats.getHitCount());
+            values.put("misses", regionStats.getMissCount());
+            values.put("puts", regionStats.getPutCount());
+            values.put("size", estimatedSize(region));
+            regions.put(region, values);
+        }
+
+        Map<String, Object> queryCache = new LinkedHashMap<>();
+        queryCache.put("hits", statistics.getQueryCacheHitCount());
+        queryCache.put("misses", statistics.getQueryCacheMissCount());
+        queryCache.put("puts", statistics.getQueryCachePutCount());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        body.put("regions", regions);
+        body.put("queryCache", queryCache);
+        return ResponseEntity.ok(body);
+    }
+
+    // Les régions JCache ne donnent pas leur taille à Hibernate : on la demande directement à Caffeine
+    private long estimatedSize(String region) {
+        Cache<Object, Object> cache = cacheManager != null ? cacheManager.getCache(region) : null;
+        if (cache == null) {
+            return -1;
+        }
+        return cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).estimatedSize();
+    }
+
+    @DeleteMapping("/{region}")
+    public ResponseEntity<String> evict(@PathVariable String region) {
+        if (!Arrays.asList(sessionFactory.getStatistics().getSecondLevelCacheRegionNames()).contains(region)) {
+            return new ResponseEntity<>("Unknown cache region : " + region, HttpStatus.NOT_FOUND);
+        }
+        sessionFactory.getCache().evictRegion(region);
+        return ResponseEntity.noContent().build();
+    }
+}
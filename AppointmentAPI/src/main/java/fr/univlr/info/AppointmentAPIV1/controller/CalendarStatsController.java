@@ -0,0 +1,30 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.service.CalendarSnapshots;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * État des agendas gardés en mémoire, médecin par médecin.
+ *
+ * GET /api/admin/calendars renvoie, pour chaque médecin, le nombre d'entrées (rendez-vous et occurrences),
+ * la place estimée en mémoire (octets) et la fenêtre couverte, avec les totaux.
+ */
+@RestController
+@RequestMapping(path = "/api/admin/calendars")
+public class CalendarStatsController {
+    private final CalendarSnapshots calendars;
+
+    public CalendarStatsController(CalendarSnapshots calendars) {
+        this.calendars = calendars;
+    }
+
+    @GetMapping(produces = "application/json")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(calendars.stats());
+    }
+}
@@ -0,0 +1,58 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.store.ClusterMembership;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Échanges entre les membres du cluster (voir {@link ClusterCoordinator}).
+ *
+ * GET /api/cluster donne l'instance courante, les membres et, avec ?doctor=, le propriétaire d'un médecin ;
+ * POST /api/cluster/invalidations reçoit les invalidations d'un autre membre (403 sans le secret partagé).
+ */
+@RestController
+@RequestMapping(path = "/api/cluster")
+@ConditionalOnProperty(name = "appointment.cluster.enabled", havingValue = "true")
+public class ClusterController {
+    private final ClusterCoordinator cluster;
+    private final ClusterMembership membership;
+
+    public ClusterController(ClusterCoordinator cluster, ClusterMembership membership) {
+        this.cluster = cluster;
+        this.membership = membership;
+    }
+
+    @GetMapping(produces = "application/json")
+    public ResponseEntity<Map<String, Object>> members(@RequestParam(value = "doctor", required = false) String doctor) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("self", membership.getSelf());
+        body.put("members", membership.getMembers());
+        if (doctor != null) {
+            body.put("owner", membership.ownerOf(doctor));
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    @PostMapping("/invalidations")
+    public ResponseEntity<Void> invalidate(@RequestBody Invalidation invalidation, HttpServletRequest request) {
+        if (!cluster.isForwarded(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        cluster.invalidate(invalidation.all, invalidation.doctors != null ? invalidation.doctors : Collections.emptyMap());
+        return ResponseEntity.noContent().build();
+    }
+
+    public static class Invalidation {
+        public boolean all;
+        // médecin -> rendez-vous touchés
+        public Map<String, List<Long>> doctors;
+    }
+}
@@ -0,0 +1,308 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.service.CalendarSnapshots;
+import fr.univlr.info.AppointmentAPIV1.service.DoctorService;
+import fr.univlr.info.AppointmentAPIV1.store.ClusterMembership;
+import fr.univlr.info.AppointmentAPIV1.store.SecondLevelCache;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mode cluster : plusieurs instances de l'application derrière un répartiteur, sur la même base.
+ *
+ * Chaque médecin a une instance propriétaire (voir {@link ClusterMembership}). Les écritures d'un médecin (réservation, modification, suppression,
+ * annulation, création, annulation d'occurrence et suppression de série, liste d'attente) reçues par une autre instance lui sont transmises telles quelles : ses prises
+ * de créneau (SlotHolds), son agenda en mémoire, sa liste d'attente et les clés d'idempotence restent sur une seule instance.
+ * Une modification va au propriétaire du médecin vers lequel le rendez-vous est déplacé : c'est son créneau qui doit être pris.
+ *
+ * Après chaque changement d'un agenda (voir CalendarSnapshots.onChange), les autres membres sont prévenus
+ * (POST /api/cluster/invalidations) : ils relisent l'agenda du médecin et retirent du cache de second niveau
+ * le médecin et les rendez-vous touchés (voir SecondLevelCache.evictDoctor). Les invalidations en attente sont
+ * regroupées par membre et envoyées par un seul thread ; un membre injoignable les recevra à l'essai suivant.
+ *
+ * Les requêtes entre membres portent l'en-tête X-Cluster-Forwarded avec le secret partagé : elles sont traitées
+ * sur place (pas de seconde transmission) et ne passent pas par la limitation de débit. Une requête transmise porte
+ * aussi X-Forwarded-Host, -Port et -Proto de la requête reçue : le propriétaire construit ses liens (Location, HAL)
+ * vers l'adresse que le client a appelée (voir ClusterForwardedHeaderFilter).
+ * Un propriétaire injoignable donne un 503 : pas de repli local, qui laisserait passer une double réservation.
+ */
+@Component
+public class ClusterCoordinator implements DisposableBean {
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterCoordinator.class);
+    // En-têtes de la requête recopiés vers le propriétaire
+    private static final List<String> FORWARDED_REQUEST_HEADERS = Arrays.asList(HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT,
+            IdempotencyStore.HEADER, ConsistencyTokenFilter.HEADER);
+    // En-têtes propres à une connexion, à ne pas recopier dans la réponse
+    private static final Set<String> HOP_BY_HOP = new HashSet<>(Arrays.asList("connection", "keep-alive", "transfer-encoding",
+            "content-length", "date"));
+
+    private final ClusterMembership membership;
+    private final boolean enabled;
+    private final String self;
+    private final String secret;
+    private final CalendarSnapshots calendars;
+    private final DoctorService doctorService;
+    private final ShardRouter shardRouter;
+    private final SecondLevelCache secondLevelCache;
+    private final ObjectMapper objectMapper;
+    private final RestTemplate http;
+    private final long retryDelayMillis;
+    // Invalidations pas encore envoyées, par membre : médecin (null : tous) et rendez-vous touchés
+    private final Map<String, Map<String, Set<Long>>> pending = new HashMap<>();
+    private final Thread sender;
+
+    public ClusterCoordinator(ClusterMembership membership,
+                              @Value("${appointment.cluster.connect-timeout-ms:1000}") int connectTimeoutMillis,
+                              @Value("${appointment.cluster.read-timeout-ms:15000}") int readTimeoutMillis,
+                              @Value("${appointment.cluster.retry-delay-ms:1000}") long retryDelayMillis,
+                              CalendarSnapshots calendars, DoctorService doctorService, ShardRouter shardRouter,
+                              SecondLevelCache secondLevelCache, ObjectMapper objectMapper) {
+        this.membership = membership;
+        this.enabled = membership.isEnabled();
+        this.self = membership.getSelf();
+        this.secret = membership.getSecret();
+        this.calendars = calendars;
+        this.doctorService = doctorService;
+        this.shardRouter = shardRouter;
+        this.secondLevelCache = secondLevelCache;
+        this.objectMapper = objectMapper;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        this.http = new RestTemplate(requestFactory);
+        // Les réponses d'erreur du propriétaire (404, 409...) sont rendues au client telles quelles
+        this.http.setErrorHandler(new DefaultResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+        });
+        this.retryDelayMillis = retryDelayMillis;
+
+        if (enabled) {
+            for (String member : membership.getMembers()) {
+                if (!member.equals(this.self)) {
+                    pending.put(member, new HashMap<>());
+                }
+            }
+            calendars.onChange(this::changed);
+            this.sender = new Thread(this::sendInvalidations, "cluster-invalidations");
+            this.sender.setDaemon(true);
+            this.sender.start();
+        } else {
+            this.sender = null;
+        }
+    }
+
+    // Requête venue d'un autre membre (et pas d'un client qui aurait posé l'en-tête lui-même).
+    // Comparaison en temps constant : la durée de la réponse ne dit pas combien de caractères du secret sont bons
+    public static boolean isForwarded(HttpServletRequest request, String secret) {
+        String header = request.getHeader(FORWARDED_HEADER);
+        return !secret.isEmpty() && header != null
+                && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isForwarded(HttpServletRequest request) {
+        return enabled && isForwarded(request, secret);
+    }
+
+    /**
+     * Transmet la requête en cours au propriétaire du médecin et rend sa réponse ; vide si elle doit être traitée ici
+     * (hors mode cluster, médecin dont on est propriétaire, ou requête déjà transmise par un autre membre).
+     *
+     * @param body corps de la requête, déjà lu par le contrôleur : il est réécrit en JSON
+     */
+    public Optional<ResponseEntity<byte[]>> forward(String doctor, Object body) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        HttpServletRequest request = currentRequest();
+        String owner = membership.ownerOf(doctor);
+        if (owner.equals(self) || isForwarded(request)) {
+            return Optional.empty();
+        }
+        return Optional.of(send(owner, request, body));
+    }
+
+    /**
+     * Pour une ressource qui ne vit qu'en mémoire sur le propriétaire de son médecin et qu'on ne trouve pas ici
+     * (une demande de liste d'attente par son identifiant) : la première réponse d'un autre membre qui n'est pas un 404.
+     */
+    public Optional<ResponseEntity<byte[]>> findElsewhere() {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        HttpServletRequest request = currentRequest();
+        if (isForwarded(request)) {
+            return Optional.empty();
+        }
+        for (String member : membership.getMembers()) {
+            if (!member.equals(self)) {
+                ResponseEntity<byte[]> response = send(member, request, null);
+                if (response.getStatusCode() != HttpStatus.NOT_FOUND) {
+                    return Optional.of(response);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Reçu d'un autre membre : agendas relus en base, médecins et rendez-vous touchés retirés du cache de second niveau
+    public void invalidate(boolean all, Map<String, ? extends Collection<Long>> doctors) {
+        if (all) {
+            calendars.invalidate(null);
+            secondLevelCache.evictAll();
+            return;
+        }
+        doctors.forEach((doctor, appointments) -> {
+            calendars.invalidate(doctor);
+            Long doctorId = shardRouter.onDoctor(doctor, () -> doctorService.lookup(doctor)).map(Doctor::getId).orElse(null);
+            secondLevelCache.evictDoctor(doctorId, appointments);
+        });
+    }
+
+    private ResponseEntity<byte[]> send(String member, HttpServletRequest request, Object body) {
+        String query = request.getQueryString();
+        URI target = URI.create(member + request.getRequestURI() + (query != null ? "?" + query : ""));
+        HttpHeaders headers = new HttpHeaders();
+        for (String name : FORWARDED_REQUEST_HEADERS) {
+            String value = request.getHeader(name);
+            if (value != null) {
+                headers.set(name, value);
+            }
+        }
+        headers.set(FORWARDED_HEADER, secret);
+        // adresse publique de la requête, telle que cette instance la voit
+        headers.set("X-Forwarded-Host", request.getServerName());
+        headers.set("X-Forwarded-Port", String.valueOf(request.getServerPort()));
+        headers.set("X-Forwarded-Proto", request.getScheme());
+        try {
+            byte[] payload = body != null ? objectMapper.writeValueAsBytes(body) : null;
+            if (payload != null) {
+                headers.setContentType(MediaType.APPLICATION_JSON);
+            }
+            ResponseEntity<byte[]> response = http.exchange(target, HttpMethod.resolve(request.getMethod()),
+                    new HttpEntity<>(payload, headers), byte[].class);
+            HttpHeaders copied = new HttpHeaders();
+            response.getHeaders().forEach((name, values) -> {
+                if (!HOP_BY_HOP.contains(name.toLowerCase(Locale.ROOT))) {
+                    copied.put(name, values);
+                }
+            });
+            return new ResponseEntity<>(response.getBody(), copied, response.getStatusCode());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        } catch (ResourceAccessException e) {
+            log.warn("Cluster member {} unreachable: {}", member, e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(("Cluster member " + member + " unreachable").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void changed(String doctor, Long appointment) {
+        synchronized (pending) {
+            for (Map<String, Set<Long>> doctors : pending.values()) {
+                Set<Long> appointments = doctors.computeIfAbsent(doctor, d -> new HashSet<>());
+                if (appointment != null) {
+                    appointments.add(appointment);
+                }
+            }
+            pending.notifyAll();
+        }
+    }
+
+    // Thread d'envoi : prend tout ce qui est en attente, une requête par membre, et garde ce qui n'a pas pu partir
+    private void sendInvalidations() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Map<String, Map<String, Set<Long>>> batch = new HashMap<>();
+            try {
+                synchronized (pending) {
+                    while (pending.values().stream().allMatch(Map::isEmpty)) {
+                        pending.wait();
+                    }
+                    pending.forEach((member, doctors) -> {
+                        if (!doctors.isEmpty()) {
+                            batch.put(member, new HashMap<>(doctors));
+                            doctors.clear();
+                        }
+                    });
+                }
+                boolean failed = false;
+                for (Map.Entry<String, Map<String, Set<Long>>> entry : batch.entrySet()) {
+                    if (!post(entry.getKey(), entry.getValue())) {
+                        failed = true;
+                        synchronized (pending) {
+                            Map<String, Set<Long>> doctors = pending.get(entry.getKey());
+                            entry.getValue().forEach((doctor, appointments) ->
+                                    doctors.computeIfAbsent(doctor, d -> new HashSet<>()).addAll(appointments));
+                        }
+                    }
+                }
+                if (failed) {
+                    TimeUnit.MILLISECONDS.sleep(retryDelayMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean post(String member, Map<String, Set<Long>> doctors) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("all", doctors.containsKey(null));
+        Map<String, Set<Long>> named = new HashMap<>(doctors);
+        named.remove(null);
+        body.put("doctors", named);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(FORWARDED_HEADER, secret);
+        try {
+            ResponseEntity<Void> response = http.exchange(URI.create(member + "/api/cluster/invalidations"), HttpMethod.POST,
+                    new HttpEntity<>(body, headers), Void.class);
+            if (response.getStatusCode().is2xxSuccessful()) {
+                return true;
+            }
+            log.warn("Cluster member {} refused an invalidation: {}", member, response.getStatusCode());
+        } catch (RuntimeException e) {
+            log.warn("Cluster member {} unreachable for an invalidation: {}", member, e.getMessage());
+        }
+        return false;
+    }
+
+    private static HttpServletRequest currentRequest() {
+        return ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+    }
+
+    @Override
+    public void destroy() {
+        if (sender != null) {
+            sender.interrupt();
+        }
+    }
+}
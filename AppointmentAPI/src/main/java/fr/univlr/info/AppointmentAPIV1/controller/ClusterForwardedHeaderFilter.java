@@ -0,0 +1,33 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.store.ClusterMembership;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.ForwardedHeaderFilter;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Requête transmise par un autre membre du cluster (voir {@link ClusterCoordinator}) : ses en-têtes X-Forwarded-Host,
+ * -Port et -Proto remplacent l'adresse de la requête, pour que les liens rendus (Location, HAL) visent l'instance
+ * que le client a appelée et pas le propriétaire.
+ *
+ * Seulement pour les requêtes qui portent le secret partagé : ceux d'un client ne sont pas pris en compte.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "appointment.cluster.enabled", havingValue = "true")
+public class ClusterForwardedHeaderFilter extends ForwardedHeaderFilter {
+    private final String secret;
+
+    public ClusterForwardedHeaderFilter(ClusterMembership membership) {
+        this.secret = membership.getSecret();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !ClusterCoordinator.isForwarded(request, secret) || super.shouldNotFilter(request);
+    }
+}
@@ -0,0 +1,256 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Rend effectif le seuil server.compression.min-response-size sur les réponses de l'API.
+ *
+ * Tomcat ne compare la taille au seuil que s'il connaît le Content-Length, or Jackson vide son flux avant la fin :
+ * la réponse part en "chunked" et elle est compressée même pour un seul rendez-vous.
+ * Ici on ne garde en mémoire que le début du corps, au plus le seuil : si la réponse se termine avant, elle part avec
+ * son Content-Length (et sans compression) ; dès qu'elle le dépasse, ce début est envoyé et la suite passe directement,
+ * compressée par Tomcat. Une réponse qui annonce elle-même son Content-Length n'est pas retenue du tout.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "server.compression.enabled", havingValue = "true")
+public class CompressionThresholdFilter extends OncePerRequestFilter {
+    private final int threshold;
+
+    public CompressionThresholdFilter(@Value("${server.compression.min-response-size:2KB}") DataSize threshold) {
+        this.threshold = (int) threshold.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ThresholdResponse wrapper = new ThresholdResponse(response, threshold);
+        try {
+            chain.doFilter(request, wrapper);
+        } finally {
+            wrapper.finish();
+        }
+    }
+
+    private static final class ThresholdResponse extends HttpServletResponseWrapper {
+        private final int threshold;
+        // début du corps retenu ; null une fois la réponse passée en flux direct
+        private ByteArrayOutputStream head;
+        private ServletOutputStream output;
+        private PrintWriter writer;
+
+        ThresholdResponse(HttpServletResponse response, int threshold) {
+            super(response);
+            this.threshold = threshold;
+            this.head = new ByteArrayOutputStream(Math.min(threshold, 8192));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called for this response");
+            }
+            if (output == null) {
+                output = new ThresholdOutputStream();
+            }
+            return output;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (output != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called for this response");
+                }
+                output = new ThresholdOutputStream();
+                writer = new PrintWriter(new OutputStreamWriter(output, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        // La taille est connue : c'est Tomcat qui la compare au seuil
+        @Override
+        public void setContentLength(int length) {
+            super.setContentLength(length);
+            passThroughQuietly();
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            super.setContentLengthLong(length);
+            passThroughQuietly();
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            super.setHeader(name, value);
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                passThroughQuietly();
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            super.addHeader(name, value);
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                passThroughQuietly();
+            }
+        }
+
+        // Un flush pendant qu'on retient le début (Jackson en fait un) validerait la réponse sans Content-Length
+        @Override
+        public void flushBuffer() throws IOException {
+            if (head == null) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (head != null) {
+                head.reset();
+            }
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            if (head != null) {
+                head.reset();
+            }
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            passThrough();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            passThrough();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            passThrough();
+            super.sendRedirect(location);
+        }
+
+        // Fin de la requête : ce qui est encore retenu tient sous le seuil et part avec son Content-Length
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (head != null) {
+                byte[] body = head.toByteArray();
+                head = null;
+                if (!isCommitted() && body.length > 0) {
+                    super.setContentLength(body.length);
+                }
+                if (body.length > 0) {
+                    super.getOutputStream().write(body);
+                }
+            }
+        }
+
+        // Envoie le début retenu et laisse passer la suite telle quelle
+        private void passThrough() throws IOException {
+            if (head == null) {
+                return;
+            }
+            byte[] start = head.toByteArray();
+            head = null;
+            if (start.length > 0) {
+                super.getOutputStream().write(start);
+            }
+        }
+
+        private void passThroughQuietly() {
+            try {
+                passThrough();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private final class ThresholdOutputStream extends ServletOutputStream {
+            @Override
+            public void write(int b) throws IOException {
+                if (head != null && head.size() + 1 <= threshold) {
+                    head.write(b);
+                    return;
+                }
+                passThrough();
+                getResponse().getOutputStream().write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (head != null && head.size() + len <= threshold) {
+                    head.write(b, off, len);
+                    return;
+                }
+                passThrough();
+                getResponse().getOutputStream().write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (head == null) {
+                    getResponse().getOutputStream().flush();
+                }
+            }
+
+            // Tant que le début est retenu, l'écriture va en mémoire : toujours prête
+            @Override
+            public boolean isReady() {
+                if (head != null) {
+                    return true;
+                }
+                try {
+                    return getResponse().getOutputStream().isReady();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            // Écritures asynchrones : plus de seuil, le début retenu part et la suite va directement au flux de Tomcat
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                passThroughQuietly();
+                try {
+                    getResponse().getOutputStream().setWriteListener(listener);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+}
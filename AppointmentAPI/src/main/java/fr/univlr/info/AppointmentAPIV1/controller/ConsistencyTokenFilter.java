@@ -0,0 +1,52 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.store.ConsistencyContext;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Jeton de cohérence "read-your-writes" pour le mode réplication.
+ *
+ * Après une écriture (par exemple un POST /api/appointments), la réponse porte l'en-tête {@code X-Consistency-Token}.
+ * Le client le renvoie sur ses lectures suivantes : elles ne seront servies que par un réplica qui a déjà
+ * appliqué cette écriture, sinon par le primaire.
+ */
+@Component
+@ConditionalOnProperty(name = "appointment.replication.enabled", havingValue = "true")
+public class ConsistencyTokenFilter extends OncePerRequestFilter {
+    public static final String HEADER = "X-Consistency-Token";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ConsistencyContext.bind(parseToken(request.getHeader(HEADER)), version -> {
+            if (!response.isCommitted()) {
+                response.setHeader(HEADER, Long.toString(version));
+            }
+        });
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ConsistencyContext.clear();
+        }
+    }
+
+    // Un jeton absent ou illisible n'exige rien : la lecture peut aller sur n'importe quel réplica à jour
+    private static long parseToken(String token) {
+        if (token == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(token.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+}
@@ -3,8 +3,16 @@ package fr.univlr.info.AppointmentAPIV1.controller;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
 import fr.univlr.info.AppointmentAPIV1.model.Doctor;
-import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
-import fr.univlr.info.AppointmentAPIV1.store.DoctorRepository;
+import fr.univlr.info.AppointmentAPIV1.model.TimeSlot;
+import fr.univlr.info.AppointmentAPIV1.service.CalendarSnapshots;
+import fr.univlr.info.AppointmentAPIV1.service.DoctorCalendar;
+import fr.univlr.info.AppointmentAPIV1.service.DoctorService;
+import fr.univlr.info.AppointmentAPIV1.service.DoctorStats;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import fr.univlr.info.AppointmentAPIV1.store.TraceContext;
+import fr.univlr.info.AppointmentAPIV1.store.TraceSpan;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.hateoas.CollectionModel;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.http.HttpStatus;
@@ -13,8 +21,15 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
@@ -23,24 +38,37 @@ import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 @RestController
 @RequestMapping(path = "/api")
 public class DoctorController {
-    // Ces interfaces qui étendent JpaRepository me permettent de communiquer avec la BDD
-    private final DoctorRepository doctorRepository;
-    private final AppointmentRepository appointmentRepository;
+    // Le service me permet de communiquer avec la BDD, une transaction par appel
+    private final DoctorService doctorService;
     private final DoctorModelAssembler doctorModelAssembler;
+    private final ShardRouter shardRouter;
+    // Agendas en mémoire : listing d'une fenêtre à venir et créneaux libres sans passer par la base
+    private final CalendarSnapshots calendars;
+    private final DoctorStats stats;
+    private final int seriesHorizonDays;
+    // Fenêtre maximale des statistiques : une ligne par jour au plus à lire
+    private static final int MAX_STATS_DAYS = 366;
 
+    private static final Comparator<Doctor> ID_ORDER = Comparator.comparing(Doctor::getId);
 
-    public DoctorController(DoctorRepository doctorRepository, AppointmentRepository appointmentRepository, DoctorModelAssembler doctorModelAssembler) {
-        this.doctorRepository = doctorRepository;
-        this.appointmentRepository = appointmentRepository;
+
+    public DoctorController(DoctorService doctorService, DoctorModelAssembler doctorModelAssembler, ShardRouter shardRouter,
+                            CalendarSnapshots calendars, DoctorStats stats,
+                            @Value("${appointment.series.horizon-days:365}") int seriesHorizonDays) {
+        this.doctorService = doctorService;
         this.doctorModelAssembler = doctorModelAssembler;
+        this.shardRouter = shardRouter;
+        this.calendars = calendars;
+        this.stats = stats;
+        this.seriesHorizonDays = seriesHorizonDays;
     }
 
     // Même chose que pour les appointments :
     // Si le client fournit dans l'en-tête de sa requête `Accept: application/json`,
     // le serveur lui répondra avec un JSON classique, sans liens hypermédia.
-    @GetMapping(value = "/doctors", produces = "application/json")
+    @GetMapping(value = "/doctors", produces = {"application/json", SmileConfiguration.SMILE_VALUE})
     ResponseEntity<Collection<Doctor>> all() {
-        List<Doctor> doctors = doctorRepository.findAll();
+        List<Doctor> doctors = findAll();
         return new ResponseEntity<>(doctors, HttpStatus.OK);
     }
 
@@ -50,50 +78,56 @@ public class DoctorController {
     // ça permettra de naviguer facilement vers des ressources liées.
     @GetMapping(value = "/doctors", produces = "application/hal+json")
     public CollectionModel<EntityModel<Doctor>> allHal() {
-        List<EntityModel<Doctor>> doctors = doctorRepository.findAll().stream()
-                .map(doctorModelAssembler::toModel)
-                .collect(Collectors.toList());
+        List<Doctor> found = findAll();
+        List<EntityModel<Doctor>> doctors;
+        try (TraceSpan span = TraceContext.span("assemble")) {
+            span.rows(found.size());
+            doctors = found.stream()
+                    .map(doctorModelAssembler::toModel)
+                    .collect(Collectors.toList());
+        }
 
         return CollectionModel.of(doctors,
                 linkTo(methodOn(DoctorController.class).allHal()).withSelfRel());
     }
 
-    @GetMapping("/doctors/{name}")
-    public ResponseEntity<Doctor> findDoctor(@PathVariable String name) {
-        Doctor doctor = doctorRepository.findByName(name);
+    private List<Doctor> findAll() {
+        try (TraceSpan span = TraceContext.span("query")) {
+            List<Doctor> doctors = shardRouter.scatter(doctorService::findAll, ID_ORDER);
+            span.rows(doctors.size());
+            return doctors;
+        }
+    }
 
-        // L'exception sera gérée au niveau de la classe GlobalExceptionHandler
-        if (doctor == null) {
-            throw new DoctorNotFoundException(name);
+    // Un médecin inconnu donne un 404 directement depuis l'Optional, sans exception
+    @GetMapping("/doctors/{name}")
+    public ResponseEntity<?> findDoctor(@PathVariable String name) {
+        Optional<Doctor> doctor = shardRouter.onDoctor(name, () -> doctorService.lookup(name));
+        if (!doctor.isPresent()) {
+            return GlobalExceptionHandler.notFound(DoctorNotFoundException.message(name));
         }
 
-        return ResponseEntity.ok(doctor);
+        return ResponseEntity.ok(doctor.get());
     }
 
     @GetMapping(value = "/doctors/{name}", produces = "application/hal+json")
-    public EntityModel<Doctor> oneHal(@PathVariable String name) {
+    public ResponseEntity<?> oneHal(@PathVariable String name) {
 
-        Doctor doctor = doctorRepository.findByName(name);
-
-        // L'exception sera gérée au niveau de la classe GlobalExceptionHandler
-        if (doctor == null) {
-            throw new DoctorNotFoundException(name);
+        Optional<Doctor> doctor = shardRouter.onDoctor(name, () -> doctorService.lookup(name));
+        if (!doctor.isPresent()) {
+            return GlobalExceptionHandler.notFound(DoctorNotFoundException.message(name));
         }
 
-        return doctorModelAssembler.toModel(doctor);
+        return ResponseEntity.ok(doctorModelAssembler.toModel(doctor.get()));
     }
 
-    @GetMapping(value = "/doctors/{name}/appointments", produces = "application/json")
-    public ResponseEntity<List<Appointment>> getAppointmentsForDoctor(@PathVariable String name) {
+    @GetMapping(value = "/doctors/{name}/appointments", produces = {"application/json", SmileConfiguration.SMILE_VALUE})
+    public ResponseEntity<List<Appointment>> getAppointmentsForDoctor(@PathVariable String name,
+                                                                      @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                                      @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
 
-        Doctor doctor = doctorRepository.findByName(name);
-
-        if (doctor == null) {
-            throw new DoctorNotFoundException(name);
-        }
-
-        // Pour Rechercher les rendez-vous associés au docteur
-        List<Appointment> appointments = appointmentRepository.findByDoctor(name);
+        // Pour Rechercher les rendez-vous associés au docteur (avec les occurrences de ses séries sur la fenêtre demandée)
+        List<Appointment> appointments = findAppointmentsForDoctor(name, from, to);
 
         return ResponseEntity.ok(appointments);
     }
@@ -101,31 +135,112 @@ public class DoctorController {
     // Si le client spécifie dans l'en-tête de sa requête qu'il souhaite que le serveur lui retourne la réponse
     // avec des liens hypermedias
     @GetMapping(value = "/doctors/{name}/appointments", produces = "application/hal+json")
-    public CollectionModel<EntityModel<Appointment>> getAppointmentsForDoctorHal(@PathVariable String name) {
-        Doctor doctor = doctorRepository.findByName(name);
-        if (doctor == null) {
-            throw new DoctorNotFoundException(name);
+    public CollectionModel<EntityModel<Appointment>> getAppointmentsForDoctorHal(@PathVariable String name,
+                                                                                 @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                                                 @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
+        List<Appointment> appointments = findAppointmentsForDoctor(name, from, to);
+
+        List<EntityModel<Appointment>> appointmentResources;
+        try (TraceSpan span = TraceContext.span("assemble")) {
+            span.rows(appointments.size());
+            appointmentResources = appointments.stream()
+                    .map(appointment -> appointment.getSeriesId() != null
+                            ? EntityModel.of(appointment, linkTo(methodOn(SeriesController.class)
+                                    .getSeries(appointment.getSeriesId())).withRel("series"))
+                            : EntityModel.of(appointment, linkTo(methodOn(AppointmentController.class)
+                                    .getAppointmentById(appointment.getId())).withSelfRel()))
+                    .collect(Collectors.toList());
         }
 
-        List<Appointment> appointments = appointmentRepository.findByDoctor(name);
-
-        List<EntityModel<Appointment>> appointmentResources = appointments.stream()
-                .map(appointment -> EntityModel.of(
-                        appointment,
-                        linkTo(methodOn(AppointmentController.class)
-                                .getAppointmentById(appointment.getId())).withSelfRel()))
-                .collect(Collectors.toList());
-
         return CollectionModel.of(
                 appointmentResources,
                 linkTo(methodOn(DoctorController.class)
-                        .getAppointmentsForDoctorHal(name)).withSelfRel());
+                        .getAppointmentsForDoctorHal(name, null, null)).withSelfRel());
+    }
+
+    // Le médecin, ses rendez-vous et ses séries sont lus dans une seule transaction (médecin inconnu : 404).
+    // Avec from ou to, les rendez-vous simples sont bornés eux aussi, et une fenêtre à venir est servie par l'agenda en mémoire
+    private List<Appointment> findAppointmentsForDoctor(String name, Date from, Date to) {
+        if (from == null && to == null) {
+            Date windowEnd = SeriesController.horizon(new Date(0), seriesHorizonDays);
+            try (TraceSpan span = TraceContext.span("query")) {
+                List<Appointment> appointments = shardRouter.onDoctor(name, () -> doctorService.findAppointments(name, new Date(0), windowEnd));
+                span.rows(appointments.size());
+                return appointments;
+            }
+        }
+        Date windowStart = from != null ? from : new Date(0);
+        Date windowEnd = to != null ? to : SeriesController.horizon(windowStart, seriesHorizonDays);
+        try (TraceSpan span = TraceContext.span("calendar")) {
+            List<Appointment> cached = calendars.appointments(name, windowStart, windowEnd);
+            if (cached != null) {
+                span.rows(cached.size());
+                return cached;
+            }
+        }
+        List<Appointment> appointments;
+        try (TraceSpan span = TraceContext.span("query")) {
+            appointments = shardRouter.onDoctor(name, () -> doctorService.findAppointmentsStartingBetween(name, windowStart, windowEnd));
+            span.rows(appointments.size());
+        }
+        calendars.track(name);
+        return appointments;
+    }
+
+    // Créneaux libres du médecin entre from et to (par défaut : de maintenant à la fin de la journée)
+    @GetMapping(value = "/doctors/{name}/availability", produces = "application/json")
+    public ResponseEntity<List<TimeSlot>> availability(@PathVariable String name,
+                                                       @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                                       @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to) {
+        Date windowStart = from != null ? from : new Date();
+        Date windowEnd = to != null ? to : Date.from(LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        if (!windowEnd.after(windowStart)) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        List<TimeSlot> slots = calendars.freeSlots(name, windowStart, windowEnd);
+        if (slots == null) {
+            DoctorCalendar calendar = shardRouter.onDoctor(name, () -> doctorService.calendar(name, windowStart, windowEnd));
+            calendars.track(name);
+            slots = calendar.freeSlots(windowStart.getTime(), windowEnd.getTime());
+        }
+        return ResponseEntity.ok(slots);
     }
 
+    /**
+     * Activité du médecin par jour ou par semaine (du lundi), jours UTC de from à to inclus
+     * (par défaut : les 30 derniers et les 30 prochains jours), occurrences des séries comprises. Seules les lignes
+     * de statistiques sont lues, pas les rendez-vous (voir DoctorStats).
+     */
+    @GetMapping(value = "/doctors/{name}/stats", produces = "application/json")
+    public ResponseEntity<?> stats(@PathVariable String name,
+                                   @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+                                   @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                   @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        DoctorStats.Granularity unit;
+        try {
+            unit = DoctorStats.Granularity.valueOf(granularity.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSearchException("granularity", granularity);
+        }
+        LocalDate today = LocalDate.now(ZoneId.of("UTC"));
+        LocalDate windowStart = from != null ? from : (to != null ? to : today).minusDays(30);
+        LocalDate windowEnd = to != null ? to : windowStart.plusDays(60);
+        if (windowEnd.isBefore(windowStart) || ChronoUnit.DAYS.between(windowStart, windowEnd) >= MAX_STATS_DAYS) {
+            throw new InvalidSearchException("to", String.valueOf(to));
+        }
+
+        Optional<List<DoctorStats.Bucket>> buckets = shardRouter.onDoctor(name, () -> doctorService.lookup(name)
+                .map(doctor -> stats.read(name, windowStart, windowEnd, unit)));
+        if (!buckets.isPresent()) {
+            return GlobalExceptionHandler.notFound(DoctorNotFoundException.message(name));
+        }
+        return ResponseEntity.ok(buckets.get());
+    }
 
     @PostMapping("/doctors")
     ResponseEntity<Doctor> create(@RequestBody Doctor doctor) {
-        Doctor savedDoctor = doctorRepository.save(doctor);
+        Doctor savedDoctor = shardRouter.onDoctor(doctor.getName(), () -> doctorService.create(doctor));
+        calendars.track(savedDoctor.getName());
 
         URI location = ServletUriComponentsBuilder.fromCurrentRequest()
                 .path("/{name}")
@@ -138,24 +253,15 @@ public class DoctorController {
     // Dans la méthode ci-dessous, je vais d'abord évacuer les scénarios d'erreurs
     @DeleteMapping("/doctors/{name}")
     public ResponseEntity<Void> delete(@PathVariable String name) {
-        // Rechercher le médecin par son nom
-        Doctor doctor = doctorRepository.findByName(name);
-
-        // Si le médecin n'existe pas on s'arrête et l'exception sera gérée par le GlobalExceptionHandler
-        if (doctor == null) {
-            throw new DoctorNotFoundException(name);
-        }
-
-        // Vérifier si le médecin a des rendez-vous associés
-        List<Appointment> appointments = appointmentRepository.findByDoctor(name);
-
-        // Ci-dessous, si la condition me renvoie true et donc que le tableau n'est pas vide, ça veut dire que le médecin a des rendez-vous qui lui sont associés
-        if (!appointments.isEmpty()) {
+        // Recherche du médecin, vérification de ses rendez-vous et suppression dans une seule transaction.
+        // Si le médecin n'existe pas on s'arrête et l'exception sera gérée par le GlobalExceptionHandler.
+        // S'il a encore des rendez-vous (une série qui n'est pas terminée compte aussi), on ne le supprime pas
+        boolean deleted = shardRouter.onDoctor(name, () -> doctorService.delete(name));
+        if (!deleted) {
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
+        calendars.forget(name);
 
-        // Si aucun rendez-vous, on peut supprimer le médecin
-        doctorRepository.delete(doctor);
         return ResponseEntity.noContent().build(); // Retourne 204 No Content après suppression réussie car je n'ai rien à retourner
 
     }
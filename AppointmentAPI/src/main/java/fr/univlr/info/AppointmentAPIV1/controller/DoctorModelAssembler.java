@@ -16,7 +16,7 @@ public class DoctorModelAssembler implements RepresentationModelAssembler<Doctor
         return EntityModel.of(doctor,
                 linkTo(methodOn(DoctorController.class).findDoctor(doctor.getName())).withSelfRel(),
                 linkTo(methodOn(DoctorController.class).all()).withRel("doctors"),
-                linkTo(methodOn(DoctorController.class).getAppointmentsForDoctor(doctor.getName())).withRel("appointments")
+                linkTo(methodOn(DoctorController.class).getAppointmentsForDoctor(doctor.getName(), null, null)).withRel("appointments")
         );
     }
 }
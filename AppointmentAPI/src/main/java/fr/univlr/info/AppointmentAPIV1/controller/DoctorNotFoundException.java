@@ -1,6 +1,12 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
 
-public class DoctorNotFoundException extends RuntimeException {
+public class DoctorNotFoundException extends NotFoundException {
     public DoctorNotFoundException(String name) {
-        super("Could not find doctor called : " + name);
-    }}
+        super(message(name));
+    }
+
+    // Aussi utilisé sans exception, quand le contrôleur renvoie directement le 404
+    public static String message(String name) {
+        return "Could not find doctor called : " + name;
+    }
+}
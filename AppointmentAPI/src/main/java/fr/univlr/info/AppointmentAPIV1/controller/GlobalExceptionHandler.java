@@ -1,5 +1,8 @@
 package fr.univlr.info.AppointmentAPIV1.controller;
 
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.mediatype.problem.Problem;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -19,14 +22,40 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
  */
 @ControllerAdvice
 public class GlobalExceptionHandler {
+    // Statut et titre ("Not Found") construits une fois ; withDetail() en fait une copie par réponse
+    private static final Problem NOT_FOUND = Problem.statusOnly(HttpStatus.NOT_FOUND);
 
-    @ExceptionHandler(DoctorNotFoundException.class)
-    public ResponseEntity<String> handleDoctorNotFound(DoctorNotFoundException ex) {
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    // Médecin, rendez-vous, série, salle ou appareil introuvable : un Problem (RFC 7807) avec le message en détail
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<Problem> handleNotFound(NotFoundException ex) {
+        return notFound(ex.getMessage());
     }
 
-    @ExceptionHandler(AppointmentNotFoundException.class)
-    public ResponseEntity<String> handleAppointmentNotFound(AppointmentNotFoundException ex) {
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    /**
+     * Le 404 lui-même, aussi renvoyé directement par les contrôleurs qui travaillent avec un Optional
+     * (aucune exception dans ce cas). Seul le détail change d'une réponse à l'autre.
+     */
+    public static ResponseEntity<Problem> notFound(String detail) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .header(HttpHeaders.CONTENT_TYPE, MediaTypes.HTTP_PROBLEM_DETAILS_JSON_VALUE)
+                .body(NOT_FOUND.withDetail(detail));
+    }
+
+    // Paramètre de recherche inconnu sur le listing des rendez-vous
+    @ExceptionHandler(InvalidSearchException.class)
+    public ResponseEntity<String> handleInvalidSearch(InvalidSearchException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    // Même clé d'idempotence mais corps différent : c'est une erreur du client, pas une relance
+    @ExceptionHandler(IdempotencyKeyMismatchException.class)
+    public ResponseEntity<String> handleIdempotencyKeyMismatch(IdempotencyKeyMismatchException ex) {
+        return new ResponseEntity<>(ex.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    // Relance arrivée pendant un premier essai trop long : le client réessaiera avec la même clé
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ResponseEntity<String> handleIdempotencyKeyInProgress(IdempotencyKeyInProgressException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "1").body(ex.getMessage());
     }
 }
@@ -0,0 +1,39 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * HTTP/2 en clair (h2c) quand server.http2.enabled=true et qu'il n'y a pas de TLS.
+ *
+ * Spring Boot n'ajoute le protocole HTTP/2 à Tomcat que si SSL est configuré : en local et derrière
+ * le load balancer, on l'ajoute nous-mêmes. Les clients peuvent ainsi passer par "Upgrade: h2c" ou se
+ * connecter directement en HTTP/2 (prior knowledge) et multiplexer leurs appels sur une seule connexion.
+ */
+@Configuration
+@ConditionalOnProperty(name = "server.http2.enabled", havingValue = "true")
+public class Http2Configuration implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        if (factory.getSsl() != null && factory.getSsl().isEnabled()) {
+            return; // Spring Boot s'en charge déjà
+        }
+        factory.addConnectorCustomizers(connector -> connector.addUpgradeProtocol(http2(factory.getCompression())));
+    }
+
+    // Le protocole HTTP/2 de Tomcat a ses propres réglages de compression : on reprend ceux de server.compression
+    private static Http2Protocol http2(Compression compression) {
+        Http2Protocol protocol = new Http2Protocol();
+        if (compression != null && compression.getEnabled()) {
+            protocol.setCompression("on");
+            protocol.setCompressibleMimeType(String.join(",", compression.getMimeTypes()));
+            protocol.setCompressionMinSize((int) compression.getMinResponseSize().toBytes());
+        }
+        return protocol;
+    }
+}
@@ -0,0 +1,7 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    public IdempotencyKeyInProgressException(String key) {
+        super("A request with idempotency key " + key + " is still in progress, retry later");
+    }
+}
@@ -0,0 +1,7 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+public class IdempotencyKeyMismatchException extends RuntimeException {
+    public IdempotencyKeyMismatchException(String key) {
+        super("Idempotency key " + key + " was already used for a different request");
+    }
+}
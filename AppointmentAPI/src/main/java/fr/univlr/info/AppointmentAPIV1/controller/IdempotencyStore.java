@@ -0,0 +1,115 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Mémoire des requêtes récentes envoyées avec un en-tête {@code Idempotency-Key}.
+ *
+ * Quand un client mobile relance un POST après un timeout avec la même clé, on lui renvoie la réponse
+ * d'origine (le 201 et son Location) sans refaire la recherche de conflits ni l'insertion.
+ * Si le premier essai est encore en cours, la relance attend son résultat au lieu de réserver une seconde fois,
+ * mais pas plus de appointment.idempotency.wait-ms : au-delà, elle reçoit un 409 et peut réessayer plus tard.
+ *
+ * Le nombre de clés est borné et chacune expire après un délai (voir appointment.idempotency.*).
+ * Seules les réponses 2xx sont gardées : après un 409 ou une erreur, le client peut réessayer avec la même clé.
+ */
+@Component
+public class IdempotencyStore {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final Cache<String, Entry> entries;
+    private final long waitMillis;
+
+    public IdempotencyStore(@Value("${appointment.idempotency.max-entries:10000}") long maxEntries,
+                            @Value("${appointment.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${appointment.idempotency.wait-ms:5000}") long waitMillis) {
+        this.waitMillis = waitMillis;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Exécute {@code action} une seule fois par clé. Sans clé, l'action est simplement exécutée.
+     *
+     * @param fingerprint empreinte du corps de la requête : une même clé réutilisée pour une autre requête est refusée
+     */
+    public <T> ResponseEntity<T> execute(String key, String fingerprint, Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.trim().isEmpty()) {
+            return action.get();
+        }
+        Entry mine = new Entry(fingerprint);
+        Entry existing = entries.asMap().putIfAbsent(key, mine);
+        if (existing != null) {
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyKeyMismatchException(key);
+            }
+            return replay(key, existing);
+        }
+
+        try {
+            ResponseEntity<T> response = action.get();
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                entries.asMap().remove(key, mine);
+            }
+            mine.response.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            entries.asMap().remove(key, mine);
+            mine.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    // L'éviction de Caffeine est asynchrone : force le nettoyage en attente (utile pour les tests)
+    public void cleanUp() {
+        entries.cleanUp();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> replay(String key, Entry entry) {
+        ResponseEntity<T> original;
+        try {
+            original = (ResponseEntity<T>) entry.response.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // le premier essai a échoué pendant qu'on l'attendait : même erreur pour la relance
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // le premier essai est bloqué : on ne garde pas le thread de la relance avec lui
+            throw new IdempotencyKeyInProgressException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException(key);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(original.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(original.getBody(), headers, original.getStatusCode());
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
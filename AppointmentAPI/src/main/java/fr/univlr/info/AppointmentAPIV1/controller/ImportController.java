@@ -0,0 +1,48 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentImporter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Import en masse pour les migrations (voir {@link AppointmentImporter}).
+ *
+ * POST /api/admin/import?format=csv|ndjson avec le fichier dans le corps de la requête, lu en flux :
+ * renvoie le bilan (lignes lues, importées, refusées avec leur numéro de ligne et la raison, débit en lignes/s).
+ */
+@RestController
+@RequestMapping(path = "/api/admin/import")
+public class ImportController {
+    private final AppointmentImporter importer;
+
+    public ImportController(AppointmentImporter importer) {
+        this.importer = importer;
+    }
+
+    @PostMapping(produces = "application/json")
+    public ResponseEntity<?> importAppointments(@RequestParam(defaultValue = "csv") String format,
+                                                HttpServletRequest request) throws IOException {
+        AppointmentImporter.Format parsed;
+        try {
+            parsed = AppointmentImporter.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSearchException("format", format);
+        }
+        // Pas de @RequestBody : le corps n'est jamais chargé en entier en mémoire
+        try (Reader body = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)) {
+            return ResponseEntity.ok(importer.importFrom(body, parsed));
+        } catch (IllegalArgumentException e) {
+            // En-tête CSV sans les colonnes obligatoires
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
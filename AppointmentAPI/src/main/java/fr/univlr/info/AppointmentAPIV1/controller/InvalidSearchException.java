@@ -0,0 +1,7 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+public class InvalidSearchException extends RuntimeException {
+    public InvalidSearchException(String param, String value) {
+        super("Invalid value for " + param + ": " + value);
+    }
+}
@@ -0,0 +1,38 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentEventLog;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Flux du journal des rendez-vous pour les consommateurs (voir {@link AppointmentEventLog}).
+ *
+ * GET /api/admin/journal?from=1&limit=1000 renvoie les événements à partir du numéro from, dans l'ordre,
+ * avec l'état du journal (premier et dernier numéros, dernier numéro sur disque, dernier snapshot).
+ * Un consommateur repart du dernier numéro reçu plus un.
+ */
+@RestController
+@RequestMapping(path = "/api/admin/journal")
+public class JournalController {
+    private static final int MAX_LIMIT = 10_000;
+
+    private final AppointmentEventLog events;
+
+    public JournalController(AppointmentEventLog events) {
+        this.events = events;
+    }
+
+    @GetMapping(produces = "application/json")
+    public ResponseEntity<Map<String, Object>> read(@RequestParam(defaultValue = "1") long from,
+                                                    @RequestParam(defaultValue = "1000") int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidSearchException("limit", String.valueOf(limit));
+        }
+        return ResponseEntity.ok(events.read(from, limit));
+    }
+}
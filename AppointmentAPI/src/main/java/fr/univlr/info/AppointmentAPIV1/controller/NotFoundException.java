@@ -0,0 +1,13 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+/**
+ * Base des exceptions "introuvable", traduites en 404 par {@link GlobalExceptionHandler}.
+ *
+ * Sans pile d'appels (ni exceptions supprimées) : un 404 est une réponse normale, fréquente avec les liens périmés
+ * et les robots qui énumèrent les identifiants, et la pile capturée par RuntimeException n'était jamais lue.
+ */
+public abstract class NotFoundException extends RuntimeException {
+    protected NotFoundException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,31 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.store.ConnectionPools;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * État des pools de connexions, pool par pool (un seul en mode normal, un par shard ou par réplica sinon).
+ *
+ * GET /api/admin/pool renvoie la taille, les connexions actives/libres, les threads en attente, la saturation,
+ * les percentiles du temps d'attente d'une connexion (µs) et de sa durée d'utilisation (ms),
+ * les délais dépassés et le nombre d'ajustements du mode adaptatif.
+ */
+@RestController
+@RequestMapping(path = "/api/admin/pool")
+public class PoolStatsController {
+    private final ConnectionPools pools;
+
+    public PoolStatsController(ConnectionPools pools) {
+        this.pools = pools;
+    }
+
+    @GetMapping(produces = "application/json")
+    public ResponseEntity<Map<String, Map<String, Object>>> stats() {
+        return ResponseEntity.ok(pools.stats());
+    }
+}
@@ -0,0 +1,131 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.univlr.info.AppointmentAPIV1.store.ClusterMembership;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitation de débit de l'API, avant les contrôleurs (voir {@link RateLimiter}).
+ *
+ * Le client est identifié par son adresse IP, ou par sa clé d'API (en-tête appointment.rate-limit.client-header)
+ * si elle fait partie des clés connues (appointment.rate-limit.api-keys). Une clé inconnue ne compte pas : sinon,
+ * changer de clé à chaque requête donnerait un seau plein à chaque fois, et chasserait les vrais clients du cache.
+ * Une même adresse ne peut pas non plus utiliser plus de max-keys-per-address clés : au-delà, elle paie pour elle-même.
+ * L'endpoint est la méthode et la collection visée (GET /api/appointments, GET /api/doctors/*...).
+ * Un listing coûte listing-cost jetons : il lit toute une table, là où une lecture par identifiant en lit une ligne.
+ * Au-delà des limites, la réponse est un 429 avec un Retry-After en secondes.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "appointment.rate-limit.enabled", havingValue = "true")
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final String API = "/api/";
+
+    private final RateLimiter rateLimiter;
+    private final String clientHeader;
+    private final Set<String> apiKeys;
+    private final int maxKeysPerAddress;
+    // clés d'API déjà utilisées par chaque adresse
+    private final Cache<String, Set<String>> keysByAddress;
+    private final long listingCost;
+    private final List<String> listingPaths;
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final ClusterMembership membership;
+
+    public RateLimitFilter(RateLimiter rateLimiter, ClusterMembership membership,
+                           @Value("${appointment.rate-limit.client-header:X-Api-Key}") String clientHeader,
+                           @Value("${appointment.rate-limit.api-keys:}") List<String> apiKeys,
+                           @Value("${appointment.rate-limit.max-keys-per-address:10}") int maxKeysPerAddress,
+                           @Value("${appointment.rate-limit.max-keys:100000}") long maxKeys,
+                           @Value("${appointment.rate-limit.listing-cost:10}") long listingCost,
+                           @Value("${appointment.rate-limit.listing-paths:/api/appointments,/api/doctors,/api/doctors/*/appointments}") List<String> listingPaths) {
+        this.rateLimiter = rateLimiter;
+        this.membership = membership;
+        this.clientHeader = clientHeader;
+        this.apiKeys = new HashSet<>(apiKeys);
+        this.maxKeysPerAddress = maxKeysPerAddress;
+        this.keysByAddress = Caffeine.newBuilder().maximumSize(maxKeys).build();
+        this.listingCost = listingCost;
+        this.listingPaths = listingPaths;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Une requête transmise par un autre membre du cluster a déjà été comptée à son arrivée
+        return !request.getRequestURI().startsWith(API)
+                || membership.isEnabled() && ClusterCoordinator.isForwarded(request, membership.getSecret());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI();
+        long wait = rateLimiter.tryAcquire(client(request), endpoint(request.getMethod(), path), cost(request.getMethod(), path));
+        if (wait > 0) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999))));
+            response.setContentType("text/plain");
+            response.getWriter().write("Too many requests");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    // La clé d'API si elle est connue et que l'adresse n'en a pas déjà utilisé trop, sinon l'adresse
+    private String client(HttpServletRequest request) {
+        String address = "ip:" + request.getRemoteAddr();
+        String apiKey = request.getHeader(clientHeader);
+        if (apiKey == null || !apiKeys.contains(apiKey)) {
+            return address;
+        }
+        Set<String> keys = keysByAddress.get(address, a -> new HashSet<>());
+        synchronized (keys) {
+            if (!keys.contains(apiKey)) {
+                if (keys.size() >= maxKeysPerAddress) {
+                    return address;
+                }
+                keys.add(apiKey);
+            }
+        }
+        return "key:" + apiKey;
+    }
+
+    private long cost(String method, String path) {
+        if ("GET".equals(method)) {
+            for (String listing : listingPaths) {
+                if (matcher.match(listing, path)) {
+                    return listingCost;
+                }
+            }
+        }
+        return 1;
+    }
+
+    // "GET /api/appointments" pour la collection, "GET /api/appointments/*" pour tout ce qui est en dessous
+    static String endpoint(String method, String path) {
+        int end = path.indexOf('/', API.length());
+        if (end < 0 || end == path.length() - 1) {
+            return method + ' ' + (end < 0 ? path : path.substring(0, end));
+        }
+        return method + ' ' + path.substring(0, end) + "/*";
+    }
+}
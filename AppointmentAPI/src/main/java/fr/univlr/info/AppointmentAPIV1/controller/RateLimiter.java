@@ -0,0 +1,79 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limites de débit de l'API : un seau à jetons par client et un par endpoint (tous clients confondus).
+ * Une requête doit obtenir ses jetons dans les deux seaux.
+ *
+ * Les seaux sont gardés dans des caches Caffeine bornés en taille (voir appointment.rate-limit.max-keys) :
+ * les clients les moins actifs sont oubliés en premier, et un seau oublié est simplement recréé plein.
+ * Pas d'expiration en plus : elle coûte une lecture d'horloge et une écriture par accès, soit trois fois moins
+ * de décisions par seconde (voir RateLimiterBenchmark), sans rien changer à la mémoire maximale.
+ */
+@Component
+public class RateLimiter {
+    private final double clientRate;
+    private final long clientBurst;
+    private final double endpointRate;
+    private final long endpointBurst;
+    private final Cache<String, TokenBucket> clients;
+    private final Cache<String, TokenBucket> endpoints;
+    private final LongAdder rejected = new LongAdder();
+
+    public RateLimiter(@Value("${appointment.rate-limit.client.rate:100}") double clientRate,
+                       @Value("${appointment.rate-limit.client.burst:200}") long clientBurst,
+                       @Value("${appointment.rate-limit.endpoint.rate:1000}") double endpointRate,
+                       @Value("${appointment.rate-limit.endpoint.burst:2000}") long endpointBurst,
+                       @Value("${appointment.rate-limit.max-keys:100000}") long maxKeys) {
+        this.clientRate = clientRate;
+        this.clientBurst = clientBurst;
+        this.endpointRate = endpointRate;
+        this.endpointBurst = endpointBurst;
+        this.clients = Caffeine.newBuilder().maximumSize(maxKeys).build();
+        this.endpoints = Caffeine.newBuilder().maximumSize(maxKeys).build();
+    }
+
+    /**
+     * Prend {@code cost} jetons pour ce client et cet endpoint.
+     *
+     * @return 0 si la requête passe, sinon le temps d'attente (ns) à annoncer dans Retry-After
+     */
+    public long tryAcquire(String client, String endpoint, long cost) {
+        long now = System.nanoTime();
+        TokenBucket clientBucket = bucket(clients, client, clientRate, clientBurst, now);
+        long wait = clientBucket.tryAcquire(cost, now);
+        if (wait == 0) {
+            TokenBucket endpointBucket = bucket(endpoints, endpoint, endpointRate, endpointBurst, now);
+            wait = endpointBucket.tryAcquire(cost, now);
+            if (wait > 0) {
+                // refusée par l'endpoint : le client ne paie pas pour rien
+                clientBucket.refund(cost);
+            }
+        }
+        if (wait > 0) {
+            rejected.increment();
+        }
+        return wait;
+    }
+
+    // getIfPresent d'abord : le cas courant (seau existant) ne crée pas de lambda à chaque requête
+    private static TokenBucket bucket(Cache<String, TokenBucket> buckets, String key, double rate, long burst, long now) {
+        TokenBucket bucket = buckets.getIfPresent(key);
+        return bucket != null ? bucket : buckets.get(key, k -> new TokenBucket(rate, burst, now));
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long trackedClients() {
+        clients.cleanUp();
+        return clients.estimatedSize();
+    }
+}
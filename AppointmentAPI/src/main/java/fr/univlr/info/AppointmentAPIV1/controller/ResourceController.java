@@ -0,0 +1,94 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.BookableResource;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceBooking;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceKind;
+import fr.univlr.info.AppointmentAPIV1.store.BookableResourceRepository;
+import fr.univlr.info.AppointmentAPIV1.store.ResourceBookingRepository;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salles et appareils réservables avec un rendez-vous (champs "room" et "device" de POST /api/appointments).
+ *
+ * Le registre des ressources et leurs réservations sont partagés par tous les médecins :
+ * en mode sharding, ils sont gardés sur le premier shard.
+ */
+@RestController
+@RequestMapping(path = "/api")
+public class ResourceController {
+    private final BookableResourceRepository resourceRepository;
+    private final ResourceBookingRepository bookingRepository;
+    private final ShardRouter shardRouter;
+
+    public ResourceController(BookableResourceRepository resourceRepository, ResourceBookingRepository bookingRepository,
+                              ShardRouter shardRouter) {
+        this.resourceRepository = resourceRepository;
+        this.bookingRepository = bookingRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    @GetMapping("/resources")
+    public ResponseEntity<List<BookableResource>> all() {
+        return ResponseEntity.ok(shardRouter.onShard(ShardRouter.DEFAULT_SHARD, resourceRepository::findAll));
+    }
+
+    @PostMapping("/resources")
+    public ResponseEntity<BookableResource> create(@RequestBody BookableResource resource) {
+        // Le médecin a déjà sa propre ressource (/api/doctors)
+        if (resource.getKind() == null || resource.getKind() == ResourceKind.DOCTOR || resource.getName() == null) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        if (findResource(resource.getKind(), resource.getName()) != null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        resource.setId(null);
+        BookableResource saved = shardRouter.onShard(ShardRouter.DEFAULT_SHARD, () -> resourceRepository.save(resource));
+
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{kind}/{name}")
+                .buildAndExpand(saved.getKind().name().toLowerCase(), saved.getName())
+                .toUri();
+        return ResponseEntity.created(location).body(saved);
+    }
+
+    // Calendrier d'une salle ou d'un appareil sur une fenêtre (par défaut les 30 prochains jours)
+    @GetMapping("/resources/{kind}/{name}/bookings")
+    public ResponseEntity<List<ResourceBooking>> bookings(@PathVariable String kind, @PathVariable String name,
+                                                          @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                          @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
+        ResourceKind resourceKind = parseKind(kind);
+        if (resourceKind == null) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        if (findResource(resourceKind, name) == null) {
+            throw new ResourceNotFoundException(resourceKind, name);
+        }
+        Date windowStart = from != null ? from : new Date();
+        Date windowEnd = to != null ? to : new Date(windowStart.getTime() + TimeUnit.DAYS.toMillis(30));
+        String key = resourceKind.key(name);
+        return ResponseEntity.ok(shardRouter.onShard(ShardRouter.DEFAULT_SHARD,
+                () -> bookingRepository.findByResourceKeyAndStartDateBetweenOrderByStartDate(key, windowStart, windowEnd)));
+    }
+
+    BookableResource findResource(ResourceKind kind, String name) {
+        return shardRouter.onShard(ShardRouter.DEFAULT_SHARD, () -> resourceRepository.findByKindAndName(kind, name));
+    }
+
+    private static ResourceKind parseKind(String kind) {
+        try {
+            return ResourceKind.valueOf(kind.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.ResourceKind;
+
+public class ResourceNotFoundException extends NotFoundException {
+    public ResourceNotFoundException(ResourceKind kind, String name) {
+        super("Could not find " + kind.name().toLowerCase() + " " + name);
+    }
+}
@@ -0,0 +1,161 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSeries;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentService;
+import fr.univlr.info.AppointmentAPIV1.service.CalendarSnapshots;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentSeriesRepository;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Séries de rendez-vous récurrents : une seule ligne en base, les occurrences sont calculées à la demande.
+ *
+ * POST /api/series crée la série (un seul contrôle de conflits pour toute la série, voir AppointmentService.bookSeries),
+ * GET /api/series/{id}/occurrences?from=&to= liste ses occurrences sur une fenêtre,
+ * DELETE /api/series/{id}/occurrences?start= annule une seule occurrence.
+ * Les occurrences apparaissent aussi dans les listings de rendez-vous, avec leur seriesId.
+ */
+@RestController
+@RequestMapping(path = "/api")
+public class SeriesController {
+    private final AppointmentSeriesRepository seriesRepository;
+    private final AppointmentService appointmentService;
+    private final ShardRouter shardRouter;
+    private final CalendarSnapshots calendars;
+    private final ClusterCoordinator cluster;
+    private final int horizonDays;
+    private final int maxOccurrences;
+
+    public SeriesController(AppointmentSeriesRepository seriesRepository, AppointmentService appointmentService,
+                            ShardRouter shardRouter, CalendarSnapshots calendars,
+                            ClusterCoordinator cluster, @Value("${appointment.series.horizon-days:365}") int horizonDays,
+                            @Value("${appointment.series.max-occurrences:1000}") int maxOccurrences) {
+        this.seriesRepository = seriesRepository;
+        this.appointmentService = appointmentService;
+        this.shardRouter = shardRouter;
+        this.calendars = calendars;
+        this.cluster = cluster;
+        this.horizonDays = horizonDays;
+        this.maxOccurrences = maxOccurrences;
+    }
+
+    @PostMapping("/series")
+    public ResponseEntity<?> newSeries(@RequestBody AppointmentSeries series) {
+        // En mode cluster, sur l'instance propriétaire du médecin, comme un rendez-vous simple
+        Optional<ResponseEntity<byte[]>> forwarded = cluster.forward(series.getDoctor(), series);
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
+        // Comme un rendez-vous simple : tout se passe sur le shard du médecin
+        return shardRouter.onDoctor(series.getDoctor(), () -> book(series));
+    }
+
+    private ResponseEntity<AppointmentSeries> book(AppointmentSeries series) {
+        // J'évacue d'abord les séries incohérentes : dates manquantes ou passées, pas de fin ou une fin avant le début,
+        // intervalle nul, fuseau inconnu
+        if (series.getStartDate() == null || series.getEndDate() == null || series.getFrequency() == null
+                || series.getStartDate().after(series.getEndDate()) || series.getStartDate().before(new Date())
+                || series.getInterval() < 1 || (series.getCount() == null && series.getUntil() == null)
+                || (series.getCount() != null && series.getCount() < 1)
+                || (series.getUntil() != null && series.getUntil().before(series.getStartDate()))
+                || (series.getZone() != null && !ZoneId.getAvailableZoneIds().contains(series.getZone()))) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        series.setId(null);
+        series.getExceptions().clear();
+        series.resolveBounds();
+        // Une série sans fin raisonnable ne pourrait pas être vérifiée en une passe
+        if (series.getCount() > maxOccurrences) {
+            return ResponseEntity.badRequest().body(null);
+        }
+
+        Optional<AppointmentSeries> booked = appointmentService.bookSeries(series);
+        if (!booked.isPresent()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        AppointmentSeries saved = booked.get();
+        calendars.seriesSaved(saved);
+
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(saved.getId())
+                .toUri();
+        return ResponseEntity.created(location).body(saved);
+    }
+
+    @GetMapping("/series/{id}")
+    public ResponseEntity<AppointmentSeries> getSeries(@PathVariable Long id) {
+        return ResponseEntity.ok(findSeries(id));
+    }
+
+    // Sans bornes, la fenêtre va d'aujourd'hui à l'horizon configuré
+    @GetMapping("/series/{id}/occurrences")
+    public ResponseEntity<List<Appointment>> occurrences(@PathVariable Long id,
+                                                         @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date from,
+                                                         @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date to) {
+        AppointmentSeries series = findSeries(id);
+        Date windowStart = from != null ? from : new Date();
+        List<Appointment> occurrences = series.occurrencesStartingBetween(windowStart, to != null ? to : horizon(windowStart, horizonDays));
+        occurrences.sort(Comparator.comparing(Appointment::getStartDate));
+        return ResponseEntity.ok(occurrences);
+    }
+
+    // Annule une seule occurrence, repérée par sa date de début exacte (ISO 8601, par exemple 2027-01-11T10:00:00.000Z)
+    @DeleteMapping("/series/{id}/occurrences")
+    public ResponseEntity<?> cancelOccurrence(@PathVariable Long id,
+                                              @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date start) {
+        AppointmentSeries series = findSeries(id);
+        if (!series.isOccurrence(start)) {
+            return ResponseEntity.notFound().build();
+        }
+        // L'agenda en mémoire du médecin et ses prises sont chez son propriétaire, comme pour la création
+        Optional<ResponseEntity<byte[]>> forwarded = cluster.forward(series.getDoctor(), null);
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
+        shardRouter.onDoctor(series.getDoctor(), () -> appointmentService.cancelOccurrence(series, start));
+        calendars.occurrenceCancelled(series, start);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/series/{id}")
+    public ResponseEntity<?> deleteSeries(@PathVariable Long id) {
+        AppointmentSeries series = findSeries(id);
+        Optional<ResponseEntity<byte[]>> forwarded = cluster.forward(series.getDoctor(), null);
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
+        shardRouter.onDoctor(series.getDoctor(), () -> {
+            appointmentService.deleteSeries(series);
+            return null;
+        });
+        calendars.seriesDeleted(series);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Comme pour les rendez-vous, l'identifiant ne dit pas sur quel shard se trouve la série
+    private AppointmentSeries findSeries(Long id) {
+        return shardRouter.scatterFirst(() -> seriesRepository.findById(id))
+                .orElseThrow(() -> new SeriesNotFoundException(id));
+    }
+
+    // Fin de la fenêtre par défaut des listings : les séries sans borne ne sont pas déroulées au-delà
+    static Date horizon(Date from, int horizonDays) {
+        long start = Math.max(from.getTime(), System.currentTimeMillis());
+        return new Date(start + TimeUnit.DAYS.toMillis(horizonDays));
+    }
+}
@@ -0,0 +1,7 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+public class SeriesNotFoundException extends NotFoundException {
+    public SeriesNotFoundException(Long id) {
+        super("Could not find appointment series " + id);
+    }
+}
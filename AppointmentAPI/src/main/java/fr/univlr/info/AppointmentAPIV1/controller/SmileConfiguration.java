@@ -0,0 +1,68 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Troisième format négocié, en plus de application/json et application/hal+json :
+ * Smile, l'encodage binaire de Jackson, pour les appels entre services internes.
+ *
+ * Un client qui envoie {@code Accept: application/x-jackson-smile} sur /api/appointments, /api/doctors
+ * ou /api/doctors/{name}/appointments reçoit les mêmes objets qu'en JSON classique, mais sans les liens
+ * et avec les dates en millisecondes depuis l'epoch.
+ */
+@Configuration
+public class SmileConfiguration implements WebMvcConfigurer {
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+
+    private final Jackson2ObjectMapperBuilder builder;
+
+    public SmileConfiguration(Jackson2ObjectMapperBuilder builder) {
+        this.builder = builder;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // Spring MVC enregistre déjà un convertisseur Smile par défaut dès que la librairie est présente :
+        // je le remplace à la même place par celui configuré ici
+        MappingJackson2SmileHttpMessageConverter smile = new MappingJackson2SmileHttpMessageConverter(smileObjectMapper(builder));
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2SmileHttpMessageConverter) {
+                converters.set(i, smile);
+                return;
+            }
+        }
+        converters.add(smile);
+    }
+
+    public static ObjectMapper smileObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = new SmileFactory();
+        // les noms de champs et les chaînes courtes répétées (doctor, patient) ne sont écrits qu'une fois
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_NAMES);
+        factory.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        ObjectMapper mapper = new ObjectMapper(factory);
+        // mêmes modules et réglages que le JSON de l'application, sauf pour les dates
+        builder.configure(mapper);
+        return mapper
+                .enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .addMixIn(RepresentationModel.class, WithoutLinks.class);
+    }
+
+    // Les appelants internes n'utilisent pas les liens hypermédia : inutile de les transporter
+    @JsonIgnoreProperties("links")
+    private abstract static class WithoutLinks {
+    }
+}
@@ -0,0 +1,50 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seau à jetons sans verrou : {@code rate} jetons par seconde, au plus {@code capacity} en réserve.
+ *
+ * Au lieu de stocker le nombre de jetons et la date du dernier remplissage (deux valeurs à mettre à jour ensemble),
+ * on ne garde qu'une date : celle où le seau serait de nouveau plein (l'algorithme GCRA).
+ * Prendre des jetons revient à la repousser, en un seul compareAndSet.
+ */
+public final class TokenBucket {
+    private final long nanosPerToken;
+    private final long capacity;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double rate, long capacity, long now) {
+        this.nanosPerToken = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        this.capacity = Math.max(1, capacity);
+        this.burstNanos = this.capacity * nanosPerToken;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Prend {@code cost} jetons à l'instant {@code now} (en nanosecondes, System.nanoTime()).
+     *
+     * @return 0 si les jetons sont accordés, sinon le temps d'attente (ns) avant qu'ils soient disponibles
+     */
+    public long tryAcquire(long cost, long now) {
+        long increment = Math.min(cost, capacity) * nanosPerToken;
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + increment;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // Rend des jetons pris pour une requête finalement refusée par un autre seau
+    public void refund(long cost) {
+        fullAt.addAndGet(-Math.min(cost, capacity) * nanosPerToken);
+    }
+}
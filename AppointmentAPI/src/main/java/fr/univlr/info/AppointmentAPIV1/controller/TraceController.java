@@ -0,0 +1,55 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.store.RequestTracer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Traces des requêtes échantillonnées (voir {@link RequestTracer}, appointment.tracing.enabled).
+ *
+ * GET /api/admin/traces renvoie les dernières traces, étape par étape (?limit=, 20 par défaut) ;
+ * GET /api/admin/traces/stages le cumul par étape (nombre, durée totale et propre, p50/p95/p99 en µs, lignes, SQL),
+ * de la plus coûteuse à la moins coûteuse ;
+ * GET /api/admin/traces/flame le même cumul en piles repliées, pour flamegraph.pl ou speedscope ;
+ * DELETE /api/admin/traces remet tout à zéro.
+ */
+@RestController
+@RequestMapping(path = TraceController.PATH)
+@ConditionalOnProperty(name = "appointment.tracing.enabled", havingValue = "true")
+public class TraceController {
+    static final String PATH = "/api/admin/traces";
+
+    private final RequestTracer tracer;
+
+    public TraceController(RequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @GetMapping(produces = "application/json")
+    public ResponseEntity<List<Map<String, Object>>> recent(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (limit < 1) {
+            throw new InvalidSearchException("limit", Integer.toString(limit));
+        }
+        return ResponseEntity.ok(tracer.recent(limit));
+    }
+
+    @GetMapping(value = "/stages", produces = "application/json")
+    public ResponseEntity<List<Map<String, Object>>> stages() {
+        return ResponseEntity.ok(tracer.getSummary().stages());
+    }
+
+    @GetMapping(value = "/flame", produces = "text/plain")
+    public ResponseEntity<String> flame() {
+        return ResponseEntity.ok(tracer.getSummary().folded());
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> reset() {
+        tracer.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,61 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.store.RequestTracer;
+import fr.univlr.info.AppointmentAPIV1.store.TraceSpan;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Ouvre la trace des requêtes de l'API échantillonnées (voir {@link RequestTracer}), juste après la limitation de débit.
+ *
+ * La trace porte le nom de la route ("POST /api/appointments", "GET /api/doctors/{name}/appointments") :
+ * les requêtes d'une même route se cumulent. Une requête qu'aucune route ne prend garde un nom fixe ("GET unmatched"),
+ * jamais son URL : le cumul ne grossit pas d'une entrée par URL inventée. Son identifiant est renvoyé dans l'en-tête X-Trace-Id.
+ * La mise en forme de la réponse (Jackson) est comptée dans la durée propre de la racine.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+@ConditionalOnProperty(name = "appointment.tracing.enabled", havingValue = "true")
+public class TracingFilter extends OncePerRequestFilter {
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+    private static final String TRACEPARENT_HEADER = "traceparent";
+    private static final String UNMATCHED = "unmatched";
+
+    private final RequestTracer tracer;
+
+    public TracingFilter(RequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    // Ni les pages hors API, ni la lecture des traces elles-mêmes
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return !uri.startsWith("/api/") || uri.startsWith(TraceController.PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        TraceSpan root = tracer.begin(request.getMethod() + " " + UNMATCHED, request.getHeader(TRACEPARENT_HEADER));
+        if (root.isRecording()) {
+            response.setHeader(TRACE_ID_HEADER, root.getTraceId());
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            tracer.finish(root, pattern != null ? request.getMethod() + " " + pattern : null);
+        }
+    }
+}
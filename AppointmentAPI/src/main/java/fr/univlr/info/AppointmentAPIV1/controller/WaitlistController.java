@@ -0,0 +1,113 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+import fr.univlr.info.AppointmentAPIV1.model.WaitlistEntry;
+import fr.univlr.info.AppointmentAPIV1.service.DoctorService;
+import fr.univlr.info.AppointmentAPIV1.service.Waitlist;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liste d'attente d'un médecin (voir {@link Waitlist}).
+ *
+ * POST /api/doctors/{name}/waitlist inscrit un patient pour n'importe quel créneau libéré entre from et to,
+ * GET /api/doctors/{name}/waitlist liste les demandes en attente dans l'ordre où elles seront servies,
+ * GET /api/waitlist/{id} donne l'état d'une demande (et le rendez-vous réservé), DELETE /api/waitlist/{id} la retire.
+ */
+@RestController
+@RequestMapping(path = "/api")
+public class WaitlistController {
+    public static final String MISSING_PATIENT = "Patient cannot be null";
+    public static final String WINDOW_TOO_LONG = "Waitlist window too long";
+
+    private final Waitlist waitlist;
+    private final DoctorService doctorService;
+    private final ShardRouter shardRouter;
+    // Mode cluster : la liste d'attente d'un médecin ne vit que sur son instance propriétaire
+    private final ClusterCoordinator cluster;
+
+    public WaitlistController(Waitlist waitlist, DoctorService doctorService, ShardRouter shardRouter, ClusterCoordinator cluster) {
+        this.waitlist = waitlist;
+        this.doctorService = doctorService;
+        this.shardRouter = shardRouter;
+        this.cluster = cluster;
+    }
+
+    @PostMapping("/doctors/{name}/waitlist")
+    public ResponseEntity<?> join(@PathVariable String name, @RequestBody WaitlistEntry entry) {
+        // Même règle que pour un rendez-vous : 406 et un message, sans exception
+        String invalid = validate(entry);
+        if (invalid != null) {
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).body(invalid);
+        }
+        Optional<ResponseEntity<byte[]>> forwarded = cluster.forward(name, entry);
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
+        shardRouter.onDoctor(name, () -> doctorService.find(name));
+        entry.setDoctor(name);
+        WaitlistEntry saved = waitlist.add(entry);
+
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/waitlist/{id}")
+                .buildAndExpand(saved.getId())
+                .toUri();
+        return ResponseEntity.created(location).body(saved);
+    }
+
+    @GetMapping("/doctors/{name}/waitlist")
+    public ResponseEntity<?> waiting(@PathVariable String name) {
+        Optional<ResponseEntity<byte[]>> forwarded = cluster.forward(name, null);
+        if (forwarded.isPresent()) {
+            return forwarded.get();
+        }
+        shardRouter.onDoctor(name, () -> doctorService.find(name));
+        return ResponseEntity.ok(waitlist.waiting(name));
+    }
+
+    @GetMapping("/waitlist/{id}")
+    public ResponseEntity<?> get(@PathVariable Long id) {
+        Optional<WaitlistEntry> entry = waitlist.find(id);
+        if (entry.isPresent()) {
+            return ResponseEntity.ok(entry.get());
+        }
+        // En mode cluster, la demande est peut-être sur une autre instance
+        return cluster.findElsewhere().orElseThrow(() -> new WaitlistEntryNotFoundException(id));
+    }
+
+    @DeleteMapping("/waitlist/{id}")
+    public ResponseEntity<?> withdraw(@PathVariable Long id) {
+        if (!waitlist.find(id).isPresent()) {
+            return cluster.findElsewhere().orElseThrow(() -> new WaitlistEntryNotFoundException(id));
+        }
+        // Un créneau est en train d'être réservé pour cette demande : trop tard pour la retirer
+        Optional<WaitlistEntry> withdrawn = waitlist.withdraw(id);
+        return withdrawn.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+    }
+
+    private String validate(WaitlistEntry entry) {
+        if (entry.getPatient() == null) {
+            return MISSING_PATIENT;
+        }
+        if (entry.getFrom() == null || entry.getTo() == null) {
+            return AppointmentDateValidator.MISSING_DATES;
+        }
+        long from = entry.getFrom().getTime();
+        long to = entry.getTo().getTime();
+        if (from > to || to < System.currentTimeMillis()) {
+            return AppointmentDateValidator.INCOHERENT_DATES;
+        }
+        // La fenêtre fixe le nombre de seaux (un par jour) où la demande est rangée
+        if (to - from > TimeUnit.DAYS.toMillis(waitlist.getMaxWindowDays())) {
+            return WINDOW_TOO_LONG;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,7 @@
+package fr.univlr.info.AppointmentAPIV1.controller;
+
+public class WaitlistEntryNotFoundException extends NotFoundException {
+    public WaitlistEntryNotFoundException(Long id) {
+        super("Could not find waitlist request " + id);
+    }
+}
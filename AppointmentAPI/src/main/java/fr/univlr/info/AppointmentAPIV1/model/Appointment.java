@@ -1,7 +1,9 @@
 package fr.univlr.info.AppointmentAPIV1.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import fr.univlr.info.AppointmentAPIV1.controller.AppointmentDateConstraint;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.hateoas.EntityModel;
 
 import javax.persistence.*;
@@ -10,18 +12,37 @@ import java.util.Date;
 import java.util.Objects;
 
 @Entity
-@AppointmentDateConstraint
+// Recherche des conflits d'un médecin sur un créneau (voir AppointmentRepository.existsOverlapping),
+// et recherches du listing par médecin, par patient ou par période (voir AppointmentFilter)
+@Table(indexes = {
+        @Index(name = "idx_appointment_doctor_start", columnList = "doctor, startDate"),
+        @Index(name = "idx_appointment_patient_start", columnList = "patient, startDate"),
+        @Index(name = "idx_appointment_start", columnList = "startDate")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Appointment.CACHE_REGION)
 public class Appointment extends EntityModel<Appointment> {
+    // Régions du cache de second niveau (tailles et expiration dans application.conf)
+    public static final String CACHE_REGION = "appointment";
+    public static final String BY_DOCTOR_QUERY_REGION = "appointment-by-doctor";
+
     @Id
     @GeneratedValue
     private Long id;
     private String doctor;
     private Date startDate, endDate;
     private String patient;
+    // Salle et appareil réservés avec le médecin (facultatifs, voir ResourceKind)
+    private String room;
+    private String device;
     @JsonIgnore
     @ManyToOne
-    @JoinColumn(name = "doctor_id") // Cette annotation crée une clé étrangère dans la table Appointment vers Doctor
+    @JoinColumn(name = "doctor_id", foreignKey = @ForeignKey(name = "fk_appointment_doctor")) // Cette annotation crée une clé étrangère dans la table Appointment vers Doctor
     private Doctor doctorInfo;
+    // Renseigné seulement pour une occurrence calculée d'une série (voir AppointmentSeries), jamais stocké
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long seriesId;
 
     public Appointment() {
     }
@@ -73,6 +94,30 @@ public class Appointment extends EntityModel<Appointment> {
         this.patient = patient;
     }
 
+    public String getRoom() {
+        return room;
+    }
+
+    public void setRoom(String room) {
+        this.room = room;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    public void setDevice(String device) {
+        this.device = device;
+    }
+
+    public Long getSeriesId() {
+        return seriesId;
+    }
+
+    public void setSeriesId(Long seriesId) {
+        this.seriesId = seriesId;
+    }
+
     @Override
     public String toString() {
         SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm");
@@ -90,7 +135,7 @@ public class Appointment extends EntityModel<Appointment> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Appointment that = (Appointment) o;
-        return id.equals(that.id) && Objects.equals(doctor, that.doctor) && Objects.equals(startDate, that.startDate) && Objects.equals(endDate, that.endDate) && Objects.equals(patient, that.patient);
+        return Objects.equals(id, that.id) && Objects.equals(doctor, that.doctor) && Objects.equals(startDate, that.startDate) && Objects.equals(endDate, that.endDate) && Objects.equals(patient, that.patient);
     }
 
     @Override
@@ -0,0 +1,279 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import javax.persistence.*;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Série de rendez-vous récurrents (kiné toutes les semaines, contrôle tous les mois...), inspirée des RRULE d'iCalendar.
+ *
+ * Une série est stockée sur une seule ligne : la première occurrence (startDate/endDate), la fréquence,
+ * l'intervalle et une fin (until ou count). Les occurrences ne sont jamais insérées en base :
+ * elles sont calculées à la demande, uniquement sur la fenêtre demandée, en sautant directement
+ * à la première occurrence de la fenêtre.
+ *
+ * Une occurrence annulée est gardée dans {@code exceptions} (l'équivalent d'un EXDATE).
+ * Contrairement à Appointment, la série n'hérite pas d'EntityModel : Jackson reprendrait sinon le contenu
+ * "déballé" du corps de la requête dans la réponse.
+ */
+@Entity
+public class AppointmentSeries {
+
+    public enum Frequency {
+        DAILY(ChronoUnit.DAYS), WEEKLY(ChronoUnit.WEEKS), MONTHLY(ChronoUnit.MONTHS), YEARLY(ChronoUnit.YEARS);
+
+        private final ChronoUnit unit;
+
+        Frequency(ChronoUnit unit) {
+            this.unit = unit;
+        }
+    }
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String doctor;
+    private String patient;
+    // Première occurrence de la série
+    private Date startDate, endDate;
+    @Enumerated(EnumType.STRING)
+    private Frequency frequency;
+    // "interval" est un mot réservé pour H2
+    @Column(name = "repeat_interval")
+    private int interval = 1;
+    private Date until;
+    // Nombre d'occurrences : donné par le client ou calculé à partir de until à la création
+    @Column(name = "occurrences")
+    private Integer count;
+    // Fuseau dans lequel la série se répète : 10h reste 10h après un changement d'heure
+    private String zone;
+    // Fin de la dernière occurrence, pour retrouver par une simple requête les séries qui touchent une fenêtre
+    @JsonIgnore
+    private Date lastEnd;
+    // Chargées avec la série : elles servent à chaque calcul d'occurrences, y compris hors transaction
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "appointment_series_exception",
+            joinColumns = @JoinColumn(name = "series_id", foreignKey = @ForeignKey(name = "fk_series_exception_series")))
+    @Column(name = "occurrence_start")
+    private Set<Date> exceptions = new HashSet<>();
+
+    public AppointmentSeries() {
+    }
+
+    public AppointmentSeries(String doctor, Date start, Date end, String patient, Frequency frequency, int interval) {
+        this.doctor = doctor;
+        this.startDate = start;
+        this.endDate = end;
+        this.patient = patient;
+        this.frequency = frequency;
+        this.interval = interval;
+    }
+
+    /**
+     * Calcule le nombre d'occurrences (à partir de until si count n'est pas donné) et la fin de la dernière.
+     * À appeler une fois, avant le premier enregistrement.
+     */
+    public void resolveBounds() {
+        if (zone == null) {
+            zone = ZoneId.systemDefault().getId();
+        }
+        if (count == null) {
+            ZonedDateTime limit = until.toInstant().atZone(zoneId());
+            long index = frequency.unit.between(firstStart(), limit) / interval;
+            // between() tronque : on corrige d'un cran si besoin
+            while (index >= 0 && occurrenceStart(index).isAfter(limit)) {
+                index--;
+            }
+            count = (int) Math.min(Integer.MAX_VALUE, index + 1);
+        }
+        lastEnd = count > 0 ? new Date(occurrenceStart(count - 1).toInstant().toEpochMilli() + durationMillis()) : endDate;
+    }
+
+    /**
+     * Occurrences dont le début tombe entre {@code from} et {@code to} (inclus), sans les occurrences annulées.
+     * Le calcul démarre directement à la première occurrence de la fenêtre : il ne dépend que de sa largeur.
+     */
+    public List<Appointment> occurrencesStartingBetween(Date from, Date to) {
+        List<Appointment> occurrences = new ArrayList<>();
+        Set<Long> cancelled = cancelledStarts();
+        long duration = durationMillis();
+        for (long index = firstIndexFrom(from); index < count; index++) {
+            Date start = Date.from(occurrenceStart(index).toInstant());
+            if (start.after(to)) {
+                break;
+            }
+            if (start.before(from) || cancelled.contains(start.getTime())) {
+                continue;
+            }
+            Appointment occurrence = new Appointment(doctor, start, new Date(start.getTime() + duration), patient);
+            occurrence.setSeriesId(id);
+            occurrences.add(occurrence);
+        }
+        return occurrences;
+    }
+
+    // Une occurrence de la série chevauche-t-elle [start, end] ? (mêmes bornes incluses que pour les rendez-vous simples)
+    public boolean overlaps(Date start, Date end) {
+        return !occurrencesStartingBetween(new Date(start.getTime() - durationMillis()), end).isEmpty();
+    }
+
+    public boolean isOccurrence(Date start) {
+        return !occurrencesStartingBetween(start, start).isEmpty();
+    }
+
+    private long firstIndexFrom(Date from) {
+        if (!from.after(startDate)) {
+            return 0;
+        }
+        long index = frequency.unit.between(firstStart(), from.toInstant().atZone(zoneId())) / interval;
+        // un cran en arrière par prudence (mois de longueurs différentes, changement d'heure)
+        return Math.max(0, index - 1);
+    }
+
+    private ZonedDateTime occurrenceStart(long index) {
+        // toujours calculé depuis la première occurrence : un 31 revient au 31 après un mois plus court
+        return firstStart().plus(index * interval, frequency.unit);
+    }
+
+    private ZonedDateTime firstStart() {
+        return startDate.toInstant().atZone(zoneId());
+    }
+
+    private ZoneId zoneId() {
+        return zone != null ? ZoneId.of(zone) : ZoneId.systemDefault();
+    }
+
+    private long durationMillis() {
+        return endDate.getTime() - startDate.getTime();
+    }
+
+    // Hibernate relit les dates en java.sql.Timestamp, qui ne sont pas equals() à une java.util.Date : on compare les millisecondes
+    private Set<Long> cancelledStarts() {
+        Set<Long> starts = new HashSet<>();
+        for (Date exception : exceptions) {
+            starts.add(exception.getTime());
+        }
+        return starts;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDoctor() {
+        return doctor;
+    }
+
+    public void setDoctor(String doctor) {
+        this.doctor = doctor;
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    public void setPatient(String patient) {
+        this.patient = patient;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    public void setFrequency(Frequency frequency) {
+        this.frequency = frequency;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    public Date getUntil() {
+        return until;
+    }
+
+    public void setUntil(Date until) {
+        this.until = until;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
+
+    public String getZone() {
+        return zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    public Date getLastEnd() {
+        return lastEnd;
+    }
+
+    public Set<Date> getExceptions() {
+        return exceptions;
+    }
+
+    public void setExceptions(Set<Date> exceptions) {
+        this.exceptions = exceptions;
+    }
+
+    @Override
+    public String toString() {
+        return "AppointmentSeries{" +
+                "id=" + id +
+                ", doctor='" + doctor + '\'' +
+                ", startDate=" + startDate +
+                ", frequency=" + frequency +
+                ", interval=" + interval +
+                ", count=" + count +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AppointmentSeries that = (AppointmentSeries) o;
+        return Objects.equals(id, that.id) && Objects.equals(doctor, that.doctor) && Objects.equals(startDate, that.startDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, doctor, startDate);
+    }
+}
@@ -0,0 +1,18 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import java.util.Date;
+
+/**
+ * État d'un rendez-vous par rapport à l'instant présent. Il n'est pas stocké : il se déduit des dates
+ * (un rendez-vous annulé est supprimé, il n'a donc pas d'état à lui).
+ */
+public enum AppointmentStatus {
+    UPCOMING, ONGOING, PAST;
+
+    public static AppointmentStatus of(Appointment appt, Date now) {
+        if (appt.getStartDate().after(now)) {
+            return UPCOMING;
+        }
+        return appt.getEndDate().before(now) ? PAST : ONGOING;
+    }
+}
@@ -0,0 +1,72 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import javax.persistence.*;
+import java.util.Objects;
+
+/**
+ * Une salle ou un appareil que l'on réserve en même temps que le médecin (voir ResourceKind).
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_bookable_resource_kind_name", columnNames = {"kind", "name"}))
+public class BookableResource {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    private ResourceKind kind;
+    private String name;
+
+    public BookableResource() {
+    }
+
+    public BookableResource(ResourceKind kind, String name) {
+        this.kind = kind;
+        this.name = name;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ResourceKind getKind() {
+        return kind;
+    }
+
+    public void setKind(ResourceKind kind) {
+        this.kind = kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return "BookableResource{" +
+                "id=" + id +
+                ", kind=" + kind +
+                ", name='" + name + '\'' +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BookableResource that = (BookableResource) o;
+        return Objects.equals(id, that.id) && kind == that.kind && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, kind, name);
+    }
+}
@@ -1,6 +1,8 @@
 package fr.univlr.info.AppointmentAPIV1.model;
 
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.hateoas.EntityModel;
 
 import javax.persistence.*;
@@ -8,12 +10,18 @@ import java.util.List;
 import java.util.Objects;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Doctor.CACHE_REGION)
 public class Doctor extends EntityModel<Doctor> {
+    public static final String CACHE_REGION = "doctor";
+    public static final String APPOINTMENTS_CACHE_REGION = "doctor-appointments";
+
     @Id
     @GeneratedValue
     private Long id;
     private String name;
     @OneToMany(mappedBy = "doctorInfo")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Doctor.APPOINTMENTS_CACHE_REGION)
     private List<Appointment> appointments;
 
     public Doctor() {}
@@ -0,0 +1,82 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Activité d'un médecin sur une journée (UTC, jour de début des rendez-vous), tenue à jour par DoctorStats
+ * dans la transaction de chaque réservation, annulation ou suppression, de rendez-vous comme de série.
+ *
+ * La contrainte unique (doctor, day_start) sert aussi d'index aux lectures de GET /api/doctors/{name}/stats :
+ * une ligne par jour lue, jamais la table des rendez-vous.
+ */
+@Entity
+@Table(name = "doctor_day_stats",
+        uniqueConstraints = @UniqueConstraint(name = "uk_doctor_day_stats", columnNames = {"doctor", "day_start"}))
+public class DoctorDayStats {
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String doctor;
+    @Column(name = "day_start")
+    private LocalDate day;
+    // Rendez-vous réservés ce jour-là (annulés et supprimés déduits) et leur durée totale
+    private long appointments;
+    @Column(name = "booked_minutes")
+    private long bookedMinutes;
+    private long cancellations;
+    @Column(name = "cancelled_minutes")
+    private long cancelledMinutes;
+
+    public DoctorDayStats() {
+    }
+
+    public DoctorDayStats(String doctor, LocalDate day) {
+        this.doctor = doctor;
+        this.day = day;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDoctor() {
+        return doctor;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public long getAppointments() {
+        return appointments;
+    }
+
+    public void setAppointments(long appointments) {
+        this.appointments = appointments;
+    }
+
+    public long getBookedMinutes() {
+        return bookedMinutes;
+    }
+
+    public void setBookedMinutes(long bookedMinutes) {
+        this.bookedMinutes = bookedMinutes;
+    }
+
+    public long getCancellations() {
+        return cancellations;
+    }
+
+    public void setCancellations(long cancellations) {
+        this.cancellations = cancellations;
+    }
+
+    public long getCancelledMinutes() {
+        return cancelledMinutes;
+    }
+
+    public void setCancelledMinutes(long cancelledMinutes) {
+        this.cancelledMinutes = cancelledMinutes;
+    }
+}
@@ -0,0 +1,82 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Occupation d'une salle ou d'un appareil par un rendez-vous.
+ *
+ * L'index (resource_key, start_date) permet de vérifier un créneau par une seule recherche indexée,
+ * quel que soit le nombre de réservations de la ressource.
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_resource_booking_key_start", columnList = "resource_key, start_date"),
+        @Index(name = "idx_resource_booking_appointment", columnList = "appointment_id")
+})
+public class ResourceBooking {
+    @Id
+    @GeneratedValue
+    private Long id;
+    @Column(name = "resource_key")
+    private String resourceKey;
+    @Column(name = "appointment_id")
+    private Long appointmentId;
+    @Column(name = "start_date")
+    private Date startDate;
+    @Column(name = "end_date")
+    private Date endDate;
+
+    public ResourceBooking() {
+    }
+
+    public ResourceBooking(String resourceKey, Appointment appointment) {
+        this.resourceKey = resourceKey;
+        this.appointmentId = appointment.getId();
+        this.startDate = appointment.getStartDate();
+        this.endDate = appointment.getEndDate();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getResourceKey() {
+        return resourceKey;
+    }
+
+    public Long getAppointmentId() {
+        return appointmentId;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(Date startDate) {
+        this.startDate = startDate;
+    }
+
+    public Date getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(Date endDate) {
+        this.endDate = endDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ResourceBooking that = (ResourceBooking) o;
+        return Objects.equals(id, that.id) && Objects.equals(resourceKey, that.resourceKey)
+                && Objects.equals(appointmentId, that.appointmentId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, resourceKey, appointmentId);
+    }
+}
@@ -0,0 +1,14 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+/**
+ * Les types de ressources réservables. Un médecin est une ressource comme une autre :
+ * son calendrier est la table des rendez-vous, celui des salles et des appareils la table resource_booking.
+ */
+public enum ResourceKind {
+    DOCTOR, ROOM, DEVICE;
+
+    // Clé unique d'une ressource, par exemple "room:R12" : sert pour les verrous et dans resource_booking
+    public String key(String name) {
+        return name().toLowerCase() + ":" + name;
+    }
+}
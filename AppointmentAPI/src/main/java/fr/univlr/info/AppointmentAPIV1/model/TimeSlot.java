@@ -0,0 +1,31 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import java.util.Date;
+
+/**
+ * Créneau libre dans l'agenda d'un médecin (réponse de GET /api/doctors/{name}/availability).
+ * Ses bornes touchent les rendez-vous voisins : comme pour les conflits, un rendez-vous ne peut pas
+ * commencer exactement à la fin du précédent.
+ */
+public class TimeSlot {
+    private final Date start;
+    private final Date end;
+
+    public TimeSlot(Date start, Date end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public Date getStart() {
+        return start;
+    }
+
+    public Date getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSlot{" + start + " -> " + end + '}';
+    }
+}
@@ -0,0 +1,127 @@
+package fr.univlr.info.AppointmentAPIV1.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Date;
+
+/**
+ * Demande d'un patient sur la liste d'attente d'un médecin : n'importe quel créneau libéré entre from et to.
+ *
+ * Elle n'est pas stockée en base (voir WaitlistIndex) : le patient suit son état sur /api/waitlist/{id},
+ * et quand un créneau lui est attribué, le rendez-vous créé est un rendez-vous ordinaire (appointmentId).
+ */
+public class WaitlistEntry {
+    public enum Status {
+        // En attente d'un créneau
+        WAITING,
+        // Un créneau libéré lui est proposé, la réservation est en cours
+        BOOKING,
+        // Rendez-vous réservé pour le patient
+        BOOKED
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long id;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private String doctor;
+    private String patient;
+    private Date from, to;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Date requestedAt;
+    // Changés par le thread d'attribution, lus par les requêtes
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private volatile Status status = Status.WAITING;
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private volatile Long appointmentId;
+
+    public WaitlistEntry() {
+    }
+
+    public WaitlistEntry(String doctor, String patient, Date from, Date to) {
+        this.doctor = doctor;
+        this.patient = patient;
+        this.from = from;
+        this.to = to;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDoctor() {
+        return doctor;
+    }
+
+    public void setDoctor(String doctor) {
+        this.doctor = doctor;
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    public void setPatient(String patient) {
+        this.patient = patient;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public void setFrom(Date from) {
+        this.from = from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public void setTo(Date to) {
+        this.to = to;
+    }
+
+    public Date getRequestedAt() {
+        return requestedAt;
+    }
+
+    public void setRequestedAt(Date requestedAt) {
+        this.requestedAt = requestedAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getAppointmentId() {
+        return appointmentId;
+    }
+
+    public void setAppointmentId(Long appointmentId) {
+        this.appointmentId = appointmentId;
+    }
+
+    // Le créneau [start, end] tient-il entièrement dans la fenêtre demandée ?
+    public boolean accepts(long start, long end) {
+        return from.getTime() <= start && end <= to.getTime();
+    }
+
+    @Override
+    public String toString() {
+        return "WaitlistEntry{" +
+                "id=" + id +
+                ", doctor='" + doctor + '\'' +
+                ", patient='" + patient + '\'' +
+                ", from=" + from +
+                ", to=" + to +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -0,0 +1,349 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceKind;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentJournal;
+import fr.univlr.info.AppointmentAPIV1.store.JournalEvent;
+import fr.univlr.info.AppointmentAPIV1.store.SecondLevelCache;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Journal des changements de rendez-vous (voir {@link AppointmentJournal}), vu depuis l'application.
+ *
+ * Les contrôleurs y ajoutent chaque création, modification, annulation et suppression une fois validée en base.
+ * Tous les snapshot-every événements, un snapshot de la table appointment est écrit en tâche de fond (lu sur le primaire).
+ * Au démarrage, si la table est vide (base en mémoire recréée), elle est reconstruite depuis le dernier snapshot
+ * et le rejeu des événements suivants, et les agendas en mémoire sont construits depuis cet état,
+ * sans relire la table. Le même journal sert de flux aux consommateurs (GET /api/admin/journal).
+ *
+ * Sans appointment.journal.enabled, tout est sans effet.
+ * Les séries, les médecins et les salles ne sont pas journalisés : seules les réservations de salle et d'appareil
+ * des rendez-vous rejoués sont recréées.
+ *
+ * Le rejeu suppose que le journal suit l'ordre des commits : chaque écriture passe par {@link #ordered} (ou
+ * {@link #clearing} pour l'effacement complet), qui garde la transaction et l'ajout de son événement ensemble,
+ * sans autre écriture du même rendez-vous entre les deux. Cet ordre vaut pour une instance : en cluster,
+ * les écritures d'un médecin passent toutes par son propriétaire.
+ */
+@Component
+public class AppointmentEventLog implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(AppointmentEventLog.class);
+    private static final String SELECT_ALL = "SELECT id, doctor, start_date, end_date, patient, room, device FROM appointment";
+    private static final String INSERT = "INSERT INTO appointment (id, doctor, start_date, end_date, patient, room, device) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_BOOKING = "INSERT INTO resource_booking (id, appointment_id, start_date, end_date, resource_key) "
+            + "VALUES (NEXT VALUE FOR hibernate_sequence, ?, ?, ?, ?)";
+    // verrous par rendez-vous, répartis par identifiant (une puissance de deux)
+    private static final int STRIPES = 64;
+
+    private final AppointmentJournal journal;
+    private final DoctorService doctorService;
+    private final CalendarSnapshots calendars;
+    private final DoctorStats stats;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate primaryTransaction;
+    private final JdbcTemplate jdbc;
+    private final SecondLevelCache secondLevelCache;
+    private final long snapshotEvery;
+    private final ExecutorService snapshots;
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    // lecture : une écriture de rendez-vous ; écriture : l'effacement complet, qui passe seul
+    private final ReentrantReadWriteLock clearLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public AppointmentEventLog(ObjectProvider<AppointmentJournal> journal, DoctorService doctorService, CalendarSnapshots calendars,
+                               DoctorStats stats, ShardRouter shardRouter, PlatformTransactionManager transactionManager, DataSource dataSource,
+                               SecondLevelCache secondLevelCache,
+                               @Value("${appointment.journal.snapshot-every:100000}") long snapshotEvery) {
+        this.journal = journal.getIfAvailable();
+        this.doctorService = doctorService;
+        this.calendars = calendars;
+        this.stats = stats;
+        this.shardRouter = shardRouter;
+        // Pas en readOnly : un snapshot lu sur un réplica en retard perdrait des événements déjà couverts
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.secondLevelCache = secondLevelCache;
+        this.snapshotEvery = snapshotEvery;
+        this.snapshots = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Écriture du rendez-vous id puis ajout de son événement (dans write), sans qu'une autre écriture du même
+     * rendez-vous ou un effacement complet ne passe entre le commit et l'ajout. id nul pour une création :
+     * personne d'autre ne connaît encore son identifiant. Sans journal, write est appelé directement.
+     */
+    public <T> T ordered(Long id, Supplier<T> write) {
+        if (journal == null) {
+            return write.get();
+        }
+        clearLock.readLock().lock();
+        try {
+            if (id == null) {
+                return write.get();
+            }
+            ReentrantLock stripe = stripes[Long.hashCode(id) & (STRIPES - 1)];
+            stripe.lock();
+            try {
+                return write.get();
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            clearLock.readLock().unlock();
+        }
+    }
+
+    // Effacement complet et son événement : attend les écritures en cours et bloque les suivantes jusqu'à l'ajout
+    public <T> T clearing(Supplier<T> write) {
+        if (journal == null) {
+            return write.get();
+        }
+        clearLock.writeLock().lock();
+        try {
+            return write.get();
+        } finally {
+            clearLock.writeLock().unlock();
+        }
+    }
+
+    public void booked(Appointment appt) {
+        append(JournalEvent.Type.BOOKED, appt, null);
+    }
+
+    public void updated(String previousDoctor, Appointment appt) {
+        append(JournalEvent.Type.UPDATED, appt, previousDoctor);
+    }
+
+    public void cancelled(Appointment appt) {
+        append(JournalEvent.Type.CANCELLED, appt, null);
+    }
+
+    public void deleted(Appointment appt) {
+        append(JournalEvent.Type.DELETED, appt, null);
+    }
+
+    public void cleared() {
+        if (journal != null) {
+            append(JournalEvent.cleared());
+        }
+    }
+
+    private void append(JournalEvent.Type type, Appointment appt, String previousDoctor) {
+        if (journal != null) {
+            append(JournalEvent.of(type, appt, previousDoctor));
+        }
+    }
+
+    // Appelé après le commit : un échec du journal ne doit pas transformer l'écriture validée en erreur pour le client.
+    // L'événement manque alors au flux, mais le prochain snapshot (relu en base) le rattrape pour la reprise.
+    private void append(JournalEvent event) {
+        try {
+            afterAppend(journal.append(event));
+        } catch (RuntimeException e) {
+            log.warn("Journal append failed for {} {}", event.getType(), event.getId(), e);
+        }
+    }
+
+    private void afterAppend(long seq) {
+        if (seq - journal.getSnapshotSeq() >= snapshotEvery) {
+            snapshotAsync();
+        }
+    }
+
+    // Un snapshot à la fois, en tâche de fond (aussi après un import, qui écrit en base sans passer par le journal)
+    public void snapshotAsync() {
+        if (journal != null && snapshotRunning.compareAndSet(false, true)) {
+            snapshots.execute(() -> {
+                try {
+                    snapshot();
+                } catch (RuntimeException e) {
+                    log.warn("Journal snapshot failed", e);
+                } finally {
+                    snapshotRunning.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Snapshot de la table appointment de tous les shards au numéro courant du journal.
+     * Le numéro est pris avant la lecture : tout ce qu'il couvre est déjà en base, ce qui arrive pendant la lecture
+     * sera rejoué par-dessus.
+     */
+    public long snapshot() {
+        long seq = journal.getLastSeq();
+        long begin = System.nanoTime();
+        try (AppointmentJournal.SnapshotWriter writer = journal.openSnapshot(seq)) {
+            for (String shard : shardRouter.getShards()) {
+                shardRouter.onShard(shard, () -> primaryTransaction.execute(status -> {
+                    jdbc.query(SELECT_ALL, row -> {
+                        Appointment appt = new Appointment(row.getString(2), row.getTimestamp(3), row.getTimestamp(4), row.getString(5));
+                        appt.setId(row.getLong(1));
+                        appt.setRoom(row.getString(6));
+                        appt.setDevice(row.getString(7));
+                        try {
+                            writer.add(appt);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    return null;
+                }));
+            }
+            long rows = writer.commit();
+            log.info("Journal snapshot at seq {}: {} appointment(s) in {} ms", seq, rows, (System.nanoTime() - begin) / 1_000_000);
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reconstruit la table appointment (et les réservations de salle et d'appareil) depuis le journal, si elle est vide
+     * sur tous les shards, puis les statistiques et les agendas en mémoire depuis le même état. Les médecins manquants sont créés.
+     */
+    public void restore() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        long existing = 0;
+        for (String shard : shardRouter.getShards()) {
+            existing += shardRouter.onShard(shard, () -> primaryTransaction.execute(status ->
+                    jdbc.queryForObject("SELECT COUNT(*) FROM appointment", Long.class)));
+        }
+        if (existing > 0) {
+            log.info("Journal restore skipped: the appointment table is not empty");
+            return;
+        }
+        AppointmentJournal.Recovery recovery = journal.recover();
+        Map<String, List<Appointment>> byDoctor = new HashMap<>();
+        for (Appointment appt : recovery.getState().values()) {
+            byDoctor.computeIfAbsent(appt.getDoctor(), name -> new ArrayList<>()).add(appt);
+        }
+
+        createMissingDoctors(byDoctor.keySet());
+        Map<String, List<Appointment>> byShard = new HashMap<>();
+        byDoctor.forEach((doctor, appts) -> byShard.computeIfAbsent(shardRouter.shardFor(doctor), s -> new ArrayList<>()).addAll(appts));
+        for (Map.Entry<String, List<Appointment>> shard : byShard.entrySet()) {
+            shardRouter.onShard(shard.getKey(), () -> primaryTransaction.execute(status -> {
+                jdbc.batchUpdate(INSERT, shard.getValue(), 1000, (statement, appt) -> {
+                    statement.setLong(1, appt.getId());
+                    statement.setString(2, appt.getDoctor());
+                    statement.setTimestamp(3, new Timestamp(appt.getStartDate().getTime()));
+                    statement.setTimestamp(4, new Timestamp(appt.getEndDate().getTime()));
+                    statement.setString(5, appt.getPatient());
+                    statement.setString(6, appt.getRoom());
+                    statement.setString(7, appt.getDevice());
+                });
+                skipSequencePast(shard.getValue().stream().mapToLong(Appointment::getId).max().orElse(0));
+                return null;
+            }));
+        }
+        restoreResourceBookings(recovery.getState().values());
+        // Statistiques par jour recalculées depuis la table reconstruite (les annulations passées ne sont pas rejouées)
+        stats.rebuild();
+
+        secondLevelCache.evictAll();
+        calendars.warm(byDoctor);
+        log.info("Journal restore: {} appointment(s) from {} in the snapshot at seq {} and {} replayed event(s), in {} ms",
+                recovery.getState().size(), recovery.getSnapshotRows(), recovery.getSnapshotSeq(), recovery.getReplayed(), recovery.getMillis());
+    }
+
+    // Flux des consommateurs : au plus limit événements à partir de from, avec l'état du journal
+    public Map<String, Object> read(long from, int limit) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("enabled", journal != null);
+        if (journal != null) {
+            body.put("firstSeq", journal.getFirstSeq());
+            body.put("lastSeq", journal.getLastSeq());
+            body.put("flushedSeq", journal.getFlushedSeq());
+            body.put("snapshotSeq", journal.getSnapshotSeq());
+            body.put("segments", journal.getSegmentCount());
+            body.put("segmentBytes", journal.getSegmentBytes());
+            body.put("events", journal.read(from, limit));
+        }
+        return body;
+    }
+
+    private void createMissingDoctors(Set<String> names) {
+        Set<String> known = new HashSet<>();
+        for (String shard : shardRouter.getShards()) {
+            for (Doctor doctor : shardRouter.onShard(shard, doctorService::findAll)) {
+                known.add(doctor.getName());
+            }
+        }
+        for (String name : names) {
+            if (!known.contains(name)) {
+                shardRouter.onDoctor(name, () -> doctorService.create(new Doctor(name)));
+                calendars.track(name);
+            }
+        }
+    }
+
+    // Les identifiants rejoués ne doivent pas ressortir de la séquence
+    private void skipSequencePast(long maxId) {
+        Long next = jdbc.queryForObject("SELECT NEXT VALUE FOR hibernate_sequence", Long.class);
+        if (next != null && next <= maxId) {
+            jdbc.execute("ALTER SEQUENCE hibernate_sequence RESTART WITH " + (maxId + 1));
+        }
+    }
+
+    // Les salles et appareils sont réservés sur le premier shard (voir AppointmentService)
+    private void restoreResourceBookings(Collection<Appointment> appts) {
+        List<Object[]> bookings = new ArrayList<>();
+        for (Appointment appt : appts) {
+            if (appt.getRoom() != null) {
+                bookings.add(booking(appt, ResourceKind.ROOM.key(appt.getRoom())));
+            }
+            if (appt.getDevice() != null) {
+                bookings.add(booking(appt, ResourceKind.DEVICE.key(appt.getDevice())));
+            }
+        }
+        if (!bookings.isEmpty()) {
+            shardRouter.onShard(ShardRouter.DEFAULT_SHARD, () -> primaryTransaction.execute(status -> jdbc.batchUpdate(INSERT_BOOKING, bookings)));
+        }
+    }
+
+    private static Object[] booking(Appointment appt, String key) {
+        return new Object[]{appt.getId(), new Timestamp(appt.getStartDate().getTime()), new Timestamp(appt.getEndDate().getTime()), key};
+    }
+
+    @Override
+    public void destroy() {
+        snapshots.shutdownNow();
+    }
+}
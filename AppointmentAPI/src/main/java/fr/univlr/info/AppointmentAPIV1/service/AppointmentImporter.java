@@ -0,0 +1,494 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceKind;
+import fr.univlr.info.AppointmentAPIV1.store.SecondLevelCache;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import fr.univlr.info.AppointmentAPIV1.store.SlotHolds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Import en masse de rendez-vous (et des médecins qu'ils citent) depuis un fichier CSV ou NDJSON, pour les migrations.
+ *
+ * CSV : une ligne d'en-tête qui nomme les colonnes (doctor, startDate, endDate, patient, dans n'importe quel ordre),
+ * puis une ligne par rendez-vous. NDJSON : un objet JSON par ligne avec les mêmes champs.
+ * Les dates sont au format ISO-8601, avec décalage horaire (2021-01-13T09:30:00Z) ou sans (heure locale du serveur).
+ *
+ * Le fichier est lu en flux, ligne par ligne ; les médecins sont résolus une fois pour toutes (un findAll par shard,
+ * les inconnus sont créés) au lieu d'un findByName par ligne. Les lignes de chaque médecin sont triées par début :
+ * les chevauchements entre elles se voient en une passe, ceux avec l'agenda déjà en base via un {@link DoctorCalendar}.
+ * Les lignes retenues sont écrites en insertions JDBC par lots, un médecin par tâche, en parallèle. Chaque lot de
+ * batch-size lignes est vérifié et inséré dans sa propre transaction, sous une prise (voir SlotHolds) sur sa période :
+ * une réservation par l'API sur cette période attend la fin du lot. Comme pour une réservation, la transaction d'un lot
+ * a un timeout plus court que le TTL de la prise, qui n'expire donc pas sous elle, même pour un gros import.
+ * Un lot en échec n'annule pas les lots déjà insérés.
+ *
+ * Contrairement à l'API, les dates passées sont acceptées (c'est tout l'intérêt d'une migration).
+ * Les ressources (salle, appareil) ne sont pas importées : elles se réservent par l'API.
+ */
+@Service
+public class AppointmentImporter {
+    private static final Logger log = LoggerFactory.getLogger(AppointmentImporter.class);
+    // L'identifiant vient de la même séquence que celle de Hibernate, comme pour un rendez-vous créé par l'API
+    private static final String INSERT = "INSERT INTO appointment (id, doctor, doctor_id, start_date, end_date, patient) "
+            + "VALUES (NEXT VALUE FOR hibernate_sequence, ?, ?, ?, ?, ?)";
+
+    public enum Format {CSV, NDJSON}
+
+    private final DoctorService doctorService;
+    private final CalendarSnapshots calendars;
+    private final DoctorStats stats;
+    private final AppointmentEventLog events;
+    private final ShardRouter shardRouter;
+    private final SlotHolds slotHolds;
+    private final TransactionTemplate chunkTransaction;
+    private final JdbcTemplate jdbc;
+    private final SecondLevelCache secondLevelCache;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int threads;
+    private final int maxErrors;
+
+    public AppointmentImporter(DoctorService doctorService, CalendarSnapshots calendars, DoctorStats stats,
+                               AppointmentEventLog events, ShardRouter shardRouter, SlotHolds slotHolds,
+                               PlatformTransactionManager transactionManager, DataSource dataSource,
+                               SecondLevelCache secondLevelCache, ObjectMapper objectMapper,
+                               @Value("${appointment.import.batch-size:1000}") int batchSize,
+                               @Value("${appointment.import.threads:0}") int threads,
+                               @Value("${appointment.import.max-errors:100}") int maxErrors) {
+        this.doctorService = doctorService;
+        this.calendars = calendars;
+        this.stats = stats;
+        this.events = events;
+        this.shardRouter = shardRouter;
+        this.slotHolds = slotHolds;
+        // Pas en readOnly : l'agenda lu en base doit venir du primaire, pas d'un réplica en retard.
+        // Un lot doit finir avant l'expiration de sa prise (en secondes, au moins une), comme une réservation
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setTimeout((int) Math.max(1, slotHolds.getTtlMillis() / 2000));
+        // Même DataSource que JPA : les insertions passent par la connexion de la transaction et le shard courant
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.secondLevelCache = secondLevelCache;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.maxErrors = maxErrors;
+    }
+
+    public Report importFile(Path file, Format format) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader, format);
+        }
+    }
+
+    public Report importFrom(Reader in, Format format) throws IOException {
+        long begin = System.nanoTime();
+        Report report = new Report(maxErrors);
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        Map<String, List<Row>> byDoctor = format == Format.CSV ? parseCsv(reader, report) : parseNdjson(reader, report);
+
+        Map<String, Long> doctorIds = createMissingDoctors(byDoctor.keySet(), report);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, byDoctor.size())));
+        try {
+            List<Future<Report>> results = new ArrayList<>();
+            for (Map.Entry<String, List<Row>> doctor : byDoctor.entrySet()) {
+                String name = doctor.getKey();
+                boolean created = report.createdDoctors.contains(name);
+                results.add(executor.submit(() -> importDoctor(name, doctorIds.get(name), doctor.getValue(), !created)));
+            }
+            // Toutes les tâches sont attendues, même après un échec : les autres ont pu insérer des lignes
+            ExecutionException failure = null;
+            for (Future<Report> result : results) {
+                try {
+                    report.add(result.get());
+                } catch (ExecutionException e) {
+                    failure = failure != null ? failure : e;
+                }
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Import failed", failure.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import interrupted", e);
+        } finally {
+            executor.shutdown();
+            // Les insertions JDBC ne passent pas par Hibernate : le cache de second niveau (listes de rendez-vous des
+            // médecins, requêtes) et les agendas en mémoire sont périmés, même si l'import a échoué en route,
+            if (!byDoctor.isEmpty()) {
+                secondLevelCache.evictAll();
+                calendars.invalidateAll();
+                // ni le journal : un snapshot y fait entrer les rendez-vous importés
+                events.snapshotAsync();
+            }
+        }
+        report.errors.sort(Comparator.comparingLong(Rejected::getLine));
+        if (report.errors.size() > maxErrors) {
+            report.errors.subList(maxErrors, report.errors.size()).clear();
+        }
+        report.millis = (System.nanoTime() - begin) / 1_000_000;
+        log.info("Import done: {} row(s), {} imported, {} rejected, {} doctor(s) created in {} ms ({} rows/s)",
+                report.rows, report.imported, report.rejected, report.getDoctorsCreated(), report.millis,
+                report.getRowsPerSecond());
+        return report;
+    }
+
+    private Map<String, List<Row>> parseCsv(BufferedReader reader, Report report) throws IOException {
+        Map<String, List<Row>> byDoctor = new HashMap<>();
+        String header = reader.readLine();
+        if (header == null) {
+            return byDoctor;
+        }
+        List<String> columns = Arrays.asList(header.trim().split("\\s*,\\s*"));
+        int doctor = columns.indexOf("doctor");
+        int start = columns.indexOf("startDate");
+        int end = columns.indexOf("endDate");
+        int patient = columns.indexOf("patient");
+        if (doctor < 0 || start < 0 || end < 0) {
+            throw new IllegalArgumentException("CSV header must name the doctor, startDate and endDate columns");
+        }
+        long line = 1;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isEmpty()) {
+                continue;
+            }
+            report.rows++;
+            List<String> fields = splitCsv(text);
+            add(byDoctor, report, line, field(fields, doctor), field(fields, start), field(fields, end), field(fields, patient));
+        }
+        return byDoctor;
+    }
+
+    private Map<String, List<Row>> parseNdjson(BufferedReader reader, Report report) throws IOException {
+        Map<String, List<Row>> byDoctor = new HashMap<>();
+        long line = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.trim().isEmpty()) {
+                continue;
+            }
+            report.rows++;
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (IOException e) {
+                report.reject(line, "Malformed JSON");
+                continue;
+            }
+            add(byDoctor, report, line, text(node, "doctor"), text(node, "startDate"), text(node, "endDate"), text(node, "patient"));
+        }
+        return byDoctor;
+    }
+
+    // Une ligne lue : validée ici (champs, dates), les chevauchements se vérifient plus tard, médecin par médecin
+    private void add(Map<String, List<Row>> byDoctor, Report report, long line,
+                     String doctor, String start, String end, String patient) {
+        if (doctor == null || doctor.isEmpty()) {
+            report.reject(line, "Missing doctor");
+            return;
+        }
+        long startMillis = parseTime(start);
+        long endMillis = parseTime(end);
+        if (startMillis == Long.MIN_VALUE || endMillis == Long.MIN_VALUE) {
+            report.reject(line, "Missing or malformed dates");
+            return;
+        }
+        if (startMillis > endMillis) {
+            report.reject(line, "Incoherent start and end dates");
+            return;
+        }
+        byDoctor.computeIfAbsent(doctor, name -> new ArrayList<>()).add(new Row(line, startMillis, endMillis, patient));
+    }
+
+    // Identifiant de chaque médecin cité (colonne doctor_id des rendez-vous), après création des inconnus
+    private Map<String, Long> createMissingDoctors(Set<String> names, Report report) {
+        Map<String, Long> ids = new HashMap<>();
+        for (String shard : shardRouter.getShards()) {
+            for (Doctor doctor : shardRouter.onShard(shard, doctorService::findAll)) {
+                ids.put(doctor.getName(), doctor.getId());
+            }
+        }
+        for (String name : names) {
+            if (!ids.containsKey(name)) {
+                Doctor created = shardRouter.onDoctor(name, () -> doctorService.create(new Doctor(name)));
+                ids.put(name, created.getId());
+                calendars.track(name);
+                report.createdDoctors.add(name);
+            }
+        }
+        return ids;
+    }
+
+    // Tâche d'un médecin : tri par début, puis un lot à la fois, chacun sous la prise de sa propre période
+    private Report importDoctor(String doctor, Long doctorId, List<Row> rows, boolean existing) {
+        rows.sort(Comparator.comparingLong((Row row) -> row.start).thenComparingLong(row -> row.line));
+        Report report = new Report(maxErrors);
+        List<String> key = Collections.singletonList(ResourceKind.DOCTOR.key(doctor));
+        // last : la ligne retenue qui finit le plus tard, d'un lot à l'autre (une ligne refusée ne bloque pas les suivantes)
+        Row last = null;
+        for (int i = 0; i < rows.size(); i += batchSize) {
+            List<Row> chunk = rows.subList(i, Math.min(rows.size(), i + batchSize));
+            long from = chunk.get(0).start;
+            long to = chunk.stream().mapToLong(row -> row.end).max().getAsLong();
+            Row previous = last;
+            // un médecin créé par l'import a pu recevoir une réservation par l'API entre deux lots
+            boolean check = existing || i > 0;
+            last = slotHolds.withHolds(key, from, to, () -> shardRouter.onDoctor(doctor, () -> chunkTransaction.execute(
+                    status -> checkAndInsert(doctor, doctorId, chunk, check, from, to, previous, report))));
+        }
+        return report;
+    }
+
+    // Un lot : une passe pour les chevauchements, puis insertion, dans la transaction du lot. Renvoie la nouvelle last
+    private Row checkAndInsert(String doctor, Long doctorId, List<Row> rows, boolean existing, long from, long to,
+                               Row last, Report report) {
+        DoctorCalendar booked = existing ? doctorService.calendar(doctor, new Date(from), new Date(to)) : null;
+
+        List<Row> accepted = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            // Bornes incluses, comme pour une réservation par l'API
+            if (last != null && row.start <= last.end) {
+                report.reject(row.line, "Overlaps the appointment on line " + last.line);
+            } else if (booked != null && booked.overlaps(row.start, row.end)) {
+                report.reject(row.line, "Overlaps an existing appointment");
+            } else {
+                accepted.add(row);
+                last = row;
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            // Statistiques par jour comptées en mémoire, enregistrées dans la transaction des insertions
+            DoctorStats.Tally tally = new DoctorStats.Tally();
+            accepted.forEach(row -> tally.add(row.start, row.end));
+            jdbc.batchUpdate(INSERT, accepted, batchSize, (statement, row) -> {
+                statement.setString(1, doctor);
+                statement.setLong(2, doctorId);
+                statement.setTimestamp(3, new Timestamp(row.start));
+                statement.setTimestamp(4, new Timestamp(row.end));
+                statement.setString(5, row.patient);
+            });
+            stats.imported(doctor, tally);
+        }
+        report.imported += accepted.size();
+        return last;
+    }
+
+    private static long parseTime(String text) {
+        if (text == null || text.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        long utc = parseUtc(text);
+        if (utc != Long.MIN_VALUE) {
+            return utc;
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return Long.MIN_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Chemin rapide pour la forme la plus courante d'un export, 2021-01-13T09:30:00Z ou 2021-01-13T09:30:00.000Z :
+     * lue chiffre à chiffre, sans DateTimeFormatter (deux dates par ligne, un million de lignes).
+     * Long.MIN_VALUE pour toute autre forme, qui passe alors par OffsetDateTime.parse.
+     */
+    private static long parseUtc(String text) {
+        int length = text.length();
+        if ((length != 20 && length != 24) || text.charAt(length - 1) != 'Z' || text.charAt(4) != '-'
+                || text.charAt(7) != '-' || text.charAt(10) != 'T' || text.charAt(13) != ':' || text.charAt(16) != ':'
+                || (length == 24 && text.charAt(19) != '.')) {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(text, 0, 4), month = digits(text, 5, 2), day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2), minute = digits(text, 14, 2), second = digits(text, 17, 2);
+        int millis = length == 24 ? digits(text, 20, 3) : 0;
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0 || millis < 0
+                || hour > 23 || minute > 59 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            long days = LocalDate.of(year, month, day).toEpochDay();
+            return ((days * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // -1 si l'un des caractères n'est pas un chiffre
+    private static int digits(String text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Découpage d'une ligne CSV : virgules, champs entre guillemets possibles ("" pour un guillemet)
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : null;
+    }
+
+    private static String text(JsonNode node, String name) {
+        JsonNode value = node.get(name);
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+
+    private static final class Row {
+        private final long line;
+        private final long start;
+        private final long end;
+        private final String patient;
+
+        private Row(long line, long start, long end, String patient) {
+            this.line = line;
+            this.start = start;
+            this.end = end;
+            this.patient = patient;
+        }
+    }
+
+    public static class Rejected {
+        private final long line;
+        private final String reason;
+
+        Rejected(long line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    // Bilan d'un import (renvoyé par POST /api/admin/import) ; seules les max-errors premières lignes refusées sont détaillées
+    public static class Report {
+        private long rows;
+        private long imported;
+        private long rejected;
+        private long millis;
+        private final Set<String> createdDoctors = new TreeSet<>();
+        private final List<Rejected> errors = new ArrayList<>();
+        private final int maxErrors;
+
+        private Report(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        // Un fichier entièrement faux ne doit pas garder un million de messages en mémoire
+        private void reject(long line, String reason) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                errors.add(new Rejected(line, reason));
+            }
+        }
+
+        private void add(Report doctor) {
+            imported += doctor.imported;
+            rejected += doctor.rejected;
+            errors.addAll(doctor.errors);
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public int getDoctorsCreated() {
+            return createdDoctors.size();
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getRowsPerSecond() {
+            return rows * 1000 / Math.max(1, millis);
+        }
+
+        public List<Rejected> getErrors() {
+            return errors;
+        }
+    }
+}
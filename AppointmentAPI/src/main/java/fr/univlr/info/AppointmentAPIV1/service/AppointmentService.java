@@ -0,0 +1,446 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import fr.univlr.info.AppointmentAPIV1.controller.DoctorNotFoundException;
+import fr.univlr.info.AppointmentAPIV1.controller.ResourceNotFoundException;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSeries;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceBooking;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceKind;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentFilter;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentSeriesRepository;
+import fr.univlr.info.AppointmentAPIV1.store.BookableResourceRepository;
+import fr.univlr.info.AppointmentAPIV1.store.DoctorRepository;
+import fr.univlr.info.AppointmentAPIV1.store.ResourceBookingRepository;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import fr.univlr.info.AppointmentAPIV1.store.SlotHolds;
+import fr.univlr.info.AppointmentAPIV1.store.TraceContext;
+import fr.univlr.info.AppointmentAPIV1.store.TraceSpan;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Accès aux rendez-vous pour les contrôleurs : chaque méthode publique est une transaction.
+ *
+ * Les lectures sont en readOnly : Hibernate ne garde pas de copie des entités pour le dirty checking
+ * et ne flushe pas au commit (et en mode replication, elles partent sur un réplica).
+ * Le choix du shard reste au contrôleur (voir {@link ShardRouter}) : il doit être fait avant l'ouverture
+ * de la transaction, qui prend sa connexion sur le shard courant.
+ */
+@Service
+public class AppointmentService {
+    private static final Comparator<Appointment> START_DATE_ORDER = Comparator.comparing(Appointment::getStartDate)
+            .thenComparing(Appointment::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final AppointmentRepository apptRepository;
+    private final DoctorRepository doctorRepository;
+    private final AppointmentSeriesRepository seriesRepository;
+    private final BookableResourceRepository resourceRepository;
+    private final ResourceBookingRepository bookingRepository;
+    private final SlotHolds slotHolds;
+    private final ShardRouter shardRouter;
+    private final CalendarSnapshots calendars;
+    private final DoctorStats stats;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate bookingTransaction;
+
+    public AppointmentService(AppointmentRepository apptRepository, DoctorRepository doctorRepository,
+                              AppointmentSeriesRepository seriesRepository, BookableResourceRepository resourceRepository,
+                              ResourceBookingRepository bookingRepository, SlotHolds slotHolds, ShardRouter shardRouter,
+                              CalendarSnapshots calendars, DoctorStats stats, PlatformTransactionManager transactionManager) {
+        this.apptRepository = apptRepository;
+        this.doctorRepository = doctorRepository;
+        this.seriesRepository = seriesRepository;
+        this.resourceRepository = resourceRepository;
+        this.bookingRepository = bookingRepository;
+        this.slotHolds = slotHolds;
+        this.shardRouter = shardRouter;
+        this.calendars = calendars;
+        this.stats = stats;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // La réservation doit finir avant l'expiration de ses prises de créneau (en secondes, au moins une)
+        this.transactionTemplate.setTimeout((int) Math.max(1, slotHolds.getTtlMillis() / 2000));
+        // En mode sharding, les salles et leurs réservations (ou le nouveau médecin d'un rendez-vous modifié) sont sur
+        // un autre shard que le rendez-vous : transaction séparée
+        this.bookingTransaction = new TransactionTemplate(transactionManager);
+        this.bookingTransaction.setPropagationBehavior(shardRouter.isSharded()
+                ? TransactionDefinition.PROPAGATION_REQUIRES_NEW : TransactionDefinition.PROPAGATION_REQUIRED);
+    }
+
+    // Rendez-vous du shard courant qui passent le filtre, avec les occurrences des séries sur [windowStart, windowEnd]
+    @Transactional(readOnly = true)
+    public List<Appointment> search(AppointmentFilter filter, Sort sort, Comparator<Appointment> order, Date windowStart, Date windowEnd) {
+        List<Appointment> occurrences;
+        try (TraceSpan span = TraceContext.span("series.occurrences")) {
+            occurrences = filter.getDoctor() != null
+                    ? seriesRepository.findOccurrencesForDoctor(filter.getDoctor(), windowStart, windowEnd)
+                    : seriesRepository.findOccurrences(windowStart, windowEnd);
+            span.rows(occurrences.size());
+        }
+        List<Appointment> appts;
+        try (TraceSpan span = TraceContext.span("query")) {
+            appts = apptRepository.findAll(filter, sort);
+            span.rows(appts.size());
+        }
+        return withOccurrences(appts, occurrences.stream().filter(filter::test).collect(Collectors.toList()), order);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Appointment> findById(Long id) {
+        return apptRepository.findById(id);
+    }
+
+    @Transactional(readOnly = true)
+    public long count() {
+        return apptRepository.count();
+    }
+
+    /**
+     * Réserve le rendez-vous, avec sa salle et son appareil éventuels ; vide en cas de conflit.
+     *
+     * Tout ou rien sur le médecin, la salle et l'appareil : le créneau est pris sur toutes les ressources
+     * (voir SlotHolds, seules les réservations qui se chevauchent s'attendent), puis la recherche du médecin,
+     * les vérifications et l'insertion se font dans une seule transaction, validée avant de rendre les prises.
+     * Pas de @Transactional ici : la transaction doit s'ouvrir sous les prises, pas avant.
+     */
+    public Optional<Appointment> book(Appointment appt) {
+        Map<ResourceKind, String> extras = extraResources(appt);
+        List<String> keys = new ArrayList<>();
+        keys.add(ResourceKind.DOCTOR.key(appt.getDoctor()));
+        extras.forEach((kind, name) -> keys.add(kind.key(name)));
+        // L'étape "holds" mesure l'attente des prises : elle s'arrête dès qu'on les a
+        TraceSpan holds = TraceContext.span("holds");
+        try {
+            return slotHolds.withHolds(keys, appt.getStartDate().getTime(), appt.getEndDate().getTime(), () -> {
+                holds.close();
+                // Créneau déjà pris d'après l'agenda en mémoire du médecin : refus sans ouvrir de transaction
+                try (TraceSpan span = TraceContext.span("calendar.check")) {
+                    if (calendars.conflicts(appt.getDoctor(), appt.getStartDate(), appt.getEndDate())) {
+                        return Optional.empty();
+                    }
+                }
+                return reserveInTransaction(appt, extras);
+            });
+        } finally {
+            holds.close();
+        }
+    }
+
+    private Optional<Appointment> reserveInTransaction(Appointment appt, Map<ResourceKind, String> extras) {
+        try {
+            // durée propre de l'étape : ouverture de la transaction et commit (avec le flush de la liste du médecin)
+            try (TraceSpan span = TraceContext.span("transaction")) {
+                return transactionTemplate.execute(status -> reserve(appt, extras, status));
+            }
+        } catch (RuntimeException e) {
+            // En mode sharding, les salles ont pu être réservées sur un autre shard avant l'échec : on les libère
+            if (shardRouter.isSharded() && !extras.isEmpty() && appt.getId() != null) {
+                onBookingShard(() -> bookingRepository.deleteByAppointmentId(appt.getId()));
+            }
+            throw e;
+        }
+    }
+
+    private Optional<Appointment> reserve(Appointment appt, Map<ResourceKind, String> extras, TransactionStatus status) {
+        Doctor doctor;
+        try (TraceSpan span = TraceContext.span("doctor.lookup")) {
+            doctor = doctorRepository.findByName(appt.getDoctor());
+        }
+        if (doctor == null) {
+            throw new DoctorNotFoundException(appt.getDoctor());
+        }
+        // La salle et l'appareil demandés doivent exister
+        if (!extras.isEmpty()) {
+            try (TraceSpan span = TraceContext.span("resources.check")) {
+                onBookingShard(() -> bookingTransaction.execute(s -> {
+                    for (Map.Entry<ResourceKind, String> extra : extras.entrySet()) {
+                        if (resourceRepository.findByKindAndName(extra.getKey(), extra.getValue()) == null) {
+                            throw new ResourceNotFoundException(extra.getKey(), extra.getValue());
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        try (TraceSpan span = TraceContext.span("overlap.scan")) {
+            // Conflits avec les rendez-vous existants du médecin (une recherche indexée au lieu de parcourir tous ses rendez-vous)
+            if (apptRepository.existsOverlapping(doctor.getName(), appt.getStartDate(), appt.getEndDate())) {
+                span.rows(1);
+                return Optional.empty();
+            }
+            // Et avec les séries du médecin : une seule recherche dans chaque série qui couvre ce créneau
+            List<AppointmentSeries> candidates = seriesRepository.findInWindowForDoctor(doctor.getName(), appt.getStartDate(), appt.getEndDate());
+            span.rows(candidates.size());
+            for (AppointmentSeries series : candidates) {
+                if (series.overlaps(appt.getStartDate(), appt.getEndDate())) {
+                    return Optional.empty();
+                }
+            }
+        }
+
+        Appointment savedAppointment;
+        try (TraceSpan span = TraceContext.span("save")) {
+            savedAppointment = apptRepository.save(appt);
+        }
+
+        // Puis la salle et l'appareil : si l'un d'eux est pris, rien n'est enregistré
+        if (!extras.isEmpty()) {
+            try (TraceSpan span = TraceContext.span("resources.book")) {
+                if (!bookResources(savedAppointment, extras)) {
+                    status.setRollbackOnly();
+                    return Optional.empty();
+                }
+            }
+        }
+
+        // Le médecin est géré par la transaction : l'ajout est enregistré au commit, sans recharger sa liste
+        doctor.getAppointments().add(savedAppointment);
+        try (TraceSpan span = TraceContext.span("stats")) {
+            stats.booked(savedAppointment);
+        }
+        return Optional.of(savedAppointment);
+    }
+
+    // Une recherche indexée par salle ou appareil, puis leur réservation
+    private boolean bookResources(Appointment appt, Map<ResourceKind, String> extras) {
+        Boolean booked = onBookingShard(() -> bookingTransaction.execute(status -> {
+            for (Map.Entry<ResourceKind, String> extra : extras.entrySet()) {
+                if (bookingRepository.existsOverlapping(extra.getKey().key(extra.getValue()), appt.getStartDate(), appt.getEndDate())) {
+                    return false;
+                }
+            }
+            extras.forEach((kind, name) -> bookingRepository.save(new ResourceBooking(kind.key(name), appt)));
+            return true;
+        }));
+        return Boolean.TRUE.equals(booked);
+    }
+
+    /**
+     * Enregistre la série ; vide si l'une de ses occurrences est en conflit.
+     *
+     * Comme pour un rendez-vous simple : le créneau de chaque occurrence est pris sur le médecin, puis la recherche
+     * du médecin, les vérifications et l'insertion se font dans une seule transaction, validée avant de rendre les prises.
+     * La série doit avoir ses bornes résolues (voir AppointmentSeries.resolveBounds).
+     */
+    public Optional<AppointmentSeries> bookSeries(AppointmentSeries series) {
+        List<Appointment> occurrences = series.occurrencesStartingBetween(series.getStartDate(), series.getLastEnd());
+        long[] starts = new long[occurrences.size()];
+        long[] ends = new long[occurrences.size()];
+        for (int i = 0; i < occurrences.size(); i++) {
+            starts[i] = occurrences.get(i).getStartDate().getTime();
+            ends[i] = occurrences.get(i).getEndDate().getTime();
+        }
+        TraceSpan holds = TraceContext.span("holds");
+        try {
+            return slotHolds.withHolds(Collections.singletonList(ResourceKind.DOCTOR.key(series.getDoctor())), starts, ends, () -> {
+                holds.close();
+                try (TraceSpan span = TraceContext.span("calendar.check")) {
+                    for (Appointment occurrence : occurrences) {
+                        if (calendars.conflicts(series.getDoctor(), occurrence.getStartDate(), occurrence.getEndDate())) {
+                            return Optional.empty();
+                        }
+                    }
+                }
+                try (TraceSpan span = TraceContext.span("transaction")) {
+                    return transactionTemplate.execute(status -> reserveSeries(series, occurrences));
+                }
+            });
+        } finally {
+            holds.close();
+        }
+    }
+
+    private Optional<AppointmentSeries> reserveSeries(AppointmentSeries series, List<Appointment> occurrences) {
+        Doctor doctor;
+        try (TraceSpan span = TraceContext.span("doctor.lookup")) {
+            doctor = doctorRepository.findByName(series.getDoctor());
+        }
+        if (doctor == null) {
+            throw new DoctorNotFoundException(series.getDoctor());
+        }
+
+        try (TraceSpan span = TraceContext.span("overlap.scan")) {
+            // Conflits avec les rendez-vous simples du médecin sur la durée de la série : un saut direct dans la série pour chacun
+            List<Appointment> existing = apptRepository.findOverlapping(doctor.getName(), series.getStartDate(), series.getLastEnd());
+            span.rows(existing.size());
+            for (Appointment appt : existing) {
+                if (series.overlaps(appt.getStartDate(), appt.getEndDate())) {
+                    return Optional.empty();
+                }
+            }
+            // Conflits avec ses autres séries, seulement sur la période où elles se recouvrent
+            for (AppointmentSeries other : seriesRepository.findInWindowForDoctor(doctor.getName(), series.getStartDate(), series.getLastEnd())) {
+                for (Appointment occurrence : occurrences) {
+                    if (other.overlaps(occurrence.getStartDate(), occurrence.getEndDate())) {
+                        return Optional.empty();
+                    }
+                }
+            }
+        }
+
+        AppointmentSeries saved;
+        try (TraceSpan span = TraceContext.span("save")) {
+            saved = seriesRepository.save(series);
+        }
+        try (TraceSpan span = TraceContext.span("stats")) {
+            stats.seriesBooked(saved);
+        }
+        return Optional.of(saved);
+    }
+
+    // Annule une occurrence de la série (start doit en être une) ; comptée comme un rendez-vous annulé
+    @Transactional
+    public AppointmentSeries cancelOccurrence(AppointmentSeries series, Date start) {
+        Appointment occurrence = series.occurrencesStartingBetween(start, start).get(0);
+        series.getExceptions().add(start);
+        AppointmentSeries saved = seriesRepository.save(series);
+        stats.cancelled(occurrence);
+        return saved;
+    }
+
+    @Transactional
+    public void deleteSeries(AppointmentSeries series) {
+        seriesRepository.delete(series);
+        stats.seriesDeleted(series);
+    }
+
+    /**
+     * Enregistre les modifications d'un rendez-vous (previous : médecin et dates avant modification) ; vide si le
+     * nouveau créneau est pris. Ses réservations de salle et d'appareil et ses statistiques le suivent.
+     *
+     * Comme book : le nouveau créneau est pris sur le médecin, la salle et l'appareil, puis les vérifications
+     * (le rendez-vous lui-même mis à part) et l'enregistrement se font dans une transaction validée avant de rendre les prises.
+     */
+    public Optional<Appointment> update(Appointment previous, Appointment appt) {
+        Map<ResourceKind, String> extras = extraResources(appt);
+        List<String> keys = new ArrayList<>();
+        keys.add(ResourceKind.DOCTOR.key(appt.getDoctor()));
+        extras.forEach((kind, name) -> keys.add(kind.key(name)));
+        return slotHolds.withHolds(keys, appt.getStartDate().getTime(), appt.getEndDate().getTime(),
+                () -> transactionTemplate.execute(status -> move(previous, appt, extras, status)));
+    }
+
+    private Optional<Appointment> move(Appointment previous, Appointment appt, Map<ResourceKind, String> extras, TransactionStatus status) {
+        // Rollback explicite : avec open-in-view, appt est géré par la session de la requête et la vérification le flushe
+        if (doctorConflicts(appt)) {
+            status.setRollbackOnly();
+            return Optional.empty();
+        }
+        Appointment saved = apptRepository.save(appt);
+        if (!rebookResources(saved, extras)) {
+            status.setRollbackOnly();
+            return Optional.empty();
+        }
+        stats.moved(previous, saved);
+        return Optional.of(saved);
+    }
+
+    // Les rendez-vous et les séries du médecin (peut-être un autre, sur un autre shard) qui chevauchent le nouveau créneau
+    private boolean doctorConflicts(Appointment appt) {
+        Boolean conflict = shardRouter.onDoctor(appt.getDoctor(), () -> bookingTransaction.execute(status -> {
+            if (apptRepository.existsOverlappingOther(appt.getDoctor(), appt.getStartDate(), appt.getEndDate(), appt.getId())) {
+                return true;
+            }
+            for (AppointmentSeries series : seriesRepository.findInWindowForDoctor(appt.getDoctor(), appt.getStartDate(), appt.getEndDate())) {
+                if (series.overlaps(appt.getStartDate(), appt.getEndDate())) {
+                    return true;
+                }
+            }
+            return false;
+        }));
+        return Boolean.TRUE.equals(conflict);
+    }
+
+    // Remplace les réservations de salle et d'appareil du rendez-vous ; rien ne change si l'une d'elles est prise
+    private boolean rebookResources(Appointment appt, Map<ResourceKind, String> extras) {
+        Boolean booked = onBookingShard(() -> bookingTransaction.execute(status -> {
+            bookingRepository.deleteByAppointmentId(appt.getId());
+            for (Map.Entry<ResourceKind, String> extra : extras.entrySet()) {
+                if (bookingRepository.existsOverlapping(extra.getKey().key(extra.getValue()), appt.getStartDate(), appt.getEndDate())) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+            }
+            extras.forEach((kind, name) -> bookingRepository.save(new ResourceBooking(kind.key(name), appt)));
+            return true;
+        }));
+        return Boolean.TRUE.equals(booked);
+    }
+
+    @Transactional
+    public void delete(Appointment appt) {
+        remove(appt);
+        stats.deleted(appt);
+    }
+
+    // Comme delete, mais compté comme une annulation dans les statistiques du médecin
+    @Transactional
+    public void cancel(Appointment appt) {
+        remove(appt);
+        stats.cancelled(appt);
+    }
+
+    private void remove(Appointment appt) {
+        onBookingShard(() -> bookingTransaction.execute(status -> bookingRepository.deleteByAppointmentId(appt.getId())));
+        apptRepository.delete(appt);
+    }
+
+    // Vide le shard courant (les réservations de salles ne sont que sur le premier, les autres n'en ont pas)
+    @Transactional
+    public void deleteAll() {
+        bookingRepository.deleteAllInBatch();
+        apptRepository.deleteAll();
+        stats.cleared();
+    }
+
+    // Ajoute les occurrences (non triées) à une liste de rendez-vous triée ; utilisé aussi par le listing d'un médecin
+    public static List<Appointment> withOccurrences(List<Appointment> appts, List<Appointment> occurrences) {
+        return withOccurrences(appts, occurrences, START_DATE_ORDER);
+    }
+
+    public static List<Appointment> withOccurrences(List<Appointment> appts, List<Appointment> occurrences, Comparator<Appointment> order) {
+        if (occurrences.isEmpty()) {
+            return appts;
+        }
+        List<Appointment> merged = new ArrayList<>(appts);
+        merged.addAll(occurrences);
+        merged.sort(order);
+        return merged;
+    }
+
+    // Les salles et les appareils sont partagés par tous les médecins : en mode sharding, leurs réservations vivent
+    // toutes sur le premier shard, sinon deux médecins de shards différents pourraient prendre la même salle
+    private <T> T onBookingShard(Supplier<T> work) {
+        return shardRouter.onShard(ShardRouter.DEFAULT_SHARD, work);
+    }
+
+    // Ressources réservées en plus du médecin
+    private static Map<ResourceKind, String> extraResources(Appointment appt) {
+        Map<ResourceKind, String> extras = new EnumMap<>(ResourceKind.class);
+        if (appt.getRoom() != null) {
+            extras.put(ResourceKind.ROOM, appt.getRoom());
+        }
+        if (appt.getDevice() != null) {
+            extras.put(ResourceKind.DEVICE, appt.getDevice());
+        }
+        return extras;
+    }
+}
@@ -0,0 +1,272 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSeries;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.model.TimeSlot;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Agendas des médecins gardés en mémoire (un {@link DoctorCalendar} par médecin), d'aujourd'hui jusqu'à window-days.
+ *
+ * Chargés au démarrage (voir LoadDatabase), puis tenus à jour par les contrôleurs après chaque écriture validée :
+ * le listing d'un médecin sur une fenêtre à venir et ses créneaux libres ne passent plus par la base,
+ * et une réservation qui tombe sur un créneau pris est refusée sans requête.
+ * La base reste la référence : une réservation acceptée ici est toujours revérifiée dans sa transaction.
+ *
+ * Lecture sans verrou (un champ volatile par médecin) ; les écritures d'un même médecin passent par un verrou
+ * qui ne bloque que lui. Un agenda est rechargé quand la fenêtre demandée dépasse la sienne (une fois par jour)
+ * ou après un DELETE /api/appointments.
+ * Les écritures d'une autre instance de l'application ne sont vues qu'en mode cluster : chaque changement est signalé
+ * (onChange) et diffusé aux autres instances, qui invalident l'agenda du médecin (voir ClusterCoordinator).
+ */
+@Component
+public class CalendarSnapshots {
+    private final ConcurrentMap<String, Holder> calendars = new ConcurrentHashMap<>();
+    private final DoctorService doctorService;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate primaryTransaction;
+    private final boolean enabled;
+    private final int windowDays;
+    private volatile boolean warm;
+    // Appelé après chaque changement d'un agenda (médecin null : tous les médecins), avec le rendez-vous touché
+    // (null pour une série, un médecin supprimé ou tous les rendez-vous)
+    private volatile BiConsumer<String, Long> changeListener = (doctor, appointment) -> { };
+
+    public CalendarSnapshots(DoctorService doctorService, ShardRouter shardRouter, PlatformTransactionManager transactionManager,
+                             @Value("${appointment.calendar.enabled:true}") boolean enabled,
+                             @Value("${appointment.calendar.window-days:365}") int windowDays) {
+        this.doctorService = doctorService;
+        this.shardRouter = shardRouter;
+        // Pas en readOnly : en mode replication, un réplica en retard donnerait un agenda auquel il manque les dernières écritures
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.windowDays = windowDays;
+    }
+
+    // Charge l'agenda de tous les médecins, shard par shard
+    public void warm() {
+        if (!enabled) {
+            return;
+        }
+        for (String shard : shardRouter.getShards()) {
+            for (Doctor doctor : shardRouter.onShard(shard, doctorService::findAll)) {
+                Holder holder = calendars.computeIfAbsent(doctor.getName(), name -> new Holder());
+                synchronized (holder) {
+                    holder.calendar = load(doctor.getName());
+                }
+            }
+        }
+        warm = true;
+    }
+
+    // Comme warm(), avec les rendez-vous de chaque médecin déjà connus (rejeu du journal) : seules les séries sont lues en base
+    public void warm(Map<String, List<Appointment>> appointments) {
+        if (!enabled) {
+            return;
+        }
+        Date from = new Date(today());
+        Date to = new Date(coveredUntil());
+        for (String shard : shardRouter.getShards()) {
+            for (Doctor doctor : shardRouter.onShard(shard, doctorService::findAll)) {
+                String name = doctor.getName();
+                List<Appointment> appts = appointments.getOrDefault(name, Collections.emptyList());
+                Holder holder = calendars.computeIfAbsent(name, key -> new Holder());
+                synchronized (holder) {
+                    holder.calendar = shardRouter.onShard(shard, () -> primaryTransaction.execute(status ->
+                            doctorService.calendar(name, from, to, appts)));
+                }
+            }
+        }
+        warm = true;
+    }
+
+    // Déjà chargés au démarrage (depuis la base ou le journal)
+    public boolean isWarm() {
+        return warm;
+    }
+
+    // Médecin connu (créé ici ou trouvé en base) : son agenda sera chargé à la première lecture
+    public void track(String doctor) {
+        if (enabled) {
+            calendars.computeIfAbsent(doctor, name -> new Holder());
+        }
+    }
+
+    public void forget(String doctor) {
+        calendars.remove(doctor);
+        changeListener.accept(doctor, null);
+    }
+
+    // Tous les rendez-vous ont été supprimés (les séries restent) : chaque agenda sera relu
+    public void invalidateAll() {
+        invalidate(null);
+        changeListener.accept(null, null);
+    }
+
+    // Agenda du médecin (null : de tous) relu en base à la prochaine lecture, sans signaler de changement :
+    // c'est ce que fait une instance qui apprend une écriture faite par une autre
+    public void invalidate(String doctor) {
+        for (Holder holder : doctor != null ? Collections.singleton(calendars.get(doctor)) : calendars.values()) {
+            if (holder != null) {
+                synchronized (holder) {
+                    holder.calendar = null;
+                }
+            }
+        }
+    }
+
+    public void onChange(BiConsumer<String, Long> listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Rendez-vous et occurrences du médecin qui commencent entre from et to, servis depuis la mémoire ;
+     * null si la fenêtre n'est pas couverte (dans le passé, trop loin) ou le médecin inconnu ici : on passe alors par la base.
+     */
+    public List<Appointment> appointments(String doctor, Date from, Date to) {
+        DoctorCalendar calendar = current(doctor, from.getTime(), to.getTime());
+        return calendar != null ? calendar.between(doctor, from.getTime(), to.getTime()) : null;
+    }
+
+    // Créneaux libres depuis la mémoire, null comme pour appointments()
+    public List<TimeSlot> freeSlots(String doctor, Date from, Date to) {
+        DoctorCalendar calendar = current(doctor, from.getTime(), to.getTime());
+        return calendar != null ? calendar.freeSlots(from.getTime(), to.getTime()) : null;
+    }
+
+    // Le créneau est-il déjà pris d'après l'agenda en mémoire ? (false si l'agenda n'est pas chargé : la base tranchera)
+    public boolean conflicts(String doctor, Date start, Date end) {
+        Holder holder = calendars.get(doctor);
+        DoctorCalendar calendar = holder != null ? holder.calendar : null;
+        return calendar != null && calendar.covers(start.getTime(), end.getTime())
+                && calendar.overlaps(start.getTime(), end.getTime());
+    }
+
+    public void booked(Appointment appt) {
+        update(appt.getDoctor(), appt.getId(), calendar -> calendar.with(appt));
+    }
+
+    // Un rendez-vous modifié peut avoir changé de médecin
+    public void updated(String previousDoctor, Appointment appt) {
+        if (!previousDoctor.equals(appt.getDoctor())) {
+            removed(previousDoctor, appt.getId());
+        }
+        booked(appt);
+    }
+
+    public void removed(String doctor, long id) {
+        update(doctor, id, calendar -> calendar.without(id));
+    }
+
+    public void seriesSaved(AppointmentSeries series) {
+        update(series.getDoctor(), null, calendar -> calendar.withSeries(series.getId(), series.occurrencesStartingBetween(
+                new Date(calendar.getWindowStart()), new Date(calendar.getCoveredUntil()))));
+    }
+
+    public void occurrenceCancelled(AppointmentSeries series, Date start) {
+        update(series.getDoctor(), null, calendar -> calendar.withoutOccurrence(series.getId(), start.getTime()));
+    }
+
+    public void seriesDeleted(AppointmentSeries series) {
+        update(series.getDoctor(), null, calendar -> calendar.withoutSeries(series.getId()));
+    }
+
+    // Taille et mémoire de chaque agenda chargé (GET /api/admin/calendars)
+    public Map<String, Object> stats() {
+        Map<String, Object> doctors = new TreeMap<>();
+        long entries = 0, bytes = 0;
+        for (Map.Entry<String, Holder> entry : calendars.entrySet()) {
+            DoctorCalendar calendar = entry.getValue().calendar;
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("loaded", calendar != null);
+            if (calendar != null) {
+                values.put("entries", calendar.size());
+                values.put("bytes", calendar.memoryBytes());
+                values.put("windowStart", new Date(calendar.getWindowStart()));
+                values.put("coveredUntil", new Date(calendar.getCoveredUntil()));
+                entries += calendar.size();
+                bytes += calendar.memoryBytes();
+            }
+            doctors.put(entry.getKey(), values);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("enabled", enabled);
+        body.put("windowDays", windowDays);
+        body.put("entries", entries);
+        body.put("bytes", bytes);
+        body.put("doctors", doctors);
+        return body;
+    }
+
+    private DoctorCalendar current(String doctor, long from, long to) {
+        Holder holder = calendars.get(doctor);
+        if (holder == null) {
+            return null;
+        }
+        DoctorCalendar calendar = holder.calendar;
+        if (calendar != null && calendar.covers(from, to)) {
+            return calendar;
+        }
+        // Rechargement seulement si un agenda neuf couvrirait la demande (une fenêtre dans le passé part en base)
+        if (from < today() || to > coveredUntil()) {
+            return null;
+        }
+        synchronized (holder) {
+            if (holder.calendar == null || !holder.calendar.covers(from, to)) {
+                holder.calendar = load(doctor);
+            }
+            return holder.calendar;
+        }
+    }
+
+    private void update(String doctor, Long appointment, UnaryOperator<DoctorCalendar> change) {
+        Holder holder = calendars.get(doctor);
+        if (holder != null) {
+            synchronized (holder) {
+                if (holder.calendar != null) {
+                    holder.calendar = change.apply(holder.calendar);
+                }
+            }
+        }
+        changeListener.accept(doctor, appointment);
+    }
+
+    private DoctorCalendar load(String doctor) {
+        Date from = new Date(today());
+        Date to = new Date(coveredUntil());
+        return shardRouter.onDoctor(doctor, () -> primaryTransaction.execute(status -> doctorService.calendar(doctor, from, to)));
+    }
+
+    // Fenêtre d'un agenda chargé maintenant : de minuit aujourd'hui à window-days plus un jour,
+    // pour couvrir l'horizon par défaut des listings jusqu'au prochain rechargement
+    private long today() {
+        return LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private long coveredUntil() {
+        return today() + TimeUnit.DAYS.toMillis(windowDays + 1L);
+    }
+
+    private static final class Holder {
+        private volatile DoctorCalendar calendar;
+    }
+}
@@ -0,0 +1,293 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.TimeSlot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Agenda d'un médecin en mémoire sur une fenêtre [windowStart, coveredUntil] : ses rendez-vous et les occurrences
+ * de ses séries, triés par date de début, rangés colonne par colonne dans des tableaux (primitifs pour les dates et les ids).
+ *
+ * L'objet est immuable : une écriture (with, without...) construit une copie, qui remplace l'ancienne d'un seul coup
+ * (voir {@link CalendarSnapshots}). Les lecteurs n'ont donc jamais besoin de verrou.
+ * Une occurrence de série n'a pas d'id : on range -seriesId à la place.
+ */
+public final class DoctorCalendar {
+    // Même ordre que le listing en base : date de début, puis les rendez-vous simples par id, puis les occurrences
+    private static final Comparator<Appointment> ORDER = Comparator.comparingLong((Appointment a) -> a.getStartDate().getTime())
+            .thenComparing(Appointment::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final long windowStart;
+    private final long coveredUntil;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] ids;
+    // Plus grande fin parmi les entrées 0..i : la recherche de chevauchement reste une dichotomie
+    private final long[] maxEnds;
+    private final String[] patients;
+    private final String[] rooms;
+    private final String[] devices;
+
+    private DoctorCalendar(long windowStart, long coveredUntil, long[] starts, long[] ends, long[] ids,
+                           String[] patients, String[] rooms, String[] devices) {
+        this.windowStart = windowStart;
+        this.coveredUntil = coveredUntil;
+        this.starts = starts;
+        this.ends = ends;
+        this.ids = ids;
+        this.patients = patients;
+        this.rooms = rooms;
+        this.devices = devices;
+        this.maxEnds = new long[ends.length];
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < ends.length; i++) {
+            max = Math.max(max, ends[i]);
+            maxEnds[i] = max;
+        }
+    }
+
+    /**
+     * Agenda construit à partir des rendez-vous et des occurrences lus en base ;
+     * ceux qui ne touchent pas la fenêtre sont ignorés.
+     */
+    public static DoctorCalendar of(long windowStart, long coveredUntil, Collection<Appointment> appts) {
+        List<Appointment> sorted = new ArrayList<>();
+        for (Appointment appt : appts) {
+            if (inWindow(appt, windowStart, coveredUntil)) {
+                sorted.add(appt);
+            }
+        }
+        sorted.sort(ORDER);
+        int size = sorted.size();
+        long[] starts = new long[size], ends = new long[size], ids = new long[size];
+        String[] patients = new String[size], rooms = new String[size], devices = new String[size];
+        for (int i = 0; i < size; i++) {
+            Appointment appt = sorted.get(i);
+            starts[i] = appt.getStartDate().getTime();
+            ends[i] = appt.getEndDate().getTime();
+            ids[i] = key(appt);
+            patients[i] = appt.getPatient();
+            rooms[i] = appt.getRoom();
+            devices[i] = appt.getDevice();
+        }
+        return new DoctorCalendar(windowStart, coveredUntil, starts, ends, ids, patients, rooms, devices);
+    }
+
+    public boolean covers(long from, long to) {
+        return from >= windowStart && to <= coveredUntil;
+    }
+
+    // Ajoute le rendez-vous (ou remplace celui de même id) ; s'il sort de la fenêtre, il est seulement retiré
+    public DoctorCalendar with(Appointment appt) {
+        long id = key(appt);
+        IntPredicate keep = id > 0 ? i -> ids[i] != id : i -> true;
+        return copy(keep, inWindow(appt, windowStart, coveredUntil) ? appt : null);
+    }
+
+    // Remplace toutes les occurrences d'une série (reconstruction complète plutôt qu'une copie par occurrence)
+    public DoctorCalendar withSeries(long seriesId, Collection<Appointment> occurrences) {
+        // toutes les entrées, y compris celles à cheval sur windowStart
+        List<Appointment> appts = withoutSeries(seriesId).between(null, Long.MIN_VALUE + 1, coveredUntil);
+        appts.addAll(occurrences);
+        return of(windowStart, coveredUntil, appts);
+    }
+
+    public DoctorCalendar without(long id) {
+        return indexOf(i -> ids[i] == id) < 0 ? this : copy(i -> ids[i] != id, null);
+    }
+
+    public DoctorCalendar withoutSeries(long seriesId) {
+        return without(-seriesId);
+    }
+
+    public DoctorCalendar withoutOccurrence(long seriesId, long start) {
+        IntPredicate match = i -> ids[i] == -seriesId && starts[i] == start;
+        return indexOf(match) < 0 ? this : copy(match.negate(), null);
+    }
+
+    // Un rendez-vous ou une occurrence chevauche-t-il [start, end] ? (bornes incluses, comme existsOverlapping)
+    public boolean overlaps(long start, long end) {
+        int candidates = startingUpTo(end);
+        return candidates > 0 && maxEnds[candidates - 1] >= start;
+    }
+
+    // Rendez-vous et occurrences qui commencent entre from et to (inclus), dans l'ordre du listing
+    public List<Appointment> between(String doctor, long from, long to) {
+        // un rendez-vous à cheval sur windowStart est dans l'agenda (il compte pour les conflits) mais commence avant
+        List<Appointment> appts = new ArrayList<>();
+        for (int i = startingUpTo(from - 1); i < starts.length && starts[i] <= to; i++) {
+            Appointment appt = new Appointment(doctor, new Date(starts[i]), new Date(ends[i]), patients[i]);
+            if (ids[i] > 0) {
+                appt.setId(ids[i]);
+            } else {
+                appt.setSeriesId(-ids[i]);
+            }
+            appt.setRoom(rooms[i]);
+            appt.setDevice(devices[i]);
+            appts.add(appt);
+        }
+        return appts;
+    }
+
+    // Trous de l'agenda entre from et to
+    public List<TimeSlot> freeSlots(long from, long to) {
+        List<TimeSlot> slots = new ArrayList<>();
+        long cursor = from;
+        for (int i = firstEndingFrom(from); i < starts.length && starts[i] <= to && cursor < to; i++) {
+            if (starts[i] > cursor) {
+                slots.add(new TimeSlot(new Date(cursor), new Date(starts[i])));
+            }
+            cursor = Math.max(cursor, ends[i]);
+        }
+        if (cursor < to) {
+            slots.add(new TimeSlot(new Date(cursor), new Date(to)));
+        }
+        return slots;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    public long getCoveredUntil() {
+        return coveredUntil;
+    }
+
+    /**
+     * Place occupée en mémoire, estimée pour une JVM 64 bits à références compressées :
+     * les tableaux, plus chaque chaîne comptée une fois par entrée (en-têtes de String et de son byte[] Latin-1).
+     */
+    public long memoryBytes() {
+        long bytes = 48 + 4 * array(8) + 3 * array(4);
+        for (int i = 0; i < starts.length; i++) {
+            bytes += string(patients[i]) + string(rooms[i]) + string(devices[i]);
+        }
+        return bytes;
+    }
+
+    private long array(int elementBytes) {
+        return align(16 + (long) elementBytes * starts.length);
+    }
+
+    private static long string(String value) {
+        return value == null ? 0 : 24 + align(16 + value.length());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    // Copie sans les entrées refusées par keep, avec added inséré à sa place (s'il n'est pas null)
+    private DoctorCalendar copy(IntPredicate keep, Appointment added) {
+        int kept = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (keep.test(i)) {
+                kept++;
+            }
+        }
+        int size = kept + (added != null ? 1 : 0);
+        long[] newStarts = new long[size], newEnds = new long[size], newIds = new long[size];
+        String[] newPatients = new String[size], newRooms = new String[size], newDevices = new String[size];
+        long addedStart = added != null ? added.getStartDate().getTime() : 0;
+        long addedKey = added != null ? key(added) : 0;
+        boolean pending = added != null;
+        int j = 0;
+        for (int i = 0; i < starts.length; i++) {
+            if (!keep.test(i)) {
+                continue;
+            }
+            if (pending && before(addedStart, addedKey, starts[i], ids[i])) {
+                newStarts[j] = addedStart;
+                newEnds[j] = added.getEndDate().getTime();
+                newIds[j] = addedKey;
+                newPatients[j] = added.getPatient();
+                newRooms[j] = added.getRoom();
+                newDevices[j] = added.getDevice();
+                j++;
+                pending = false;
+            }
+            newStarts[j] = starts[i];
+            newEnds[j] = ends[i];
+            newIds[j] = ids[i];
+            newPatients[j] = patients[i];
+            newRooms[j] = rooms[i];
+            newDevices[j] = devices[i];
+            j++;
+        }
+        if (pending) {
+            newStarts[j] = addedStart;
+            newEnds[j] = added.getEndDate().getTime();
+            newIds[j] = addedKey;
+            newPatients[j] = added.getPatient();
+            newRooms[j] = added.getRoom();
+            newDevices[j] = added.getDevice();
+        }
+        return new DoctorCalendar(windowStart, coveredUntil, newStarts, newEnds, newIds, newPatients, newRooms, newDevices);
+    }
+
+    // Ordre de ORDER sur les colonnes : les ids négatifs (occurrences) après les rendez-vous simples
+    private static boolean before(long start, long key, long otherStart, long otherKey) {
+        if (start != otherStart) {
+            return start < otherStart;
+        }
+        if ((key < 0) != (otherKey < 0)) {
+            return key > 0;
+        }
+        return key < otherKey;
+    }
+
+    // Nombre d'entrées qui commencent au plus tard à time
+    private int startingUpTo(long time) {
+        int low = 0, high = starts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Première entrée qui se termine à from ou après (maxEnds est croissant)
+    private int firstEndingFrom(long from) {
+        int low = 0, high = maxEnds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (maxEnds[middle] < from) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int indexOf(IntPredicate match) {
+        for (int i = 0; i < starts.length; i++) {
+            if (match.test(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long key(Appointment appt) {
+        return appt.getId() != null ? appt.getId() : -appt.getSeriesId();
+    }
+
+    private static boolean inWindow(Appointment appt, long windowStart, long coveredUntil) {
+        return appt.getEndDate().getTime() >= windowStart && appt.getStartDate().getTime() <= coveredUntil;
+    }
+}
@@ -0,0 +1,113 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import fr.univlr.info.AppointmentAPIV1.controller.DoctorNotFoundException;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentSeriesRepository;
+import fr.univlr.info.AppointmentAPIV1.store.DoctorRepository;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Accès aux médecins pour les contrôleurs, une transaction par méthode (readOnly pour les lectures),
+ * sur le shard choisi par le contrôleur comme pour {@link AppointmentService}.
+ */
+@Service
+public class DoctorService {
+    private static final Sort BY_ID = Sort.by("id");
+    private static final Sort BY_START = Sort.by("startDate", "id");
+
+    private final DoctorRepository doctorRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final AppointmentSeriesRepository seriesRepository;
+    private final DoctorStats stats;
+
+    public DoctorService(DoctorRepository doctorRepository, AppointmentRepository appointmentRepository,
+                         AppointmentSeriesRepository seriesRepository, DoctorStats stats) {
+        this.doctorRepository = doctorRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.seriesRepository = seriesRepository;
+        this.stats = stats;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Doctor> findAll() {
+        return doctorRepository.findAll(BY_ID);
+    }
+
+    // Sans exception pour un médecin inconnu : le contrôleur renvoie directement le 404
+    @Transactional(readOnly = true)
+    public Optional<Doctor> lookup(String name) {
+        return Optional.ofNullable(doctorRepository.findByName(name));
+    }
+
+    @Transactional(readOnly = true)
+    public Doctor find(String name) {
+        Doctor doctor = doctorRepository.findByName(name);
+        // L'exception sera gérée au niveau de la classe GlobalExceptionHandler
+        if (doctor == null) {
+            throw new DoctorNotFoundException(name);
+        }
+        return doctor;
+    }
+
+    // Les rendez-vous simples sont tous renvoyés ; les séries ne sont déroulées que sur [from, to]
+    @Transactional(readOnly = true)
+    public List<Appointment> findAppointments(String name, Date from, Date to) {
+        find(name);
+        return AppointmentService.withOccurrences(appointmentRepository.findByDoctor(name),
+                seriesRepository.findOccurrencesForDoctor(name, from, to));
+    }
+
+    // Avec une fenêtre demandée : les rendez-vous simples sont bornés eux aussi (début entre from et to)
+    @Transactional(readOnly = true)
+    public List<Appointment> findAppointmentsStartingBetween(String name, Date from, Date to) {
+        find(name);
+        return AppointmentService.withOccurrences(appointmentRepository.findByDoctorAndStartDateBetween(name, from, to, BY_START),
+                seriesRepository.findOccurrencesForDoctor(name, from, to));
+    }
+
+    // Agenda du médecin sur [from, to], lu en base (voir CalendarSnapshots pour la version gardée en mémoire)
+    @Transactional(readOnly = true)
+    public DoctorCalendar calendar(String name, Date from, Date to) {
+        find(name);
+        List<Appointment> appts = new ArrayList<>(appointmentRepository.findOverlapping(name, from, to));
+        appts.addAll(seriesRepository.findOccurrencesForDoctor(name, from, to));
+        return DoctorCalendar.of(from.getTime(), to.getTime(), appts);
+    }
+
+    // Agenda à partir de rendez-vous déjà connus (rejeu du journal) : seules les séries sont lues en base
+    @Transactional(readOnly = true)
+    public DoctorCalendar calendar(String name, Date from, Date to, List<Appointment> appts) {
+        List<Appointment> entries = new ArrayList<>(appts);
+        entries.addAll(seriesRepository.findOccurrencesForDoctor(name, from, to));
+        return DoctorCalendar.of(from.getTime(), to.getTime(), entries);
+    }
+
+    @Transactional
+    public Doctor create(Doctor doctor) {
+        return doctorRepository.save(doctor);
+    }
+
+    /**
+     * Supprime le médecin s'il n'a plus de rendez-vous ni de série en cours (false sinon),
+     * dans la même transaction que ces vérifications, avec ses statistiques.
+     */
+    @Transactional
+    public boolean delete(String name) {
+        Doctor doctor = find(name);
+        if (appointmentRepository.existsByDoctor(name) || seriesRepository.existsByDoctorAndLastEndAfter(name, new Date())) {
+            return false;
+        }
+        doctorRepository.delete(doctor);
+        stats.forget(name);
+        return true;
+    }
+}
@@ -0,0 +1,290 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSeries;
+import fr.univlr.info.AppointmentAPIV1.model.DoctorDayStats;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentSeriesRepository;
+import fr.univlr.info.AppointmentAPIV1.store.DoctorStatsRepository;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.Savepoint;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistiques d'activité par médecin et par jour (table doctor_day_stats, voir {@link DoctorDayStats}).
+ *
+ * Elles sont tenues à jour dans la transaction qui réserve, annule ou supprime le rendez-vous (propagation MANDATORY) :
+ * une instruction update qui ajoute les écarts à la ligne du jour, ou son insertion si elle n'existe pas encore.
+ * Deux premières réservations concurrentes du même jour se heurtent alors à la contrainte unique (doctor, day_start) :
+ * l'insertion se fait sous un point de sauvegarde, et celle qui a perdu n'y revient que pour refaire l'update,
+ * sur la ligne que l'autre vient de créer. Le reste de sa transaction n'est pas touché.
+ *
+ * Les lectures (GET /api/doctors/{name}/stats) ne lisent que ces lignes : une par jour, regroupées par semaine
+ * si besoin. Les occurrences des séries comptent comme des rendez-vous : toutes à la création de la série,
+ * une par une quand elles sont annulées, le reste quand la série est supprimée.
+ */
+@Service
+public class DoctorStats {
+    public enum Granularity {DAY, WEEK}
+
+    private static final Logger log = LoggerFactory.getLogger(DoctorStats.class);
+    private static final String SELECT_ALL = "SELECT doctor, start_date, end_date FROM appointment";
+    private static final String INSERT = "INSERT INTO doctor_day_stats (id, doctor, day_start, appointments, booked_minutes, "
+            + "cancellations, cancelled_minutes) VALUES (NEXT VALUE FOR hibernate_sequence, ?, ?, ?, ?, 0, 0)";
+    private static final String INSERT_DAY = "INSERT INTO doctor_day_stats (id, doctor, day_start, appointments, booked_minutes, "
+            + "cancellations, cancelled_minutes) VALUES (NEXT VALUE FOR hibernate_sequence, ?, ?, ?, ?, ?, ?)";
+    private static final String UNIQUE_DAY = "UK_DOCTOR_DAY_STATS";
+
+    private final DoctorStatsRepository repository;
+    private final AppointmentSeriesRepository seriesRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate separateTransaction;
+    private final TransactionTemplate primaryTransaction;
+    private final JdbcTemplate jdbc;
+
+    public DoctorStats(DoctorStatsRepository repository, AppointmentSeriesRepository seriesRepository, ShardRouter shardRouter,
+                       PlatformTransactionManager transactionManager, DataSource dataSource) {
+        this.repository = repository;
+        this.seriesRepository = seriesRepository;
+        this.shardRouter = shardRouter;
+        this.separateTransaction = new TransactionTemplate(transactionManager);
+        this.separateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void booked(Appointment appt) {
+        add(appt.getDoctor(), appt.getStartDate().getTime(), 1, minutes(appt), 0, 0);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void cancelled(Appointment appt) {
+        add(appt.getDoctor(), appt.getStartDate().getTime(), -1, -minutes(appt), 1, minutes(appt));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleted(Appointment appt) {
+        add(appt.getDoctor(), appt.getStartDate().getTime(), -1, -minutes(appt), 0, 0);
+    }
+
+    /**
+     * Rendez-vous modifié (previous : ses anciennes valeurs). Si le nouveau médecin vit sur un autre shard,
+     * sa ligne y est mise à jour dans une transaction à part, comme le rendez-vous qui y est déplacé ensuite.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void moved(Appointment previous, Appointment appt) {
+        add(previous.getDoctor(), previous.getStartDate().getTime(), -1, -minutes(previous), 0, 0);
+        if (shardRouter.shardFor(previous.getDoctor()).equals(shardRouter.shardFor(appt.getDoctor()))) {
+            booked(appt);
+        } else {
+            shardRouter.onDoctor(appt.getDoctor(), () -> separateTransaction.execute(status -> {
+                booked(appt);
+                return null;
+            }));
+        }
+    }
+
+    // Série enregistrée : chacune de ses occurrences compte comme une réservation
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void seriesBooked(AppointmentSeries series) {
+        occurrences(series).days.forEach((day, counts) -> add(series.getDoctor(), day, counts[0], counts[1], 0, 0));
+    }
+
+    // Série supprimée : ses occurrences restantes (celles annulées l'ont déjà été) sont retirées
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void seriesDeleted(AppointmentSeries series) {
+        occurrences(series).days.forEach((day, counts) -> add(series.getDoctor(), day, -counts[0], -counts[1], 0, 0));
+    }
+
+    // Rendez-vous insérés en masse pour un médecin (import), dans la transaction courante
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void imported(String doctor, Tally tally) {
+        tally.days.forEach((day, counts) -> {
+            if (repository.add(doctor, day, counts[0], counts[1], 0, 0) == 0) {
+                jdbc.update(INSERT, doctor, Date.valueOf(day), counts[0], counts[1]);
+            }
+        });
+    }
+
+    // Table des rendez-vous vidée (shard courant)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void cleared() {
+        repository.deleteAllInBatch();
+    }
+
+    // Médecin supprimé : son historique part avec lui (shard courant)
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void forget(String doctor) {
+        repository.deleteByDoctor(doctor);
+    }
+
+    /**
+     * Recalcule toutes les lignes depuis la table des rendez-vous et les occurrences des séries, shard par shard
+     * (après une reconstruction de la table hors de l'API, depuis le journal). Les annulations passées sont perdues :
+     * elles ne sont plus en table.
+     */
+    public void rebuild() {
+        long begin = System.nanoTime();
+        int[] rows = {0};
+        for (String shard : shardRouter.getShards()) {
+            shardRouter.onShard(shard, () -> primaryTransaction.execute(status -> {
+                Map<String, Tally> byDoctor = new HashMap<>();
+                jdbc.query(SELECT_ALL, rs -> {
+                    byDoctor.computeIfAbsent(rs.getString(1), d -> new Tally())
+                            .add(rs.getTimestamp(2).getTime(), rs.getTimestamp(3).getTime());
+                });
+                for (AppointmentSeries series : seriesRepository.findAll()) {
+                    Tally tally = byDoctor.computeIfAbsent(series.getDoctor(), d -> new Tally());
+                    for (Appointment occurrence : series.occurrencesStartingBetween(series.getStartDate(), series.getLastEnd())) {
+                        tally.add(occurrence.getStartDate().getTime(), occurrence.getEndDate().getTime());
+                    }
+                }
+                repository.deleteAllInBatch();
+                List<Object[]> inserts = new ArrayList<>();
+                byDoctor.forEach((doctor, tally) -> tally.days.forEach((day, counts) ->
+                        inserts.add(new Object[]{doctor, Date.valueOf(day), counts[0], counts[1]})));
+                jdbc.batchUpdate(INSERT, inserts);
+                rows[0] += inserts.size();
+                return null;
+            }));
+        }
+        log.info("Doctor stats rebuilt: {} day(s) in {} ms", rows[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+    }
+
+    // Jours (ou semaines, du lundi) de from à to inclus, y compris ceux sans activité
+    @Transactional(readOnly = true)
+    public List<Bucket> read(String doctor, LocalDate from, LocalDate to, Granularity granularity) {
+        LocalDate first = granularity == Granularity.WEEK ? from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : from;
+        TreeMap<LocalDate, Bucket> buckets = new TreeMap<>();
+        for (LocalDate day = first; !day.isAfter(to); day = granularity == Granularity.WEEK ? day.plusWeeks(1) : day.plusDays(1)) {
+            buckets.put(day, new Bucket(day));
+        }
+        for (DoctorDayStats stats : repository.findByDoctorAndDayBetweenOrderByDay(doctor, first, to)) {
+            buckets.floorEntry(stats.getDay()).getValue().add(stats);
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    private void add(String doctor, long start, long appointments, long bookedMinutes, long cancellations, long cancelledMinutes) {
+        add(doctor, dayOf(start), appointments, bookedMinutes, cancellations, cancelledMinutes);
+    }
+
+    private void add(String doctor, LocalDate day, long appointments, long bookedMinutes, long cancellations, long cancelledMinutes) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (repository.add(doctor, day, appointments, bookedMinutes, cancellations, cancelledMinutes) > 0
+                    || insert(doctor, day, appointments, bookedMinutes, cancellations, cancelledMinutes)) {
+                return;
+            }
+            // créée entre-temps par une transaction concurrente : l'update la trouve maintenant
+        }
+        throw new IllegalStateException("Cannot record stats of " + doctor + " on " + day);
+    }
+
+    /**
+     * Première activité du jour : false si la ligne vient d'être créée par une autre transaction.
+     * Le point de sauvegarde est posé directement sur la connexion de la transaction (le dialecte JPA n'en pose pas) :
+     * l'échec de l'insertion n'annule qu'elle, sur toutes les bases.
+     */
+    private boolean insert(String doctor, LocalDate day, long appointments, long bookedMinutes, long cancellations, long cancelledMinutes) {
+        return jdbc.execute((Connection connection) -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                jdbc.update(INSERT_DAY, doctor, Date.valueOf(day), appointments, bookedMinutes, cancellations, cancelledMinutes);
+            } catch (DuplicateKeyException e) {
+                // seule la contrainte (doctor, day_start) est attendue ici : toute autre violation remonte
+                if (e.getMessage() == null || !e.getMessage().toUpperCase(Locale.ROOT).contains(UNIQUE_DAY)) {
+                    throw e;
+                }
+                connection.rollback(savepoint);
+                return false;
+            }
+            connection.releaseSavepoint(savepoint);
+            return true;
+        });
+    }
+
+    private static Tally occurrences(AppointmentSeries series) {
+        Tally tally = new Tally();
+        for (Appointment occurrence : series.occurrencesStartingBetween(series.getStartDate(), series.getLastEnd())) {
+            tally.add(occurrence.getStartDate().getTime(), occurrence.getEndDate().getTime());
+        }
+        return tally;
+    }
+
+    private static long minutes(Appointment appt) {
+        return TimeUnit.MILLISECONDS.toMinutes(appt.getEndDate().getTime() - appt.getStartDate().getTime());
+    }
+
+    static LocalDate dayOf(long millis) {
+        return LocalDate.ofEpochDay(Math.floorDiv(millis, TimeUnit.DAYS.toMillis(1)));
+    }
+
+    // Comptage en mémoire par jour (nombre de rendez-vous, minutes), pour l'import et la reconstruction
+    public static final class Tally {
+        private final Map<LocalDate, long[]> days = new TreeMap<>();
+
+        public void add(long start, long end) {
+            long[] counts = days.computeIfAbsent(dayOf(start), d -> new long[2]);
+            counts[0]++;
+            counts[1] += TimeUnit.MILLISECONDS.toMinutes(end - start);
+        }
+    }
+
+    // Une ligne de la réponse : un jour, ou une semaine à partir de son lundi
+    public static final class Bucket {
+        private final LocalDate start;
+        private long appointments;
+        private long bookedMinutes;
+        private long cancellations;
+        private long cancelledMinutes;
+
+        Bucket(LocalDate start) {
+            this.start = start;
+        }
+
+        private void add(DoctorDayStats stats) {
+            appointments += stats.getAppointments();
+            bookedMinutes += stats.getBookedMinutes();
+            cancellations += stats.getCancellations();
+            cancelledMinutes += stats.getCancelledMinutes();
+        }
+
+        public LocalDate getStart() {
+            return start;
+        }
+
+        public long getAppointments() {
+            return appointments;
+        }
+
+        public long getBookedMinutes() {
+            return bookedMinutes;
+        }
+
+        public long getCancellations() {
+            return cancellations;
+        }
+
+        public long getCancelledMinutes() {
+            return cancelledMinutes;
+        }
+    }
+}
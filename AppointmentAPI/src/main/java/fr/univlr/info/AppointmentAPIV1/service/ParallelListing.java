@@ -0,0 +1,143 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.store.ConsistencyContext;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Listing de GET /api/appointments découpé par médecin (mode appointment.listing.parallel.enabled, désactivé par défaut).
+ *
+ * Au lieu d'une seule requête sur toute la table, puis de la mise en forme (liens HAL) rendez-vous par rendez-vous,
+ * chaque médecin est une tâche sur un ForkJoinPool borné : sa requête (index (doctor, startDate)), sur son shard,
+ * puis la mise en forme de ses rendez-vous. Les listes, déjà triées, sont fusionnées dans l'ordre demandé
+ * (k-way merge, comme entre les shards). Le gain vient des coeurs : sur une machine à un coeur, c'est plus lent
+ * (une transaction par médecin).
+ *
+ * Les médecins sont ceux de la table doctor : un rendez-vous ou une série ne peut pas exister sans son médecin
+ * (réservation, import et suppression d'un médecin le vérifient).
+ * Les tâches reprennent le contexte de la requête (liens HAL absolus) et son jeton de cohérence (réplicas).
+ */
+@Component
+public class ParallelListing implements DisposableBean {
+    private final ShardRouter shardRouter;
+    private final DoctorService doctorService;
+    private final boolean enabled;
+    private final int parallelism;
+    // null tant que le mode est désactivé : pas de threads pour rien
+    private final ForkJoinPool pool;
+
+    public ParallelListing(ShardRouter shardRouter, DoctorService doctorService,
+                           @Value("${appointment.listing.parallel.enabled:false}") boolean enabled,
+                           @Value("${appointment.listing.parallel.threads:0}") int threads) {
+        this.shardRouter = shardRouter;
+        this.doctorService = doctorService;
+        this.enabled = enabled;
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        // Un pool à part, pas le commonPool : un gros listing ne doit pas priver les autres usages de la JVM
+        this.pool = enabled ? new ForkJoinPool(parallelism) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param fetch rendez-vous d'un médecin, triés selon order (appelé sur le shard du médecin)
+     * @param view  mise en forme d'un rendez-vous, faite dans la tâche du médecin
+     */
+    public <T> List<T> byDoctor(Function<String, List<Appointment>> fetch, Function<Appointment, T> view,
+                                Comparator<Appointment> order) {
+        if (pool == null) {
+            throw new IllegalStateException("Parallel listing is disabled");
+        }
+        long requiredVersion = ConsistencyContext.requiredVersion();
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+
+        List<Callable<List<Assembled<T>>>> tasks = new ArrayList<>();
+        for (String doctor : doctors()) {
+            tasks.add(() -> {
+                RequestContextHolder.setRequestAttributes(request);
+                ConsistencyContext.bind(requiredVersion, version -> {
+                });
+                try {
+                    List<Appointment> appts = shardRouter.onDoctor(doctor, () -> fetch.apply(doctor));
+                    List<Assembled<T>> assembled = new ArrayList<>(appts.size());
+                    for (Appointment appt : appts) {
+                        assembled.add(new Assembled<>(appt, view.apply(appt)));
+                    }
+                    return assembled;
+                } finally {
+                    ConsistencyContext.clear();
+                    RequestContextHolder.resetRequestAttributes();
+                }
+            });
+        }
+
+        List<List<Assembled<T>>> partials = new ArrayList<>(tasks.size());
+        try {
+            for (Future<List<Assembled<T>>> partial : pool.invokeAll(tasks)) {
+                partials.add(partial.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Listing interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        }
+
+        List<Assembled<T>> merged = ShardRouter.mergeSorted(partials, (a, b) -> order.compare(a.appt, b.appt));
+        List<T> views = new ArrayList<>(merged.size());
+        for (Assembled<T> assembled : merged) {
+            views.add(assembled.view);
+        }
+        return views;
+    }
+
+    private List<String> doctors() {
+        List<String> names = new ArrayList<>();
+        for (String shard : shardRouter.getShards()) {
+            for (Doctor doctor : shardRouter.onShard(shard, doctorService::findAll)) {
+                names.add(doctor.getName());
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    // Un rendez-vous et sa forme finale : la fusion compare les rendez-vous, le listing renvoie les formes
+    private static final class Assembled<T> {
+        private final Appointment appt;
+        private final T view;
+
+        private Assembled(Appointment appt, T view) {
+            this.appt = appt;
+            this.view = view;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package fr.univlr.info.AppointmentAPIV1.service;
+
+import fr.univlr.info.AppointmentAPIV1.controller.DoctorNotFoundException;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.WaitlistEntry;
+import fr.univlr.info.AppointmentAPIV1.store.ClusterMembership;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import fr.univlr.info.AppointmentAPIV1.store.WaitlistIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Liste d'attente des médecins et attribution automatique des créneaux libérés.
+ *
+ * Quand une annulation ou une suppression est validée, le contrôleur signale le créneau libéré (slotFreed) :
+ * un thread unique d'attribution prend la première demande du médecin qui accepte ce créneau (voir WaitlistIndex)
+ * et réserve pour son patient par le chemin normal (AppointmentService.book : prises de créneau, conflits,
+ * agenda en mémoire, journal). Rien ne tourne en tâche de fond entre deux annulations : pas de scrutation.
+ *
+ * Si la réservation échoue parce que le créneau a été repris entre-temps, la demande retrouve sa place.
+ * Le patient suit sa demande sur /api/waitlist/{id} (BOOKED avec l'id du rendez-vous).
+ */
+@Component
+public class Waitlist implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(Waitlist.class);
+    private static final long PURGE_EVERY = TimeUnit.MINUTES.toMillis(1);
+
+    private final AppointmentService appointmentService;
+    private final ShardRouter shardRouter;
+    private final CalendarSnapshots calendars;
+    private final AppointmentEventLog events;
+    private final int maxWindowDays;
+    private final WaitlistIndex index;
+    private final ExecutorService matcher;
+    private volatile long lastPurge = System.currentTimeMillis();
+
+    public Waitlist(AppointmentService appointmentService, ShardRouter shardRouter, CalendarSnapshots calendars,
+                    AppointmentEventLog events, ClusterMembership membership,
+                    @Value("${appointment.waitlist.max-window-days:31}") int maxWindowDays) {
+        this.appointmentService = appointmentService;
+        this.shardRouter = shardRouter;
+        this.calendars = calendars;
+        this.events = events;
+        this.maxWindowDays = maxWindowDays;
+        // En mode cluster, chaque instance numérote ses demandes dans sa propre plage : un identifiant désigne une seule demande
+        this.index = new WaitlistIndex((long) membership.selfIndex() << 48);
+        this.matcher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "waitlist-matcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getMaxWindowDays() {
+        return maxWindowDays;
+    }
+
+    // Le médecin existe et la fenêtre a été validée par le contrôleur
+    public WaitlistEntry add(WaitlistEntry entry) {
+        long now = System.currentTimeMillis();
+        purgeIfDue(now);
+        return index.add(entry, now);
+    }
+
+    public Optional<WaitlistEntry> find(long id) {
+        return index.find(id);
+    }
+
+    public Optional<WaitlistEntry> withdraw(long id) {
+        return index.withdraw(id);
+    }
+
+    public List<WaitlistEntry> waiting(String doctor) {
+        return index.waiting(doctor);
+    }
+
+    // Appelé après la validation de l'annulation : l'attribution se fait sur le thread dédié, la réponse n'attend pas
+    public void slotFreed(Appointment appt) {
+        String doctor = appt.getDoctor();
+        long start = appt.getStartDate().getTime();
+        long end = appt.getEndDate().getTime();
+        purgeIfDue(System.currentTimeMillis());
+        matcher.execute(() -> match(doctor, start, end));
+    }
+
+    private void match(String doctor, long start, long end) {
+        if (start < System.currentTimeMillis()) {
+            return;
+        }
+        WaitlistEntry entry = index.take(doctor, start, end);
+        if (entry == null) {
+            return;
+        }
+        Appointment appt = new Appointment(doctor, new Date(start), new Date(end), entry.getPatient());
+        Optional<Appointment> booked;
+        try {
+            // journalisée dans l'ordre, comme une réservation par l'API (voir AppointmentEventLog)
+            booked = events.ordered(null, () -> {
+                Optional<Appointment> saved = shardRouter.onDoctor(doctor, () -> appointmentService.book(appt));
+                if (saved.isPresent()) {
+                    calendars.booked(saved.get());
+                    events.booked(saved.get());
+                }
+                return saved;
+            });
+        } catch (DoctorNotFoundException e) {
+            // médecin supprimé depuis : ses demandes ne seront jamais servies
+            log.info("Waitlist: doctor {} no longer exists, request {} dropped", doctor, entry.getId());
+            index.dropped(entry);
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Waitlist: booking for request {} failed", entry.getId(), e);
+            index.putBack(entry);
+            return;
+        }
+        if (!booked.isPresent()) {
+            index.putBack(entry);
+            return;
+        }
+        Appointment saved = booked.get();
+        index.booked(entry, saved.getId());
+        log.debug("Waitlist: slot {} of {} booked for request {}", new Date(start), doctor, entry.getId());
+    }
+
+    private void purgeIfDue(long now) {
+        if (now - lastPurge >= PURGE_EVERY) {
+            lastPurge = now;
+            matcher.execute(() -> index.purge(System.currentTimeMillis()));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        matcher.shutdownNow();
+    }
+}
@@ -0,0 +1,58 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mode adaptatif des pools de connexions : appelle {@link ConnectionPools#adjust()} à intervalle régulier.
+ *
+ * Activé avec appointment.pool.adaptive.enabled=true ; l'intervalle est appointment.pool.adaptive.interval-ms.
+ */
+@Component
+@ConditionalOnProperty(name = "appointment.pool.adaptive.enabled", havingValue = "true")
+public class AdaptivePoolSizer implements SmartInitializingSingleton, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    private final ConnectionPools pools;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+
+    public AdaptivePoolSizer(ConnectionPools pools, @Value("${appointment.pool.adaptive.interval-ms:1000}") long intervalMillis) {
+        this.pools = pools;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "adaptive-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::adjustSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void adjustSafely() {
+        try {
+            pools.adjust();
+        } catch (RuntimeException e) {
+            log.warn("Adaptive pool sizing failed, pools keep their current size", e);
+        }
+    }
+}
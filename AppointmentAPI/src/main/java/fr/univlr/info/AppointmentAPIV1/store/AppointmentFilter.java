@@ -0,0 +1,103 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentStatus;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Critères de recherche de GET /api/appointments (patient, médecin, début entre from et to, état).
+ * Tous sont facultatifs et se combinent en ET.
+ *
+ * Chaque critère est traduit de façon à tomber sur un index de la table (voir Appointment) :
+ * patient et médecin sur (patient, startDate) et (doctor, startDate), les bornes et l'état sur startDate.
+ * L'état PAST, par exemple, ajoute "startDate < maintenant" à la condition sur endDate, qui n'est pas indexée.
+ *
+ * Le même filtre s'applique en mémoire aux occurrences des séries, qui ne sont pas en base.
+ */
+public class AppointmentFilter implements Specification<Appointment> {
+    private final String patient;
+    private final String doctor;
+    private final Date from;
+    private final Date to;
+    private final AppointmentStatus status;
+    // L'état est évalué par rapport à un même instant, en base comme en mémoire
+    private final Date now;
+
+    public AppointmentFilter(String patient, String doctor, Date from, Date to, AppointmentStatus status, Date now) {
+        this.patient = patient;
+        this.doctor = doctor;
+        this.from = from;
+        this.to = to;
+        this.status = status;
+        this.now = now;
+    }
+
+    @Override
+    public Predicate toPredicate(Root<Appointment> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (patient != null) {
+            predicates.add(cb.equal(root.get("patient"), patient));
+        }
+        if (doctor != null) {
+            predicates.add(cb.equal(root.get("doctor"), doctor));
+        }
+        if (from != null) {
+            predicates.add(cb.greaterThanOrEqualTo(root.get("startDate"), from));
+        }
+        if (to != null) {
+            predicates.add(cb.lessThanOrEqualTo(root.get("startDate"), to));
+        }
+        if (status == AppointmentStatus.UPCOMING) {
+            predicates.add(cb.greaterThan(root.get("startDate"), now));
+        } else if (status == AppointmentStatus.ONGOING) {
+            predicates.add(cb.lessThanOrEqualTo(root.get("startDate"), now));
+            predicates.add(cb.greaterThanOrEqualTo(root.get("endDate"), now));
+        } else if (status == AppointmentStatus.PAST) {
+            predicates.add(cb.lessThan(root.get("startDate"), now));
+            predicates.add(cb.lessThan(root.get("endDate"), now));
+        }
+        return cb.and(predicates.toArray(new Predicate[0]));
+    }
+
+    // Le même filtre restreint à un médecin, pour le listing découpé par médecin (voir ParallelListing)
+    public AppointmentFilter forDoctor(String doctor) {
+        return new AppointmentFilter(patient, doctor, from, to, status, now);
+    }
+
+    // Même filtre, pour les occurrences calculées des séries
+    public boolean test(Appointment appt) {
+        return (patient == null || patient.equals(appt.getPatient()))
+                && (doctor == null || doctor.equals(appt.getDoctor()))
+                && (from == null || !appt.getStartDate().before(from))
+                && (to == null || !appt.getStartDate().after(to))
+                && (status == null || status == AppointmentStatus.of(appt, now));
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    public String getDoctor() {
+        return doctor;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public AppointmentStatus getStatus() {
+        return status;
+    }
+}
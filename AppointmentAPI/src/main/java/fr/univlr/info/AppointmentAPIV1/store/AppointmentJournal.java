@@ -0,0 +1,550 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Journal local des changements de rendez-vous, en ajout seul, sur des segments de fichier projetés en mémoire.
+ *
+ * Chaque événement reçoit un numéro croissant (seq) et s'écrit à la suite du précédent dans le segment courant
+ * (un fichier de segment-bytes, nommé d'après le seq de son premier événement) : une écriture est une copie
+ * en mémoire, sans appel système. Le fsync (force()) est groupé : un thread le fait toutes les fsync-interval-ms
+ * pour tout ce qui a été ajouté depuis ; avec wait-for-fsync, append() attend ce fsync (commit groupé).
+ *
+ * Format d'un enregistrement : longueur, CRC32, puis l'événement. Au redémarrage, la lecture du dernier segment
+ * s'arrête au premier enregistrement incomplet ou corrompu (écriture interrompue par un arrêt brutal).
+ *
+ * Un snapshot (l'état complet à un seq donné) borne le rejeu : on le charge puis on rejoue les événements suivants.
+ * Il peut être "flou" (lu pendant que d'autres écritures arrivent) puisque le rejeu est idempotent
+ * (voir {@link JournalEvent}). Les segments entièrement couverts par le dernier snapshot sont supprimés.
+ */
+public class AppointmentJournal implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(AppointmentJournal.class);
+    private static final int HEADER = 8;
+    private static final int SNAPSHOT_MAGIC = 0x41504a53;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final boolean waitForFsync;
+    private final ScheduledExecutorService flusher;
+
+    // Protégés par this : un seul écrivain à la fois
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    private ByteBuffer scratch = ByteBuffer.allocate(8192);
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer current;
+    private long lastSeq;
+
+    private volatile long appendedSeq;
+    private volatile long flushedSeq;
+    private volatile long snapshotSeq;
+    private final Object flushed = new Object();
+
+    public AppointmentJournal(Path dir, int segmentBytes, long fsyncIntervalMs, boolean waitForFsync) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = segmentBytes;
+        this.waitForFsync = waitForFsync;
+        this.snapshotSeq = latestSnapshot().map(AppointmentJournal::seqOf).orElse(0L);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).forEach(p -> segments.put(seqOf(p), p));
+        }
+        if (segments.isEmpty()) {
+            lastSeq = snapshotSeq;
+            current = openSegment(snapshotSeq + 1);
+        } else {
+            // Le dernier segment est rouvert en écriture, à la suite de son dernier enregistrement valide
+            current = map(segments.lastEntry().getValue(), FileChannel.MapMode.READ_WRITE);
+            lastSeq = Math.max(snapshotSeq, segments.lastKey() - 1);
+            int end = scan(current, event -> {
+                lastSeq = event.getSeq();
+                return true;
+            });
+            if (end < current.capacity() && current.getInt(end) != 0) {
+                log.warn("Journal: torn record at the end of {}, ignored", segments.lastEntry().getValue());
+                for (int i = end; i < current.capacity(); i++) {
+                    current.put(i, (byte) 0);
+                }
+            }
+            current.position(end);
+        }
+        appendedSeq = lastSeq;
+        flushedSeq = lastSeq;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-fsync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Ajoute l'événement et renvoie son numéro ; avec wait-for-fsync, ne rend la main qu'une fois l'événement sur disque
+    public long append(JournalEvent event) {
+        long seq;
+        synchronized (this) {
+            seq = lastSeq + 1;
+            JournalEvent numbered = event.numbered(seq, System.currentTimeMillis());
+            int length = encodedSize(numbered);
+            // Un enregistrement doit tenir dans un segment neuf, avec la longueur nulle de fin
+            if (HEADER + length + 4 > segmentBytes) {
+                throw new IllegalArgumentException("Journal event too large: " + length + " bytes");
+            }
+            scratch = sized(scratch, length);
+            encode(scratch, numbered);
+            // On garde toujours la place d'une longueur nulle derrière le dernier enregistrement (fin des données)
+            if (current.remaining() < HEADER + length + 4) {
+                roll(seq);
+            }
+            crc.reset();
+            crc.update(scratch.array(), 0, length);
+            current.putInt(length).putInt((int) crc.getValue()).put(scratch.array(), 0, length);
+            lastSeq = seq;
+            appendedSeq = seq;
+        }
+        if (waitForFsync) {
+            awaitFlushed(seq);
+        }
+        return seq;
+    }
+
+    /**
+     * Au plus limit événements à partir de fromSeq, dans l'ordre : c'est le flux des consommateurs.
+     * Ceux d'avant le dernier snapshot peuvent avoir disparu avec leurs segments (voir getFirstSeq()).
+     */
+    public List<JournalEvent> read(long fromSeq, int limit) {
+        List<JournalEvent> events = new ArrayList<>(Math.min(limit, 1024));
+        readFrom(fromSeq, event -> {
+            events.add(event);
+            return events.size() < limit;
+        });
+        return events;
+    }
+
+    // Dernier snapshot puis rejeu des événements suivants : l'état complet des rendez-vous, par id
+    public Recovery recover() throws IOException {
+        long begin = System.nanoTime();
+        Map<Long, Appointment> state = new LinkedHashMap<>();
+        long from = snapshotSeq;
+        Optional<Path> snapshot = latestSnapshot();
+        if (snapshot.isPresent()) {
+            MappedByteBuffer buffer = map(snapshot.get(), FileChannel.MapMode.READ_ONLY);
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a journal snapshot: " + snapshot.get());
+            }
+            buffer.getLong();
+            scan(buffer.slice(), event -> {
+                state.put(event.id(), event.toAppointment());
+                return true;
+            });
+        }
+        int snapshotRows = state.size();
+        long[] replayed = {0};
+        readFrom(from + 1, event -> {
+            apply(state, event);
+            replayed[0]++;
+            return true;
+        });
+        return new Recovery(state, from, snapshotRows, replayed[0], (System.nanoTime() - begin) / 1_000_000);
+    }
+
+    static void apply(Map<Long, Appointment> state, JournalEvent event) {
+        switch (event.getType()) {
+            case BOOKED:
+            case UPDATED:
+                state.put(event.id(), event.toAppointment());
+                break;
+            case CANCELLED:
+            case DELETED:
+                state.remove(event.id());
+                break;
+            default:
+                state.clear();
+        }
+    }
+
+    /**
+     * Ouvre un snapshot de l'état au numéro seq (lu après ce numéro : les écritures concurrentes y sont tolérées).
+     * Il ne remplace le précédent qu'au commit(), qui supprime aussi les segments qu'il couvre entièrement.
+     */
+    public SnapshotWriter openSnapshot(long seq) throws IOException {
+        return new SnapshotWriter(seq);
+    }
+
+    public long getLastSeq() {
+        return appendedSeq;
+    }
+
+    public long getFlushedSeq() {
+        return flushedSeq;
+    }
+
+    public long getSnapshotSeq() {
+        return snapshotSeq;
+    }
+
+    // Premier événement encore lisible
+    public synchronized long getFirstSeq() {
+        return segments.firstKey();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public long getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    private void flush() {
+        MappedByteBuffer buffer;
+        long seq;
+        synchronized (this) {
+            seq = appendedSeq;
+            buffer = current;
+        }
+        if (seq > flushedSeq) {
+            // Hors verrou : les ajouts continuent pendant le fsync
+            buffer.force();
+            flushedSeq = seq;
+            synchronized (flushed) {
+                flushed.notifyAll();
+            }
+        }
+    }
+
+    private void awaitFlushed(long seq) {
+        synchronized (flushed) {
+            while (flushedSeq < seq) {
+                try {
+                    flushed.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Segment plein : il est forcé sur disque, le suivant commence à seq
+    private void roll(long seq) {
+        current.force();
+        try {
+            current = openSegment(seq);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create journal segment", e);
+        }
+    }
+
+    private MappedByteBuffer openSegment(long firstSeq) throws IOException {
+        Path path = dir.resolve(String.format("%020d%s", firstSeq, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            segments.put(firstSeq, path);
+            return buffer;
+        }
+    }
+
+    private void readFrom(long fromSeq, Predicate<JournalEvent> consumer) {
+        NavigableMap<Long, Path> files;
+        long last;
+        synchronized (this) {
+            files = new TreeMap<>(segments);
+            last = lastSeq;
+        }
+        Long first = files.floorKey(fromSeq);
+        for (Path path : files.tailMap(first != null ? first : files.firstKey(), true).values()) {
+            boolean[] more = {true};
+            try {
+                scan(map(path, FileChannel.MapMode.READ_ONLY), event -> {
+                    if (event.getSeq() > last) {
+                        more[0] = false;
+                    } else if (event.getSeq() >= fromSeq) {
+                        more[0] = consumer.test(event);
+                    }
+                    return more[0];
+                });
+            } catch (NoSuchFileException e) {
+                // segment supprimé entre-temps par un snapshot : ses événements sont dans le snapshot
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read journal segment " + path, e);
+            }
+            if (!more[0]) {
+                return;
+            }
+        }
+    }
+
+    // Lit les enregistrements valides depuis le début du buffer ; renvoie la position de fin
+    private static int scan(ByteBuffer buffer, Predicate<JournalEvent> consumer) {
+        CRC32 check = new CRC32();
+        int position = 0;
+        while (position + HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER + length > buffer.capacity()) {
+                break;
+            }
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(position + HEADER).limit(position + HEADER + length);
+            check.reset();
+            check.update(payload.duplicate());
+            if ((int) check.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER + length;
+            if (!consumer.test(decode(payload))) {
+                break;
+            }
+        }
+        return position;
+    }
+
+    // Taille exacte d'un enregistrement : l'encodage se fait ensuite dans un tampon assez grand
+    private static int encodedSize(JournalEvent event) {
+        return 41 + stringSize(event.getDoctor()) + stringSize(event.getPreviousDoctor()) + stringSize(event.getPatient())
+                + stringSize(event.getRoom()) + stringSize(event.getDevice());
+    }
+
+    private static int stringSize(String value) {
+        if (value == null) {
+            return 2;
+        }
+        int bytes = value.getBytes(StandardCharsets.UTF_8).length;
+        // la longueur est écrite sur un short signé (-1 pour null)
+        if (bytes > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal field too large: " + bytes + " bytes");
+        }
+        return 2 + bytes;
+    }
+
+    // Le tampon réutilisé s'il suffit, sinon un plus grand (qui sera réutilisé à son tour)
+    private static ByteBuffer sized(ByteBuffer buffer, int size) {
+        if (buffer.capacity() < size) {
+            return ByteBuffer.allocate(Integer.highestOneBit(size - 1) << 1);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void encode(ByteBuffer out, JournalEvent event) {
+        out.putLong(event.getSeq()).putLong(event.timestamp()).put((byte) event.getType().ordinal())
+                .putLong(event.id()).putLong(event.start()).putLong(event.end());
+        putString(out, event.getDoctor());
+        putString(out, event.getPreviousDoctor());
+        putString(out, event.getPatient());
+        putString(out, event.getRoom());
+        putString(out, event.getDevice());
+    }
+
+    private static JournalEvent decode(ByteBuffer in) {
+        long seq = in.getLong();
+        long timestamp = in.getLong();
+        JournalEvent.Type type = JournalEvent.Type.values()[in.get()];
+        long id = in.getLong();
+        long start = in.getLong();
+        long end = in.getLong();
+        return new JournalEvent(seq, timestamp, type, id, getString(in), getString(in), start, end,
+                getString(in), getString(in), getString(in));
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MappedByteBuffer map(Path path, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return channel.map(mode, 0, channel.size());
+        }
+    }
+
+    private Optional<Path> latestSnapshot() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                    .max(Comparator.comparingLong(AppointmentJournal::seqOf));
+        }
+    }
+
+    private static long seqOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * Écriture d'un snapshot : un fichier temporaire rempli rendez-vous par rendez-vous (même format que les segments),
+     * forcé sur disque puis renommé ; les anciens snapshots et les segments couverts sont alors supprimés.
+     */
+    public final class SnapshotWriter implements Closeable {
+        private final long seq;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private ByteBuffer record = ByteBuffer.allocate(8192);
+        private final CRC32 check = new CRC32();
+        private long rows;
+        private boolean committed;
+
+        private SnapshotWriter(long seq) throws IOException {
+            this.seq = seq;
+            this.temporary = dir.resolve(String.format("%020d%s.tmp", seq, SNAPSHOT_SUFFIX));
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            buffer.putInt(SNAPSHOT_MAGIC).putLong(seq);
+        }
+
+        public void add(Appointment appt) throws IOException {
+            JournalEvent event = JournalEvent.of(JournalEvent.Type.BOOKED, appt, null).numbered(seq, 0);
+            int length = encodedSize(event);
+            record = sized(record, length);
+            encode(record, event);
+            check.reset();
+            check.update(record.array(), 0, length);
+            if (buffer.remaining() < HEADER + length) {
+                drain();
+            }
+            if (buffer.remaining() < HEADER + length) {
+                // plus grand que le tampon d'écriture (vide à ce stade) : il part directement
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(length).putInt((int) check.getValue()).flip();
+                write(header);
+                write(ByteBuffer.wrap(record.array(), 0, length));
+            } else {
+                buffer.putInt(length).putInt((int) check.getValue()).put(record.array(), 0, length);
+            }
+            rows++;
+        }
+
+        public long commit() throws IOException {
+            buffer.putInt(0);
+            drain();
+            channel.force(true);
+            channel.close();
+            Path target = dir.resolve(String.format("%020d%s", seq, SNAPSHOT_SUFFIX));
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            snapshotSeq = Math.max(snapshotSeq, seq);
+            prune(target);
+            return rows;
+        }
+
+        private void prune(Path keep) throws IOException {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path old : (Iterable<Path>) files::iterator) {
+                    String name = old.getFileName().toString();
+                    if (name.endsWith(SNAPSHOT_SUFFIX) && !old.equals(keep) && seqOf(old) < seq) {
+                        Files.deleteIfExists(old);
+                    }
+                }
+            }
+            synchronized (AppointmentJournal.this) {
+                // Un segment est couvert quand le suivant commence au plus tard juste après le snapshot
+                Iterator<Map.Entry<Long, Path>> it = segments.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, Path> segment = it.next();
+                    Long next = segments.higherKey(segment.getKey());
+                    if (next == null || next > seq + 1) {
+                        break;
+                    }
+                    Files.deleteIfExists(segment.getValue());
+                    it.remove();
+                }
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    // Résultat du rejeu au démarrage
+    public static final class Recovery {
+        private final Map<Long, Appointment> state;
+        private final long snapshotSeq;
+        private final int snapshotRows;
+        private final long replayed;
+        private final long millis;
+
+        Recovery(Map<Long, Appointment> state, long snapshotSeq, int snapshotRows, long replayed, long millis) {
+            this.state = state;
+            this.snapshotSeq = snapshotSeq;
+            this.snapshotRows = snapshotRows;
+            this.replayed = replayed;
+            this.millis = millis;
+        }
+
+        public Map<Long, Appointment> getState() {
+            return state;
+        }
+
+        public long getSnapshotSeq() {
+            return snapshotSeq;
+        }
+
+        public int getSnapshotRows() {
+            return snapshotRows;
+        }
+
+        public long getReplayed() {
+            return replayed;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
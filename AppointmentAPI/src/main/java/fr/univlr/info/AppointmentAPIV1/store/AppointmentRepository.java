@@ -2,15 +2,40 @@ package fr.univlr.info.AppointmentAPIV1.store;
 
 import fr.univlr.info.AppointmentAPIV1.controller.AppointmentNotFoundException;
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
 import java.util.Date;
 import java.util.List;
 
-public interface AppointmentRepository extends JpaRepository<Appointment,Long> {
+// JpaSpecificationExecutor : recherche multi-critères du listing (voir AppointmentFilter)
+public interface AppointmentRepository extends JpaRepository<Appointment,Long>, JpaSpecificationExecutor<Appointment> {
     // Cette méthode me permet de renvoyer une liste de rendez-vous en passant un docteur en argument
+    // Résultat mis en cache (cache de requêtes Hibernate), invalidé automatiquement à chaque écriture sur la table
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHE_REGION, value = Appointment.BY_DOCTOR_QUERY_REGION)
+    })
     List<Appointment> findByDoctor(String doctor) throws AppointmentNotFoundException;
+    // Le médecin a-t-il au moins un rendez-vous ? (sans les charger)
+    boolean existsByDoctor(String doctor);
     // Filter les rendez-vous après la date passée en paramétre
     List<Appointment> findByStartDateAfter(Date date) throws AppointmentNotFoundException;
+    // Un rendez-vous du médecin chevauche-t-il [start, end] ? Recherche sur l'index (doctor, start_date)
+    @Query("select count(a) > 0 from Appointment a where a.doctor = :doctor and a.startDate <= :end and a.endDate >= :start")
+    boolean existsOverlapping(@Param("doctor") String doctor, @Param("start") Date start, @Param("end") Date end);
+    // Même chose sans compter le rendez-vous id (modification d'un rendez-vous)
+    @Query("select count(a) > 0 from Appointment a where a.doctor = :doctor and a.startDate <= :end and a.endDate >= :start and a.id <> :id")
+    boolean existsOverlappingOther(@Param("doctor") String doctor, @Param("start") Date start, @Param("end") Date end, @Param("id") Long id);
+    // Listing d'un médecin borné des deux côtés (from/to)
+    List<Appointment> findByDoctorAndStartDateBetween(String doctor, Date from, Date to, Sort sort);
+    // Rendez-vous du médecin qui touchent [start, end], y compris ceux qui ont commencé avant (agenda en mémoire, créneaux libres)
+    @Query("select a from Appointment a where a.doctor = :doctor and a.startDate <= :end and a.endDate >= :start")
+    List<Appointment> findOverlapping(@Param("doctor") String doctor, @Param("start") Date start, @Param("end") Date end);
 
 }
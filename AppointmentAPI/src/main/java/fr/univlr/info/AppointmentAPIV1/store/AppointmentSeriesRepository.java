@@ -0,0 +1,40 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSeries;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public interface AppointmentSeriesRepository extends JpaRepository<AppointmentSeries, Long> {
+    // Les séries dont au moins une occurrence peut toucher la fenêtre [from, to] : les autres ne sont même pas chargées
+    @Query("select s from AppointmentSeries s where s.startDate <= :to and s.lastEnd >= :from")
+    List<AppointmentSeries> findInWindow(@Param("from") Date from, @Param("to") Date to);
+
+    @Query("select s from AppointmentSeries s where s.doctor = :doctor and s.startDate <= :to and s.lastEnd >= :from")
+    List<AppointmentSeries> findInWindowForDoctor(@Param("doctor") String doctor, @Param("from") Date from, @Param("to") Date to);
+
+    // Le médecin a-t-il une série pas encore terminée ?
+    boolean existsByDoctorAndLastEndAfter(String doctor, Date date);
+
+    // Occurrences de toutes les séries qui commencent dans la fenêtre (non triées)
+    default List<Appointment> findOccurrences(Date from, Date to) {
+        return expand(findInWindow(from, to), from, to);
+    }
+
+    default List<Appointment> findOccurrencesForDoctor(String doctor, Date from, Date to) {
+        return expand(findInWindowForDoctor(doctor, from, to), from, to);
+    }
+
+    static List<Appointment> expand(List<AppointmentSeries> series, Date from, Date to) {
+        List<Appointment> occurrences = new ArrayList<>();
+        for (AppointmentSeries s : series) {
+            occurrences.addAll(s.occurrencesStartingBetween(from, to));
+        }
+        return occurrences;
+    }
+}
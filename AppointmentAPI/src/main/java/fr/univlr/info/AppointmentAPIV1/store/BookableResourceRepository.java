@@ -0,0 +1,13 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.BookableResource;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceKind;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface BookableResourceRepository extends JpaRepository<BookableResource, Long> {
+    BookableResource findByKindAndName(ResourceKind kind, String name);
+
+    List<BookableResource> findByKind(ResourceKind kind);
+}
@@ -0,0 +1,81 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Membres du cluster et propriétaire de chaque médecin, comme {@link ShardRouter} pour les shards.
+ *
+ * Chaque instance a la même liste appointment.cluster.members (adresses de base, http://hote:port) et connaît
+ * la sienne (appointment.cluster.self). Un médecin appartient à l'instance choisie par hachage cohérent de son nom :
+ * ajouter ou retirer une instance ne déplace que les médecins de ses voisines sur l'anneau.
+ * Hors mode cluster, l'instance courante est propriétaire de tout.
+ */
+@Component
+public class ClusterMembership {
+    private final boolean enabled;
+    private final String self;
+    private final List<String> members;
+    private final String secret;
+    private final ConsistentHashRing<String> ring;
+
+    public ClusterMembership(@Value("${appointment.cluster.enabled:false}") boolean enabled,
+                             @Value("${appointment.cluster.self:}") String self,
+                             @Value("${appointment.cluster.members:}") List<String> members,
+                             @Value("${appointment.cluster.secret:}") String secret,
+                             @Value("${appointment.cluster.virtual-nodes:128}") int virtualNodes) {
+        this.enabled = enabled;
+        this.self = trimSlash(self.trim());
+        List<String> names = new ArrayList<>();
+        for (String member : members) {
+            if (!member.trim().isEmpty()) {
+                names.add(trimSlash(member.trim()));
+            }
+        }
+        if (enabled && (!names.contains(this.self) || secret.isEmpty())) {
+            throw new IllegalStateException("Cluster mode needs appointment.cluster.self among appointment.cluster.members "
+                    + "and a shared appointment.cluster.secret");
+        }
+        this.members = Collections.unmodifiableList(names);
+        this.secret = secret;
+        this.ring = enabled ? new ConsistentHashRing<>(names, virtualNodes) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    // Secret partagé, porté par les requêtes entre membres
+    public String getSecret() {
+        return secret;
+    }
+
+    // Rang de l'instance dans la liste des membres (0 hors mode cluster) : sert à donner des identifiants distincts
+    public int selfIndex() {
+        return enabled ? members.indexOf(self) : 0;
+    }
+
+    public String ownerOf(String doctor) {
+        return enabled && doctor != null ? ring.nodeFor(doctor) : self;
+    }
+
+    public boolean isOwner(String doctor) {
+        return ownerOf(doctor).equals(self);
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
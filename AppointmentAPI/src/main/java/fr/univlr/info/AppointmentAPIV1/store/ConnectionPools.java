@@ -0,0 +1,212 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration commune de tous les pools de connexions HikariCP de l'application
+ * (la DataSource de Spring Boot, ou chaque shard et chaque réplica dans les modes sharding et replication).
+ *
+ * Taille : fixée par appointment.pool.size, sinon déduite du nombre de cœurs et de la latence de la base
+ * (cœurs × (1 + latence / temps CPU d'une transaction), la formule classique des pools de threads),
+ * bornée par min-size et max-size. Un maximumPoolSize déjà posé sur le pool (spring.datasource.hikari.maximum-pool-size)
+ * est gardé tel quel, et devient le plafond du pool en mode adaptatif ; de même pour minimumIdle. S'y ajoutent la détection de fuites, le cache de requêtes compilées
+ * de H2 (QUERY_CACHE_SIZE, l'équivalent d'un cache de PreparedStatement) et les mesures de {@link PoolMetrics}.
+ *
+ * En mode adaptatif (voir {@link AdaptivePoolSizer}), {@link #adjust()} agrandit un pool dont les attentes
+ * dépassent la cible et réduit un pool qui reste à moitié vide, toujours entre min-size et max-size.
+ */
+@Component
+public class ConnectionPools implements BeanPostProcessor, Ordered {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPools.class);
+
+    private final int initialSize;
+    private final int minSize;
+    private final int maxSize;
+    private final long leakDetectionMillis;
+    private final int statementCacheSize;
+    private final long targetWaitMicros;
+    private final int step;
+    private final Map<String, Pool> pools = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public ConnectionPools(@Value("${appointment.pool.size:0}") int size,
+                           @Value("${appointment.pool.min-size:4}") int minSize,
+                           @Value("${appointment.pool.max-size:32}") int maxSize,
+                           @Value("${appointment.pool.db-latency-ms:1}") double dbLatencyMillis,
+                           @Value("${appointment.pool.cpu-ms-per-transaction:1}") double cpuMillisPerTransaction,
+                           @Value("${appointment.pool.leak-detection-ms:0}") long leakDetectionMillis,
+                           @Value("${appointment.pool.statement-cache-size:64}") int statementCacheSize,
+                           @Value("${appointment.pool.adaptive.target-wait-ms:2}") double targetWaitMillis,
+                           @Value("${appointment.pool.adaptive.step:2}") int step) {
+        this.minSize = minSize;
+        this.maxSize = Math.max(minSize, maxSize);
+        this.initialSize = size > 0 ? size
+                : derivedSize(Runtime.getRuntime().availableProcessors(), dbLatencyMillis, cpuMillisPerTransaction, minSize, this.maxSize);
+        this.leakDetectionMillis = leakDetectionMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.targetWaitMicros = (long) (targetWaitMillis * 1000);
+        this.step = step;
+    }
+
+    public static int derivedSize(int cores, double dbLatencyMillis, double cpuMillisPerTransaction, int minSize, int maxSize) {
+        long size = Math.round(cores * (1 + dbLatencyMillis / Math.max(0.001, cpuMillisPerTransaction)));
+        return (int) Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    /**
+     * La DataSource créée par Spring Boot (mode par défaut) ; les autres modes appellent register eux-mêmes.
+     * Avant l'initialisation et après le binding de spring.datasource.hikari.* : ensuite Spring Boot
+     * ouvre une première connexion (détection de la base embarquée) et la configuration du pool est figée.
+     */
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource) {
+            register("main", (HikariDataSource) bean);
+        }
+        return bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    /**
+     * À appeler avant la première connexion : Hikari fige sa configuration au démarrage du pool.
+     * Une DataSource qui n'est pas un pool Hikari est renvoyée telle quelle.
+     */
+    public <T extends DataSource> T register(String name, T dataSource) {
+        if (!(dataSource instanceof HikariDataSource)) {
+            return dataSource;
+        }
+        HikariDataSource hikari = (HikariDataSource) dataSource;
+        PoolMetrics metrics = new PoolMetrics();
+        hikari.setPoolName(name);
+        // Hikari laisse -1 tant que rien n'est configuré
+        int configured = hikari.getMaximumPoolSize();
+        int size = configured > 0 ? configured : initialSize;
+        hikari.setMaximumPoolSize(size);
+        if (hikari.getMinimumIdle() < 0) {
+            hikari.setMinimumIdle(Math.min(minSize, size));
+        }
+        hikari.setLeakDetectionThreshold(leakDetectionMillis);
+        if (statementCacheSize > 0) {
+            hikari.addDataSourceProperty("QUERY_CACHE_SIZE", statementCacheSize);
+        }
+        hikari.setMetricsTrackerFactory((poolName, poolStats) -> metrics);
+        Pool pool = new Pool(hikari, metrics, Math.min(minSize, size), configured > 0 ? configured : maxSize);
+        pools.put(name, pool);
+        log.info("Connection pool {}: {} connection(s) (bounds {}-{})", name, size, pool.minSize, pool.maxSize);
+        return dataSource;
+    }
+
+    /**
+     * Un pas d'adaptation : compare l'attente (p95) depuis le pas précédent à la cible.
+     * Agrandit le pool quand les demandes attendent et qu'il est plein, le réduit d'une connexion
+     * quand personne n'attend et que moins de la moitié des connexions a servi.
+     */
+    public void adjust() {
+        for (Map.Entry<String, Pool> entry : snapshotPools().entrySet()) {
+            Pool pool = entry.getValue();
+            long[] waits = pool.metrics.getWaitMicros().snapshot();
+            long[] window = Histogram.since(waits, pool.lastWaits);
+            pool.lastWaits = waits;
+            int peak = pool.metrics.takePeakInUse();
+            int size = pool.dataSource.getMaximumPoolSize();
+            long p95 = Histogram.percentile(window, 95);
+
+            int newSize = size;
+            if (Histogram.count(window) > 0 && p95 > targetWaitMicros && peak >= size) {
+                newSize = Math.min(pool.maxSize, size + step);
+            } else if (p95 <= targetWaitMicros / 4 && peak < size / 2) {
+                newSize = Math.max(pool.minSize, size - 1);
+            }
+            if (newSize != size) {
+                // modifiable à chaud : Hikari ouvre les connexions manquantes, ou ferme les inactives en trop
+                pool.dataSource.getHikariConfigMXBean().setMaximumPoolSize(newSize);
+                pool.adjustments++;
+                log.info("Connection pool {}: {} -> {} connection(s) (wait p95 {} µs, peak in use {})",
+                        entry.getKey(), size, newSize, p95, peak);
+            }
+        }
+    }
+
+    // Etat de chaque pool, pour /api/admin/pool
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, Pool> entry : snapshotPools().entrySet()) {
+            Pool pool = entry.getValue();
+            HikariPoolMXBean mx = pool.dataSource.getHikariPoolMXBean();
+            int size = pool.dataSource.getMaximumPoolSize();
+            long[] waits = pool.metrics.getWaitMicros().snapshot();
+            long[] usage = pool.metrics.getUsageMillis().snapshot();
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("maximumPoolSize", size);
+            values.put("active", mx != null ? mx.getActiveConnections() : 0);
+            values.put("idle", mx != null ? mx.getIdleConnections() : 0);
+            values.put("waiting", mx != null ? mx.getThreadsAwaitingConnection() : 0);
+            values.put("saturation", size > 0 ? (double) pool.metrics.getInUse() / size : 0);
+            values.put("acquisitions", Histogram.count(waits));
+            values.put("waitMicros", percentiles(waits));
+            values.put("usageMillis", percentiles(usage));
+            values.put("timeouts", pool.metrics.getTimeouts());
+            values.put("adjustments", pool.adjustments);
+            stats.put(entry.getKey(), values);
+        }
+        return stats;
+    }
+
+    public PoolMetrics metrics(String name) {
+        Pool pool = pools.get(name);
+        return pool != null ? pool.metrics : null;
+    }
+
+    public int maximumPoolSize(String name) {
+        Pool pool = pools.get(name);
+        return pool != null ? pool.dataSource.getMaximumPoolSize() : 0;
+    }
+
+    private static Map<String, Long> percentiles(long[] counts) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("p50", Histogram.percentile(counts, 50));
+        values.put("p95", Histogram.percentile(counts, 95));
+        values.put("p99", Histogram.percentile(counts, 99));
+        values.put("max", Histogram.percentile(counts, 100));
+        return values;
+    }
+
+    private Map<String, Pool> snapshotPools() {
+        synchronized (pools) {
+            return new LinkedHashMap<>(pools);
+        }
+    }
+
+    private static final class Pool {
+        private final HikariDataSource dataSource;
+        private final PoolMetrics metrics;
+        // bornes du mode adaptatif pour ce pool
+        private final int minSize;
+        private final int maxSize;
+        private long[] lastWaits;
+        private long adjustments;
+
+        private Pool(HikariDataSource dataSource, PoolMetrics metrics, int minSize, int maxSize) {
+            this.dataSource = dataSource;
+            this.metrics = metrics;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Contexte "read-your-writes" de la requête courante.
+ *
+ * Le client renvoie le jeton reçu après sa dernière écriture (la version du primaire à ce moment-là) :
+ * une lecture ne peut alors être servie que par un réplica qui a déjà appliqué cette version.
+ * Quand la requête écrit elle-même, la nouvelle version est remontée au client via le {@code onWrite} lié par le filtre.
+ */
+public final class ConsistencyContext {
+    private static final ThreadLocal<ConsistencyContext> CURRENT = new ThreadLocal<>();
+
+    private long requiredVersion;
+    private final LongConsumer onWrite;
+
+    private ConsistencyContext(long requiredVersion, LongConsumer onWrite) {
+        this.requiredVersion = requiredVersion;
+        this.onWrite = onWrite;
+    }
+
+    public static void bind(long requiredVersion, LongConsumer onWrite) {
+        CURRENT.set(new ConsistencyContext(requiredVersion, onWrite));
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    public static long requiredVersion() {
+        ConsistencyContext context = CURRENT.get();
+        return context != null ? context.requiredVersion : 0L;
+    }
+
+    static void recordWrite(long version) {
+        ConsistencyContext context = CURRENT.get();
+        if (context != null) {
+            // les lectures suivantes de la même requête doivent aussi voir cette écriture
+            context.requiredVersion = Math.max(context.requiredVersion, version);
+            context.onWrite.accept(version);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Anneau de hachage cohérent (consistent hashing).
+ *
+ * Chaque noeud est placé plusieurs fois sur l'anneau (noeuds virtuels) afin de lisser la répartition.
+ * Une clé appartient au premier noeud rencontré dans le sens horaire à partir de son hash.
+ * Quand on ajoute ou retire un noeud, seules les clés de ses voisins changent de propriétaire.
+ *
+ * L'anneau est immuable après sa construction : il peut donc être lu par plusieurs threads sans verrou.
+ */
+public final class ConsistentHashRing<T> {
+    private final NavigableMap<Long, T> ring = new TreeMap<>();
+    private final List<T> nodes;
+
+    public ConsistentHashRing(Collection<T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A consistent hash ring needs at least one node");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        int replicas = Math.max(1, virtualNodes);
+        for (T node : this.nodes) {
+            for (int i = 0; i < replicas; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public T nodeFor(String key) {
+        Map.Entry<Long, T> entry = ring.ceilingEntry(hash(key));
+        // On est après le dernier point de l'anneau : on repart du début
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    public List<T> getNodes() {
+        return nodes;
+    }
+
+    // Les 8 premiers octets du MD5 donnent une répartition uniforme et stable d'une JVM à l'autre
+    static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xFF);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.DoctorDayStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DoctorStatsRepository extends JpaRepository<DoctorDayStats, Long> {
+    // Lecture par l'index unique (doctor, day_start)
+    List<DoctorDayStats> findByDoctorAndDayBetweenOrderByDay(String doctor, LocalDate from, LocalDate to);
+
+    boolean existsByDoctorAndDay(String doctor, LocalDate day);
+
+    /**
+     * Ajoute les écarts à la ligne du jour, en une seule instruction : deux réservations concurrentes du même médecin
+     * (sur des créneaux différents) ne perdent pas de mise à jour. 0 si la ligne n'existe pas encore.
+     */
+    @Modifying
+    @Query("update DoctorDayStats s set s.appointments = s.appointments + :appointments,"
+            + " s.bookedMinutes = s.bookedMinutes + :bookedMinutes, s.cancellations = s.cancellations + :cancellations,"
+            + " s.cancelledMinutes = s.cancelledMinutes + :cancelledMinutes where s.doctor = :doctor and s.day = :day")
+    int add(@Param("doctor") String doctor, @Param("day") LocalDate day, @Param("appointments") long appointments,
+            @Param("bookedMinutes") long bookedMinutes, @Param("cancellations") long cancellations,
+            @Param("cancelledMinutes") long cancelledMinutes);
+
+    @Modifying
+    @Query("delete from DoctorDayStats s where s.doctor = :doctor")
+    int deleteByDoctor(@Param("doctor") String doctor);
+}
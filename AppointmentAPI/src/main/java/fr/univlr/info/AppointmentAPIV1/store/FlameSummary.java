@@ -0,0 +1,133 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cumul des traces par chemin d'étapes ("POST /api/appointments;booking;transaction;overlap-scan") :
+ * nombre de passages, durée totale et propre, percentiles, lignes lues et instructions SQL.
+ *
+ * {@link #folded()} donne le format "pile repliée" des flame graphs (un chemin et sa durée propre en µs par ligne),
+ * lisible par flamegraph.pl ou speedscope. Le même cumul se fait hors de l'application depuis le fichier
+ * d'export de {@link RequestTracer} : java ... FlameSummary traces.jsonl
+ */
+public class FlameSummary {
+    private final Map<String, Stage> stages = new TreeMap<>();
+
+    public synchronized void add(TraceSpan root) {
+        add(root, null);
+    }
+
+    private void add(TraceSpan span, String parentPath) {
+        String path = parentPath != null ? parentPath + ';' + span.getName() : span.getName();
+        stage(path).add(span.getDurationNanos(), span.getSelfNanos(), span.getRows(), span.getStatements());
+        for (TraceSpan child : span.getChildren()) {
+            add(child, path);
+        }
+    }
+
+    // Une trace du fichier d'export (voir RequestTracer.toJson)
+    public synchronized void add(JsonNode span) {
+        add(span, null);
+    }
+
+    private void add(JsonNode span, String parentPath) {
+        String path = parentPath != null ? parentPath + ';' + span.get("name").asText() : span.get("name").asText();
+        long duration = TimeUnit.MICROSECONDS.toNanos(span.get("durationUs").asLong());
+        long self = duration;
+        for (JsonNode child : span.path("children")) {
+            self -= TimeUnit.MICROSECONDS.toNanos(child.get("durationUs").asLong());
+            add(child, path);
+        }
+        stage(path).add(duration, Math.max(0, self), span.path("rows").asLong(), span.path("statements").asLong());
+    }
+
+    public synchronized String folded() {
+        StringBuilder folded = new StringBuilder();
+        stages.forEach((path, stage) -> folded.append(path).append(' ')
+                .append(TimeUnit.NANOSECONDS.toMicros(stage.selfNanos)).append('\n'));
+        return folded.toString();
+    }
+
+    // Étapes de la plus coûteuse à la moins coûteuse (durée totale) ; durées en µs
+    public synchronized List<Map<String, Object>> stages() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        stages.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().totalNanos, a.getValue().totalNanos))
+                .forEach(entry -> {
+                    Stage stage = entry.getValue();
+                    long[] durations = stage.durations.snapshot();
+                    Map<String, Object> values = new LinkedHashMap<>();
+                    values.put("path", entry.getKey());
+                    values.put("count", stage.count);
+                    values.put("totalUs", TimeUnit.NANOSECONDS.toMicros(stage.totalNanos));
+                    values.put("selfUs", TimeUnit.NANOSECONDS.toMicros(stage.selfNanos));
+                    values.put("p50Us", Histogram.percentile(durations, 50));
+                    values.put("p95Us", Histogram.percentile(durations, 95));
+                    values.put("p99Us", Histogram.percentile(durations, 99));
+                    values.put("rows", stage.rows);
+                    values.put("statements", stage.statements);
+                    result.add(values);
+                });
+        return result;
+    }
+
+    public synchronized void clear() {
+        stages.clear();
+    }
+
+    private Stage stage(String path) {
+        return stages.computeIfAbsent(path, p -> new Stage());
+    }
+
+    private static final class Stage {
+        private final Histogram durations = new Histogram();
+        private long count;
+        private long totalNanos;
+        private long selfNanos;
+        private long rows;
+        private long statements;
+
+        private void add(long duration, long self, long rows, long statements) {
+            count++;
+            totalNanos += duration;
+            selfNanos += self;
+            this.rows += rows;
+            this.statements += statements;
+            durations.record(TimeUnit.NANOSECONDS.toMicros(duration));
+        }
+    }
+
+    // Rapport local depuis un fichier d'export : les piles repliées, puis les étapes les plus coûteuses
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: FlameSummary <traces.jsonl>");
+            System.exit(2);
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        FlameSummary summary = new FlameSummary();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    summary.add(mapper.readTree(line).get("root"));
+                }
+            }
+        }
+        System.out.print(summary.folded());
+        System.out.println();
+        System.out.printf("%10s %10s %10s %8s %8s %6s  %s%n", "total(us)", "self(us)", "p95(us)", "count", "rows", "sql", "stage");
+        for (Map<String, Object> stage : summary.stages()) {
+            System.out.printf("%10d %10d %10d %8d %8d %6d  %s%n", stage.get("totalUs"), stage.get("selfUs"), stage.get("p95Us"),
+                    stage.get("count"), stage.get("rows"), stage.get("statements"), stage.get("path"));
+        }
+    }
+}
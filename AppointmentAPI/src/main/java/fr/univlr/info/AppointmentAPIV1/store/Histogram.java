@@ -0,0 +1,69 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme sans verrou à seaux exponentiels (puissances de 2) : l'enregistrement coûte un incrément atomique.
+ * Les percentiles renvoient la borne haute du seau, soit une précision d'un facteur 2 au plus,
+ * largement suffisante pour voir si une attente se compte en microsecondes ou en secondes.
+ */
+public class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long value) {
+        counts.incrementAndGet(bucket(Math.max(0, value)));
+    }
+
+    // Copie des compteurs : deux copies successives donnent la distribution de l'intervalle qui les sépare
+    public long[] snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return copy;
+    }
+
+    public static long[] since(long[] now, long[] before) {
+        long[] diff = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            diff[i] = now[i] - (before != null ? before[i] : 0);
+        }
+        return diff;
+    }
+
+    public static long count(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // Borne haute du seau qui contient le percentile demandé (0 si aucune valeur)
+    public static long percentile(long[] counts, double percentile) {
+        long total = count(counts);
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    // seau 0 : la valeur 0 ; seau i : ]2^(i-1) - 1, 2^i - 1]
+    private static int bucket(long value) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,25 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Journal des rendez-vous sur disque (voir {@link AppointmentJournal}), activé avec appointment.journal.enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "appointment.journal.enabled", havingValue = "true")
+class JournalConfiguration {
+
+    @Bean(destroyMethod = "close")
+    AppointmentJournal appointmentJournal(@Value("${appointment.journal.dir:journal}") String dir,
+                                          @Value("${appointment.journal.segment-mb:64}") int segmentMb,
+                                          @Value("${appointment.journal.fsync-interval-ms:5}") long fsyncIntervalMs,
+                                          @Value("${appointment.journal.wait-for-fsync:false}") boolean waitForFsync) throws IOException {
+        return new AppointmentJournal(Paths.get(dir), segmentMb * 1024 * 1024, fsyncIntervalMs, waitForFsync);
+    }
+}
@@ -0,0 +1,125 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+
+import java.util.Date;
+
+/**
+ * Un événement du journal des rendez-vous (voir {@link AppointmentJournal}), tel que relu ou servi aux consommateurs.
+ *
+ * BOOKED et UPDATED portent le rendez-vous complet, après l'écriture : le rejeu est un simple "upsert" par id,
+ * qu'on peut rejouer plusieurs fois sans changer le résultat. CANCELLED et DELETED retirent l'id, CLEARED vide tout.
+ */
+public final class JournalEvent {
+    public enum Type {BOOKED, UPDATED, CANCELLED, DELETED, CLEARED}
+
+    private final long seq;
+    private final long timestamp;
+    private final Type type;
+    private final long id;
+    private final String doctor;
+    // Médecin avant une modification (UPDATED), sinon null
+    private final String previousDoctor;
+    private final long start;
+    private final long end;
+    private final String patient;
+    private final String room;
+    private final String device;
+
+    JournalEvent(long seq, long timestamp, Type type, long id, String doctor, String previousDoctor,
+                 long start, long end, String patient, String room, String device) {
+        this.seq = seq;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.id = id;
+        this.doctor = doctor;
+        this.previousDoctor = previousDoctor;
+        this.start = start;
+        this.end = end;
+        this.patient = patient;
+        this.room = room;
+        this.device = device;
+    }
+
+    // Événement à ajouter : le numéro et l'heure sont fixés par le journal
+    public static JournalEvent of(Type type, Appointment appt, String previousDoctor) {
+        return new JournalEvent(0, 0, type, appt.getId(), appt.getDoctor(), previousDoctor,
+                appt.getStartDate().getTime(), appt.getEndDate().getTime(), appt.getPatient(), appt.getRoom(), appt.getDevice());
+    }
+
+    public static JournalEvent cleared() {
+        return new JournalEvent(0, 0, Type.CLEARED, 0, null, null, 0, 0, null, null, null);
+    }
+
+    JournalEvent numbered(long seq, long timestamp) {
+        return new JournalEvent(seq, timestamp, type, id, doctor, previousDoctor, start, end, patient, room, device);
+    }
+
+    public Appointment toAppointment() {
+        Appointment appt = new Appointment(doctor, new Date(start), new Date(end), patient);
+        appt.setId(id);
+        appt.setRoom(room);
+        appt.setDevice(device);
+        return appt;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Date getTime() {
+        return new Date(timestamp);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return type == Type.CLEARED ? null : id;
+    }
+
+    public String getDoctor() {
+        return doctor;
+    }
+
+    public String getPreviousDoctor() {
+        return previousDoctor;
+    }
+
+    public Date getStartDate() {
+        return type == Type.CLEARED ? null : new Date(start);
+    }
+
+    public Date getEndDate() {
+        return type == Type.CLEARED ? null : new Date(end);
+    }
+
+    public String getPatient() {
+        return patient;
+    }
+
+    public String getRoom() {
+        return room;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    long start() {
+        return start;
+    }
+
+    long end() {
+        return end;
+    }
+
+    long id() {
+        return id;
+    }
+
+    long timestamp() {
+        return timestamp;
+    }
+}
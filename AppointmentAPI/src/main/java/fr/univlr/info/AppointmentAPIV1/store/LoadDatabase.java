@@ -2,15 +2,23 @@ package fr.univlr.info.AppointmentAPIV1.store;
 
 import fr.univlr.info.AppointmentAPIV1.model.Appointment;
 import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentEventLog;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentImporter;
+import fr.univlr.info.AppointmentAPIV1.service.CalendarSnapshots;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.hateoas.config.EnableHypermediaSupport;
 import org.springframework.hateoas.config.HypermediaRestTemplateConfigurer;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -30,14 +38,18 @@ class LoadDatabase {
         }
     }
 
+    // Médecins de démonstration : seulement en développement (désactivé par le profil startup)
     @Bean
+    @ConditionalOnProperty(name = "appointment.seed.enabled", havingValue = "true", matchIfMissing = true)
     CommandLineRunner initDatabase(AppointmentRepository appointmentRepository,
-                                   DoctorRepository docRepository) {
+                                   DoctorRepository docRepository,
+                                   ShardRouter shardRouter) {
         return args -> {
             // V2 version : doctors mjones and jsmith must exist
-              Doctor mjones = docRepository.save(new Doctor("mjones"));
-              Doctor jsmith = docRepository.save(new Doctor("jsmith"));
-              Doctor jdoe = docRepository.save(new Doctor("jdoe"));
+            // (chaque médecin est enregistré sur son shard quand le sharding est actif)
+              Doctor mjones = shardRouter.onDoctor("mjones", () -> docRepository.save(new Doctor("mjones")));
+              Doctor jsmith = shardRouter.onDoctor("jsmith", () -> docRepository.save(new Doctor("jsmith")));
+              Doctor jdoe = shardRouter.onDoctor("jdoe", () -> docRepository.save(new Doctor("jdoe")));
 
             // uncomment to populate the database
             /*
@@ -51,6 +63,42 @@ class LoadDatabase {
         };
     }
 
+    // Base en mémoire recréée à chaque démarrage : les rendez-vous sont reconstruits depuis le journal
+    // (voir AppointmentEventLog), avant un éventuel import qui prendrait sinon leurs identifiants
+    @Bean
+    @ConditionalOnProperty(name = "appointment.journal.enabled", havingValue = "true")
+    CommandLineRunner restoreFromJournal(AppointmentEventLog events,
+                                         @Value("${appointment.journal.restore-on-startup:true}") boolean restore) {
+        return args -> {
+            if (restore) {
+                events.restore();
+            }
+        };
+    }
+
+    // Migration : import du fichier appointment.import.file (CSV, ou NDJSON si l'extension est .ndjson) au démarrage,
+    // avant le chargement des agendas
+    @Bean
+    @ConditionalOnProperty(name = "appointment.import.file")
+    CommandLineRunner importOnStartup(AppointmentImporter importer, @Value("${appointment.import.file}") String file) {
+        return args -> importer.importFile(Paths.get(file), file.endsWith(".ndjson")
+                ? AppointmentImporter.Format.NDJSON : AppointmentImporter.Format.CSV);
+    }
+
+    // Agendas en mémoire des médecins (voir CalendarSnapshots) : chargés une fois les médecins enregistrés
+    // et les shards rééquilibrés, c'est-à-dire après tous les CommandLineRunner
+    @Bean
+    @ConditionalOnProperty(name = "appointment.calendar.warm-on-startup", havingValue = "true", matchIfMissing = true)
+    ApplicationListener<ApplicationReadyEvent> warmCalendars(CalendarSnapshots calendars) {
+        return event -> {
+            // déjà construits depuis le journal : pas besoin de relire la table
+            if (!calendars.isWarm()) {
+                calendars.warm();
+            }
+            log.info("Doctor calendars loaded : " + calendars.stats().get("entries") + " entries");
+        };
+    }
+
     @Bean
     RestTemplate hypermediaRestTemplate(HypermediaRestTemplateConfigurer configurer) {
         return configurer.registerHypermediaTypes(new RestTemplate());
@@ -0,0 +1,58 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesures d'un pool HikariCP, alimentées par Hikari lui-même à chaque emprunt et restitution de connexion :
+ * temps d'attente d'une connexion (µs), durée d'utilisation (ms), délais dépassés,
+ * et nombre de connexions empruntées en même temps (avec son maximum depuis la dernière lecture).
+ */
+public class PoolMetrics implements IMetricsTracker {
+    private final Histogram waitMicros = new Histogram();
+    private final Histogram usageMillis = new Histogram();
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        waitMicros.record(TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos));
+        peakInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usageMillis.record(elapsedBorrowedMillis);
+        inUse.decrementAndGet();
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    public Histogram getWaitMicros() {
+        return waitMicros;
+    }
+
+    public Histogram getUsageMillis() {
+        return usageMillis;
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    // Maximum de connexions empruntées ensemble depuis l'appel précédent (remis au niveau actuel)
+    public int takePeakInUse() {
+        return peakInUse.getAndSet(inUse.get());
+    }
+}
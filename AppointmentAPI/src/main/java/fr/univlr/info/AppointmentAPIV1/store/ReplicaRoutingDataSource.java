@@ -0,0 +1,75 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Envoie les transactions en lecture seule vers un réplica et tout le reste vers le primaire.
+ *
+ * Il doit être placé derrière un {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} :
+ * le caractère "read-only" de la transaction n'est connu qu'une fois la transaction démarrée.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    public static final String PRIMARY = "primary";
+    private static final Object WRITE_MARKER = new Object();
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final ReplicationTracker tracker;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, ReplicationTracker tracker) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        this.tracker = tracker;
+        Map<Object, Object> targets = new LinkedHashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public ReplicationTracker getTracker() {
+        return tracker;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            String replica = tracker.selectReplica(ConsistencyContext.requiredVersion(), System.currentTimeMillis());
+            return replica != null ? replica : PRIMARY;
+        }
+        trackWrite();
+        return PRIMARY;
+    }
+
+    // La version du primaire n'avance qu'au commit : un réplica ne peut pas annoncer une version dont il n'a pas les données
+    private void trackWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_MARKER)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WRITE_MARKER, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_MARKER);
+                if (status == STATUS_COMMITTED) {
+                    ConsistencyContext.recordWrite(tracker.recordCommit());
+                }
+            }
+        });
+    }
+}
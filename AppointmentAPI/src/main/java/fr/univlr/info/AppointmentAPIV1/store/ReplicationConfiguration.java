@@ -0,0 +1,70 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mode "replication" : un primaire pour les écritures, des réplicas pour les transactions read-only.
+ *
+ * Activé avec le profil {@code replication} (voir application-replication.properties).
+ * Ce mode n'est pas combinable avec le sharding : les deux déclarent la DataSource principale.
+ */
+@Configuration
+@ConditionalOnProperty(name = "appointment.replication.enabled", havingValue = "true")
+class ReplicationConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(ReplicationConfiguration.class);
+
+    // La connexion physique n'est prise qu'à la première requête SQL, quand le flag read-only de la transaction est connu
+    @Bean
+    @Primary
+    LazyConnectionDataSourceProxy dataSource(DataSourceProperties properties, ConnectionPools pools,
+                                             @Value("${appointment.replication.replicas:2}") int replicaCount,
+                                             @Value("${appointment.replication.url-template:jdbc:h2:mem:appointmentdb-replica%d;DB_CLOSE_DELAY=-1}") String urlTemplate,
+                                             @Value("${appointment.replication.max-lag-ms:1000}") long maxLagMillis) {
+        DataSource primary = pools.register("primary", properties.initializeDataSourceBuilder().type(HikariDataSource.class).build());
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaCount; i++) {
+            replicas.put("replica" + i, pools.register("replica" + i, DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(String.format(urlTemplate, i))
+                    .username(properties.getUsername())
+                    .password(properties.getPassword())
+                    .build()));
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas,
+                new ReplicationTracker(replicas.keySet(), maxLagMillis));
+        routing.afterPropertiesSet();
+        log.info("Read/write split enabled: read-only transactions go to {} when they are fresh enough", replicas.keySet());
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    @Bean
+    ReplicationTracker replicationTracker(LazyConnectionDataSourceProxy dataSource) {
+        return routing(dataSource).getTracker();
+    }
+
+    @Bean
+    ReplicationStandIn replicationStandIn(LazyConnectionDataSourceProxy dataSource,
+                                          @Value("${appointment.replication.sync-interval-ms:200}") long intervalMillis) {
+        ReplicaRoutingDataSource routing = routing(dataSource);
+        return new ReplicationStandIn(routing.getPrimary(), routing.getReplicas(), routing.getTracker(), intervalMillis);
+    }
+
+    // Une seule DataSource est déclarée comme bean : l'initialiseur de schéma de Spring Boot n'en voit pas d'autre
+    private static ReplicaRoutingDataSource routing(LazyConnectionDataSourceProxy dataSource) {
+        return (ReplicaRoutingDataSource) dataSource.getTargetDataSource();
+    }
+}
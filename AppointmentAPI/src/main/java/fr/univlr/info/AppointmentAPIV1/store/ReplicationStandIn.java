@@ -0,0 +1,133 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remplaçant local d'une vraie réplication (pour le développement et les tests, avec des bases H2 embarquées).
+ *
+ * Au démarrage, le schéma généré par Hibernate sur le primaire est recopié sur chaque réplica.
+ * Ensuite, à intervalle régulier, on prend une photo des tables du primaire et on la rejoue sur chaque réplica
+ * dans une seule transaction : les lecteurs voient soit l'ancienne photo, soit la nouvelle, jamais un état partiel.
+ * La copie est complète à chaque fois, ce qui suffit pour un jeu de données de développement.
+ */
+public class ReplicationStandIn implements SmartInitializingSingleton, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(ReplicationStandIn.class);
+
+    private final JdbcTemplate primary;
+    private final TransactionTemplate primaryTx;
+    private final Map<String, DataSource> replicas;
+    private final ReplicationTracker tracker;
+    private final long intervalMillis;
+    private ScheduledExecutorService scheduler;
+
+    public ReplicationStandIn(DataSource primary, Map<String, DataSource> replicas, ReplicationTracker tracker, long intervalMillis) {
+        this.primary = new JdbcTemplate(primary);
+        this.primaryTx = new TransactionTemplate(new DataSourceTransactionManager(primary));
+        this.primaryTx.setReadOnly(true);
+        this.replicas = replicas;
+        this.tracker = tracker;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<String> ddl = primary.queryForList("SCRIPT NODATA", String.class);
+        for (DataSource replica : replicas.values()) {
+            JdbcTemplate jdbc = new JdbcTemplate(replica);
+            jdbc.execute("DROP ALL OBJECTS");
+            for (String statement : ddl) {
+                jdbc.execute(statement);
+            }
+            // le réplica ne reçoit que des photos complètes : l'ordre de chargement des tables n'a pas d'importance
+            jdbc.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replication-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::syncSafely, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void syncSafely() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            log.warn("Replication stand-in failed, replicas keep their previous snapshot", e);
+        }
+    }
+
+    void sync() {
+        // La version est lue AVANT la photo : un réplica peut avoir plus de données que sa version annoncée, jamais moins
+        long version = tracker.getPrimaryVersion();
+        boolean upToDate = true;
+        for (String replica : replicas.keySet()) {
+            upToDate &= tracker.getAppliedVersion(replica) >= version;
+        }
+        if (upToDate) {
+            long now = System.currentTimeMillis();
+            for (String replica : replicas.keySet()) {
+                tracker.markApplied(replica, version, now);
+            }
+            return;
+        }
+
+        Map<String, List<Map<String, Object>>> snapshot = primaryTx.execute(status -> {
+            Map<String, List<Map<String, Object>>> tables = new LinkedHashMap<>();
+            for (String table : primary.queryForList("SELECT table_name FROM information_schema.tables " +
+                    "WHERE table_schema = 'PUBLIC' AND table_type = 'TABLE'", String.class)) {
+                tables.put(table, primary.queryForList("SELECT * FROM " + table));
+            }
+            return tables;
+        });
+
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            apply(replica.getValue(), snapshot);
+            tracker.markApplied(replica.getKey(), version, System.currentTimeMillis());
+        }
+    }
+
+    private void apply(DataSource replica, Map<String, List<Map<String, Object>>> snapshot) {
+        JdbcTemplate jdbc = new JdbcTemplate(replica);
+        new TransactionTemplate(new DataSourceTransactionManager(replica)).executeWithoutResult(status -> {
+            for (Map.Entry<String, List<Map<String, Object>>> table : snapshot.entrySet()) {
+                jdbc.update("DELETE FROM " + table.getKey());
+                List<Map<String, Object>> rows = table.getValue();
+                if (rows.isEmpty()) {
+                    continue;
+                }
+                StringJoiner columns = new StringJoiner(", ");
+                StringJoiner marks = new StringJoiner(", ");
+                for (String column : rows.get(0).keySet()) {
+                    columns.add(column);
+                    marks.add("?");
+                }
+                List<Object[]> values = new ArrayList<>(rows.size());
+                for (Map<String, Object> row : rows) {
+                    values.add(row.values().toArray());
+                }
+                jdbc.batchUpdate("INSERT INTO " + table.getKey() + " (" + columns + ") VALUES (" + marks + ")", values);
+            }
+        });
+    }
+}
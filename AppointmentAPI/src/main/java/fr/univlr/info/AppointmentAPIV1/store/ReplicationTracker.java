@@ -0,0 +1,97 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suit la version du primaire (incrémentée à chaque commit d'écriture, comme un LSN)
+ * et la version appliquée par chaque réplica.
+ *
+ * Un réplica n'est choisi pour une lecture que s'il a appliqué la version exigée par le client
+ * et s'il n'est pas en retard depuis plus de {@code maxLagMillis}. Sinon la lecture retombe sur le primaire.
+ */
+public class ReplicationTracker {
+    private final AtomicLong primaryVersion = new AtomicLong();
+    private final List<String> replicas;
+    private final Map<String, ReplicaState> states = new ConcurrentHashMap<>();
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryFallbacks = new AtomicLong();
+
+    public ReplicationTracker(Collection<String> replicas, long maxLagMillis) {
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.maxLagMillis = maxLagMillis;
+        for (String replica : this.replicas) {
+            // tant qu'un réplica n'a pas été synchronisé une première fois, il n'est pas éligible
+            states.put(replica, new ReplicaState(-1L, 0L));
+        }
+    }
+
+    public List<String> getReplicas() {
+        return replicas;
+    }
+
+    public long getPrimaryVersion() {
+        return primaryVersion.get();
+    }
+
+    public long recordCommit() {
+        return primaryVersion.incrementAndGet();
+    }
+
+    public void markApplied(String replica, long version, long now) {
+        states.put(replica, new ReplicaState(version, now));
+    }
+
+    public long getAppliedVersion(String replica) {
+        return states.get(replica).appliedVersion;
+    }
+
+    /**
+     * @return le réplica qui peut servir la lecture, ou null si la lecture doit aller sur le primaire
+     */
+    public String selectReplica(long requiredVersion, long now) {
+        long primary = primaryVersion.get();
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            String replica = replicas.get((start + i) % size);
+            ReplicaState state = states.get(replica);
+            if (state.isEligible(requiredVersion, primary, now, maxLagMillis)) {
+                replicaReads.incrementAndGet();
+                return replica;
+            }
+        }
+        primaryFallbacks.incrementAndGet();
+        return null;
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    public long getPrimaryFallbacks() {
+        return primaryFallbacks.get();
+    }
+
+    private static final class ReplicaState {
+        final long appliedVersion;
+        final long syncedAt;
+
+        ReplicaState(long appliedVersion, long syncedAt) {
+            this.appliedVersion = appliedVersion;
+            this.syncedAt = syncedAt;
+        }
+
+        boolean isEligible(long requiredVersion, long primaryVersion, long now, long maxLagMillis) {
+            if (appliedVersion < 0 || appliedVersion < requiredVersion) {
+                return false;
+            }
+            // à jour : aucun retard. Sinon le retard court depuis la dernière synchronisation
+            return appliedVersion >= primaryVersion || now - syncedAt <= maxLagMillis;
+        }
+    }
+}
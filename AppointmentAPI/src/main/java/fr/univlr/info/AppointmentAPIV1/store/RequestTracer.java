@@ -0,0 +1,234 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univlr.info.AppointmentAPIV1.controller.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traçage des requêtes par étapes, échantillonné (appointment.tracing.*).
+ *
+ * Une requête sur sample-rate est tracée, plus celles qui portent un en-tête W3C traceparent marqué "sampled"
+ * (on garde alors son identifiant de trace), dans la limite de forced-per-second : un client ne peut pas faire tracer
+ * toutes ses requêtes. Les étapes (voir {@link TraceContext}) forment un arbre avec durées, lignes lues et instructions SQL.
+ * À la fin de la requête, l'arbre est cumulé dans un {@link FlameSummary}, gardé parmi les dernières traces et,
+ * si appointment.tracing.file est renseigné, confié au thread d'export qui l'écrit en une ligne JSON à la fin de ce
+ * fichier (une file pleine fait perdre la ligne, jamais attendre la requête).
+ * Une requête non tracée ne coûte qu'un tirage aléatoire et, par étape instrumentée, une lecture de ThreadLocal.
+ */
+@Component
+public class RequestTracer implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(RequestTracer.class);
+
+    private static final int EXPORT_QUEUE = 1024;
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final double forcedPerSecond;
+    private final int maxSpans;
+    private final int keep;
+    private final ObjectMapper objectMapper;
+    private final Writer export;
+    private final ExecutorService exporter;
+    private final AtomicLong droppedExports = new AtomicLong();
+    // Traces demandées par traceparent ; recréé par reset()
+    private volatile TokenBucket forced;
+    private final FlameSummary summary = new FlameSummary();
+    // Dernières traces, la plus récente à la fin
+    private final Deque<TraceSpan> recent = new ArrayDeque<>();
+
+    public RequestTracer(@Value("${appointment.tracing.enabled:false}") boolean enabled,
+                         @Value("${appointment.tracing.sample-rate:0.01}") double sampleRate,
+                         @Value("${appointment.tracing.forced-per-second:10}") double forcedPerSecond,
+                         @Value("${appointment.tracing.max-spans:256}") int maxSpans,
+                         @Value("${appointment.tracing.keep:100}") int keep,
+                         @Value("${appointment.tracing.file:}") String file,
+                         ObjectMapper objectMapper) throws IOException {
+        this.enabled = enabled;
+        this.sampleRate = sampleRate;
+        this.forcedPerSecond = forcedPerSecond;
+        this.forced = forcedBucket();
+        this.maxSpans = maxSpans;
+        this.keep = keep;
+        this.objectMapper = objectMapper;
+        if (enabled && !file.isEmpty()) {
+            Path path = Paths.get(file);
+            if (path.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+            }
+            this.export = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            this.exporter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(EXPORT_QUEUE), r -> {
+                Thread thread = new Thread(r, "trace-export");
+                thread.setDaemon(true);
+                return thread;
+            }, (task, executor) -> droppedExports.incrementAndGet());
+        } else {
+            this.export = null;
+            this.exporter = null;
+        }
+    }
+
+    private TokenBucket forcedBucket() {
+        return forcedPerSecond > 0 ? new TokenBucket(forcedPerSecond, (long) Math.ceil(forcedPerSecond), System.nanoTime()) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ouvre la trace de la requête du thread si elle est échantillonnée, sinon rend TraceSpan.NOOP.
+     *
+     * @param traceparent en-tête W3C de l'appelant (peut être null)
+     */
+    public TraceSpan begin(String name, String traceparent) {
+        if (!enabled) {
+            return TraceSpan.NOOP;
+        }
+        String traceId = sampledTraceId(traceparent);
+        TokenBucket bucket = forced;
+        if (traceId != null && (bucket == null || bucket.tryAcquire(1, System.nanoTime()) > 0)) {
+            // au-delà de la limite, la requête est échantillonnée comme les autres
+            traceId = null;
+        }
+        if (traceId == null) {
+            if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+                return TraceSpan.NOOP;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            traceId = String.format("%016x%016x", random.nextLong(), random.nextLong());
+        }
+        TraceSpan root = new TraceSpan(name, null, System.nanoTime(), maxSpans);
+        root.setTraceId(traceId);
+        TraceContext.bind(root);
+        return root;
+    }
+
+    // Ferme la trace (name : son nom définitif, par exemple le motif de l'URL) et l'enregistre
+    public void finish(TraceSpan root, String name) {
+        if (root == TraceSpan.NOOP) {
+            return;
+        }
+        TraceContext.clear();
+        if (name != null) {
+            root.rename(name);
+        }
+        root.close();
+        root.closeOpenChildren();
+        summary.add(root);
+        synchronized (recent) {
+            recent.addLast(root);
+            while (recent.size() > keep) {
+                recent.removeFirst();
+            }
+        }
+        if (exporter != null) {
+            exporter.execute(() -> write(root));
+        }
+    }
+
+    // Les dernières traces, de la plus récente à la plus ancienne
+    public List<Map<String, Object>> recent(int limit) {
+        List<TraceSpan> traces;
+        synchronized (recent) {
+            traces = new ArrayList<>(recent);
+        }
+        Collections.reverse(traces);
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (TraceSpan root : traces.subList(0, Math.min(limit, traces.size()))) {
+            result.add(toJson(root));
+        }
+        return result;
+    }
+
+    public FlameSummary getSummary() {
+        return summary;
+    }
+
+    public void reset() {
+        forced = forcedBucket();
+        summary.clear();
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    // Une trace : {traceId, root: {name, startUs (depuis le début de la trace), durationUs, rows, statements, children}}
+    private static Map<String, Object> toJson(TraceSpan root) {
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceId", root.getTraceId());
+        trace.put("root", toJson(root, root.getStartNanos()));
+        return trace;
+    }
+
+    private static Map<String, Object> toJson(TraceSpan span, long traceStart) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("name", span.getName());
+        values.put("startUs", TimeUnit.NANOSECONDS.toMicros(span.getStartNanos() - traceStart));
+        values.put("durationUs", TimeUnit.NANOSECONDS.toMicros(span.getDurationNanos()));
+        values.put("rows", span.getRows());
+        values.put("statements", span.getStatements());
+        if (!span.getChildren().isEmpty()) {
+            List<Map<String, Object>> children = new ArrayList<>();
+            for (TraceSpan child : span.getChildren()) {
+                children.add(toJson(child, traceStart));
+            }
+            values.put("children", children);
+        }
+        return values;
+    }
+
+    // Thread d'export : seul à écrire dans le fichier
+    private void write(TraceSpan root) {
+        try {
+            export.write(objectMapper.writeValueAsString(toJson(root)));
+            export.write('\n');
+            export.flush();
+        } catch (IOException e) {
+            log.warn("Could not export trace {}: {}", root.getTraceId(), e.getMessage());
+        }
+    }
+
+    // traceparent : version-traceid-parentid-flags, le bit 1 des flags demande la trace
+    private static String sampledTraceId(String traceparent) {
+        if (traceparent == null) {
+            return null;
+        }
+        String[] parts = traceparent.trim().split("-");
+        if (parts.length != 4 || parts[1].length() != 32 || parts[3].length() != 2) {
+            return null;
+        }
+        try {
+            return (Integer.parseInt(parts[3], 16) & 1) == 1 ? parts[1] : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException, InterruptedException {
+        if (exporter != null) {
+            // les traces déjà en file sont écrites avant la fermeture du fichier
+            exporter.shutdown();
+            exporter.awaitTermination(5, TimeUnit.SECONDS);
+            export.close();
+            if (droppedExports.get() > 0) {
+                log.warn("{} trace(s) not exported: export queue full", droppedExports.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.ResourceBooking;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+public interface ResourceBookingRepository extends JpaRepository<ResourceBooking, Long> {
+    // Bornes incluses, comme AppointmentController.isTimeOverlap
+    @Query("select count(b) > 0 from ResourceBooking b where b.resourceKey = :key and b.startDate <= :end and b.endDate >= :start")
+    boolean existsOverlapping(@Param("key") String key, @Param("start") Date start, @Param("end") Date end);
+
+    List<ResourceBooking> findByResourceKeyAndStartDateBetweenOrderByStartDate(String key, Date from, Date to);
+
+    List<ResourceBooking> findByAppointmentId(Long appointmentId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from ResourceBooking b where b.appointmentId = :appointmentId")
+    int deleteByAppointmentId(@Param("appointmentId") Long appointmentId);
+}
@@ -0,0 +1,63 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collection;
+
+/**
+ * Éviction du cache de second niveau pour les écritures qui ne passent pas par Hibernate (JDBC brut du
+ * rééquilibrage des shards, de l'import en masse) ou qui ont été faites par une autre instance du cluster :
+ * Hibernate ne sait pas qu'elles ont eu lieu.
+ *
+ * Sans cache de second niveau (use_second_level_cache=false), les évictions ne font rien.
+ */
+@Component
+public class SecondLevelCache {
+    private static final String DOCTOR_APPOINTMENTS_ROLE = Doctor.class.getName() + ".appointments";
+
+    private final Cache cache;
+
+    public SecondLevelCache(EntityManagerFactory entityManagerFactory) {
+        this.cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    // Tout ce qui concerne les rendez-vous et les médecins, requêtes en cache comprises
+    public void evictAll() {
+        cache.evictEntityData(Appointment.class);
+        cache.evictEntityData(Doctor.class);
+        cache.evictCollectionData(DOCTOR_APPOINTMENTS_ROLE);
+        cache.evictQueryRegions();
+    }
+
+    /**
+     * Changements d'un médecin faits par une autre instance : son entrée et sa liste de rendez-vous (doctorId null :
+     * médecin introuvable ici, supprimé entre-temps, ces deux régions sont vidées), les rendez-vous touchés et les résultats
+     * de findByDoctor, qu'une région de requêtes ne permet pas de vider paramètre par paramètre.
+     * Les rendez-vous des autres médecins restent en cache.
+     */
+    public void evictDoctor(Long doctorId, Collection<Long> appointmentIds) {
+        if (doctorId != null) {
+            cache.evictEntityData(Doctor.class, doctorId);
+            cache.evictCollectionData(DOCTOR_APPOINTMENTS_ROLE, doctorId);
+        } else {
+            cache.evictEntityData(Doctor.class);
+            cache.evictCollectionData(DOCTOR_APPOINTMENTS_ROLE);
+        }
+        for (Long id : appointmentIds) {
+            cache.evictEntityData(Appointment.class, id);
+        }
+        cache.evictQueryRegion(Appointment.BY_DOCTOR_QUERY_REGION);
+    }
+
+    // Un rendez-vous déplacé : son entrée, les listes de rendez-vous des médecins et les résultats de findByDoctor
+    public void evictAppointment(Long id) {
+        cache.evictEntityData(Appointment.class, id);
+        cache.evictCollectionData(DOCTOR_APPOINTMENTS_ROLE);
+        cache.evictQueryRegion(Appointment.BY_DOCTOR_QUERY_REGION);
+    }
+}
@@ -0,0 +1,30 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+/**
+ * Shard courant du thread, lu par {@link ShardRoutingDataSource} au moment où une connexion est demandée.
+ * Il est positionné par le {@link ShardRouter}, jamais directement par les contrôleurs.
+ */
+public final class ShardContext {
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    static String bind(String shard) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    static void restore(String previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.*;
+
+/**
+ * Outil de rééquilibrage des shards.
+ *
+ * Il parcourt chaque shard, recalcule le propriétaire de chaque médecin avec l'anneau courant du {@link ShardRouter}
+ * et déplace les médecins mal placés (ligne doctor, leurs rendez-vous et leurs statistiques) vers leur nouveau shard.
+ * On l'utilise après avoir changé le nombre de shards, ou quand une mise à jour change le médecin d'un rendez-vous.
+ *
+ * La copie se fait par MERGE ... KEY(ID) avant la suppression côté source : si l'opération est interrompue,
+ * on peut la relancer sans créer de doublons.
+ * Ces écritures en JDBC brut échappent à Hibernate : je vide moi-même le cache de second niveau après coup.
+ */
+public class ShardRebalancer {
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private final ShardRouter shardRouter;
+    private final SecondLevelCache secondLevelCache;
+    private final Map<String, JdbcTemplate> shards = new LinkedHashMap<>();
+
+    public ShardRebalancer(ShardRouter shardRouter, ShardRoutingDataSource dataSource, SecondLevelCache secondLevelCache) {
+        this.shardRouter = shardRouter;
+        this.secondLevelCache = secondLevelCache;
+        for (Map.Entry<String, DataSource> shard : dataSource.getShards().entrySet()) {
+            shards.put(shard.getKey(), new JdbcTemplate(shard.getValue()));
+        }
+    }
+
+    public Report rebalance() {
+        Report report = new Report();
+        for (String shard : shards.keySet()) {
+            JdbcTemplate jdbc = shards.get(shard);
+            // Les rendez-vous portent le nom du médecin : on les prend aussi en compte si la ligne doctor manque
+            Set<String> doctors = new LinkedHashSet<>(jdbc.queryForList("SELECT name FROM doctor", String.class));
+            doctors.addAll(jdbc.queryForList("SELECT DISTINCT doctor FROM appointment WHERE doctor IS NOT NULL", String.class));
+
+            for (String doctor : doctors) {
+                String owner = shardRouter.shardFor(doctor);
+                if (!owner.equals(shard)) {
+                    report.movedAppointments += moveDoctor(doctor, shard, owner);
+                    report.movedDoctors++;
+                }
+            }
+        }
+        if (report.movedDoctors > 0) {
+            secondLevelCache.evictAll();
+        }
+        log.info("Shard rebalancing done: {} doctor(s) and {} appointment(s) moved",
+                report.movedDoctors, report.movedAppointments);
+        return report;
+    }
+
+    public void moveAppointment(Long id, String from, String to) {
+        if (from.equals(to)) {
+            return;
+        }
+        copy("appointment", "id", "id = ?", id, from, to);
+        shards.get(from).update("DELETE FROM appointment WHERE id = ?", id);
+        secondLevelCache.evictAppointment(id);
+    }
+
+    private int moveDoctor(String doctor, String from, String to) {
+        copy("doctor", "id", "name = ?", doctor, from, to);
+        int moved = copy("appointment", "id", "doctor = ?", doctor, from, to);
+        // Une ligne du même jour a pu être créée sur le nouveau shard entre-temps : c'est la copie qui la remplace
+        copy("doctor_day_stats", "doctor, day_start", "doctor = ?", doctor, from, to);
+        JdbcTemplate source = shards.get(from);
+        source.update("DELETE FROM doctor_day_stats WHERE doctor = ?", doctor);
+        source.update("DELETE FROM appointment WHERE doctor = ?", doctor);
+        source.update("DELETE FROM doctor WHERE name = ?", doctor);
+        return moved;
+    }
+
+    private int copy(String table, String keyColumns, String where, Object key, String from, String to) {
+        List<Map<String, Object>> rows = shards.get(from).queryForList("SELECT * FROM " + table + " WHERE " + where, key);
+        JdbcTemplate target = shards.get(to);
+        for (Map<String, Object> row : rows) {
+            StringJoiner columns = new StringJoiner(", ");
+            StringJoiner marks = new StringJoiner(", ");
+            for (String column : row.keySet()) {
+                columns.add(column);
+                marks.add("?");
+            }
+            target.update("MERGE INTO " + table + " (" + columns + ") KEY (" + keyColumns + ") VALUES (" + marks + ")",
+                    row.values().toArray());
+        }
+        return rows.size();
+    }
+
+    public static class Report {
+        private int movedDoctors;
+        private int movedAppointments;
+
+        public int getMovedDoctors() {
+            return movedDoctors;
+        }
+
+        public int getMovedAppointments() {
+            return movedAppointments;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Point d'entrée unique du sharding par médecin.
+ *
+ * Chaque médecin (et donc tous ses rendez-vous) vit sur un seul shard, choisi par hachage cohérent de son nom.
+ * Les contrôleurs encapsulent leurs accès aux repositories dans {@link #onDoctor} pour les chemins
+ * "un seul médecin", et dans {@link #scatter} pour les listings qui doivent interroger tous les shards.
+ *
+ * Quand le sharding est désactivé (cas par défaut), il n'y a qu'un shard et le routeur exécute
+ * simplement le travail demandé, sans toucher au {@link ShardContext}.
+ */
+@Component
+public class ShardRouter {
+    public static final String DEFAULT_SHARD = shardName(0);
+
+    private final List<String> shards;
+    private final ConsistentHashRing<String> ring;
+
+    public ShardRouter(@Value("${appointment.sharding.enabled:false}") boolean enabled,
+                       @Value("${appointment.sharding.shards:1}") int shardCount,
+                       @Value("${appointment.sharding.virtual-nodes:128}") int virtualNodes) {
+        int count = enabled ? Math.max(1, shardCount) : 1;
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(shardName(i));
+        }
+        this.shards = Collections.unmodifiableList(names);
+        this.ring = new ConsistentHashRing<>(shards, virtualNodes);
+    }
+
+    public static String shardName(int index) {
+        return "shard" + index;
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    public List<String> getShards() {
+        return shards;
+    }
+
+    public String shardFor(String doctor) {
+        if (doctor == null || !isSharded()) {
+            return DEFAULT_SHARD;
+        }
+        return ring.nodeFor(doctor);
+    }
+
+    public <T> T onShard(String shard, Supplier<T> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        String previous = ShardContext.bind(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    public <T> T onDoctor(String doctor, Supplier<T> work) {
+        return onShard(shardFor(doctor), work);
+    }
+
+    public void forEachShard(Runnable work) {
+        for (String shard : shards) {
+            onShard(shard, () -> {
+                work.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Exécute la même requête sur chaque shard puis fusionne les résultats.
+     * Chaque shard doit renvoyer une liste déjà triée selon {@code order} : la fusion est alors un simple
+     * k-way merge, sans re-trier l'ensemble.
+     */
+    public <T> List<T> scatter(Supplier<List<T>> work, Comparator<? super T> order) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        List<List<T>> partials = new ArrayList<>(shards.size());
+        for (String shard : shards) {
+            partials.add(onShard(shard, work));
+        }
+        return mergeSorted(partials, order);
+    }
+
+    // Pour les accès par identifiant, qui ne portent pas le nom du médecin : on s'arrête au premier shard qui répond
+    public <T> Optional<T> scatterFirst(Supplier<Optional<T>> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        for (String shard : shards) {
+            Optional<T> found = onShard(shard, work);
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    // k-way merge de listes déjà triées ; sert aussi au listing découpé par médecin
+    public static <T> List<T> mergeSorted(List<List<T>> partials, Comparator<? super T> order) {
+        int total = 0;
+        PriorityQueue<PeekingCursor<T>> heads = new PriorityQueue<>(Math.max(1, partials.size()),
+                (a, b) -> order.compare(a.peek(), b.peek()));
+        for (List<T> partial : partials) {
+            total += partial.size();
+            if (!partial.isEmpty()) {
+                heads.add(new PeekingCursor<>(partial.iterator()));
+            }
+        }
+        List<T> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            PeekingCursor<T> head = heads.poll();
+            merged.add(head.next());
+            if (head.hasNext()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static final class PeekingCursor<T> {
+        private final Iterator<T> iterator;
+        private T current;
+
+        PeekingCursor(Iterator<T> iterator) {
+            this.iterator = iterator;
+            this.current = iterator.next();
+        }
+
+        T peek() {
+            return current;
+        }
+
+        boolean hasNext() {
+            return current != null;
+        }
+
+        T next() {
+            T value = current;
+            current = iterator.hasNext() ? iterator.next() : null;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DataSource qui délègue chaque connexion au shard lié au thread courant ({@link ShardContext}).
+ * Sans shard lié (démarrage d'Hibernate, tâches techniques), c'est le shard par défaut qui répond.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    private final Map<String, DataSource> shards;
+
+    public ShardRoutingDataSource(Map<String, DataSource> shards, String defaultShard) {
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        setTargetDataSources(new LinkedHashMap<Object, Object>(shards));
+        setDefaultTargetDataSource(shards.get(defaultShard));
+    }
+
+    public Map<String, DataSource> getShards() {
+        return shards;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
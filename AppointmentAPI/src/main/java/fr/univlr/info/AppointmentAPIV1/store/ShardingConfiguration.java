@@ -0,0 +1,92 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mode "sharding" : une base H2 embarquée par shard, derrière un {@link ShardRoutingDataSource}.
+ *
+ * Activé avec le profil {@code sharding} (voir application-sharding.properties) ou la propriété
+ * {@code appointment.sharding.enabled=true}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "appointment.sharding.enabled", havingValue = "true")
+class ShardingConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(ShardingConfiguration.class);
+
+    // Chaque shard génère ses identifiants dans sa propre plage : un id ne peut pas exister sur deux shards
+    static final long SHARD_ID_RANGE = 1L << 40;
+
+    @Bean
+    @Primary
+    ShardRoutingDataSource dataSource(ShardRouter shardRouter, ConnectionPools pools,
+                                      @Value("${appointment.sharding.url-template:jdbc:h2:mem:appointmentdb-%s;DB_CLOSE_DELAY=-1}") String urlTemplate,
+                                      @Value("${spring.datasource.username:sa}") String username,
+                                      @Value("${spring.datasource.password:}") String password) {
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        for (String shard : shardRouter.getShards()) {
+            shards.put(shard, pools.register("shard-" + shard, DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(String.format(urlTemplate, shard))
+                    .username(username)
+                    .password(password)
+                    .build()));
+        }
+        log.info("Sharding enabled on {} shard(s): {}", shards.size(), shards.keySet());
+        return new ShardRoutingDataSource(shards, ShardRouter.DEFAULT_SHARD);
+    }
+
+    @Bean
+    ShardRebalancer shardRebalancer(ShardRouter shardRouter, ShardRoutingDataSource dataSource,
+                                    SecondLevelCache secondLevelCache) {
+        return new ShardRebalancer(shardRouter, dataSource, secondLevelCache);
+    }
+
+    /**
+     * Hibernate ne génère le schéma que sur le shard par défaut (c'est la seule connexion qu'il voit au démarrage).
+     * Une fois l'EntityManagerFactory construit, je recopie ce schéma sur les autres shards avec SCRIPT NODATA,
+     * puis je décale la séquence de chaque shard dans sa propre plage d'identifiants.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "appointment.sharding.replicate-schema", havingValue = "true", matchIfMissing = true)
+    SmartInitializingSingleton shardSchemaReplicator(ShardRoutingDataSource dataSource) {
+        return () -> {
+            Map<String, DataSource> shards = dataSource.getShards();
+            List<String> ddl = new JdbcTemplate(shards.get(ShardRouter.DEFAULT_SHARD))
+                    .queryForList("SCRIPT NODATA", String.class);
+            int index = 0;
+            for (Map.Entry<String, DataSource> shard : shards.entrySet()) {
+                JdbcTemplate jdbc = new JdbcTemplate(shard.getValue());
+                if (!ShardRouter.DEFAULT_SHARD.equals(shard.getKey())) {
+                    jdbc.execute("DROP ALL OBJECTS");
+                    for (String statement : ddl) {
+                        jdbc.execute(statement);
+                    }
+                }
+                jdbc.execute("ALTER SEQUENCE IF EXISTS hibernate_sequence RESTART WITH " + (index * SHARD_ID_RANGE + 1));
+                index++;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "appointment.sharding.rebalance-on-startup", havingValue = "true")
+    CommandLineRunner rebalanceShards(ShardRebalancer shardRebalancer) {
+        return args -> shardRebalancer.rebalance();
+    }
+}
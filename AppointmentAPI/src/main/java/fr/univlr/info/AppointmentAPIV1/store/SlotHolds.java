@@ -0,0 +1,174 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Prises courtes sur un créneau [start, end] de chaque ressource d'une réservation (médecin, salle, appareil).
+ *
+ * Chaque ressource a la liste des prises en cours, un tableau remplacé par compareAndSet (jamais de verrou) :
+ * deux réservations du même médecin sur des créneaux différents passent en même temps, seules celles qui
+ * se chevauchent (bornes incluses, comme existsOverlapping) s'attendent. Celle qui trouve une prise sur son
+ * créneau rend les siennes, attend la fin de l'autre puis recommence : rien n'est jamais attendu en tenant
+ * une prise, donc pas d'interblocage.
+ *
+ * Une prise expire après ttl-ms (réservation bloquée, thread perdu) : elle est ignorée et retirée du tableau
+ * par la prochaine réservation sur la ressource, sans thread de nettoyage. La transaction de réservation
+ * a un timeout plus court que le TTL (voir AppointmentService) pour qu'une prise n'expire pas sous elle.
+ */
+@Component
+public class SlotHolds {
+    private static final Hold[] NONE = new Hold[0];
+
+    private final ConcurrentHashMap<String, AtomicReference<Hold[]>> resources = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+
+    public SlotHolds(@Value("${appointment.booking.hold-ttl-ms:10000}") long ttlMillis) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    public <T> T withHolds(Collection<String> keys, long start, long end, Supplier<T> work) {
+        return withHolds(keys, new long[]{start}, new long[]{end}, work);
+    }
+
+    /**
+     * Plusieurs créneaux [starts[i], ends[i]] sur chaque ressource (les occurrences d'une série) : tous pris, ou aucun.
+     * Comme pour un seul créneau, on n'attend jamais en tenant une prise.
+     */
+    public <T> T withHolds(Collection<String> keys, long[] starts, long[] ends, Supplier<T> work) {
+        // TreeSet : clés triées et sans doublon, prises toujours dans le même ordre
+        TreeSet<String> sorted = new TreeSet<>(keys);
+        while (true) {
+            long expiresAt = System.nanoTime() + ttlNanos;
+            List<Hold> holds = new ArrayList<>(starts.length);
+            for (int i = 0; i < starts.length; i++) {
+                holds.add(new Hold(starts[i], ends[i], expiresAt));
+            }
+            List<String> taken = new ArrayList<>(sorted.size());
+            Hold conflict = null;
+            for (String key : sorted) {
+                conflict = tryHolds(key, holds);
+                if (conflict != null) {
+                    break;
+                }
+                taken.add(key);
+            }
+            if (conflict == null) {
+                try {
+                    return work.get();
+                } finally {
+                    release(holds, taken);
+                }
+            }
+            release(holds, taken);
+            conflict.await();
+        }
+    }
+
+    // Nombre de prises en cours (non expirées) sur toutes les ressources
+    public int activeHolds() {
+        long now = System.nanoTime();
+        int active = 0;
+        for (AtomicReference<Hold[]> holds : resources.values()) {
+            for (Hold hold : holds.get()) {
+                if (hold.isLive(now)) {
+                    active++;
+                }
+            }
+        }
+        return active;
+    }
+
+    // Ajoute les prises si aucune prise vivante ne les chevauche ; sinon renvoie celle qui bloque
+    private Hold tryHolds(String key, List<Hold> holds) {
+        AtomicReference<Hold[]> ref = resources.computeIfAbsent(key, k -> new AtomicReference<>(NONE));
+        while (true) {
+            long now = System.nanoTime();
+            Hold[] current = ref.get();
+            Hold[] next = new Hold[current.length + holds.size()];
+            int n = 0;
+            for (Hold other : current) {
+                if (!other.isLive(now)) {
+                    // rendue ou expirée : on la laisse tomber au passage
+                    continue;
+                }
+                for (Hold hold : holds) {
+                    if (other.overlaps(hold)) {
+                        return other;
+                    }
+                }
+                next[n++] = other;
+            }
+            for (Hold hold : holds) {
+                next[n++] = hold;
+            }
+            if (ref.compareAndSet(current, n == next.length ? next : Arrays.copyOf(next, n))) {
+                return null;
+            }
+        }
+    }
+
+    private void release(List<Hold> holds, List<String> keys) {
+        holds.forEach(Hold::release);
+        for (String key : keys) {
+            AtomicReference<Hold[]> ref = resources.get(key);
+            Hold[] current;
+            Hold[] next;
+            do {
+                current = ref.get();
+                // rendues juste au-dessus : elles ne sont plus vivantes
+                next = Arrays.stream(current).filter(other -> other.released.getCount() > 0).toArray(Hold[]::new);
+            } while (!ref.compareAndSet(current, next));
+        }
+    }
+
+    private static final class Hold {
+        private final long start;
+        private final long end;
+        private final long expiresAt;
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        Hold(long start, long end, long expiresAt) {
+            this.start = start;
+            this.end = end;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean overlaps(Hold other) {
+            return start <= other.end && end >= other.start;
+        }
+
+        boolean isLive(long now) {
+            return released.getCount() > 0 && now - expiresAt < 0;
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        // Jusqu'à ce que la prise soit rendue, au plus jusqu'à son expiration
+        void await() {
+            try {
+                released.await(expiresAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a slot hold", e);
+            }
+        }
+    }
+}
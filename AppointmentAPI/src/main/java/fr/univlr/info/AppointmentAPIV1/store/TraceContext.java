@@ -0,0 +1,58 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+/**
+ * Étape en cours de la requête tracée du thread (voir {@link RequestTracer}, qui décide quelles requêtes sont tracées).
+ *
+ * Le code instrumenté ouvre une sous-étape autour de chaque étape qui compte :
+ * <pre>
+ * try (TraceSpan span = TraceContext.span("overlap-scan")) {
+ *     ...
+ *     span.rows(series.size());
+ * }
+ * </pre>
+ * Pour une requête non tracée (ou dans un autre thread que celui de la requête), on reçoit TraceSpan.NOOP :
+ * une lecture de ThreadLocal, rien d'autre. Les instructions SQL sont comptées par {@link TracingStatementInspector}.
+ */
+public final class TraceContext {
+    private static final ThreadLocal<TraceSpan> CURRENT = new ThreadLocal<>();
+
+    private TraceContext() {
+    }
+
+    public static TraceSpan span(String name) {
+        TraceSpan current = CURRENT.get();
+        if (current == null) {
+            return TraceSpan.NOOP;
+        }
+        TraceSpan child = current.child(name);
+        if (child != TraceSpan.NOOP) {
+            CURRENT.set(child);
+        }
+        return child;
+    }
+
+    // Étape en cours, pour lui ajouter des lignes sans en ouvrir une nouvelle
+    public static TraceSpan current() {
+        TraceSpan current = CURRENT.get();
+        return current != null ? current : TraceSpan.NOOP;
+    }
+
+    static void statement() {
+        TraceSpan current = CURRENT.get();
+        if (current != null) {
+            current.statement();
+        }
+    }
+
+    static void bind(TraceSpan root) {
+        CURRENT.set(root);
+    }
+
+    static void restore(TraceSpan span) {
+        CURRENT.set(span);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+}
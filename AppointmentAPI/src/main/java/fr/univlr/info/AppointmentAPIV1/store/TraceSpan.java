@@ -0,0 +1,134 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Une étape chronométrée d'une requête tracée (voir {@link TraceContext}) : son nom, sa durée, ses sous-étapes,
+ * les lignes qu'elle a lues et les instructions SQL qu'elle a envoyées elle-même (pas celles de ses sous-étapes).
+ *
+ * Une étape n'est manipulée que par le thread de sa requête : pas de synchronisation.
+ * Hors trace, on reçoit {@link #NOOP}, qui ne mesure rien : la fermer ou lui ajouter des lignes ne coûte rien.
+ */
+public final class TraceSpan implements AutoCloseable {
+    public static final TraceSpan NOOP = new TraceSpan(null, null, 0, 0);
+
+    private final TraceSpan parent;
+    private final TraceSpan root;
+    private final List<TraceSpan> children;
+    private final long startNanos;
+    private String name;
+    // identifiant de la trace (racine seulement)
+    private String traceId;
+    private long durationNanos = -1;
+    private long rows;
+    private long statements;
+    // nombre d'étapes de la trace et plafond (tenus par la racine)
+    private int spans;
+    private final int maxSpans;
+
+    TraceSpan(String name, TraceSpan parent, long startNanos, int maxSpans) {
+        this.name = name;
+        this.parent = parent;
+        this.root = parent != null ? parent.root : this;
+        this.children = name != null ? new ArrayList<>(2) : Collections.emptyList();
+        this.startNanos = startNanos;
+        this.spans = 1;
+        this.maxSpans = maxSpans;
+    }
+
+    public boolean isRecording() {
+        return this != NOOP;
+    }
+
+    // Lignes lues (ou mises en forme) par l'étape
+    public TraceSpan rows(long count) {
+        if (this != NOOP) {
+            rows += count;
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (this == NOOP || durationNanos >= 0) {
+            return;
+        }
+        durationNanos = System.nanoTime() - startNanos;
+        if (parent != null) {
+            TraceContext.restore(parent);
+        }
+    }
+
+    // Sous-étape, ou NOOP si la trace a déjà son nombre maximum d'étapes (une boucle tracée ne la fait pas grossir sans fin)
+    TraceSpan child(String childName) {
+        if (root.spans >= root.maxSpans) {
+            return NOOP;
+        }
+        root.spans++;
+        TraceSpan child = new TraceSpan(childName, this, System.nanoTime(), 0);
+        children.add(child);
+        return child;
+    }
+
+    void statement() {
+        statements++;
+    }
+
+    void rename(String newName) {
+        this.name = newName;
+    }
+
+    void setTraceId(String traceId) {
+        this.traceId = traceId;
+    }
+
+    public String getTraceId() {
+        return root.traceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<TraceSpan> getChildren() {
+        return children;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    // Durée, y compris les sous-étapes (celle d'une étape jamais fermée compte jusqu'à la fin de sa parente)
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    // Durée propre : sans les sous-étapes
+    public long getSelfNanos() {
+        long self = durationNanos;
+        for (TraceSpan child : children) {
+            self -= child.durationNanos;
+        }
+        return Math.max(0, self);
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    // Ferme les sous-étapes restées ouvertes (exception entre l'ouverture et le try) à la fin de leur parente
+    void closeOpenChildren() {
+        for (TraceSpan child : children) {
+            if (child.durationNanos < 0) {
+                child.durationNanos = startNanos + durationNanos - child.startNanos;
+            }
+            child.closeOpenChildren();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Compte chaque instruction SQL préparée par Hibernate dans l'étape en cours de la requête tracée (voir {@link TraceContext}).
+ * Déclaré par hibernate.session_factory.statement_inspector ; ne change pas le SQL.
+ * Les requêtes passées directement par JDBC (JdbcTemplate) ne sont pas comptées.
+ */
+public class TracingStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        TraceContext.statement();
+        return sql;
+    }
+}
@@ -0,0 +1,197 @@
+package fr.univlr.info.AppointmentAPIV1.store;
+
+import fr.univlr.info.AppointmentAPIV1.model.WaitlistEntry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listes d'attente en mémoire, indexées par médecin puis par jour.
+ *
+ * Une demande est rangée dans le seau de chaque jour (UTC) que couvre sa fenêtre, un TreeSet trié par ordre
+ * d'arrivée : pour un créneau libéré, on ne regarde que le seau du médecin et du jour où il commence, et la
+ * première demande dont la fenêtre contient le créneau est la bonne. Ajout et retrait en O(jours x log n),
+ * la fenêtre étant bornée (appointment.waitlist.max-window-days).
+ *
+ * Les seaux d'un médecin sont protégés par son propre verrou : les médecins ne se gênent pas entre eux.
+ * Les demandes dont la fenêtre est passée sont retirées par purge(), appelée de temps en temps par Waitlist.
+ */
+public class WaitlistIndex {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    // Premier arrivé, premier servi ; l'id départage deux demandes de la même milliseconde
+    private static final Comparator<WaitlistEntry> PRIORITY = Comparator.comparing(WaitlistEntry::getRequestedAt)
+            .thenComparing(WaitlistEntry::getId);
+
+    private final ConcurrentHashMap<Long, WaitlistEntry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DoctorQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicLong ids;
+
+    public WaitlistIndex() {
+        this(0);
+    }
+
+    // Identifiants attribués à partir de firstId + 1
+    public WaitlistIndex(long firstId) {
+        this.ids = new AtomicLong(firstId);
+    }
+
+    // Enregistre la demande (id et heure d'arrivée fixés ici) dans la liste de son médecin
+    public WaitlistEntry add(WaitlistEntry entry, long now) {
+        entry.setId(ids.incrementAndGet());
+        entry.setRequestedAt(new Date(now));
+        entry.setStatus(WaitlistEntry.Status.WAITING);
+        entries.put(entry.getId(), entry);
+        queues.computeIfAbsent(entry.getDoctor(), d -> new DoctorQueue()).add(entry);
+        return entry;
+    }
+
+    public Optional<WaitlistEntry> find(long id) {
+        return Optional.ofNullable(entries.get(id));
+    }
+
+    /**
+     * Première demande du médecin qui accepte le créneau [start, end] ; elle sort de la liste et passe en BOOKING.
+     * null si personne n'attend ce créneau.
+     */
+    public WaitlistEntry take(String doctor, long start, long end) {
+        DoctorQueue queue = queues.get(doctor);
+        return queue != null ? queue.take(start, end) : null;
+    }
+
+    // Réservation impossible (créneau repris entre-temps) : la demande retrouve sa place, son heure d'arrivée n'a pas changé
+    public void putBack(WaitlistEntry entry) {
+        queues.computeIfAbsent(entry.getDoctor(), d -> new DoctorQueue()).putBack(entry);
+    }
+
+    // Demande abandonnée pendant sa réservation (médecin supprimé) : elle n'est plus dans les seaux
+    public void dropped(WaitlistEntry entry) {
+        entries.remove(entry.getId());
+    }
+
+    public void booked(WaitlistEntry entry, long appointmentId) {
+        entry.setAppointmentId(appointmentId);
+        entry.setStatus(WaitlistEntry.Status.BOOKED);
+    }
+
+    // Vide si la demande est en cours de réservation : elle ne peut plus être retirée
+    public Optional<WaitlistEntry> withdraw(long id) {
+        WaitlistEntry entry = entries.get(id);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        DoctorQueue queue = queues.computeIfAbsent(entry.getDoctor(), d -> new DoctorQueue());
+        return queue.withdraw(entry) ? Optional.of(entry) : Optional.empty();
+    }
+
+    // Demandes en attente pour ce médecin, dans l'ordre où elles seront servies
+    public List<WaitlistEntry> waiting(String doctor) {
+        DoctorQueue queue = queues.get(doctor);
+        return queue != null ? queue.waiting() : new ArrayList<>();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Oublie les demandes dont la fenêtre est passée (servies ou non) et les seaux des jours passés
+    public int purge(long now) {
+        int removed = 0;
+        for (Iterator<WaitlistEntry> it = entries.values().iterator(); it.hasNext(); ) {
+            WaitlistEntry entry = it.next();
+            if (entry.getTo().getTime() < now && entry.getStatus() != WaitlistEntry.Status.BOOKING) {
+                it.remove();
+                removed++;
+            }
+        }
+        for (DoctorQueue queue : queues.values()) {
+            queue.purge(now);
+        }
+        return removed;
+    }
+
+    private static long day(long millis) {
+        return Math.floorDiv(millis, DAY);
+    }
+
+    private final class DoctorQueue {
+        private final TreeMap<Long, TreeSet<WaitlistEntry>> byDay = new TreeMap<>();
+
+        synchronized void add(WaitlistEntry entry) {
+            for (long day = day(entry.getFrom().getTime()); day <= day(entry.getTo().getTime()); day++) {
+                byDay.computeIfAbsent(day, d -> new TreeSet<>(PRIORITY)).add(entry);
+            }
+        }
+
+        synchronized WaitlistEntry take(long start, long end) {
+            TreeSet<WaitlistEntry> bucket = byDay.get(day(start));
+            if (bucket == null) {
+                return null;
+            }
+            for (WaitlistEntry entry : bucket) {
+                if (entry.accepts(start, end)) {
+                    remove(entry);
+                    entry.setStatus(WaitlistEntry.Status.BOOKING);
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        // Sous le verrou du médecin, comme take() : une demande ne peut pas être retirée pendant sa réservation
+        synchronized boolean withdraw(WaitlistEntry entry) {
+            if (entry.getStatus() == WaitlistEntry.Status.BOOKING) {
+                return false;
+            }
+            remove(entry);
+            entries.remove(entry.getId());
+            return true;
+        }
+
+        synchronized void putBack(WaitlistEntry entry) {
+            entry.setStatus(WaitlistEntry.Status.WAITING);
+            if (entries.containsKey(entry.getId())) {
+                add(entry);
+            }
+        }
+
+        synchronized List<WaitlistEntry> waiting() {
+            TreeSet<WaitlistEntry> all = new TreeSet<>(PRIORITY);
+            for (TreeSet<WaitlistEntry> bucket : byDay.values()) {
+                all.addAll(bucket);
+            }
+            return new ArrayList<>(all);
+        }
+
+        synchronized void purge(long now) {
+            long today = day(now);
+            byDay.headMap(today).clear();
+            TreeSet<WaitlistEntry> bucket = byDay.get(today);
+            if (bucket != null) {
+                bucket.removeIf(entry -> entry.getTo().getTime() < now);
+                if (bucket.isEmpty()) {
+                    byDay.remove(today);
+                }
+            }
+        }
+
+        private void remove(WaitlistEntry entry) {
+            Iterator<TreeSet<WaitlistEntry>> buckets = byDay.subMap(day(entry.getFrom().getTime()), true,
+                    day(entry.getTo().getTime()), true).values().iterator();
+            while (buckets.hasNext()) {
+                TreeSet<WaitlistEntry> bucket = buckets.next();
+                if (bucket.remove(entry) && bucket.isEmpty()) {
+                    buckets.remove();
+                }
+            }
+        }
+    }
+}
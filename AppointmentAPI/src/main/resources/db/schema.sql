@@ -0,0 +1,22 @@
+-- Schema explicite du profil "startup" : Hibernate ne genere plus rien au demarrage (ddl-auto=none).
+-- Genere par Hibernate depuis les entites, pas ecrit a la main : StartupProfileTests ecrit le DDL des entites dans
+-- target/hibernate-schema.sql et le compare a ce fichier (contraintes et cles etrangeres comprises).
+-- Apres un changement d'entite, recopier ce DDL sous cet en-tete.
+
+create sequence hibernate_sequence start with 1 increment by 1;
+create table appointment (id bigint not null, device varchar(255), doctor varchar(255), end_date timestamp, patient varchar(255), room varchar(255), start_date timestamp, doctor_id bigint, primary key (id));
+create table appointment_series_exception (series_id bigint not null, occurrence_start timestamp);
+create table appointment_series (id bigint not null, occurrences integer, doctor varchar(255), end_date timestamp, frequency varchar(255), repeat_interval integer, last_end timestamp, patient varchar(255), start_date timestamp, until timestamp, zone varchar(255), primary key (id));
+create table bookable_resource (id bigint not null, kind varchar(255), name varchar(255), primary key (id));
+create table doctor (id bigint not null, name varchar(255), primary key (id));
+create table doctor_day_stats (id bigint not null, appointments bigint not null, booked_minutes bigint, cancellations bigint not null, cancelled_minutes bigint, day_start date, doctor varchar(255), primary key (id));
+create table resource_booking (id bigint not null, appointment_id bigint, end_date timestamp, resource_key varchar(255), start_date timestamp, primary key (id));
+create index idx_appointment_doctor_start on appointment (doctor, start_date);
+create index idx_appointment_patient_start on appointment (patient, start_date);
+create index idx_appointment_start on appointment (start_date);
+alter table bookable_resource add constraint uk_bookable_resource_kind_name unique (kind, name);
+alter table doctor_day_stats add constraint uk_doctor_day_stats unique (doctor, day_start);
+create index idx_resource_booking_key_start on resource_booking (resource_key, start_date);
+create index idx_resource_booking_appointment on resource_booking (appointment_id);
+alter table appointment add constraint fk_appointment_doctor foreign key (doctor_id) references doctor;
+alter table appointment_series_exception add constraint fk_series_exception_series foreign key (series_id) references appointment_series;
@@ -0,0 +1,42 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentDateValidator;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppointmentDateValidatorTests {
+    private static final Instant NOW = Instant.parse("2030-06-01T12:00:00Z");
+    private static final long HOUR = 3_600_000L;
+
+    private final AppointmentDateValidator validator = new AppointmentDateValidator(Clock.fixed(NOW, ZoneOffset.UTC));
+
+    private static Appointment appt(Long startOffset, Long endOffset) {
+        return new Appointment("mjones",
+                startOffset != null ? new Date(NOW.toEpochMilli() + startOffset) : null,
+                endOffset != null ? new Date(NOW.toEpochMilli() + endOffset) : null, "p");
+    }
+
+    @Test
+    public void testValidAppointment() {
+        assertNull(validator.validate(appt(HOUR, 2 * HOUR)));
+        // début et fin confondus : accepté, comme avant
+        assertNull(validator.validate(appt(HOUR, HOUR)));
+    }
+
+    @Test
+    public void testRejections() {
+        assertEquals(AppointmentDateValidator.MISSING_DATES, validator.validate(appt(null, HOUR)));
+        assertEquals(AppointmentDateValidator.MISSING_DATES, validator.validate(appt(HOUR, null)));
+        assertEquals(AppointmentDateValidator.INCOHERENT_DATES, validator.validate(appt(2 * HOUR, HOUR)));
+        // l'horloge injectée fait foi : une heure avant NOW est dans le passé
+        assertEquals(AppointmentDateValidator.INCOHERENT_DATES, validator.validate(appt(-HOUR, HOUR)));
+        assertEquals(AppointmentDateValidator.INCOHERENT_DATES, validator.validate(appt(-2 * HOUR, -HOUR)));
+    }
+}
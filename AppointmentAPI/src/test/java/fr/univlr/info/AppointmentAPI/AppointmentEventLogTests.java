@@ -0,0 +1,126 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.service.CalendarSnapshots;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentJournal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Journal des rendez-vous vu depuis l'API : deux modifications du même rendez-vous qui se suivent de près
+ * sont rejouées dans l'ordre de leurs commits.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-event-log",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                "appointment.journal.enabled=true", "appointment.journal.wait-for-fsync=true"})
+public class AppointmentEventLogTests {
+    private static final Instant DAY = Instant.now().plus(10, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private AppointmentJournal journal;
+
+    @SpyBean
+    private CalendarSnapshots calendars;
+
+    // un journal vide par exécution : celui d'une exécution précédente serait restauré au démarrage
+    @DynamicPropertySource
+    static void journalDir(DynamicPropertyRegistry registry) throws IOException {
+        String dir = Files.createTempDirectory("appointment-journal").toString();
+        registry.add("appointment.journal.dir", () -> dir);
+    }
+
+    @Test
+    public void testInterleavedUpdatesReplayInCommitOrder() throws Exception {
+        long id = book();
+        CountDownLatch firstCommitted = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        // la première modification est validée en base, puis s'arrête avant d'être journalisée
+        doAnswer(invocation -> {
+            invocation.callRealMethod();
+            if (first.getAndSet(false)) {
+                firstCommitted.countDown();
+                // sans ordre, la deuxième serait validée et journalisée pendant cette attente, avant la première
+                secondDone.await(1, TimeUnit.SECONDS);
+            }
+            return null;
+        }).when(calendars).updated(anyString(), any(Appointment.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<HttpStatus> firstUpdate = executor.submit(() -> update(id, "first"));
+            assertTrue(firstCommitted.await(10, TimeUnit.SECONDS));
+            Future<HttpStatus> secondUpdate = executor.submit(() -> {
+                try {
+                    return update(id, "second");
+                } finally {
+                    secondDone.countDown();
+                }
+            });
+            assertEquals(HttpStatus.OK, firstUpdate.get(10, TimeUnit.SECONDS));
+            assertEquals(HttpStatus.OK, secondUpdate.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        JsonNode stored = restTemplate.getForObject(url("/api/appointments/" + id), JsonNode.class);
+        assertEquals("second", stored.get("patient").asText());
+        assertEquals("second", journal.recover().getState().get(id).getPatient());
+    }
+
+    private long book() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<JsonNode> response = restTemplate.postForEntity(url("/api/appointments"),
+                new HttpEntity<>(body("p"), headers), JsonNode.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        return response.getBody().get("id").asLong();
+    }
+
+    private HttpStatus update(long id, String patient) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.exchange(url("/api/appointments/" + id), HttpMethod.PUT,
+                new HttpEntity<>(body(patient), headers), String.class).getStatusCode();
+    }
+
+    private static String body(String patient) {
+        return "{\"doctor\":\"jdoe\",\"patient\":\"" + patient + "\",\"startDate\":\"" + DAY.plus(9, ChronoUnit.HOURS)
+                + "\",\"endDate\":\"" + DAY.plus(10, ChronoUnit.HOURS) + "\"}";
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
@@ -0,0 +1,157 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentJournal;
+import fr.univlr.info.AppointmentAPIV1.store.JournalEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppointmentJournalTests {
+
+    @TempDir
+    Path dir;
+
+    private static Appointment appt(long id, String doctor) {
+        Appointment appt = new Appointment(doctor, new Date(1_000_000L * id), new Date(1_000_000L * id + 1_800_000L), "p" + id);
+        appt.setId(id);
+        return appt;
+    }
+
+    @Test
+    public void testReopenContinuesAfterLastEvent() throws IOException {
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 1 << 16, 1, false)) {
+            assertEquals(1, journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, appt(1, "mjones"), null)));
+            assertEquals(2, journal.append(JournalEvent.of(JournalEvent.Type.UPDATED, appt(1, "rkelly"), "mjones")));
+            assertEquals(3, journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, appt(2, "mjones"), null)));
+        }
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 1 << 16, 1, false)) {
+            assertEquals(3, journal.getLastSeq());
+            assertEquals(4, journal.append(JournalEvent.of(JournalEvent.Type.CANCELLED, appt(2, "mjones"), null)));
+
+            List<JournalEvent> events = journal.read(2, 10);
+            assertEquals(3, events.size());
+            assertEquals(JournalEvent.Type.UPDATED, events.get(0).getType());
+            assertEquals("rkelly", events.get(0).getDoctor());
+            assertEquals("mjones", events.get(0).getPreviousDoctor());
+            assertEquals(4, events.get(2).getSeq());
+
+            Map<Long, Appointment> state = journal.recover().getState();
+            assertEquals(1, state.size());
+            assertEquals("rkelly", state.get(1L).getDoctor());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 1 << 16, 1, false)) {
+            journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, appt(1, "mjones"), null));
+            journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, appt(2, "mjones"), null));
+        }
+        // arrêt brutal en pleine écriture : le patient du deuxième enregistrement ("p2", avant room et device nuls) est abîmé
+        Path segment = segments().get(0);
+        long patient = Files.size(segment) - countTrailingZeros(segment) - 6;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), patient);
+        }
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 1 << 16, 1, false)) {
+            assertEquals(1, journal.getLastSeq());
+            assertEquals(2, journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, appt(3, "mjones"), null)));
+            assertEquals(2, journal.read(1, 10).size());
+            assertEquals(3L, journal.read(2, 10).get(0).getId());
+        }
+    }
+
+    @Test
+    public void testSnapshotBoundsReplayAndPrunesSegments() throws IOException {
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 4096, 1, false)) {
+            for (long id = 1; id <= 200; id++) {
+                journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, appt(id, "mjones"), null));
+            }
+            assertTrue(journal.getSegmentCount() > 1);
+
+            AppointmentJournal.SnapshotWriter snapshot = journal.openSnapshot(journal.getLastSeq());
+            for (long id = 1; id <= 200; id++) {
+                snapshot.add(appt(id, "mjones"));
+            }
+            assertEquals(200, snapshot.commit());
+            assertEquals(1, journal.getSegmentCount());
+            assertEquals(1, segments().size());
+
+            journal.append(JournalEvent.of(JournalEvent.Type.DELETED, appt(7, "mjones"), null));
+        }
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 4096, 1, false)) {
+            assertEquals(201, journal.getLastSeq());
+            AppointmentJournal.Recovery recovery = journal.recover();
+            assertEquals(200, recovery.getSnapshotSeq());
+            assertEquals(200, recovery.getSnapshotRows());
+            assertEquals(1, recovery.getReplayed());
+            assertEquals(199, recovery.getState().size());
+            assertFalse(recovery.getState().containsKey(7L));
+        }
+    }
+
+    @Test
+    public void testWaitForFsync() throws IOException {
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 1 << 16, 1, true)) {
+            long seq = journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, appt(1, "mjones"), null));
+            assertTrue(journal.getFlushedSeq() >= seq);
+            journal.append(JournalEvent.cleared());
+            assertTrue(journal.recover().getState().isEmpty());
+        }
+    }
+
+    @Test
+    public void testLargeEventsAreSizedPerRecord() throws IOException {
+        StringBuilder patient = new StringBuilder();
+        while (patient.length() < 20_000) {
+            patient.append("patient ");
+        }
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 1 << 16, 1, false)) {
+            for (long id = 1; id <= 4; id++) {
+                Appointment appt = appt(id, "mjones");
+                appt.setPatient(patient.toString());
+                journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, appt, null));
+            }
+            assertTrue(segments().size() > 1);
+            List<JournalEvent> events = journal.read(1, 10);
+            assertEquals(4, events.size());
+            assertEquals(patient.toString(), events.get(3).getPatient());
+
+            // un champ dont la longueur ne tient pas sur l'en-tête est refusé, sans consommer de numéro
+            Appointment huge = appt(5, "mjones");
+            huge.setPatient(patient.toString() + patient + patient);
+            assertThrows(IllegalArgumentException.class,
+                    () -> journal.append(JournalEvent.of(JournalEvent.Type.BOOKED, huge, null)));
+            assertEquals(4, journal.getLastSeq());
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".log")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long countTrailingZeros(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        long zeros = 0;
+        for (int i = bytes.length - 1; i >= 0 && bytes[i] == 0; i--) {
+            zeros++;
+        }
+        return zeros;
+    }
+}
@@ -0,0 +1,131 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentStatus;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentFilter;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plans d'exécution (EXPLAIN de H2) des recherches du listing : aucun filtre ne doit parcourir toute la table.
+ * Le SQL réellement envoyé par Hibernate est intercepté puis repassé à EXPLAIN.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                // base à part : le schéma des autres tests n'est pas recréé sous leurs pieds
+                "spring.datasource.url=jdbc:h2:mem:appointment-plans",
+                "spring.jpa.show-sql=false",
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector=fr.univlr.info.AppointmentAPI.AppointmentQueryPlanTests$LastSelect"
+        })
+public class AppointmentQueryPlanTests {
+    private static final long DAY = 86_400_000L;
+
+    @Autowired
+    private AppointmentRepository repository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Les rendez-vous passés sont refusés à l'enregistrement : "maintenant" est placé au milieu des données
+    private final Date now = new Date(System.currentTimeMillis() + 63 * DAY);
+
+    // Garde la dernière requête sur la table appointment
+    public static class LastSelect implements StatementInspector {
+        static volatile String sql;
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.startsWith("select") && sql.contains("from appointment ")) {
+                LastSelect.sql = sql;
+            }
+            return sql;
+        }
+    }
+
+    @BeforeAll
+    public void seed() {
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Date start = new Date(now.getTime() + (i - 250) * DAY / 4);  // de J+1 à J+125
+            appointments.add(new Appointment("doctor" + (i % 10), start, new Date(start.getTime() + 1_800_000L), "patient" + (i % 100)));
+        }
+        repository.saveAll(appointments);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterAll
+    public void cleanup() {
+        repository.deleteAll();
+    }
+
+    private String plan(AppointmentFilter filter, Sort sort) {
+        LastSelect.sql = null;
+        repository.findAll(filter, sort);
+        // Les paramètres ne changent pas le choix de l'index : EXPLAIN se contente de valeurs nulles
+        String sql = LastSelect.sql;
+        int parameters = sql.length() - sql.replace("?", "").length();
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, new Object[parameters]);
+    }
+
+    private void assertUsesIndex(String index, AppointmentFilter filter) {
+        String plan = plan(filter, Sort.by("startDate", "id"));
+        assertFalse(plan.contains("tableScan"), plan);
+        assertTrue(plan.contains(index.toUpperCase()), plan);
+    }
+
+    @Test
+    public void testPatientFilterUsesPatientIndex() {
+        assertUsesIndex("idx_appointment_patient_start", new AppointmentFilter("patient7", null, null, null, null, now));
+        assertUsesIndex("idx_appointment_patient_start",
+                new AppointmentFilter("patient7", null, now, new Date(now.getTime() + 30 * DAY), null, now));
+    }
+
+    @Test
+    public void testDoctorFilterUsesDoctorIndex() {
+        assertUsesIndex("idx_appointment_doctor_start", new AppointmentFilter(null, "doctor3", null, null, null, now));
+        assertUsesIndex("idx_appointment_doctor_start",
+                new AppointmentFilter(null, "doctor3", now, new Date(now.getTime() + 30 * DAY), AppointmentStatus.UPCOMING, now));
+    }
+
+    @Test
+    public void testDateRangeAndStatusUseStartDateIndex() {
+        assertUsesIndex("idx_appointment_start", new AppointmentFilter(null, null, now, null, null, now));
+        assertUsesIndex("idx_appointment_start", new AppointmentFilter(null, null, null, new Date(now.getTime() + DAY), null, now));
+        for (AppointmentStatus status : AppointmentStatus.values()) {
+            assertUsesIndex("idx_appointment_start", new AppointmentFilter(null, null, null, null, status, now));
+        }
+    }
+
+    @Test
+    public void testFiltersAreCombined() {
+        Date inThirtyDays = new Date(now.getTime() + 30 * DAY);
+        List<Appointment> found = repository.findAll(
+                new AppointmentFilter("patient7", "doctor7", now, inThirtyDays, AppointmentStatus.UPCOMING, now),
+                Sort.by("startDate", "id"));
+        assertFalse(found.isEmpty());
+        for (Appointment appt : found) {
+            assertEquals("patient7", appt.getPatient());
+            assertEquals("doctor7", appt.getDoctor());
+            assertTrue(appt.getStartDate().after(now) && !appt.getStartDate().after(inThirtyDays));
+        }
+    }
+}
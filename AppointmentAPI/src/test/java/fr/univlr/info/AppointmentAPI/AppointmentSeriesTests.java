@@ -0,0 +1,89 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.AppointmentSeries;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppointmentSeriesTests {
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    private static Date at(int year, int month, int day, int hour, int minute) {
+        return Date.from(LocalDateTime.of(year, month, day, hour, minute).atZone(PARIS).toInstant());
+    }
+
+    private static AppointmentSeries weekly(Date until) {
+        AppointmentSeries series = new AppointmentSeries("mjones", at(2030, 1, 7, 10, 0), at(2030, 1, 7, 10, 45),
+                "physio", AppointmentSeries.Frequency.WEEKLY, 1);
+        series.setZone(PARIS.getId());
+        series.setUntil(until);
+        series.resolveBounds();
+        return series;
+    }
+
+    @Test
+    public void testTwoYearWeeklySeriesIsBoundedByUntil() {
+        AppointmentSeries series = weekly(at(2031, 12, 31, 23, 59));
+        assertEquals(104, series.getCount());
+        assertEquals(at(2031, 12, 29, 10, 45), series.getLastEnd());
+    }
+
+    @Test
+    public void testOnlyTheRequestedWindowIsExpanded() {
+        AppointmentSeries series = weekly(at(2031, 12, 31, 23, 59));
+        List<Appointment> march = series.occurrencesStartingBetween(at(2031, 3, 1, 0, 0), at(2031, 3, 31, 23, 59));
+        assertEquals(5, march.size());
+        assertEquals(at(2031, 3, 3, 10, 0), march.get(0).getStartDate());
+        assertEquals(at(2031, 3, 3, 10, 45), march.get(0).getEndDate());
+        assertEquals("physio", march.get(0).getPatient());
+    }
+
+    @Test
+    public void testLocalTimeIsKeptAcrossDaylightSaving() {
+        AppointmentSeries series = weekly(at(2030, 12, 31, 0, 0));
+        // le passage à l'heure d'été a lieu le 31 mars 2030
+        List<Appointment> april = series.occurrencesStartingBetween(at(2030, 4, 1, 0, 0), at(2030, 4, 2, 0, 0));
+        assertEquals(1, april.size());
+        assertEquals(10, ZonedDateTime.ofInstant(april.get(0).getStartDate().toInstant(), PARIS).getHour());
+    }
+
+    @Test
+    public void testMonthlySeriesReturnsToTheSameDay() {
+        AppointmentSeries series = new AppointmentSeries("mjones", at(2030, 1, 31, 9, 0), at(2030, 1, 31, 9, 30),
+                "check-up", AppointmentSeries.Frequency.MONTHLY, 1);
+        series.setZone(PARIS.getId());
+        series.setCount(4);
+        series.resolveBounds();
+        List<Appointment> all = series.occurrencesStartingBetween(at(2030, 1, 1, 0, 0), at(2031, 1, 1, 0, 0));
+        assertEquals(4, all.size());
+        assertEquals(at(2030, 2, 28, 9, 0), all.get(1).getStartDate());
+        assertEquals(at(2030, 3, 31, 9, 0), all.get(2).getStartDate());
+    }
+
+    @Test
+    public void testCancelledOccurrenceIsSkipped() {
+        AppointmentSeries series = weekly(at(2030, 2, 28, 0, 0));
+        assertTrue(series.isOccurrence(at(2030, 1, 14, 10, 0)));
+        assertFalse(series.isOccurrence(at(2030, 1, 15, 10, 0)));
+
+        series.getExceptions().add(at(2030, 1, 14, 10, 0));
+        assertFalse(series.isOccurrence(at(2030, 1, 14, 10, 0)));
+        assertEquals(7, series.occurrencesStartingBetween(at(2030, 1, 1, 0, 0), at(2030, 3, 1, 0, 0)).size());
+    }
+
+    @Test
+    public void testOverlapsChecksOnlyTheNearestOccurrences() {
+        AppointmentSeries series = weekly(at(2031, 12, 31, 23, 59));
+        assertTrue(series.overlaps(at(2031, 6, 2, 10, 30), at(2031, 6, 2, 11, 0)));
+        assertTrue(series.overlaps(at(2031, 6, 2, 9, 30), at(2031, 6, 2, 10, 0)));
+        assertFalse(series.overlaps(at(2031, 6, 2, 11, 0), at(2031, 6, 2, 12, 0)));
+        assertFalse(series.overlaps(at(2032, 1, 5, 10, 0), at(2032, 1, 5, 10, 30)));
+    }
+}
@@ -0,0 +1,142 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.store.DoctorRepository;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cache de second niveau : les régions déclarées par les annotations @Cache et la requête findByDoctor comptent
+ * leurs hits et leurs misses, visibles sur /api/admin/caches, et l'éviction d'une région refait un miss.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // un CacheManager à part : celui par défaut est partagé par les contextes de test de la JVM
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-cache-stats",
+                "spring.jpa.properties.hibernate.javax.cache.uri=file:///cache-stats-tests"})
+public class CacheStatsTests {
+    private static final Instant DAY = Instant.now().plus(50, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void clear() {
+        restTemplate.delete(url("/api/appointments"));
+        entityManagerFactory.unwrap(SessionFactory.class).getStatistics().clear();
+    }
+
+    @Test
+    public void testEntityRegionCountsHitsAndMisses() {
+        long id = book(9);
+        // région vidée par l'API d'administration : la première lecture la remplit, la seconde y trouve le rendez-vous
+        assertEquals(HttpStatus.NO_CONTENT, restTemplate.exchange(url("/api/admin/caches/" + Appointment.CACHE_REGION),
+                HttpMethod.DELETE, null, String.class).getStatusCode());
+        entityManagerFactory.unwrap(SessionFactory.class).getStatistics().clear();
+
+        getJson("/api/appointments/" + id);
+        JsonNode region = stats().get("regions").get(Appointment.CACHE_REGION);
+        assertEquals(0, region.get("hits").asLong());
+        assertEquals(1, region.get("misses").asLong());
+        assertEquals(1, region.get("puts").asLong());
+        assertTrue(region.get("size").asLong() >= 1);
+
+        getJson("/api/appointments/" + id);
+        region = stats().get("regions").get(Appointment.CACHE_REGION);
+        assertEquals(1, region.get("hits").asLong());
+        assertEquals(1, region.get("misses").asLong());
+
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.exchange(url("/api/admin/caches/unknown"),
+                HttpMethod.DELETE, null, String.class).getStatusCode());
+    }
+
+    @Test
+    public void testDoctorAndCollectionRegionsAreCached() {
+        book(10);
+        Long doctorId = doctorRepository.findByName("jdoe").getId();
+        restTemplate.delete(url("/api/admin/caches/" + Doctor.CACHE_REGION));
+        restTemplate.delete(url("/api/admin/caches/" + Doctor.APPOINTMENTS_CACHE_REGION));
+        entityManagerFactory.unwrap(SessionFactory.class).getStatistics().clear();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < 2; i++) {
+            transaction.execute(status -> doctorRepository.findById(doctorId).get().getAppointments().size());
+        }
+        JsonNode regions = stats().get("regions");
+        // la première transaction charge le médecin et sa liste de rendez-vous, la seconde les lit dans le cache
+        assertEquals(1, regions.get(Doctor.CACHE_REGION).get("hits").asLong());
+        assertEquals(1, regions.get(Doctor.CACHE_REGION).get("misses").asLong());
+        assertEquals(1, regions.get(Doctor.APPOINTMENTS_CACHE_REGION).get("hits").asLong());
+        assertEquals(1, regions.get(Doctor.APPOINTMENTS_CACHE_REGION).get("misses").asLong());
+    }
+
+    @Test
+    public void testFindByDoctorUsesTheQueryCache() {
+        book(11);
+        getJson("/api/doctors/jdoe/appointments");
+        getJson("/api/doctors/jdoe/appointments");
+        JsonNode queryCache = stats().get("queryCache");
+        assertEquals(1, queryCache.get("misses").asLong());
+        assertEquals(1, queryCache.get("hits").asLong());
+
+        // une nouvelle réservation invalide le résultat en cache
+        book(12);
+        getJson("/api/doctors/jdoe/appointments");
+        assertEquals(2, stats().get("queryCache").get("misses").asLong());
+    }
+
+    private JsonNode stats() {
+        return restTemplate.getForObject(url("/api/admin/caches"), JsonNode.class);
+    }
+
+    private long book(int hour) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "{\"doctor\":\"jdoe\",\"patient\":\"p\",\"startDate\":\"" + DAY.plus(hour, ChronoUnit.HOURS)
+                + "\",\"endDate\":\"" + DAY.plus(hour, ChronoUnit.HOURS).plus(30, ChronoUnit.MINUTES) + "\"}";
+        ResponseEntity<JsonNode> created = restTemplate.postForEntity(url("/api/appointments"),
+                new HttpEntity<>(body, headers), JsonNode.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        return created.getBody().get("id").asLong();
+    }
+
+    private void getJson(String path) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        assertEquals(HttpStatus.OK, restTemplate.exchange(url(path), HttpMethod.GET, new HttpEntity<>(headers), String.class)
+                .getStatusCode());
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
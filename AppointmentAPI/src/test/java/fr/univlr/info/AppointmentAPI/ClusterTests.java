@@ -0,0 +1,313 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Mode cluster : deux instances dans la JVM, sur deux ports et la même base H2, chacune avec son cache de second niveau.
+ * Une réservation reçue par l'instance qui n'est pas propriétaire du médecin lui est transmise (avec des liens vers
+ * l'instance appelée), un même créneau demandé aux deux instances n'est accordé qu'une fois, une modification va au
+ * propriétaire du nouveau médecin, et l'agenda en mémoire comme le cache de l'autre instance suivent les changements
+ * faits chez le propriétaire, sans perdre les entrées des autres médecins.
+ */
+public class ClusterTests {
+    private static final Instant DAY = Instant.now().plus(20, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+    private static final String DOCTOR = "jdoe";
+
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+    private static String owner;
+    private static String other;
+    private static ConfigurableApplicationContext otherContext;
+    private static final RestTemplate restTemplate = new RestTemplateBuilder().errorHandler(new DefaultResponseErrorHandler() {
+        @Override
+        public boolean hasError(ClientHttpResponse response) {
+            return false;
+        }
+    }).build();
+
+    @BeforeAll
+    public static void start() throws IOException {
+        int firstPort = freePort();
+        int secondPort = freePort();
+        String members = "http://localhost:" + firstPort + ",http://localhost:" + secondPort;
+        // la première instance crée le schéma et les médecins, la seconde arrive sur la base existante
+        first = instance(firstPort, members, "spring.jpa.hibernate.ddl-auto=create");
+        second = instance(secondPort, members, "spring.jpa.hibernate.ddl-auto=none", "appointment.seed.enabled=false");
+
+        JsonNode cluster = restTemplate.getForObject("http://localhost:" + firstPort + "/api/cluster?doctor=" + DOCTOR, JsonNode.class);
+        owner = cluster.get("owner").asText();
+        other = owner.endsWith(":" + firstPort) ? "http://localhost:" + secondPort : "http://localhost:" + firstPort;
+        otherContext = owner.endsWith(":" + firstPort) ? second : first;
+    }
+
+    @AfterAll
+    public static void stop() {
+        if (second != null) {
+            second.close();
+        }
+        if (first != null) {
+            first.close();
+        }
+    }
+
+    @BeforeEach
+    public void clear() {
+        restTemplate.delete(owner + "/api/appointments");
+    }
+
+    @Test
+    public void testBookingIsForwardedToTheOwner() {
+        ResponseEntity<JsonNode> created = book(other, 9);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        // le propriétaire a répondu, mais ses liens visent l'instance que le client a appelée
+        long id = created.getBody().get("id").asLong();
+        assertEquals(other + "/api/appointments/" + id, created.getHeaders().getLocation().toString());
+
+        // le même créneau, demandé à l'une ou l'autre instance, est refusé
+        assertEquals(HttpStatus.CONFLICT, book(owner, 9).getStatusCode());
+        assertEquals(HttpStatus.CONFLICT, book(other, 9).getStatusCode());
+
+        // un client ne peut pas se faire passer pour un membre du cluster
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Cluster-Forwarded", "guess");
+        ResponseEntity<String> refused = restTemplate.postForEntity(other + "/api/cluster/invalidations",
+                new HttpEntity<>("{\"all\":true}", headers), String.class);
+        assertEquals(HttpStatus.FORBIDDEN, refused.getStatusCode());
+    }
+
+    @Test
+    public void testConcurrentBookingsOnBothInstancesGiveOneAppointment() throws Exception {
+        int clients = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<HttpStatus>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                String instance = i % 2 == 0 ? owner : other;
+                results.add(executor.submit(() -> {
+                    go.await();
+                    return book(instance, 14).getStatusCode();
+                }));
+            }
+            go.countDown();
+            int created = 0;
+            for (Future<HttpStatus> result : results) {
+                HttpStatus status = result.get(30, TimeUnit.SECONDS);
+                if (status == HttpStatus.CREATED) {
+                    created++;
+                } else {
+                    assertEquals(HttpStatus.CONFLICT, status);
+                }
+            }
+            assertEquals(1, created);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOtherInstanceCalendarFollowsTheOwner() throws InterruptedException {
+        // l'agenda du médecin est chargé sur l'autre instance avant le changement
+        assertEquals(0, calendar(other, DOCTOR).size());
+        long id = book(owner, 11).getBody().get("id").asLong();
+        assertTrue(waitFor(() -> calendar(other, DOCTOR).size() == 1));
+
+        restTemplate.delete(owner + "/api/appointments/" + id);
+        assertTrue(waitFor(() -> calendar(other, DOCTOR).size() == 0));
+    }
+
+    @Test
+    public void testMoveIsHandledByTheNewDoctorsOwner() {
+        String moved = doctorOwnedBy(other);
+        assertEquals(0, calendar(other, moved).size());
+        long id = book(owner, 15).getBody().get("id").asLong();
+
+        // reçue par le propriétaire de l'ancien médecin, la modification est traitée par celui du nouveau :
+        // son agenda en mémoire a le rendez-vous dès la réponse, sans attendre d'invalidation
+        ResponseEntity<JsonNode> updated = restTemplate.exchange(owner + "/api/appointments/" + id, HttpMethod.PUT,
+                new HttpEntity<>(body(moved, "p", 16), json()), JsonNode.class);
+        assertEquals(HttpStatus.OK, updated.getStatusCode());
+        assertEquals(moved, updated.getBody().get("doctor").asText());
+        assertEquals(1, calendar(other, moved).size());
+
+        assertEquals(HttpStatus.CONFLICT, restTemplate.postForEntity(owner + "/api/appointments",
+                new HttpEntity<>(body(moved, "q", 16), json()), String.class).getStatusCode());
+    }
+
+    @Test
+    public void testOtherInstanceCacheOnlyDropsTheChangedDoctor() throws InterruptedException {
+        Cache cache = otherContext.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getCache();
+        assertEquals(0, calendar(other, DOCTOR).size());
+        long kept = restTemplate.postForEntity(owner + "/api/appointments", new HttpEntity<>(body("mjones", "p", 10), json()),
+                JsonNode.class).getBody().get("id").asLong();
+        long changed = book(owner, 10).getBody().get("id").asLong();
+        // les invalidations de ces réservations sont arrivées (l'agenda de l'autre instance a suivi)
+        assertTrue(waitFor(() -> calendar(other, DOCTOR).size() == 1));
+
+        // les deux rendez-vous lus sur l'autre instance, donc dans son cache
+        assertEquals("p", appointment(other, changed).getBody().get("patient").asText());
+        appointment(other, kept);
+        assertTrue(cache.containsEntity(Appointment.class, changed));
+        assertTrue(cache.containsEntity(Appointment.class, kept));
+
+        restTemplate.exchange(owner + "/api/appointments/" + changed, HttpMethod.PUT,
+                new HttpEntity<>(body(DOCTOR, "q", 10), json()), JsonNode.class);
+        assertTrue(waitFor(() -> "q".equals(appointment(other, changed).getBody().get("patient").asText())));
+        assertTrue(cache.containsEntity(Appointment.class, kept));
+
+        restTemplate.delete(owner + "/api/appointments/" + changed);
+        assertTrue(waitFor(() -> appointment(other, changed).getStatusCode() == HttpStatus.NOT_FOUND));
+        assertTrue(cache.containsEntity(Appointment.class, kept));
+    }
+
+    @Test
+    public void testSeriesWritesAreForwardedToTheOwner() {
+        LocalDate day = DAY.atOffset(ZoneOffset.UTC).toLocalDate();
+        String body = "{\"doctor\":\"" + DOCTOR + "\",\"patient\":\"series\",\"startDate\":\"" + DAY.plus(12, ChronoUnit.HOURS)
+                + "\",\"endDate\":\"" + DAY.plus(12, ChronoUnit.HOURS).plus(30, ChronoUnit.MINUTES)
+                + "\",\"frequency\":\"DAILY\",\"zone\":\"UTC\",\"count\":3}";
+        ResponseEntity<JsonNode> created = restTemplate.postForEntity(other + "/api/series", new HttpEntity<>(body, json()), JsonNode.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        long id = created.getBody().get("id").asLong();
+        assertEquals(3, occurrences(owner, day));
+
+        // reçues par l'autre instance, l'annulation d'une occurrence (avec son paramètre start) et la suppression
+        // passent par le propriétaire, et son agenda les suit
+        String start = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX").withZone(ZoneOffset.UTC)
+                .format(DAY.plus(12, ChronoUnit.HOURS));
+        assertEquals(HttpStatus.NO_CONTENT, restTemplate.exchange(other + "/api/series/" + id + "/occurrences?start=" + start,
+                HttpMethod.DELETE, null, String.class).getStatusCode());
+        assertEquals(2, occurrences(owner, day));
+
+        assertEquals(HttpStatus.NO_CONTENT, restTemplate.exchange(other + "/api/series/" + id, HttpMethod.DELETE, null,
+                String.class).getStatusCode());
+        assertEquals(0, occurrences(owner, day));
+    }
+
+    private static ResponseEntity<JsonNode> book(String instance, int hour) {
+        return restTemplate.postForEntity(instance + "/api/appointments", new HttpEntity<>(body(DOCTOR, "p", hour), json()),
+                JsonNode.class);
+    }
+
+    private static String body(String doctor, String patient, int hour) {
+        return "{\"doctor\":\"" + doctor + "\",\"patient\":\"" + patient + "\",\"startDate\":\"" + DAY.plus(hour, ChronoUnit.HOURS)
+                + "\",\"endDate\":\"" + DAY.plus(hour, ChronoUnit.HOURS).plus(30, ChronoUnit.MINUTES) + "\"}";
+    }
+
+    private static HttpHeaders json() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+
+    private static ResponseEntity<JsonNode> appointment(String instance, long id) {
+        return restTemplate.getForEntity(instance + "/api/appointments/" + id, JsonNode.class);
+    }
+
+    // Un médecin créé pour l'occasion, dont l'instance donnée est propriétaire
+    private static String doctorOwnedBy(String instance) {
+        for (int i = 0; ; i++) {
+            String name = "cluster" + i;
+            JsonNode cluster = restTemplate.getForObject(instance + "/api/cluster?doctor=" + name, JsonNode.class);
+            if (instance.equals(cluster.get("owner").asText())) {
+                ResponseEntity<String> created = restTemplate.postForEntity(instance + "/api/doctors",
+                        new HttpEntity<>("{\"name\":\"" + name + "\"}", json()), String.class);
+                assertTrue(created.getStatusCode().is2xxSuccessful() || created.getStatusCode() == HttpStatus.CONFLICT,
+                        created.toString());
+                return name;
+            }
+        }
+    }
+
+    // Fenêtre à venir : servie par l'agenda en mémoire de l'instance
+    private static JsonNode calendar(String instance, String doctor) {
+        LocalDate day = DAY.atOffset(ZoneOffset.UTC).toLocalDate();
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity(instance + "/api/doctors/" + doctor
+                + "/appointments?from=" + day + "&to=" + day.plusDays(1), JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response.getBody();
+    }
+
+    // Occurrences de la série du test sur les trois jours qui suivent day, d'après l'agenda de l'instance
+    private static int occurrences(String instance, LocalDate day) {
+        JsonNode appointments = restTemplate.getForObject(instance + "/api/doctors/" + DOCTOR + "/appointments?from=" + day
+                + "&to=" + day.plusDays(3), JsonNode.class);
+        int occurrences = 0;
+        for (JsonNode appointment : appointments) {
+            if ("series".equals(appointment.get("patient").asText())) {
+                occurrences++;
+            }
+        }
+        return occurrences;
+    }
+
+    private static boolean waitFor(Callable<Boolean> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try {
+                if (condition.call()) {
+                    return true;
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        return false;
+    }
+
+    private static ConfigurableApplicationContext instance(int port, String members, String... properties) {
+        List<String> all = new ArrayList<>();
+        all.add("--server.port=" + port);
+        all.add("--spring.datasource.url=jdbc:h2:mem:appointment-cluster;DB_CLOSE_DELAY=-1");
+        all.add("--spring.jpa.show-sql=false");
+        // un CacheManager par instance : sinon elles partageraient leurs régions et on ne verrait pas les invalidations
+        all.add("--spring.jpa.properties.hibernate.javax.cache.uri=file:///cluster-tests-" + port);
+        all.add("--appointment.cluster.enabled=true");
+        all.add("--appointment.cluster.self=http://localhost:" + port);
+        all.add("--appointment.cluster.members=" + members);
+        all.add("--appointment.cluster.secret=cluster-tests");
+        all.add("--appointment.cluster.retry-delay-ms=100");
+        for (String property : properties) {
+            all.add("--" + property);
+        }
+        // en arguments de ligne de commande : ils passent avant application.properties
+        return new SpringApplicationBuilder(AppointmentApiApplication.class).run(all.toArray(new String[0]));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.zaxxer.hikari.HikariDataSource;
+import fr.univlr.info.AppointmentAPIV1.store.ConnectionPools;
+import fr.univlr.info.AppointmentAPIV1.store.Histogram;
+import fr.univlr.info.AppointmentAPIV1.store.PoolMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConnectionPoolsTests {
+
+    // size=0 : taille déduite des cœurs et de la latence, bornée par [2, 8]
+    private static ConnectionPools pools(int size) {
+        return new ConnectionPools(size, 2, 8, 1, 1, 0, 64, 2, 2);
+    }
+
+    @Test
+    public void testFixedSizeWins() {
+        HikariDataSource dataSource = pools(3).register("main", new HikariDataSource());
+        assertEquals(3, dataSource.getMaximumPoolSize());
+        assertEquals(2, dataSource.getMinimumIdle());
+        assertEquals("64", dataSource.getDataSourceProperties().get("QUERY_CACHE_SIZE").toString());
+    }
+
+    @Test
+    public void testConfiguredMaximumPoolSizeIsKeptAndCapsAdaptiveGrowth() {
+        ConnectionPools pools = pools(3);
+        HikariDataSource configured = new HikariDataSource();
+        configured.setMaximumPoolSize(5);
+        HikariDataSource dataSource = pools.register("main", configured);
+        assertEquals(5, dataSource.getMaximumPoolSize());
+
+        // le pool est plein et les demandes attendent : il grandirait jusqu'à max-size (8), il s'arrête à 5
+        PoolMetrics metrics = pools.metrics("main");
+        for (int i = 0; i < 5; i++) {
+            metrics.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        pools.adjust();
+        assertEquals(5, dataSource.getMaximumPoolSize());
+    }
+
+    @Test
+    public void testPercentilesUseBucketUpperBounds() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(3);
+        }
+        histogram.record(1000);
+        long[] counts = histogram.snapshot();
+        assertEquals(100, Histogram.count(counts));
+        assertEquals(3, Histogram.percentile(counts, 50));
+        assertEquals(1023, Histogram.percentile(counts, 100));
+        assertEquals(0, Histogram.percentile(Histogram.since(counts, counts), 95));
+    }
+
+    @Test
+    public void testAdaptiveModeGrowsSaturatedPoolAndShrinksIdleOne() {
+        ConnectionPools pools = pools(2);
+        HikariDataSource dataSource = pools.register("main", new HikariDataSource());
+        PoolMetrics metrics = pools.metrics("main");
+
+        // deux connexions empruntées après 10 ms d'attente : le pool est plein et les demandes attendent
+        metrics.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        metrics.recordConnectionAcquiredNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        pools.adjust();
+        assertEquals(4, dataSource.getMaximumPoolSize());
+
+        // plus d'attente, mais le pic de l'intervalle occupait la moitié du pool : on garde la taille
+        metrics.recordConnectionUsageMillis(5);
+        metrics.recordConnectionUsageMillis(5);
+        pools.adjust();
+        assertEquals(4, dataSource.getMaximumPoolSize());
+
+        // un intervalle à vide : une connexion de moins à chaque pas, jamais sous min-size
+        pools.adjust();
+        assertEquals(3, dataSource.getMaximumPoolSize());
+        pools.adjust();
+        pools.adjust();
+        assertEquals(2, dataSource.getMaximumPoolSize());
+    }
+
+    @Test
+    public void testDerivedSizeIsBounded() {
+        assertEquals(8, ConnectionPools.derivedSize(4, 1, 1, 2, 32));
+        assertEquals(32, ConnectionPools.derivedSize(16, 50, 1, 2, 32));
+        assertEquals(2, ConnectionPools.derivedSize(1, 0, 1, 2, 32));
+    }
+}
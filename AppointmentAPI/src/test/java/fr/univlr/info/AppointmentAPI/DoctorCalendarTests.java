@@ -0,0 +1,115 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.TimeSlot;
+import fr.univlr.info.AppointmentAPIV1.service.DoctorCalendar;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DoctorCalendarTests {
+    private static final long HOUR = 3_600_000L;
+
+    private static Appointment appt(long id, long startHour, long endHour) {
+        Appointment appt = new Appointment("mjones", new Date(startHour * HOUR), new Date(endHour * HOUR), "p" + id);
+        appt.setId(id);
+        return appt;
+    }
+
+    private static Appointment occurrence(long seriesId, long startHour, long endHour) {
+        Appointment appt = new Appointment("mjones", new Date(startHour * HOUR), new Date(endHour * HOUR), "s" + seriesId);
+        appt.setSeriesId(seriesId);
+        return appt;
+    }
+
+    @Test
+    public void testEntriesAreSortedAndOutOfWindowIgnored() {
+        DoctorCalendar calendar = DoctorCalendar.of(0, 100 * HOUR,
+                Arrays.asList(appt(2, 10, 11), occurrence(7, 5, 6), appt(1, 2, 3), appt(3, 200, 201)));
+
+        List<Appointment> all = calendar.between("mjones", 0, 100 * HOUR);
+        assertEquals(3, all.size());
+        assertEquals(Long.valueOf(1), all.get(0).getId());
+        assertEquals(Long.valueOf(7), all.get(1).getSeriesId());
+        assertNull(all.get(1).getId());
+        assertEquals(Long.valueOf(2), all.get(2).getId());
+        assertEquals("mjones", all.get(2).getDoctor());
+    }
+
+    @Test
+    public void testCopyOnWriteLeavesOriginalUntouched() {
+        DoctorCalendar original = DoctorCalendar.of(0, 100 * HOUR, Collections.singletonList(appt(1, 2, 3)));
+
+        DoctorCalendar added = original.with(appt(2, 1, 2));
+        DoctorCalendar moved = added.with(appt(1, 20, 21));
+        DoctorCalendar removed = moved.without(2);
+
+        assertEquals(1, original.size());
+        assertEquals(2, added.size());
+        assertEquals(Long.valueOf(2), added.between(null, 0, 100 * HOUR).get(0).getId());
+        assertEquals(2, moved.size());
+        assertEquals(20 * HOUR, moved.between(null, 0, 100 * HOUR).get(1).getStartDate().getTime());
+        assertEquals(1, removed.size());
+        assertSame(removed, removed.without(42));
+        // sorti de la fenêtre : seulement retiré
+        assertEquals(0, removed.with(appt(1, 500, 501)).size());
+    }
+
+    @Test
+    public void testOverlapsUsesInclusiveBounds() {
+        // un long rendez-vous suivi de courts : le chevauchement avec le premier doit être vu malgré le tri par début
+        DoctorCalendar calendar = DoctorCalendar.of(0, 100 * HOUR,
+                Arrays.asList(appt(1, 0, 10), appt(2, 2, 3), appt(3, 20, 21)));
+
+        assertTrue(calendar.overlaps(8 * HOUR, 9 * HOUR));
+        assertTrue(calendar.overlaps(10 * HOUR, 11 * HOUR));
+        assertFalse(calendar.overlaps(11 * HOUR, 19 * HOUR));
+        assertTrue(calendar.overlaps(19 * HOUR, 20 * HOUR));
+        assertFalse(calendar.overlaps(22 * HOUR, 23 * HOUR));
+    }
+
+    @Test
+    public void testSeriesOccurrences() {
+        DoctorCalendar calendar = DoctorCalendar.of(0, 100 * HOUR, Collections.singletonList(appt(1, 2, 3)))
+                .withSeries(7, Arrays.asList(occurrence(7, 10, 11), occurrence(7, 34, 35)));
+        assertEquals(3, calendar.size());
+
+        // réenregistrée : les occurrences sont remplacées, pas ajoutées
+        calendar = calendar.withSeries(7, Arrays.asList(occurrence(7, 10, 11), occurrence(7, 34, 35)));
+        assertEquals(3, calendar.size());
+
+        calendar = calendar.withoutOccurrence(7, 10 * HOUR);
+        assertFalse(calendar.overlaps(10 * HOUR, 11 * HOUR));
+        assertTrue(calendar.overlaps(34 * HOUR, 35 * HOUR));
+        assertEquals(1, calendar.withoutSeries(7).size());
+    }
+
+    @Test
+    public void testFreeSlots() {
+        DoctorCalendar calendar = DoctorCalendar.of(0, 100 * HOUR,
+                Arrays.asList(appt(1, 8, 12), appt(2, 9, 10), appt(3, 14, 15)));
+
+        List<TimeSlot> slots = calendar.freeSlots(9 * HOUR, 18 * HOUR);
+        assertEquals(2, slots.size());
+        assertEquals(12 * HOUR, slots.get(0).getStart().getTime());
+        assertEquals(14 * HOUR, slots.get(0).getEnd().getTime());
+        assertEquals(15 * HOUR, slots.get(1).getStart().getTime());
+        assertEquals(18 * HOUR, slots.get(1).getEnd().getTime());
+
+        assertEquals(1, calendar.freeSlots(16 * HOUR, 17 * HOUR).size());
+        assertTrue(calendar.freeSlots(8 * HOUR, 12 * HOUR).isEmpty());
+    }
+
+    @Test
+    public void testMemoryGrowsWithEntries() {
+        DoctorCalendar empty = DoctorCalendar.of(0, 100 * HOUR, Collections.emptyList());
+        DoctorCalendar one = empty.with(appt(1, 2, 3));
+        assertTrue(empty.memoryBytes() > 0);
+        assertTrue(one.memoryBytes() > empty.memoryBytes() + 4 * 8);
+    }
+}
@@ -0,0 +1,240 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.service.DoctorStats;
+import fr.univlr.info.AppointmentAPIV1.store.DoctorStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Statistiques par médecin : réservations, annulations et suppressions comptées par jour puis par semaine,
+ * occurrences des séries, première réservation du jour doublée par une autre, paramètres refusés et médecin inconnu.
+ * (La modification refusée sur un créneau pris est dans ResourceBookingTests.)
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // le cache de second niveau est partagé par les contextes de test de la JVM : un rendez-vous d'une autre base
+        // avec le même identifiant y serait trouvé
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-stats",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@Import(DoctorStatsTests.RaceConfiguration.class)
+public class DoctorStatsTests {
+    private static final Instant DAY = Instant.now().plus(10, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+    // format attendu par l'annulation d'une occurrence (ISO avec les millisecondes)
+    private static final DateTimeFormatter OCCURRENCE_START = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX")
+            .withZone(ZoneOffset.UTC);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DoctorStats doctorStats;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Exécuté une fois après un update des statistiques (voir RaceConfiguration)
+    private static final AtomicReference<Runnable> AFTER_UPDATE = new AtomicReference<>();
+
+    @TestConfiguration
+    static class RaceConfiguration {
+        @Bean
+        static BeanPostProcessor raceAfterStatsUpdate() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DoctorStatsRepository)) {
+                        return bean;
+                    }
+                    return Proxy.newProxyInstance(DoctorStatsRepository.class.getClassLoader(),
+                            new Class<?>[]{DoctorStatsRepository.class}, (proxy, method, args) -> {
+                                Object result;
+                                try {
+                                    result = method.invoke(bean, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                                Runnable hook = AFTER_UPDATE.get();
+                                if (hook != null && method.getName().equals("add")) {
+                                    hook.run();
+                                }
+                                return result;
+                            });
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    public void clear() {
+        restTemplate.delete(url("/api/appointments"));
+    }
+
+    @Test
+    public void testBookCancelAndDeleteAreCounted() {
+        book(0, 9, 0, 9, 30);
+        long cancelled = book(0, 10, 0, 11, 0);
+        long deleted = book(1, 9, 0, 9, 45);
+        book(1, 14, 0, 14, 20);
+        restTemplate.delete(url("/api/appointments/" + cancelled + "/cancel"));
+        restTemplate.delete(url("/api/appointments/" + deleted));
+
+        LocalDate day = DAY.atOffset(ZoneOffset.UTC).toLocalDate();
+        JsonNode days = stats("day", day, day.plusDays(1));
+        assertEquals(2, days.size());
+        assertEquals(day.toString(), days.get(0).get("start").asText());
+        assertEquals(1, days.get(0).get("appointments").asLong());
+        assertEquals(30, days.get(0).get("bookedMinutes").asLong());
+        assertEquals(1, days.get(0).get("cancellations").asLong());
+        assertEquals(60, days.get(0).get("cancelledMinutes").asLong());
+        assertEquals(1, days.get(1).get("appointments").asLong());
+        assertEquals(20, days.get(1).get("bookedMinutes").asLong());
+        assertEquals(0, days.get(1).get("cancellations").asLong());
+
+        // une semaine commence le lundi : les deux jours sont dans une ou deux semaines selon la date du test
+        JsonNode weeks = stats("week", day, day.plusDays(1));
+        LocalDate monday = day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        assertEquals(monday.toString(), weeks.get(0).get("start").asText());
+        long appointments = 0;
+        long minutes = 0;
+        for (JsonNode week : weeks) {
+            appointments += week.get("appointments").asLong();
+            minutes += week.get("bookedMinutes").asLong();
+        }
+        assertEquals(2, appointments);
+        assertEquals(50, minutes);
+    }
+
+    @Test
+    public void testSeriesOccurrencesAreCounted() {
+        book(3, 9, 0, 9, 30);
+        // en conflit avec le rendez-vous simple du premier jour, puis une fin avant le début
+        assertEquals(HttpStatus.CONFLICT, newSeries(3, ",\"count\":2").getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, newSeries(4, ",\"until\":\"" + at(4, 0, 0) + "\"").getStatusCode());
+
+        ResponseEntity<JsonNode> created = newSeries(4, ",\"count\":2");
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        long id = created.getBody().get("id").asLong();
+        LocalDate day = DAY.atOffset(ZoneOffset.UTC).toLocalDate().plusDays(4);
+        JsonNode days = stats("day", day, day.plusDays(1));
+        assertEquals(1, days.get(0).get("appointments").asLong());
+        assertEquals(1, days.get(1).get("appointments").asLong());
+
+        assertEquals(HttpStatus.NO_CONTENT, restTemplate.exchange(url("/api/series/" + id + "/occurrences?start="
+                + OCCURRENCE_START.format(DAY.plus(4, ChronoUnit.DAYS).plus(9, ChronoUnit.HOURS))),
+                HttpMethod.DELETE, null, String.class).getStatusCode());
+        days = stats("day", day, day.plusDays(1));
+        assertEquals(0, days.get(0).get("appointments").asLong());
+        assertEquals(1, days.get(0).get("cancellations").asLong());
+
+        restTemplate.delete(url("/api/series/" + id));
+        days = stats("day", day, day.plusDays(1));
+        assertEquals(0, days.get(1).get("appointments").asLong());
+    }
+
+    @Test
+    public void testFirstBookingOfTheDayLosingTheInsertRetriesTheUpdate() {
+        Appointment appt = new Appointment("jdoe", Date.from(Instant.parse(at(20, 9, 0))), Date.from(Instant.parse(at(20, 9, 30))), "p");
+        LocalDate day = DAY.atOffset(ZoneOffset.UTC).toLocalDate().plusDays(20);
+        TransactionTemplate other = new TransactionTemplate(transactionManager);
+        other.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicBoolean raced = new AtomicBoolean();
+        // une autre réservation crée et valide la ligne du jour juste après l'update qui ne l'a pas trouvée
+        AFTER_UPDATE.set(() -> {
+            AFTER_UPDATE.set(null);
+            raced.set(true);
+            other.execute(status -> {
+                doctorStats.booked(appt);
+                return null;
+            });
+        });
+        try {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                doctorStats.booked(appt);
+                return null;
+            });
+        } finally {
+            AFTER_UPDATE.set(null);
+        }
+        assertTrue(raced.get());
+        List<DoctorStats.Bucket> days = doctorStats.read("jdoe", day, day, DoctorStats.Granularity.DAY);
+        assertEquals(2, days.get(0).getAppointments());
+        assertEquals(60, days.get(0).getBookedMinutes());
+    }
+
+    @Test
+    public void testInvalidRequests() {
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("/api/doctors/jdoe/stats?granularity=month"), String.class).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("/api/doctors/jdoe/stats?from=2024-02-01&to=2024-01-01"), String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity(url("/api/doctors/nobody/stats"), String.class).getStatusCode());
+    }
+
+    private JsonNode stats(String granularity, LocalDate from, LocalDate to) {
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity(
+                url("/api/doctors/jdoe/stats?granularity=" + granularity + "&from=" + from + "&to=" + to), JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response.getBody();
+    }
+
+    private long book(int day, int startHour, int startMinute, int endHour, int endMinute) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "{\"doctor\":\"jdoe\",\"patient\":\"p\",\"startDate\":\"" + at(day, startHour, startMinute)
+                + "\",\"endDate\":\"" + at(day, endHour, endMinute) + "\"}";
+        ResponseEntity<JsonNode> response = restTemplate.postForEntity(url("/api/appointments"), new HttpEntity<>(body, headers), JsonNode.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        return response.getBody().get("id").asLong();
+    }
+
+    // Série quotidienne de 9h00 à 9h30 (UTC) à partir du jour donné ; bound fixe sa fin (count ou until)
+    private ResponseEntity<JsonNode> newSeries(int day, String bound) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "{\"doctor\":\"jdoe\",\"patient\":\"p\",\"startDate\":\"" + at(day, 9, 0)
+                + "\",\"endDate\":\"" + at(day, 9, 30) + "\",\"frequency\":\"DAILY\",\"zone\":\"UTC\"" + bound + "}";
+        return restTemplate.postForEntity(url("/api/series"), new HttpEntity<>(body, headers), JsonNode.class);
+    }
+
+    private static String at(int day, int hour, int minute) {
+        return DAY.plus(day, ChronoUnit.DAYS).plus(hour, ChronoUnit.HOURS).plus(minute, ChronoUnit.MINUTES).toString();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
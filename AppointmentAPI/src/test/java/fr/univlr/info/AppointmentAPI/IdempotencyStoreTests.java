@@ -0,0 +1,148 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.controller.IdempotencyKeyInProgressException;
+import fr.univlr.info.AppointmentAPIV1.controller.IdempotencyKeyMismatchException;
+import fr.univlr.info.AppointmentAPIV1.controller.IdempotencyStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyStoreTests {
+
+    @Test
+    public void testRetryReturnsOriginalResponse() {
+        IdempotencyStore store = new IdempotencyStore(100, 60, 5000);
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<String> first = store.execute("k1", "a", () -> ResponseEntity.status(HttpStatus.CREATED).body("appt-" + calls.incrementAndGet()));
+        ResponseEntity<String> retry = store.execute("k1", "a", () -> ResponseEntity.status(HttpStatus.CREATED).body("appt-" + calls.incrementAndGet()));
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals("appt-1", retry.getBody());
+        assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    public void testSameKeyForAnotherRequestIsRejected() {
+        IdempotencyStore store = new IdempotencyStore(100, 60, 5000);
+        store.execute("k1", "a", () -> ResponseEntity.status(HttpStatus.CREATED).body("appt"));
+        assertThrows(IdempotencyKeyMismatchException.class,
+                () -> store.execute("k1", "b", () -> ResponseEntity.status(HttpStatus.CREATED).body("other")));
+    }
+
+    @Test
+    public void testFailuresAreNotRemembered() {
+        IdempotencyStore store = new IdempotencyStore(100, 60, 5000);
+        AtomicInteger calls = new AtomicInteger();
+
+        store.execute("k1", "a", () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        });
+        assertThrows(IllegalStateException.class, () -> store.execute("k1", "a", () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("db down");
+        }));
+        ResponseEntity<String> last = store.execute("k1", "a", () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).body("appt");
+        });
+
+        assertEquals(3, calls.get());
+        assertEquals(HttpStatus.CREATED, last.getStatusCode());
+    }
+
+    @Test
+    public void testConcurrentRetryWaitsForFirstAttempt() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(100, 60, 5000);
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean released = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<String>> first = executor.submit(() -> store.execute("k1", "a", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ResponseEntity.status(HttpStatus.CREATED).body("appt");
+            }));
+            started.await();
+            // la relance part pendant que le premier essai est bloqué ; elle note si elle a rendu la main avant lui
+            Future<Boolean> retry = executor.submit(() -> {
+                ResponseEntity<String> response = store.execute("k1", "a", () -> {
+                    calls.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.CREATED).body("double");
+                });
+                assertEquals("appt", response.getBody());
+                assertEquals("true", response.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+                return released.get();
+            });
+            assertThrows(TimeoutException.class, () -> retry.get(200, TimeUnit.MILLISECONDS));
+
+            released.set(true);
+            release.countDown();
+            assertEquals("appt", first.get(5, TimeUnit.SECONDS).getBody());
+            assertTrue(retry.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetryGivesUpWhenFirstAttemptTakesTooLong() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(100, 60, 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<String>> first = executor.submit(() -> store.execute("k1", "a", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ResponseEntity.status(HttpStatus.CREATED).body("appt");
+            }));
+            started.await();
+            assertThrows(IdempotencyKeyInProgressException.class,
+                    () -> store.execute("k1", "a", () -> ResponseEntity.status(HttpStatus.CREATED).body("double")));
+
+            // une fois le premier essai terminé, la relance suivante reçoit sa réponse
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            assertEquals("appt", store.execute("k1", "a", () -> ResponseEntity.status(HttpStatus.CREATED).body("double")).getBody());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStoreIsBounded() {
+        IdempotencyStore store = new IdempotencyStore(10, 60, 5000);
+        for (int i = 0; i < 1000; i++) {
+            store.execute("k" + i, "a", () -> ResponseEntity.ok("appt"));
+        }
+        store.cleanUp();
+        assertTrue(store.size() <= 10);
+    }
+}
@@ -0,0 +1,125 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Import en masse : lignes refusées (dates, chevauchement dans le fichier ou avec un rendez-vous existant),
+ * médecin inconnu créé, et rendez-vous importés visibles par l'API.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // une ligne par lot : les chevauchements se vérifient aussi d'un lot (et d'une prise) à l'autre
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-import",
+                "appointment.import.batch-size=1"})
+public class ImportTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    public void clear() {
+        restTemplate.delete(url("/api/appointments"));
+    }
+
+    @Test
+    public void testCsvImport() {
+        // un rendez-vous déjà réservé par l'API, que l'import ne doit pas chevaucher
+        HttpHeaders json = new HttpHeaders();
+        json.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.postForEntity(url("/api/appointments"), new HttpEntity<>("{\"doctor\":\"mjones\",\"patient\":\"api\","
+                + "\"startDate\":\"2040-01-13T09:00:00Z\",\"endDate\":\"2040-01-13T09:30:00Z\"}", json), String.class);
+
+        String csv = "patient,doctor,startDate,endDate\n"
+                + "p1,mjones,2019-03-01T09:00:00Z,2019-03-01T09:30:00Z\n"   // dans le passé : accepté
+                + "p2,mjones,2019-03-01T09:15:00Z,2019-03-01T09:45:00Z\n"   // chevauche la ligne 2
+                + "p3,mjones,2040-01-13T09:20:00Z,2040-01-13T09:50:00Z\n"   // chevauche le rendez-vous existant
+                + "p4,mjones,2019-03-01T10:00:00Z,2019-03-01T09:00:00Z\n"   // fin avant le début
+                + "p5,mjones,not a date,2019-03-01T09:00:00Z\n"
+                + "\"Doe, John\",newdoctor,2019-03-01T09:15:00Z,2019-03-01T09:45:00Z\n";
+
+        JsonNode report = post("csv", csv, "text/csv");
+        assertEquals(6, report.get("rows").asInt());
+        assertEquals(2, report.get("imported").asInt());
+        assertEquals(4, report.get("rejected").asInt());
+        assertEquals(1, report.get("doctorsCreated").asInt());
+        assertEquals(3, report.get("errors").get(0).get("line").asInt());
+        assertEquals("Overlaps the appointment on line 2", report.get("errors").get(0).get("reason").asText());
+        assertEquals("Overlaps an existing appointment", report.get("errors").get(1).get("reason").asText());
+
+        assertEquals(2, count("mjones"));
+        JsonNode imported = appointments("newdoctor");
+        assertEquals(1, imported.size());
+        assertEquals("Doe, John", imported.get(0).get("patient").asText());
+    }
+
+    @Test
+    public void testNdjsonImport() {
+        String ndjson = "{\"doctor\":\"jsmith\",\"patient\":\"p1\",\"startDate\":\"2019-03-01T09:00:00Z\",\"endDate\":\"2019-03-01T09:30:00Z\"}\n"
+                + "{not json\n"
+                + "{\"doctor\":\"jsmith\",\"patient\":\"p2\",\"startDate\":\"2019-03-01T10:00:00Z\",\"endDate\":\"2019-03-01T10:30:00Z\"}\n";
+
+        JsonNode report = post("ndjson", ndjson, "application/x-ndjson");
+        assertEquals(3, report.get("rows").asInt());
+        assertEquals(2, report.get("imported").asInt());
+        assertEquals(2, report.get("errors").get(0).get("line").asInt());
+        assertEquals(2, count("jsmith"));
+        // les lignes insérées en JDBC ont aussi leur clé étrangère vers le médecin
+        assertEquals(2, new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM appointment a "
+                + "JOIN doctor d ON a.doctor_id = d.id WHERE d.name = 'jsmith'", Integer.class));
+    }
+
+    @Test
+    public void testUnknownFormat() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_PLAIN);
+        ResponseEntity<String> response = restTemplate.postForEntity(url("/api/admin/import?format=xml"),
+                new HttpEntity<>("", headers), String.class);
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    private JsonNode post(String format, String body, String contentType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(contentType));
+        ResponseEntity<JsonNode> response = restTemplate.postForEntity(url("/api/admin/import?format=" + format),
+                new HttpEntity<>(body, headers), JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response.getBody();
+    }
+
+    private int count(String doctor) {
+        return appointments(doctor).size();
+    }
+
+    private JsonNode appointments(String doctor) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        ResponseEntity<JsonNode> response = restTemplate.exchange(url("/api/doctors/" + doctor + "/appointments"),
+                HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response.getBody();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
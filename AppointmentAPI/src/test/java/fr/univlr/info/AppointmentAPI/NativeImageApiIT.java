@@ -0,0 +1,156 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.*;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parité du binaire natif : les chemins qui reposent sur la réflexion ou les ressources (JSON des entités, liens
+ * HATEOAS, validateur de dates, réponses Problem, idempotence) rejoués en HTTP.
+ *
+ * Avec native.port (mvn verify -Pnative), la suite vise le binaire lancé par Maven. Sans, elle démarre l'application
+ * dans la JVM sur un port libre : mvn test -Dtest=NativeImageApiIT, pour vérifier la suite elle-même.
+ */
+public class NativeImageApiIT {
+    private static final Instant DAY = Instant.now().plus(60, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+
+    private static ConfigurableApplicationContext jvm;
+    private static String baseUrl;
+
+    private final TestRestTemplate restTemplate = new TestRestTemplate();
+
+    @BeforeAll
+    public static void start() throws InterruptedException {
+        String nativePort = System.getProperty("native.port");
+        if (nativePort == null) {
+            // un CacheManager à part : celui par défaut est partagé par les contextes de la JVM
+            jvm = new SpringApplicationBuilder(AppointmentApiApplication.class).run("--server.port=0",
+                    "--spring.jpa.show-sql=false", "--spring.datasource.url=jdbc:h2:mem:native-parity",
+                    "--spring.jpa.properties.hibernate.javax.cache.uri=file:///native-parity");
+            baseUrl = "http://localhost:" + jvm.getEnvironment().getProperty("local.server.port");
+            return;
+        }
+        baseUrl = "http://localhost:" + nativePort;
+        waitForNativeBinary();
+    }
+
+    @AfterAll
+    public static void stop() {
+        if (jvm != null) {
+            jvm.close();
+        }
+    }
+
+    private static void waitForNativeBinary() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/api/doctors").openConnection();
+                connection.setRequestProperty("Accept", "application/json");
+                if (connection.getResponseCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // pas encore prêt
+            }
+            Thread.sleep(50);
+        }
+        fail("Native binary did not answer on " + baseUrl);
+    }
+
+    @Test
+    public void testSeedDoctorsAreSerialized() {
+        ResponseEntity<JsonNode> response = restTemplate.exchange(url("/api/doctors"), HttpMethod.GET,
+                new HttpEntity<>(accept(MediaType.APPLICATION_JSON)), JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        boolean found = false;
+        for (JsonNode doctor : response.getBody()) {
+            found |= "jdoe".equals(doctor.get("name").asText());
+        }
+        assertTrue(found, response.getBody().toString());
+    }
+
+    @Test
+    public void testBookReadAndDelete() {
+        ResponseEntity<JsonNode> created = book(9, null);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        URI location = created.getHeaders().getLocation();
+        assertNotNull(location);
+        assertEquals("mjones", created.getBody().get("doctor").asText());
+
+        // lecture en HAL : les liens passent par les assembleurs et Spring HATEOAS
+        ResponseEntity<JsonNode> read = restTemplate.exchange(location, HttpMethod.GET,
+                new HttpEntity<>(accept(MediaType.valueOf("application/hal+json"))), JsonNode.class);
+        assertEquals(HttpStatus.OK, read.getStatusCode());
+        assertEquals(location.toString(), read.getBody().get("_links").get("self").get("href").asText());
+
+        assertEquals(HttpStatus.OK, restTemplate.exchange(location, HttpMethod.DELETE, null, String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity(location, String.class).getStatusCode());
+    }
+
+    @Test
+    public void testIncoherentDatesAreRefused() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "{\"doctor\":\"mjones\",\"patient\":\"p\",\"startDate\":\"" + DAY.plus(10, ChronoUnit.HOURS)
+                + "\",\"endDate\":\"" + DAY.plus(9, ChronoUnit.HOURS) + "\"}";
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, restTemplate.postForEntity(url("/api/appointments"),
+                new HttpEntity<>(body, headers), String.class).getStatusCode());
+    }
+
+    @Test
+    public void testUnknownAppointmentIsAProblem() {
+        ResponseEntity<JsonNode> response = restTemplate.exchange(url("/api/appointments/999999"), HttpMethod.GET,
+                new HttpEntity<>(accept(MediaType.APPLICATION_JSON)), JsonNode.class);
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON, response.getHeaders().getContentType());
+        assertEquals(404, response.getBody().get("status").asInt());
+    }
+
+    @Test
+    public void testIdempotentRetryReplaysTheFirstResponse() {
+        ResponseEntity<JsonNode> first = book(11, "native-parity-retry");
+        assertEquals(HttpStatus.CREATED, first.getStatusCode());
+        ResponseEntity<JsonNode> retry = book(11, "native-parity-retry");
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(first.getBody().get("id").asLong(), retry.getBody().get("id").asLong());
+        restTemplate.delete(first.getHeaders().getLocation());
+    }
+
+    private ResponseEntity<JsonNode> book(int hour, String idempotencyKey) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (idempotencyKey != null) {
+            headers.set("Idempotency-Key", idempotencyKey);
+        }
+        String body = "{\"doctor\":\"mjones\",\"patient\":\"p\",\"startDate\":\"" + DAY.plus(hour, ChronoUnit.HOURS)
+                + "\",\"endDate\":\"" + DAY.plus(hour, ChronoUnit.HOURS).plus(30, ChronoUnit.MINUTES) + "\"}";
+        return restTemplate.postForEntity(url("/api/appointments"), new HttpEntity<>(body, headers), JsonNode.class);
+    }
+
+    private static HttpHeaders accept(MediaType type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(type));
+        return headers;
+    }
+
+    private static String url(String path) {
+        return baseUrl + path;
+    }
+}
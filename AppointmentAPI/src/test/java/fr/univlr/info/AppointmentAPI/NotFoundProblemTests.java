@@ -0,0 +1,58 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Identifiants inconnus : un 404 en application/problem+json (RFC 7807), que le contrôleur le renvoie directement
+ * (rendez-vous, médecin) ou qu'il passe par une exception (série).
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-not-found"})
+public class NotFoundProblemTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void testUnknownAppointment() {
+        assertProblem("/api/appointments/999999", "Could not find appointment 999999");
+    }
+
+    @Test
+    public void testUnknownDoctor() {
+        assertProblem("/api/doctors/nobody", "Could not find doctor called : nobody");
+    }
+
+    @Test
+    public void testUnknownSeries() {
+        assertProblem("/api/series/999999", "Could not find appointment series 999999");
+    }
+
+    private void assertProblem(String path, String detail) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        ResponseEntity<JsonNode> response = restTemplate.exchange("http://localhost:" + port + path, HttpMethod.GET,
+                new HttpEntity<>(headers), JsonNode.class);
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON, response.getHeaders().getContentType());
+        JsonNode problem = response.getBody();
+        assertEquals(404, problem.get("status").asInt());
+        assertEquals("Not Found", problem.get("title").asText());
+        assertEquals(detail, problem.get("detail").asText());
+    }
+}
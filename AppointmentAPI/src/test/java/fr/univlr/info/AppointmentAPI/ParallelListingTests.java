@@ -0,0 +1,86 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentImporter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.http.*;
+
+import java.io.StringReader;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Listing découpé par médecin : même contenu et même ordre qu'une seule requête, liens HAL absolus.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-parallel",
+                "appointment.listing.parallel.enabled=true", "appointment.listing.parallel.threads=4"})
+public class ParallelListingTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private AppointmentImporter importer;
+
+    @BeforeEach
+    public void load() throws Exception {
+        restTemplate.delete(url("/api/appointments"));
+        // trois médecins aux créneaux entrelacés, deux patients
+        StringBuilder csv = new StringBuilder("doctor,startDate,endDate,patient\n");
+        for (int hour = 0; hour < 10; hour++) {
+            for (String doctor : new String[]{"mjones", "jsmith", "jdoe"}) {
+                csv.append(doctor).append(",2040-01-13T").append(String.format("%02d", hour + 8)).append(":0")
+                        .append(doctor.length() % 3).append(":00Z,2040-01-13T").append(String.format("%02d", hour + 8))
+                        .append(":30:00Z,").append(hour % 2 == 0 ? "alice" : "bob").append('\n');
+            }
+        }
+        assertEquals(30, importer.importFrom(new StringReader(csv.toString()), AppointmentImporter.Format.CSV).getImported());
+    }
+
+    @Test
+    public void testMergedInRequestedOrder() {
+        JsonNode byStart = get("/api/appointments", MediaType.APPLICATION_JSON);
+        assertEquals(30, byStart.size());
+        for (int i = 1; i < byStart.size(); i++) {
+            assertTrue(byStart.get(i - 1).get("startDate").asText().compareTo(byStart.get(i).get("startDate").asText()) <= 0);
+        }
+
+        JsonNode byPatient = get("/api/appointments?patient=bob&sort=doctor,desc", MediaType.APPLICATION_JSON);
+        assertEquals(15, byPatient.size());
+        assertEquals("mjones", byPatient.get(0).get("doctor").asText());
+        assertEquals("jdoe", byPatient.get(14).get("doctor").asText());
+    }
+
+    @Test
+    public void testHalLinksAreAbsolute() {
+        JsonNode hal = get("/api/appointments", MediaTypes.HAL_JSON);
+        JsonNode first = hal.get("_embedded").elements().next().get(0);
+        assertTrue(first.get("_links").get("self").get("href").asText().startsWith("http://localhost:" + port + "/api/appointments/"));
+    }
+
+    private JsonNode get(String path, MediaType accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(accept));
+        ResponseEntity<JsonNode> response = restTemplate.exchange(url(path), HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response.getBody();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
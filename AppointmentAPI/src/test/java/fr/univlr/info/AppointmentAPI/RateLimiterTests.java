@@ -0,0 +1,118 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.controller.RateLimitFilter;
+import fr.univlr.info.AppointmentAPIV1.controller.RateLimiter;
+import fr.univlr.info.AppointmentAPIV1.controller.TokenBucket;
+import fr.univlr.info.AppointmentAPIV1.store.ClusterMembership;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTests {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenRefillAtRate() {
+        // 10 jetons par seconde, 5 en réserve
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(1, 0));
+        }
+        // le sixième doit attendre un dixième de seconde
+        assertEquals(SECOND / 10, bucket.tryAcquire(1, 0));
+        assertEquals(0, bucket.tryAcquire(1, SECOND / 10));
+        // après une longue pause, la réserve ne dépasse pas 5 jetons
+        assertEquals(0, bucket.tryAcquire(5, 10 * SECOND));
+        assertTrue(bucket.tryAcquire(1, 10 * SECOND) > 0);
+    }
+
+    @Test
+    public void testHeavierRequestsCostMore() {
+        TokenBucket bucket = new TokenBucket(10, 20, 0);
+        assertEquals(0, bucket.tryAcquire(10, 0));
+        assertEquals(0, bucket.tryAcquire(10, 0));
+        // un listing de plus : 10 jetons à regagner, soit une seconde
+        assertEquals(SECOND, bucket.tryAcquire(10, 0));
+        bucket.refund(10);
+        assertEquals(0, bucket.tryAcquire(10, 0));
+    }
+
+    @Test
+    public void testClientsAreLimitedSeparately() {
+        RateLimiter limiter = new RateLimiter(1, 2, 1000, 1000, 100);
+        assertEquals(0, limiter.tryAcquire("a", "GET /api/doctors", 2));
+        assertTrue(limiter.tryAcquire("a", "GET /api/doctors", 1) > 0);
+        assertEquals(0, limiter.tryAcquire("b", "GET /api/doctors", 2));
+        assertEquals(1, limiter.getRejected());
+    }
+
+    @Test
+    public void testEndpointLimitRefundsClient() {
+        RateLimiter limiter = new RateLimiter(1000, 10, 1, 1, 100);
+        assertEquals(0, limiter.tryAcquire("a", "GET /api/appointments", 1));
+        // l'endpoint est épuisé pour tout le monde...
+        assertTrue(limiter.tryAcquire("b", "GET /api/appointments", 1) > 0);
+        // ... mais pas les autres endpoints, et b n'a rien payé
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("b", "GET /api/doctors/" + i, 1));
+        }
+    }
+
+    @Test
+    public void testMemoryIsBounded() {
+        RateLimiter limiter = new RateLimiter(10, 10, 1000, 1000, 100);
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("client" + i, "GET /api/doctors", 1);
+        }
+        assertTrue(limiter.trackedClients() <= 100);
+    }
+
+    @Test
+    public void testListingIsRejectedWithRetryAfter() throws Exception {
+        RateLimitFilter filter = filter(Arrays.asList("k1", "k2"), 10);
+
+        assertEquals(HttpStatus.OK.value(), call(filter, "/api/appointments", "k1").getStatus());
+        MockHttpServletResponse limited = call(filter, "/api/appointments", "k1");
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), limited.getStatus());
+        assertEquals("10", limited.getHeader("Retry-After"));
+        // une autre clé d'API a son propre seau
+        assertEquals(HttpStatus.OK.value(), call(filter, "/api/appointments", "k2").getStatus());
+    }
+
+    @Test
+    public void testUnknownKeysAndTooManyKeysFallBackToTheAddress() throws Exception {
+        RateLimitFilter filter = filter(Arrays.asList("k1", "k2", "k3"), 2);
+        // une clé inconnue par requête ne donne pas un seau neuf : c'est l'adresse qui paie
+        assertEquals(HttpStatus.OK.value(), call(filter, "/api/appointments", "forged1").getStatus());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), call(filter, "/api/appointments", "forged2").getStatus());
+
+        // deux clés connues au plus pour cette adresse : la troisième retombe sur le seau (vide) de l'adresse
+        assertEquals(HttpStatus.OK.value(), call(filter, "/api/appointments", "k1").getStatus());
+        assertEquals(HttpStatus.OK.value(), call(filter, "/api/appointments", "k2").getStatus());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), call(filter, "/api/appointments", "k3").getStatus());
+    }
+
+    // 1 jeton par seconde, 10 en réserve : un seul listing par client
+    private static RateLimitFilter filter(List<String> apiKeys, int maxKeysPerAddress) {
+        return new RateLimitFilter(new RateLimiter(1, 10, 1000, 1000, 100),
+                new ClusterMembership(false, "", Collections.emptyList(), "", 128), "X-Api-Key", apiKeys, maxKeysPerAddress, 100, 10,
+                Arrays.asList("/api/appointments", "/api/doctors"));
+    }
+
+    private static MockHttpServletResponse call(RateLimitFilter filter, String path, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.addHeader("X-Api-Key", apiKey);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
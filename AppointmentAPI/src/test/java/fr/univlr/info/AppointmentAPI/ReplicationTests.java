@@ -0,0 +1,131 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.store.ReplicaRoutingDataSource;
+import fr.univlr.info.AppointmentAPIV1.store.ReplicationTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Profil "replication" sur deux bases H2, un primaire et un réplica. La réplication simulée ne tourne qu'une fois
+ * au démarrage, avant le jeu de données initial : une ligne présente sur une seule des deux bases montre laquelle
+ * a servi la transaction.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // sans cache de second niveau : une entité servie par le cache ne dirait pas quelle base a été lue
+        properties = {"spring.jpa.show-sql=false",
+                "spring.datasource.url=jdbc:h2:mem:replication-tests-primary;DB_CLOSE_DELAY=-1",
+                "appointment.replication.replicas=1",
+                "appointment.replication.url-template=jdbc:h2:mem:replication-tests-replica%d;DB_CLOSE_DELAY=-1",
+                "appointment.replication.sync-interval-ms=3600000",
+                "appointment.replication.max-lag-ms=3600000",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@ActiveProfiles("replication")
+public class ReplicationTests {
+    private static final Instant DAY = Instant.now().plus(40, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private LazyConnectionDataSourceProxy dataSource;
+
+    @Autowired
+    private ReplicationTracker tracker;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    public void waitForFirstSync() throws InterruptedException {
+        ReplicaRoutingDataSource routing = (ReplicaRoutingDataSource) dataSource.getTargetDataSource();
+        primary = new JdbcTemplate(routing.getPrimary());
+        replica = new JdbcTemplate(routing.getReplicas().get("replica0"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (tracker.getAppliedVersion("replica0") < 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertTrue(tracker.getAppliedVersion("replica0") >= 0);
+    }
+
+    @Test
+    public void testReadOnlyTransactionsGoToTheReplica() {
+        replica.update("INSERT INTO doctor (id, name) VALUES (?, ?)", 1_000_000L, "replicaonly");
+        try {
+            // la lecture du médecin est une transaction readOnly : elle trouve la ligne qui n'existe que sur le réplica
+            assertEquals(HttpStatus.OK, getJson("/api/doctors/replicaonly", null).getStatusCode());
+            assertEquals(0, primary.queryForObject("SELECT COUNT(*) FROM doctor WHERE name = 'replicaonly'", Integer.class));
+        } finally {
+            replica.update("DELETE FROM doctor WHERE name = 'replicaonly'");
+        }
+    }
+
+    @Test
+    public void testWritesGoToThePrimaryAndTokenReadsFollowThem() {
+        // le médecin doit exister des deux côtés pour que la lecture sur le réplica réponde
+        replica.update("MERGE INTO doctor (id, name) KEY (id) VALUES (?, 'jdoe')",
+                primary.queryForObject("SELECT id FROM doctor WHERE name = 'jdoe'", Long.class));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "{\"doctor\":\"jdoe\",\"patient\":\"p\",\"startDate\":\"" + DAY.plus(9, ChronoUnit.HOURS)
+                + "\",\"endDate\":\"" + DAY.plus(9, ChronoUnit.HOURS).plus(30, ChronoUnit.MINUTES) + "\"}";
+        ResponseEntity<JsonNode> created = restTemplate.postForEntity(url("/api/appointments"),
+                new HttpEntity<>(body, headers), JsonNode.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        long id = created.getBody().get("id").asLong();
+        String token = created.getHeaders().getFirst("X-Consistency-Token");
+        assertNotNull(token);
+
+        assertEquals(1, primary.queryForObject("SELECT COUNT(*) FROM appointment WHERE id = ?", Integer.class, id));
+        assertEquals(0, replica.queryForObject("SELECT COUNT(*) FROM appointment WHERE id = ?", Integer.class, id));
+
+        // sans jeton, la lecture va sur le réplica (en retard mais dans le retard toléré) ; avec, elle retombe sur le primaire
+        ResponseEntity<JsonNode> fromReplica = getJson("/api/doctors/jdoe/appointments", null);
+        assertEquals(HttpStatus.OK, fromReplica.getStatusCode());
+        assertFalse(contains(fromReplica.getBody(), id));
+        assertTrue(contains(getJson("/api/doctors/jdoe/appointments", token).getBody(), id));
+    }
+
+    private ResponseEntity<JsonNode> getJson(String path, String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        if (token != null) {
+            headers.set("X-Consistency-Token", token);
+        }
+        return restTemplate.exchange(url(path), HttpMethod.GET, new HttpEntity<>(headers), JsonNode.class);
+    }
+
+    private static boolean contains(JsonNode appointments, long id) {
+        for (JsonNode appointment : appointments) {
+            if (appointment.get("id").asLong() == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
@@ -0,0 +1,43 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.store.ReplicationTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicationTrackerTests {
+
+    @Test
+    public void testNoReplicaBeforeFirstSync() {
+        ReplicationTracker tracker = new ReplicationTracker(Arrays.asList("replica0", "replica1"), 1000);
+        assertNull(tracker.selectReplica(0, 0));
+        assertEquals(1, tracker.getPrimaryFallbacks());
+    }
+
+    @Test
+    public void testReadYourWrites() {
+        ReplicationTracker tracker = new ReplicationTracker(Arrays.asList("replica0", "replica1"), 1000);
+        tracker.markApplied("replica0", 0, 0);
+        tracker.markApplied("replica1", 0, 0);
+        long token = tracker.recordCommit();
+
+        // aucun réplica n'a encore appliqué l'écriture du client : lecture sur le primaire
+        assertNull(tracker.selectReplica(token, 10));
+        // un autre client, sans jeton, peut lire un réplica légèrement en retard
+        assertNotNull(tracker.selectReplica(0, 10));
+
+        tracker.markApplied("replica1", token, 20);
+        assertEquals("replica1", tracker.selectReplica(token, 30));
+    }
+
+    @Test
+    public void testLaggingReplicaIsSkipped() {
+        ReplicationTracker tracker = new ReplicationTracker(Arrays.asList("replica0"), 1000);
+        tracker.markApplied("replica0", 0, 0);
+        tracker.recordCommit();
+        assertEquals("replica0", tracker.selectReplica(0, 500));
+        assertNull(tracker.selectReplica(0, 1500));
+    }
+}
@@ -0,0 +1,220 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Salles et appareils : réservation tout ou rien avec le médecin, registre des ressources (création, doublon,
+ * calendrier d'une ressource) et conflits de salle, d'appareil ou de médecin à la modification d'un rendez-vous.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // le cache de second niveau est partagé par les contextes de test de la JVM : un rendez-vous d'une autre base
+        // avec le même identifiant y serait trouvé
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-resources",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+public class ResourceBookingTests {
+    private static final Instant DAY = Instant.now().plus(10, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    // Les ressources restent d'un test à l'autre : chaque test a les siennes
+    @BeforeEach
+    public void clear() {
+        restTemplate.delete(url("/api/appointments"));
+    }
+
+    @Test
+    public void testDoctorRoomAndDeviceAreAllOrNothing() {
+        createResource("ROOM", "R1");
+        createResource("ROOM", "R2");
+        createResource("DEVICE", "ECG1");
+        assertEquals(HttpStatus.CREATED, book("jdoe", 0, 9, 0, 9, 30, "R1", "ECG1").getStatusCode());
+        assertEquals(1, bookings("room:R1"));
+        assertEquals(1, bookings("device:ECG1"));
+
+        // l'appareil est pris : ni le rendez-vous, ni la salle libre ne sont réservés
+        assertEquals(HttpStatus.CONFLICT, book("mjones", 0, 9, 15, 9, 45, "R2", "ECG1").getStatusCode());
+        // la salle est prise
+        assertEquals(HttpStatus.CONFLICT, book("mjones", 0, 9, 15, 9, 45, "R1", null).getStatusCode());
+        // le médecin est pris, la salle est libre
+        assertEquals(HttpStatus.CONFLICT, book("jdoe", 0, 9, 15, 9, 45, "R2", null).getStatusCode());
+        assertEquals(0, bookings("room:R2"));
+        assertEquals(1, bookings("device:ECG1"));
+        assertEquals(0, appointments("mjones"));
+        assertEquals(1, appointments("jdoe"));
+
+        // salle inconnue
+        assertEquals(HttpStatus.NOT_FOUND, book("mjones", 0, 11, 0, 11, 30, "R404", null).getStatusCode());
+        assertEquals(0, appointments("mjones"));
+
+        // juste après : tout est libre
+        assertEquals(HttpStatus.CREATED, book("mjones", 0, 9, 31, 10, 0, "R1", "ECG1").getStatusCode());
+        assertEquals(2, bookings("room:R1"));
+        assertEquals(2, bookings("device:ECG1"));
+    }
+
+    @Test
+    public void testCreateListAndCalendarOfResources() {
+        ResponseEntity<JsonNode> created = createResource("ROOM", "R10");
+        assertTrue(created.getHeaders().getLocation().toString().endsWith("/api/resources/room/R10"));
+        assertEquals("R10", created.getBody().get("name").asText());
+        assertEquals(HttpStatus.CONFLICT, postResource("ROOM", "R10").getStatusCode());
+        // même nom, autre type : une autre ressource
+        createResource("DEVICE", "R10");
+        assertEquals(HttpStatus.BAD_REQUEST, postResource("DOCTOR", "R11").getStatusCode());
+
+        JsonNode all = restTemplate.getForObject(url("/api/resources"), JsonNode.class);
+        int rooms = 0;
+        for (JsonNode resource : all) {
+            if ("R10".equals(resource.get("name").asText()) && "ROOM".equals(resource.get("kind").asText())) {
+                rooms++;
+            }
+        }
+        assertEquals(1, rooms);
+
+        long id = book("jdoe", 1, 9, 0, 9, 30, "R10", null).getBody().get("id").asLong();
+        book("mjones", 1, 10, 0, 10, 30, "R10", null);
+        LocalDate day = DAY.atOffset(ZoneOffset.UTC).toLocalDate().plusDays(1);
+        JsonNode calendar = restTemplate.getForObject(url("/api/resources/room/R10/bookings?from=" + day + "&to=" + day.plusDays(1)),
+                JsonNode.class);
+        assertEquals(2, calendar.size());
+        assertEquals(id, calendar.get(0).get("appointmentId").asLong());
+        assertEquals("room:R10", calendar.get(0).get("resourceKey").asText());
+
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity(url("/api/resources/room/R404/bookings"), String.class).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, restTemplate.getForEntity(url("/api/resources/car/R10/bookings"), String.class).getStatusCode());
+    }
+
+    @Test
+    public void testUpdateIntoATakenSlotIsRefused() {
+        book("jdoe", 6, 9, 0, 9, 30, null, null);
+        long moved = book("jdoe", 7, 9, 0, 10, 0, null, null).getBody().get("id").asLong();
+        assertEquals(HttpStatus.CONFLICT, update(moved, "jdoe", 6, 9, 15, 10, 15, null, null));
+
+        // rien n'a bougé : ni le rendez-vous, ni les statistiques
+        JsonNode appointment = restTemplate.getForObject(url("/api/appointments/" + moved), JsonNode.class);
+        assertEquals(Instant.parse(at(7, 9, 0)), Instant.parse(appointment.get("startDate").asText()));
+        LocalDate day = DAY.atOffset(ZoneOffset.UTC).toLocalDate().plusDays(6);
+        JsonNode days = restTemplate.getForObject(url("/api/doctors/jdoe/stats?granularity=day&from=" + day + "&to=" + day.plusDays(1)),
+                JsonNode.class);
+        assertEquals(1, days.get(0).get("appointments").asLong());
+        assertEquals(1, days.get(1).get("appointments").asLong());
+
+        // sur son propre créneau (il se chevauche lui-même), la modification passe
+        assertEquals(HttpStatus.OK, update(moved, "jdoe", 7, 9, 30, 10, 30, null, null));
+    }
+
+    @Test
+    public void testRoomAndDeviceConflictsOnUpdate() {
+        createResource("ROOM", "R20");
+        createResource("ROOM", "R21");
+        createResource("ROOM", "R22");
+        createResource("DEVICE", "D20");
+        book("jdoe", 2, 9, 0, 9, 30, "R20", null);
+        long moved = book("mjones", 2, 10, 0, 10, 30, "R21", "D20").getBody().get("id").asLong();
+
+        // salle prise sur le nouveau créneau (par un autre médecin) : rien ne change, ni ses réservations
+        assertEquals(HttpStatus.CONFLICT, update(moved, "mjones", 2, 9, 0, 9, 30, "R20", "D20"));
+        assertEquals(1, bookings("room:R20"));
+        assertEquals(1, bookings("room:R21"));
+        assertEquals(1, bookings("device:D20"));
+        JsonNode appointment = restTemplate.getForObject(url("/api/appointments/" + moved), JsonNode.class);
+        assertEquals("R21", appointment.get("room").asText());
+
+        // appareil pris par un autre rendez-vous
+        long other = book("jsmith", 2, 14, 0, 14, 30, null, null).getBody().get("id").asLong();
+        assertEquals(HttpStatus.CONFLICT, update(other, "jsmith", 2, 10, 15, 10, 45, null, "D20"));
+        assertEquals(0, bookings("device:D20", other));
+
+        // salle libre : ses réservations suivent le rendez-vous
+        assertEquals(HttpStatus.OK, update(moved, "mjones", 2, 9, 0, 9, 30, "R22", "D20"));
+        assertEquals(0, bookings("room:R21"));
+        assertEquals(1, bookings("room:R22", moved));
+        assertEquals(1, bookings("device:D20", moved));
+    }
+
+    private ResponseEntity<JsonNode> createResource(String kind, String name) {
+        ResponseEntity<JsonNode> response = postResource(kind, name);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        return response;
+    }
+
+    private ResponseEntity<JsonNode> postResource(String kind, String name) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "{\"kind\":\"" + kind + "\",\"name\":\"" + name + "\"}";
+        return restTemplate.postForEntity(url("/api/resources"), new HttpEntity<>(body, headers), JsonNode.class);
+    }
+
+    private ResponseEntity<JsonNode> book(String doctor, int day, int startHour, int startMinute, int endHour, int endMinute,
+                                          String room, String device) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForEntity(url("/api/appointments"),
+                new HttpEntity<>(body(doctor, day, startHour, startMinute, endHour, endMinute, room, device), headers), JsonNode.class);
+    }
+
+    private HttpStatus update(long id, String doctor, int day, int startHour, int startMinute, int endHour, int endMinute,
+                              String room, String device) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.exchange(url("/api/appointments/" + id), HttpMethod.PUT,
+                new HttpEntity<>(body(doctor, day, startHour, startMinute, endHour, endMinute, room, device), headers),
+                String.class).getStatusCode();
+    }
+
+    private static String body(String doctor, int day, int startHour, int startMinute, int endHour, int endMinute,
+                               String room, String device) {
+        return "{\"doctor\":\"" + doctor + "\",\"patient\":\"p\",\"startDate\":\"" + at(day, startHour, startMinute)
+                + "\",\"endDate\":\"" + at(day, endHour, endMinute) + "\""
+                + (room != null ? ",\"room\":\"" + room + "\"" : "")
+                + (device != null ? ",\"device\":\"" + device + "\"" : "") + "}";
+    }
+
+    // Lignes de resource_booking d'une ressource (de tous les rendez-vous, ou d'un seul)
+    private int bookings(String resourceKey) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM resource_booking WHERE resource_key = ?", Integer.class, resourceKey);
+    }
+
+    private int bookings(String resourceKey, long appointmentId) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM resource_booking WHERE resource_key = ? AND appointment_id = ?",
+                Integer.class, resourceKey, appointmentId);
+    }
+
+    private int appointments(String doctor) {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM appointment WHERE doctor = ?", Integer.class, doctor);
+    }
+
+    private static String at(int day, int hour, int minute) {
+        return DAY.plus(day, ChronoUnit.DAYS).plus(hour, ChronoUnit.HOURS).plus(minute, ChronoUnit.MINUTES).toString();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
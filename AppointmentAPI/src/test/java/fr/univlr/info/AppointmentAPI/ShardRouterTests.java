@@ -0,0 +1,62 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.store.ConsistentHashRing;
+import fr.univlr.info.AppointmentAPIV1.store.ShardContext;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRouterTests {
+
+    @Test
+    public void testSameDoctorAlwaysOnSameShard() {
+        ShardRouter router = new ShardRouter(true, 4, 128);
+        for (String doctor : Arrays.asList("mjones", "jsmith", "jdoe")) {
+            assertEquals(router.shardFor(doctor), router.shardFor(doctor));
+            assertEquals(router.shardFor(doctor), router.onDoctor(doctor, ShardContext::current));
+        }
+        // le contexte est bien restauré après l'appel
+        assertNull(ShardContext.current());
+    }
+
+    @Test
+    public void testAddingAShardOnlyMovesPartOfTheKeys() {
+        ConsistentHashRing<String> fourShards = new ConsistentHashRing<>(Arrays.asList("s0", "s1", "s2", "s3"), 128);
+        ConsistentHashRing<String> fiveShards = new ConsistentHashRing<>(Arrays.asList("s0", "s1", "s2", "s3", "s4"), 128);
+        int moved = 0;
+        int total = 10000;
+        for (int i = 0; i < total; i++) {
+            String key = "doctor" + i;
+            String after = fiveShards.nodeFor(key);
+            if (!fourShards.nodeFor(key).equals(after)) {
+                // une clé ne peut partir que vers le nouveau shard
+                assertEquals("s4", after);
+                moved++;
+            }
+        }
+        // environ 1/5 des clés doivent bouger, loin du rehachage complet d'un modulo
+        assertTrue(moved > total / 10 && moved < total * 3 / 10, "moved=" + moved);
+    }
+
+    @Test
+    public void testScatterMergesSortedShardResults() {
+        ShardRouter router = new ShardRouter(true, 3, 64);
+        Map<String, List<Integer>> data = new HashMap<>();
+        data.put("shard0", Arrays.asList(1, 4, 7));
+        data.put("shard1", Arrays.asList(2, 5));
+        data.put("shard2", Collections.emptyList());
+        List<Integer> merged = router.scatter(() -> data.get(ShardContext.current()), Comparator.naturalOrder());
+        assertEquals(Arrays.asList(1, 2, 4, 5, 7), merged);
+    }
+
+    @Test
+    public void testUnshardedRouterRunsWorkDirectly() {
+        ShardRouter router = new ShardRouter(false, 4, 128);
+        assertFalse(router.isSharded());
+        assertEquals(ShardRouter.DEFAULT_SHARD, router.shardFor("mjones"));
+        assertNull(router.onDoctor("mjones", ShardContext::current));
+    }
+}
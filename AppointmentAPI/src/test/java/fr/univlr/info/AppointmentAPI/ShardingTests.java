@@ -0,0 +1,169 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.Doctor;
+import fr.univlr.info.AppointmentAPIV1.store.SecondLevelCache;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRebalancer;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRoutingDataSource;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Profil "sharding" sur quatre bases H2 : chaque médecin et ses rendez-vous ne vivent que sur le shard de l'anneau,
+ * les listings rassemblent tous les shards, et le rééquilibrage ramène sur leur propriétaire des médecins mal placés
+ * en vidant le cache de second niveau.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // cache de second niveau actif, mais dans un CacheManager à part : celui par défaut est partagé par les
+        // contextes de test de la JVM
+        properties = {"spring.jpa.show-sql=false",
+                "appointment.sharding.url-template=jdbc:h2:mem:sharding-tests-%s;DB_CLOSE_DELAY=-1",
+                "spring.jpa.properties.hibernate.javax.cache.uri=file:///sharding-tests"})
+@ActiveProfiles("sharding")
+public class ShardingTests {
+    private static final Instant DAY = Instant.now().plus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+    private static final List<String> DOCTORS = Arrays.asList("mjones", "jsmith", "jdoe");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRoutingDataSource dataSource;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private SecondLevelCache secondLevelCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    public void clear() {
+        restTemplate.delete(url("/api/appointments"));
+    }
+
+    @Test
+    public void testDoctorsAndAppointmentsLiveOnTheirShard() {
+        assertTrue(shardRouter.isSharded());
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < DOCTORS.size(); i++) {
+            String doctor = DOCTORS.get(i);
+            long id = book(doctor, 9 + i);
+            ids.add(id);
+            String owner = shardRouter.shardFor(doctor);
+            for (String shard : shardRouter.getShards()) {
+                int expected = shard.equals(owner) ? 1 : 0;
+                assertEquals(expected, count(shard, "SELECT COUNT(*) FROM doctor WHERE name = ?", doctor), doctor + "@" + shard);
+                assertEquals(expected, count(shard, "SELECT COUNT(*) FROM appointment WHERE id = ?", id), doctor + "@" + shard);
+            }
+            assertEquals(HttpStatus.OK, restTemplate.getForEntity(url("/api/appointments/" + id), String.class).getStatusCode());
+        }
+
+        // le listing interroge tous les shards
+        JsonNode all = restTemplate.exchange(url("/api/appointments"), HttpMethod.GET,
+                new HttpEntity<>(acceptJson()), JsonNode.class).getBody();
+        Set<Long> listed = new HashSet<>();
+        all.forEach(appointment -> listed.add(appointment.get("id").asLong()));
+        assertTrue(listed.containsAll(ids), listed.toString());
+    }
+
+    @Test
+    public void testRebalancerMovesMisplacedDoctorsBackToTheirOwner() {
+        String doctor = "jdoe";
+        String owner = shardRouter.shardFor(doctor);
+        long id = book(doctor, 11);
+        // lecture par identifiant : le rendez-vous et le médecin passent dans le cache de second niveau
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity(url("/api/appointments/" + id), String.class).getStatusCode());
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        assertTrue(cache.containsEntity(Appointment.class, id));
+
+        // un anneau différent (comme après un changement du nombre de shards) range le médecin ailleurs
+        ShardRouter misplacing = null;
+        for (int virtualNodes = 1; misplacing == null; virtualNodes++) {
+            ShardRouter candidate = new ShardRouter(true, shardRouter.getShards().size(), virtualNodes);
+            if (!candidate.shardFor(doctor).equals(owner)) {
+                misplacing = candidate;
+            }
+        }
+        String elsewhere = misplacing.shardFor(doctor);
+        new ShardRebalancer(misplacing, dataSource, secondLevelCache).rebalance();
+        assertEquals(0, count(owner, "SELECT COUNT(*) FROM appointment WHERE id = ?", id));
+        assertEquals(1, count(elsewhere, "SELECT COUNT(*) FROM appointment WHERE id = ?", id));
+        assertEquals(1, count(elsewhere, "SELECT COUNT(*) FROM doctor WHERE name = ?", doctor));
+        // les lignes ont bougé sans Hibernate : le cache ne doit plus les servir
+        assertFalse(cache.containsEntity(Appointment.class, id));
+        assertFalse(cache.containsEntity(Doctor.class, doctorId(elsewhere, doctor)));
+
+        // le rééquilibrage avec l'anneau courant les ramène, et les lectures routées vers le propriétaire les trouvent
+        ShardRebalancer.Report report = shardRebalancer.rebalance();
+        assertTrue(report.getMovedDoctors() >= 1);
+        assertEquals(1, count(owner, "SELECT COUNT(*) FROM appointment WHERE id = ?", id));
+        assertEquals(0, count(elsewhere, "SELECT COUNT(*) FROM appointment WHERE id = ?", id));
+        assertEquals(0, count(elsewhere, "SELECT COUNT(*) FROM doctor WHERE name = ?", doctor));
+
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity(url("/api/appointments/" + id), String.class).getStatusCode());
+        JsonNode appointments = restTemplate.exchange(url("/api/doctors/" + doctor + "/appointments"), HttpMethod.GET,
+                new HttpEntity<>(acceptJson()), JsonNode.class).getBody();
+        Set<Long> listed = new HashSet<>();
+        appointments.forEach(appointment -> listed.add(appointment.get("id").asLong()));
+        assertTrue(listed.contains(id), listed.toString());
+    }
+
+    private long book(String doctor, int hour) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "{\"doctor\":\"" + doctor + "\",\"patient\":\"p\",\"startDate\":\"" + DAY.plus(hour, ChronoUnit.HOURS)
+                + "\",\"endDate\":\"" + DAY.plus(hour, ChronoUnit.HOURS).plus(30, ChronoUnit.MINUTES) + "\"}";
+        ResponseEntity<JsonNode> created = restTemplate.postForEntity(url("/api/appointments"),
+                new HttpEntity<>(body, headers), JsonNode.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        return created.getBody().get("id").asLong();
+    }
+
+    private int count(String shard, String sql, Object key) {
+        return new JdbcTemplate(dataSource.getShards().get(shard)).queryForObject(sql, Integer.class, key);
+    }
+
+    private long doctorId(String shard, String doctor) {
+        return new JdbcTemplate(dataSource.getShards().get(shard))
+                .queryForObject("SELECT id FROM doctor WHERE name = ?", Long.class, doctor);
+    }
+
+    private static HttpHeaders acceptJson() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        return headers;
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
@@ -0,0 +1,104 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.store.SlotHolds;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlotHoldsTests {
+
+    @Test
+    public void testDifferentSlotsOfOneDoctorRunTogether() throws Exception {
+        SlotHolds holds = new SlotHolds(10_000);
+        CountDownLatch bothInside = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // chacune attend l'autre sous sa prise : ça ne finit que si les deux créneaux sont pris en même temps
+            Future<Boolean> first = executor.submit(() -> holds.withHolds(Collections.singletonList("doctor:mjones"), 0, 10,
+                    () -> meet(bothInside)));
+            Future<Boolean> second = executor.submit(() -> holds.withHolds(Collections.singletonList("doctor:mjones"), 20, 30,
+                    () -> meet(bothInside)));
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertTrue(second.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, holds.activeHolds());
+    }
+
+    @Test
+    public void testOverlappingSlotsWaitForEachOther() throws Exception {
+        SlotHolds holds = new SlotHolds(10_000);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] futures = new Future<?>[8];
+            for (int i = 0; i < futures.length; i++) {
+                long start = i * 5;
+                // même salle, créneaux qui se chevauchent tous ; médecins différents
+                futures[i] = executor.submit(() -> holds.withHolds(Arrays.asList("doctor:d" + start, "room:R1"), start, start + 100, () -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    sleep(5);
+                    inside.decrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, maxInside.get());
+    }
+
+    @Test
+    public void testExpiredHoldIsReclaimed() throws Exception {
+        SlotHolds holds = new SlotHolds(50);
+        CountDownLatch stuck = new CountDownLatch(1);
+        Thread owner = new Thread(() -> holds.withHolds(Collections.singletonList("doctor:mjones"), 0, 10, () -> await(stuck)));
+        owner.start();
+        try {
+            sleep(20);
+            long begin = System.nanoTime();
+            // la première prise n'est jamais rendue : on l'attend au plus jusqu'à son expiration
+            assertEquals("booked", holds.withHolds(Collections.singletonList("doctor:mjones"), 5, 15, () -> "booked"));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) < 1_000);
+        } finally {
+            stuck.countDown();
+            owner.join();
+        }
+    }
+
+    private static boolean meet(CountDownLatch latch) {
+        latch.countDown();
+        return await(latch);
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
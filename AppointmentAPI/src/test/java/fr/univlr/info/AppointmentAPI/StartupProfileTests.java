@@ -0,0 +1,97 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import fr.univlr.info.AppointmentAPIV1.store.DoctorRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Profil "startup" : le schéma explicite (db/schema.sql) doit être celui que Hibernate génère pour les entités
+ * (comparé au DDL écrit dans target/hibernate-schema.sql, en plus de ddl-auto=validate qui ne voit pas les contraintes),
+ * et aucun médecin de démonstration n'est créé.
+ */
+@ActiveProfiles("startup")
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:appointment-startup",
+                "spring.jpa.hibernate.ddl-auto=validate",
+                // la validation a besoin des métadonnées JDBC (casse des noms de tables), que le profil ne lit plus
+                "spring.jpa.properties.hibernate.temp.use_jdbc_metadata_defaults=true",
+                // DDL des entités, à comparer au schéma explicite
+                "spring.jpa.properties.javax.persistence.schema-generation.scripts.action=create",
+                "spring.jpa.properties.javax.persistence.schema-generation.scripts.create-target=" + StartupProfileTests.GENERATED,
+                "spring.jpa.properties.hibernate.hbm2ddl.delimiter=;"
+        })
+public class StartupProfileTests {
+    static final String GENERATED = "target/hibernate-schema.sql";
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    // Hibernate ajoute à la fin du fichier : celui d'une exécution précédente est supprimé avant le démarrage
+    @DynamicPropertySource
+    static void generatedSchema(DynamicPropertyRegistry registry) throws IOException {
+        Files.deleteIfExists(Paths.get(GENERATED));
+    }
+
+    @Test
+    public void testExplicitSchemaMatchesEntities() throws IOException {
+        // le premier appel initialise JPA (démarrage paresseux), donc la validation du schéma et l'écriture du DDL
+        assertEquals(0, appointmentRepository.count());
+        assertEquals(statements(new String(Files.readAllBytes(Paths.get(GENERATED)), StandardCharsets.UTF_8)),
+                statements(StreamUtils.copyToString(new ClassPathResource("db/schema.sql").getInputStream(), StandardCharsets.UTF_8)));
+    }
+
+    // validate ne regarde pas les contraintes : celle des statistiques est vérifiée à part
+    @Test
+    public void testDoctorDayStatsIsUniquePerDoctorAndDay() {
+        assertEquals(1, jdbc.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.CONSTRAINTS "
+                + "WHERE TABLE_NAME = 'DOCTOR_DAY_STATS' AND CONSTRAINT_NAME = 'UK_DOCTOR_DAY_STATS' "
+                + "AND CONSTRAINT_TYPE = 'UNIQUE' AND COLUMN_LIST = 'DOCTOR,DAY_START'", Integer.class));
+    }
+
+    @Test
+    public void testNoSeedingOutsideDev() {
+        assertFalse(context.containsBean("initDatabase"));
+        assertEquals(0, doctorRepository.count());
+    }
+
+    // Instructions SQL triées, sans les commentaires ni les différences d'espacement
+    private static List<String> statements(String ddl) {
+        return Arrays.stream(ddl.replaceAll("--[^\\n]*", "").split(";"))
+                .map(statement -> statement.replaceAll("\\s+", " ").trim())
+                .filter(statement -> !statement.isEmpty())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
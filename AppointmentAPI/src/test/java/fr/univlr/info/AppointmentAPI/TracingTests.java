@@ -0,0 +1,200 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Traçage par étapes : une réservation tracée (traceparent "sampled", l'échantillonnage aléatoire est coupé)
+ * donne ses étapes avec leurs instructions SQL, le cumul en piles repliées et une ligne dans le fichier d'export ;
+ * un listing donne ses étapes de lecture et de mise en forme. Une requête sans traceparent, ou avec un traceparent
+ * non "sampled", n'est pas tracée ; les traces imposées sont limitées par seconde ; une URL inconnue garde un nom fixe.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // cache de second niveau coupé : il est partagé par les contextes de test de la JVM (voir DoctorStatsTests)
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-tracing",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                "appointment.tracing.enabled=true", "appointment.tracing.sample-rate=0",
+                "appointment.tracing.forced-per-second=" + TracingTests.FORCED_PER_SECOND,
+                "appointment.tracing.file=" + TracingTests.EXPORT})
+public class TracingTests {
+    static final String EXPORT = "target/tracing-tests/traces.jsonl";
+    static final int FORCED_PER_SECOND = 5;
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @BeforeEach
+    public void clear() {
+        restTemplate.delete(url("/api/appointments"));
+        restTemplate.delete(url("/api/admin/traces"));
+    }
+
+    @Test
+    public void testBookingStagesAreRecorded() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-01");
+        Instant start = Instant.now().plus(5, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS);
+        String body = "{\"doctor\":\"jdoe\",\"patient\":\"p\",\"startDate\":\"" + start
+                + "\",\"endDate\":\"" + start.plus(30, ChronoUnit.MINUTES) + "\"}";
+        ResponseEntity<String> created = restTemplate.postForEntity(url("/api/appointments"), new HttpEntity<>(body, headers), String.class);
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        assertEquals(TRACE_ID, created.getHeaders().getFirst("X-Trace-Id"));
+
+        JsonNode traces = restTemplate.getForObject(url("/api/admin/traces?limit=1"), JsonNode.class);
+        assertEquals(1, traces.size());
+        JsonNode root = traces.get(0).get("root");
+        assertEquals("POST /api/appointments", root.get("name").asText());
+        JsonNode transaction = find(root, "transaction");
+        assertNotNull(transaction);
+        // la recherche du médecin, la recherche de conflits et l'insertion envoient chacune leur SQL
+        assertTrue(find(transaction, "doctor.lookup").get("statements").asLong() >= 1);
+        assertTrue(find(transaction, "overlap.scan").get("statements").asLong() >= 1);
+        assertNotNull(find(transaction, "save"));
+
+        String flame = restTemplate.getForObject(url("/api/admin/traces/flame"), String.class);
+        assertTrue(flame.contains("POST /api/appointments;holds "), flame);
+        assertTrue(flame.contains("POST /api/appointments;transaction;overlap.scan "), flame);
+
+        // l'export est écrit par son propre thread, après la réponse
+        assertTrue(waitFor(() -> lastExportedTraceId().equals(TRACE_ID)));
+    }
+
+    @Test
+    public void testListingStagesAreRecorded() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        Instant start = Instant.now().plus(6, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS);
+        String body = "{\"doctor\":\"jdoe\",\"patient\":\"p\",\"startDate\":\"" + start
+                + "\",\"endDate\":\"" + start.plus(30, ChronoUnit.MINUTES) + "\"}";
+        assertEquals(HttpStatus.CREATED, restTemplate.postForEntity(url("/api/appointments"), new HttpEntity<>(body, headers),
+                String.class).getStatusCode());
+
+        HttpHeaders traced = accept(MediaType.valueOf("application/hal+json"));
+        traced.set("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-01");
+        assertEquals(HttpStatus.OK, restTemplate.exchange(url("/api/doctors/jdoe/appointments"), HttpMethod.GET,
+                new HttpEntity<>(traced), String.class).getStatusCode());
+
+        JsonNode traces = restTemplate.getForObject(url("/api/admin/traces"), JsonNode.class);
+        assertEquals(1, traces.size());
+        JsonNode root = traces.get(0).get("root");
+        assertEquals("GET /api/doctors/{name}/appointments", root.get("name").asText());
+        JsonNode query = find(root, "query");
+        assertNotNull(query);
+        assertEquals(1, query.get("rows").asLong());
+        assertTrue(query.get("statements").asLong() >= 1);
+        JsonNode assemble = find(root, "assemble");
+        assertNotNull(assemble);
+        assertEquals(1, assemble.get("rows").asLong());
+        assertEquals(0, assemble.get("statements").asLong());
+    }
+
+    @Test
+    public void testUnsampledRequestsAreNotTraced() {
+        // sans traceparent, avec un échantillonnage à 0
+        for (int i = 0; i < 10; i++) {
+            restTemplate.exchange(url("/api/appointments"), HttpMethod.GET, new HttpEntity<>(accept(MediaType.APPLICATION_JSON)), String.class);
+        }
+        // traceparent valide, mais l'appelant ne trace pas (flags 00)
+        HttpHeaders headers = accept(MediaType.APPLICATION_JSON);
+        headers.set("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-00");
+        ResponseEntity<String> response = restTemplate.exchange(url("/api/appointments"), HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getHeaders().getFirst("X-Trace-Id"));
+        assertEquals(0, restTemplate.getForObject(url("/api/admin/traces"), JsonNode.class).size());
+    }
+
+    @Test
+    public void testForcedTracesAreCapped() {
+        HttpHeaders headers = accept(MediaType.APPLICATION_JSON);
+        headers.set("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-01");
+        int requests = 4 * FORCED_PER_SECOND;
+        long begin = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            restTemplate.exchange(url("/api/appointments"), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        int traced = restTemplate.getForObject(url("/api/admin/traces?limit=100"), JsonNode.class).size();
+        // la réserve du seau, plus ce qu'il a regagné pendant les requêtes
+        assertTrue(traced >= FORCED_PER_SECOND, Integer.toString(traced));
+        assertTrue(traced <= FORCED_PER_SECOND + Math.ceil(seconds * FORCED_PER_SECOND), traced + " in " + seconds + " s");
+    }
+
+    @Test
+    public void testUnmatchedRequestHasAFixedName() {
+        HttpHeaders headers = accept(MediaType.APPLICATION_JSON);
+        headers.set("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-01");
+        restTemplate.exchange(url("/api/no-such-route-42"), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        JsonNode traces = restTemplate.getForObject(url("/api/admin/traces"), JsonNode.class);
+        assertEquals(1, traces.size());
+        String name = traces.get(0).get("root").get("name").asText();
+        assertFalse(name.contains("no-such-route-42"), name);
+    }
+
+    private static String lastExportedTraceId() throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(EXPORT), StandardCharsets.UTF_8);
+        return lines.isEmpty() ? "" : new ObjectMapper().readTree(lines.get(lines.size() - 1)).get("traceId").asText();
+    }
+
+    private static boolean waitFor(Callable<Boolean> condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        try {
+            while (System.nanoTime() < deadline) {
+                if (condition.call()) {
+                    return true;
+                }
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return false;
+    }
+
+    private static HttpHeaders accept(MediaType type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(type));
+        return headers;
+    }
+
+    private static JsonNode find(JsonNode span, String name) {
+        for (JsonNode child : span.path("children")) {
+            if (name.equals(child.get("name").asText())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
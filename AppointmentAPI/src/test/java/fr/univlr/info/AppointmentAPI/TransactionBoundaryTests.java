@@ -0,0 +1,190 @@
+package fr.univlr.info.AppointmentAPI;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Nombre d'allers-retours avec la base par requête HTTP : les transactions ouvertes sont comptées
+ * autour du gestionnaire de transactions, les requêtes SQL et les flushs par les statistiques Hibernate.
+ * Une seule transaction par requête, aucune requête en auto-commit hors transaction,
+ * et pas de flush pour les lectures (transactions readOnly).
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-transactions",
+                "spring.jpa.properties.hibernate.session_factory.statement_inspector=fr.univlr.info.AppointmentAPI.TransactionBoundaryTests$OutsideTransaction"
+        })
+@Import(TransactionBoundaryTests.TransactionCounting.class)
+public class TransactionBoundaryTests {
+    private static final AtomicInteger NEW_TRANSACTIONS = new AtomicInteger();
+    private static final AtomicInteger OUTSIDE_TRANSACTION = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void resetStatistics() {
+        restTemplate.delete(url("/api/appointments"));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        NEW_TRANSACTIONS.set(0);
+        OUTSIDE_TRANSACTION.set(0);
+    }
+
+    @Test
+    public void testBookingIsOneTransaction() {
+        ResponseEntity<Appointment> created = post(appointment("mjones", 10, "patient1"));
+        assertEquals(HttpStatus.CREATED, created.getStatusCode());
+        // médecin, chevauchements, séries, séquence, insertion, puis la mise à jour de la ligne de statistiques du jour
+        // dans la même transaction ; sa création (un INSERT JDBC qui tire lui-même l'identifiant) n'est pas comptée ici
+        assertRoundTrips(1, 6);
+
+        ResponseEntity<Appointment> conflict = post(appointment("mjones", 10, "patient2"));
+        assertEquals(HttpStatus.CONFLICT, conflict.getStatusCode());
+        assertRoundTrips(1, 2);
+    }
+
+    @Test
+    public void testReadsAreReadOnlyTransactions() {
+        post(appointment("jsmith", 11, "patient3"));
+        statistics.clear();
+        NEW_TRANSACTIONS.set(0);
+        OUTSIDE_TRANSACTION.set(0);
+
+        assertEquals(HttpStatus.OK, get("/api/appointments").getStatusCode());
+        // rendez-vous filtrés, séries de la fenêtre
+        assertRoundTrips(1, 2);
+        assertEquals(0, statistics.getFlushCount());
+
+        assertEquals(HttpStatus.OK, get("/api/doctors/jsmith/appointments").getStatusCode());
+        // médecin, ses rendez-vous, ses séries
+        assertRoundTrips(1, 3);
+        assertEquals(0, statistics.getFlushCount());
+    }
+
+    @Test
+    public void testRefusedDoctorDeletionIsOneTransaction() {
+        post(appointment("jdoe", 12, "patient4"));
+        statistics.clear();
+        NEW_TRANSACTIONS.set(0);
+        OUTSIDE_TRANSACTION.set(0);
+
+        ResponseEntity<Void> response = restTemplate.exchange(url("/api/doctors/jdoe"), HttpMethod.DELETE, null, Void.class);
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        // médecin, existence d'un rendez-vous
+        assertRoundTrips(1, 2);
+    }
+
+    private void assertRoundTrips(int transactions, long statements) {
+        assertEquals(transactions, NEW_TRANSACTIONS.getAndSet(0), "transactions");
+        assertEquals(0, OUTSIDE_TRANSACTION.getAndSet(0), "statements outside a transaction");
+        assertEquals(statements, statistics.getPrepareStatementCount(), "statements");
+        statistics.clear();
+    }
+
+    private static Appointment appointment(String doctor, int daysAhead, String patient) {
+        long start = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(daysAhead);
+        return new Appointment(doctor, new Date(start), new Date(start + TimeUnit.MINUTES.toMillis(30)), patient);
+    }
+
+    private ResponseEntity<Appointment> post(Appointment appt) {
+        return restTemplate.exchange(url("/api/appointments"), HttpMethod.POST, new HttpEntity<>(appt, jsonHeaders()), Appointment.class);
+    }
+
+    private ResponseEntity<String> get(String path) {
+        return restTemplate.exchange(url(path), HttpMethod.GET, new HttpEntity<>(jsonHeaders()), String.class);
+    }
+
+    private static HttpHeaders jsonHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return headers;
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+
+    // Requêtes SQL exécutées en auto-commit, sans transaction Spring autour
+    public static class OutsideTransaction implements StatementInspector {
+        @Override
+        public String inspect(String sql) {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                OUTSIDE_TRANSACTION.incrementAndGet();
+            }
+            return sql;
+        }
+    }
+
+    // Compte les transactions réellement ouvertes (pas celles des repositories qui rejoignent une transaction existante)
+    @TestConfiguration
+    static class TransactionCounting {
+        @Bean
+        static BeanPostProcessor countingTransactionManager() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof PlatformTransactionManager)) {
+                        return bean;
+                    }
+                    PlatformTransactionManager delegate = (PlatformTransactionManager) bean;
+                    return new PlatformTransactionManager() {
+                        @Override
+                        public TransactionStatus getTransaction(TransactionDefinition definition) {
+                            TransactionStatus status = delegate.getTransaction(definition);
+                            if (status.isNewTransaction()) {
+                                NEW_TRANSACTIONS.incrementAndGet();
+                            }
+                            return status;
+                        }
+
+                        @Override
+                        public void commit(TransactionStatus status) {
+                            delegate.commit(status);
+                        }
+
+                        @Override
+                        public void rollback(TransactionStatus status) {
+                            delegate.rollback(status);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
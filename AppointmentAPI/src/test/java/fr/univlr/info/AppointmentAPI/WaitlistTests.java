@@ -0,0 +1,116 @@
+package fr.univlr.info.AppointmentAPI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Liste d'attente : un créneau annulé est réservé pour la première demande dont la fenêtre le contient,
+ * les suivantes restent en attente ; retrait d'une demande et fenêtres refusées.
+ */
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:appointment-waitlist"})
+public class WaitlistTests {
+    private static final Instant DAY = Instant.now().plus(10, ChronoUnit.DAYS).truncatedTo(ChronoUnit.DAYS);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @BeforeEach
+    public void clear() {
+        restTemplate.delete(url("/api/appointments"));
+    }
+
+    @Test
+    public void testCancelledSlotGoesToFirstMatchingRequest() throws InterruptedException {
+        JsonNode appt = post("/api/appointments", "{\"doctor\":\"jdoe\",\"patient\":\"first\","
+                + "\"startDate\":\"" + at(9, 0) + "\",\"endDate\":\"" + at(9, 30) + "\"}").getBody();
+
+        // la première demande ne couvre que l'après-midi : c'est la deuxième, arrivée plus tard, qui est servie
+        long afternoon = join("jdoe", "w1", at(13, 0), at(18, 0));
+        long morning = join("jdoe", "w2", at(8, 0), at(12, 0));
+        long later = join("jdoe", "w3", at(8, 0), at(12, 0));
+        assertEquals(3, restTemplate.getForEntity(url("/api/doctors/jdoe/waitlist"), JsonNode.class).getBody().size());
+
+        restTemplate.delete(url("/api/appointments/" + appt.get("id").asLong() + "/cancel"));
+
+        JsonNode served = awaitBooked(morning);
+        JsonNode booked = restTemplate.getForEntity(url("/api/appointments/" + served.get("appointmentId").asLong()), JsonNode.class).getBody();
+        assertEquals("w2", booked.get("patient").asText());
+        assertEquals(appt.get("startDate").asText(), booked.get("startDate").asText());
+        assertEquals("WAITING", entry(afternoon).get("status").asText());
+        assertEquals("WAITING", entry(later).get("status").asText());
+        assertEquals(2, restTemplate.getForEntity(url("/api/doctors/jdoe/waitlist"), JsonNode.class).getBody().size());
+    }
+
+    @Test
+    public void testWithdrawAndInvalidRequests() {
+        long id = join("jsmith", "w1", at(8, 0), at(12, 0));
+        assertEquals(HttpStatus.OK, restTemplate.exchange(url("/api/waitlist/" + id), HttpMethod.DELETE, null, String.class).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.getForEntity(url("/api/waitlist/" + id), String.class).getStatusCode());
+
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, status("/api/doctors/jsmith/waitlist",
+                "{\"patient\":\"w2\",\"from\":\"" + at(12, 0) + "\",\"to\":\"" + at(8, 0) + "\"}"));
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, status("/api/doctors/jsmith/waitlist",
+                "{\"patient\":\"w2\",\"from\":\"" + at(8, 0) + "\",\"to\":\"" + DAY.plus(100, ChronoUnit.DAYS) + "\"}"));
+        assertEquals(HttpStatus.NOT_FOUND, status("/api/doctors/nobody/waitlist",
+                "{\"patient\":\"w2\",\"from\":\"" + at(8, 0) + "\",\"to\":\"" + at(12, 0) + "\"}"));
+    }
+
+    private JsonNode awaitBooked(long id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            JsonNode entry = entry(id);
+            if ("BOOKED".equals(entry.get("status").asText())) {
+                return entry;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("waitlist request " + id + " was not served");
+    }
+
+    private JsonNode entry(long id) {
+        return restTemplate.getForEntity(url("/api/waitlist/" + id), JsonNode.class).getBody();
+    }
+
+    private long join(String doctor, String patient, String from, String to) {
+        ResponseEntity<JsonNode> response = post("/api/doctors/" + doctor + "/waitlist",
+                "{\"patient\":\"" + patient + "\",\"from\":\"" + from + "\",\"to\":\"" + to + "\"}");
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        return response.getBody().get("id").asLong();
+    }
+
+    private ResponseEntity<JsonNode> post(String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForEntity(url(path), new HttpEntity<>(body, headers), JsonNode.class);
+    }
+
+    private HttpStatus status(String path, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForEntity(url(path), new HttpEntity<>(body, headers), String.class).getStatusCode();
+    }
+
+    private static String at(int hour, int minute) {
+        return DAY.plus(hour, ChronoUnit.HOURS).plus(minute, ChronoUnit.MINUTES).toString();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
@@ -0,0 +1,49 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/**
+ * Petit harnais commun aux benchmarks (lancés avec mvn test -Pbenchmark).
+ * Pas de JMH ici : un échauffement, des mesures répétées, puis les percentiles.
+ */
+public final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    public static Result measure(int warmup, int iterations, Callable<?> work) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            work.call();
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            work.call();
+            nanos[i] = System.nanoTime() - start;
+        }
+        return new Result(nanos);
+    }
+
+    public static final class Result {
+        private final long[] sorted;
+
+        Result(long[] nanos) {
+            this.sorted = nanos.clone();
+            Arrays.sort(this.sorted);
+        }
+
+        public double meanMillis() {
+            return Arrays.stream(sorted).average().orElse(0) / 1_000_000.0;
+        }
+
+        public double percentileMillis(double percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000.0;
+        }
+
+        public double opsPerSecond() {
+            return 1000.0 / meanMillis();
+        }
+    }
+}
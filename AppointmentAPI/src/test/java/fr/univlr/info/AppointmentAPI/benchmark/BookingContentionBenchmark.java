@@ -0,0 +1,186 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.model.BookableResource;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceBooking;
+import fr.univlr.info.AppointmentAPIV1.model.ResourceKind;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import fr.univlr.info.AppointmentAPIV1.store.BookableResourceRepository;
+import fr.univlr.info.AppointmentAPIV1.store.ResourceBookingRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Réservations médecin + salle + appareil en concurrence sur peu de créneaux : débit, répartition 201/409,
+ * et vérification qu'aucune ressource n'a été réservée deux fois sur le même créneau.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // un seul client qui mesure le débit : la limitation de débit fausserait la mesure
+        properties = {"spring.jpa.show-sql=false", "appointment.rate-limit.enabled=false"})
+public class BookingContentionBenchmark {
+    private static final String[] DOCTORS = {"mjones", "jsmith", "jdoe"};
+    private static final String[] ROOMS = {"R1", "R2"};
+    private static final String[] DEVICES = {"ECG-1"};
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 250;
+    private static final int SLOTS = 40;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppointmentRepository apptRepository;
+    @Autowired
+    private BookableResourceRepository resourceRepository;
+    @Autowired
+    private ResourceBookingRepository bookingRepository;
+
+    @BeforeAll
+    public void createResources() {
+        for (String room : ROOMS) {
+            resourceRepository.save(new BookableResource(ResourceKind.ROOM, room));
+        }
+        for (String device : DEVICES) {
+            resourceRepository.save(new BookableResource(ResourceKind.DEVICE, device));
+        }
+    }
+
+    @AfterAll
+    public void cleanup() {
+        bookingRepository.deleteAll();
+        apptRepository.deleteAll();
+        resourceRepository.deleteAll();
+    }
+
+    @Test
+    public void bookUnderContention() throws Exception {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long firstSlot = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(2);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger others = new AtomicInteger();
+        long[] latencies = new long[THREADS * REQUESTS_PER_THREAD];
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            workers.add(executor.submit(() -> {
+                Random random = new Random(thread);
+                go.await();
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    // créneaux de 30 minutes qui se chevauchent d'un quart d'heure : beaucoup de conflits
+                    long start = firstSlot + random.nextInt(SLOTS) * TimeUnit.MINUTES.toMillis(15);
+                    String body = "{\"doctor\":\"" + DOCTORS[random.nextInt(DOCTORS.length)] + "\""
+                            + ",\"startDate\":\"" + format(iso, start) + "\""
+                            + ",\"endDate\":\"" + format(iso, start + TimeUnit.MINUTES.toMillis(30)) + "\""
+                            + ",\"patient\":\"p" + thread + "-" + i + "\""
+                            + ",\"room\":\"" + ROOMS[random.nextInt(ROOMS.length)] + "\""
+                            + (random.nextBoolean() ? ",\"device\":\"" + DEVICES[0] + "\"" : "")
+                            + "}";
+                    long begin = System.nanoTime();
+                    int status = post(body);
+                    latencies[thread * REQUESTS_PER_THREAD + i] = System.nanoTime() - begin;
+                    if (status == 201) {
+                        created.incrementAndGet();
+                    } else if (status == 409) {
+                        conflicts.incrementAndGet();
+                    } else {
+                        others.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        go.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        int total = latencies.length;
+        System.out.printf("%d threads, %d bookings in %.2f s: %.0f req/s, %d created, %d conflicts, p50 %.2f ms, p99 %.2f ms%n",
+                THREADS, total, seconds, total / seconds, created.get(), conflicts.get(),
+                latencies[total / 2] / 1e6, latencies[(int) (total * 0.99)] / 1e6);
+
+        assertEquals(0, others.get());
+        assertTrue(created.get() > 0);
+        assertNoDoubleBooking();
+    }
+
+    // Aucune paire de réservations d'une même ressource ne se chevauche
+    private void assertNoDoubleBooking() {
+        Map<String, List<long[]>> calendars = new HashMap<>();
+        for (Appointment appt : apptRepository.findAll()) {
+            calendars.computeIfAbsent("doctor:" + appt.getDoctor(), k -> new ArrayList<>())
+                    .add(new long[]{appt.getStartDate().getTime(), appt.getEndDate().getTime()});
+        }
+        for (ResourceBooking booking : bookingRepository.findAll()) {
+            calendars.computeIfAbsent(booking.getResourceKey(), k -> new ArrayList<>())
+                    .add(new long[]{booking.getStartDate().getTime(), booking.getEndDate().getTime()});
+        }
+        for (Map.Entry<String, List<long[]>> calendar : calendars.entrySet()) {
+            List<long[]> slots = calendar.getValue().stream()
+                    .sorted(Comparator.comparingLong(slot -> slot[0]))
+                    .collect(Collectors.toList());
+            for (int i = 1; i < slots.size(); i++) {
+                assertFalse(slots.get(i)[0] <= slots.get(i - 1)[1], "double booking on " + calendar.getKey());
+            }
+        }
+    }
+
+    private static synchronized String format(SimpleDateFormat iso, long millis) {
+        return iso.format(new Date(millis));
+    }
+
+    private int post(String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/appointments").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Accept", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                while (in.read() != -1) {
+                    // on vide la réponse pour réutiliser la connexion
+                }
+            }
+        }
+        return status;
+    }
+}
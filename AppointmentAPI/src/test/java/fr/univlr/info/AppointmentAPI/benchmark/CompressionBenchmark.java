@@ -0,0 +1,144 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Octets réellement envoyés sur le réseau et p99 de GET /api/appointments, avec et sans gzip,
+ * en JSON et en HAL+JSON (le seuil de compression est celui de application.properties).
+ *
+ * Les mesures sont en HTTP/1.1 : HttpURLConnection ne parle pas HTTP/2, et Java 8 n'a pas de client h2c.
+ * Pour h2c, on vérifie seulement que le protocole HTTP/2 de Tomcat reprend les mêmes réglages de compression.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // un seul client qui mesure le débit : la limitation de débit fausserait la mesure
+        properties = {"spring.jpa.show-sql=false", "appointment.rate-limit.enabled=false"})
+public class CompressionBenchmark {
+    private static final int ROWS = 5_000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppointmentRepository repository;
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @BeforeAll
+    public void seed() {
+        String[] doctors = {"mjones", "jsmith", "jdoe"};
+        long start = System.currentTimeMillis() + 86_400_000L;
+        List<Appointment> appointments = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Date begin = new Date(start + i * 3_600_000L);
+            appointments.add(new Appointment(doctors[i % doctors.length], begin,
+                    new Date(begin.getTime() + 1_800_000L), "patient" + (i % 500)));
+        }
+        repository.saveAll(appointments);
+    }
+
+    @AfterAll
+    public void cleanup() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void compareEncodingsOnLargeListing() throws Exception {
+        String listing = "http://localhost:" + port + "/api/appointments";
+
+        System.out.printf("%-10s %-9s %12s %12s %12s%n", "format", "encoding", "bytes", "mean (ms)", "p99 (ms)");
+        long jsonIdentity = run(listing, "application/json", "identity");
+        long jsonGzip = run(listing, "application/json", "gzip");
+        long halIdentity = run(listing, "application/hal+json", "identity");
+        long halGzip = run(listing, "application/hal+json", "gzip");
+
+        assertTrue(jsonGzip < jsonIdentity);
+        assertTrue(halGzip < halIdentity);
+
+        // une réponse sous le seuil part telle quelle, même si le client accepte gzip
+        Long id = repository.findAll().get(0).getId();
+        HttpURLConnection small = open(listing + "/" + id, "application/json", "gzip");
+        drain(small);
+        assertEquals(200, small.getResponseCode());
+        assertNull(small.getHeaderField("Content-Encoding"));
+        assertTrue(small.getContentLengthLong() > 0);
+    }
+
+    @Test
+    public void h2cUsesTheSameCompressionSettings() {
+        Connector connector = ((TomcatWebServer) context.getWebServer()).getTomcat().getConnector();
+        Http2Protocol h2c = null;
+        for (UpgradeProtocol protocol : connector.findUpgradeProtocols()) {
+            if (protocol instanceof Http2Protocol) {
+                h2c = (Http2Protocol) protocol;
+            }
+        }
+        assertNotNull(h2c);
+        assertEquals("on", h2c.getCompression());
+        assertEquals(2048, h2c.getCompressionMinSize());
+        assertTrue(h2c.getCompressibleMimeType().contains("application/hal+json"));
+    }
+
+    // Renvoie le nombre d'octets reçus pour une requête, après avoir mesuré la latence sur plusieurs appels
+    private long run(String url, String accept, String encoding) throws Exception {
+        long[] bytes = new long[1];
+        BenchmarkSupport.Result result = BenchmarkSupport.measure(10, 100, () -> {
+            bytes[0] = drain(open(url, accept, encoding));
+            return null;
+        });
+        System.out.printf("%-10s %-9s %12d %12.2f %12.2f%n", accept.substring("application/".length()), encoding,
+                bytes[0], result.meanMillis(), result.percentileMillis(99));
+        return bytes[0];
+    }
+
+    private static HttpURLConnection open(String url, String accept, String encoding) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Accept", accept);
+        connection.setRequestProperty("Accept-Encoding", encoding);
+        return connection;
+    }
+
+    // HttpURLConnection ne décompresse pas : ce qui est lu ici est exactement ce qui a transité
+    private static long drain(HttpURLConnection connection) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = connection.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,101 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.store.ConnectionPools;
+import fr.univlr.info.AppointmentAPIV1.store.Histogram;
+import fr.univlr.info.AppointmentAPIV1.store.PoolMetrics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pool volontairement trop petit (2 connexions) face à 16 threads, chaque transaction gardant sa connexion
+ * 2 ms de plus (latence réseau d'une vraie base) : le mode adaptatif doit agrandir le pool,
+ * et l'attente d'une connexion doit baisser pendant que le débit monte.
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = {"spring.jpa.show-sql=false",
+                "spring.datasource.url=jdbc:h2:mem:appointment-pool-bench",
+                "appointment.pool.size=2", "appointment.pool.min-size=2", "appointment.pool.max-size=24",
+                "appointment.pool.adaptive.enabled=true", "appointment.pool.adaptive.interval-ms=250",
+                "appointment.pool.adaptive.target-wait-ms=1", "appointment.pool.adaptive.step=4"})
+public class ConnectionPoolBenchmark {
+    private static final int THREADS = 16;
+    private static final int WINDOWS = 12;
+    private static final long WINDOW_MILLIS = 500;
+    private static final long SIMULATED_LATENCY_MILLIS = 2;
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private ConnectionPools pools;
+
+    @Test
+    public void adaptiveSizingUnderLoad() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder transactions = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                while (running.get()) {
+                    try (Connection connection = dataSource.getConnection();
+                         Statement statement = connection.createStatement();
+                         ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM appointment")) {
+                        rs.next();
+                        Thread.sleep(SIMULATED_LATENCY_MILLIS);
+                    }
+                    transactions.increment();
+                }
+                return null;
+            }));
+        }
+
+        PoolMetrics metrics = pools.metrics("main");
+        long[] before = metrics.getWaitMicros().snapshot();
+        double firstThroughput = 0;
+        double lastThroughput = 0;
+        long firstWait = 0;
+        long lastWait = 0;
+        for (int window = 0; window < WINDOWS; window++) {
+            long count = transactions.sum();
+            Thread.sleep(WINDOW_MILLIS);
+            double throughput = (transactions.sum() - count) * 1000.0 / WINDOW_MILLIS;
+            long[] waits = metrics.getWaitMicros().snapshot();
+            long p95 = Histogram.percentile(Histogram.since(waits, before), 95);
+            before = waits;
+            System.out.printf("window %2d: pool %2d connections, %6.0f tx/s, wait p95 %6d us%n",
+                    window, pools.maximumPoolSize("main"), throughput, p95);
+            if (window == 0) {
+                firstThroughput = throughput;
+                firstWait = p95;
+            }
+            lastThroughput = throughput;
+            lastWait = p95;
+        }
+        running.set(false);
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        assertTrue(pools.maximumPoolSize("main") > 2);
+        assertTrue(lastThroughput > firstThroughput);
+        assertTrue(lastWait <= firstWait);
+    }
+}
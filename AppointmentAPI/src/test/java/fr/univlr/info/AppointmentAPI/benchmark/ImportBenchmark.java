@@ -0,0 +1,70 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentImporter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Import d'un fichier CSV d'un million de lignes (200 médecins, 5000 rendez-vous chacun, lignes mélangées entre médecins),
+ * dont une sur cent chevauche la précédente du même médecin et doit être refusée.
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        properties = {"spring.jpa.show-sql=false", "appointment.calendar.warm-on-startup=false"})
+public class ImportBenchmark {
+    private static final int DOCTORS = 200;
+    private static final int PER_DOCTOR = 5_000;
+    private static final long HALF_HOUR = 1_800_000L;
+
+    @Autowired
+    private AppointmentImporter importer;
+
+    @Test
+    public void importMillionRows() throws Exception {
+        Path file = Files.createTempFile("appointments", ".csv");
+        int overlapping = 0;
+        try {
+            long origin = Instant.parse("2015-01-05T08:00:00Z").toEpochMilli();
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("doctor,startDate,endDate,patient\n");
+                for (int slot = 0; slot < PER_DOCTOR; slot++) {
+                    for (int doctor = 0; doctor < DOCTORS; doctor++) {
+                        // une ligne sur cent commence un quart d'heure avant la fin de la précédente
+                        boolean overlap = slot > 0 && (slot + doctor) % 100 == 0;
+                        long start = origin + slot * 2 * HALF_HOUR - (overlap ? HALF_HOUR + HALF_HOUR / 2 : 0);
+                        if (overlap) {
+                            overlapping++;
+                        }
+                        out.write("doctor" + doctor + "," + Instant.ofEpochMilli(start) + ","
+                                + Instant.ofEpochMilli(start + HALF_HOUR) + ",patient" + slot + "\n");
+                    }
+                }
+            }
+
+            AppointmentImporter.Report report = importer.importFile(file, AppointmentImporter.Format.CSV);
+            System.out.printf("%d rows in %d ms: %d rows/s, %d imported, %d rejected, %d doctors created%n",
+                    report.getRows(), report.getMillis(), report.getRowsPerSecond(), report.getImported(),
+                    report.getRejected(), report.getDoctorsCreated());
+
+            assertEquals((long) DOCTORS * PER_DOCTOR, report.getRows());
+            assertEquals(overlapping, report.getRejected());
+            assertEquals(DOCTORS, report.getDoctorsCreated());
+            // "en secondes, pas en heures" : une marge large pour une machine lente
+            assertTrue(report.getMillis() < 60_000);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
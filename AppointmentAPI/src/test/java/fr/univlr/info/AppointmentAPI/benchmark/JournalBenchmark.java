@@ -0,0 +1,110 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentJournal;
+import fr.univlr.info.AppointmentAPIV1.store.JournalEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Débit du journal des rendez-vous sur le disque local : 1 M événements ajoutés par un écrivain (fsync groupé
+ * toutes les 5 ms), puis des écrivains concurrents qui attendent leur fsync, et le temps de rejeu au démarrage
+ * sans puis avec snapshot.
+ */
+@Tag("benchmark")
+public class JournalBenchmark {
+    private static final int EVENTS = 1_000_000;
+    private static final int DOCTORS = 200;
+    private static final int APPOINTMENTS = 100_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void appendAndReplay() throws Exception {
+        JournalEvent[] events = new JournalEvent[APPOINTMENTS];
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            long start = 2_000_000_000_000L + i * 1_800_000L;
+            Appointment appt = new Appointment("doctor" + (i % DOCTORS), new Date(start), new Date(start + 1_800_000L), "patient" + i);
+            appt.setId((long) i + 1);
+            events[i] = JournalEvent.of(i % 10 == 0 ? JournalEvent.Type.UPDATED : JournalEvent.Type.BOOKED, appt, null);
+        }
+
+        double perSecond;
+        AppointmentJournal.Recovery full;
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 64 * 1024 * 1024, 5, false)) {
+            long begin = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++) {
+                journal.append(events[i % APPOINTMENTS]);
+            }
+            perSecond = EVENTS / ((System.nanoTime() - begin) / 1e9);
+            assertEquals(EVENTS, journal.getLastSeq());
+        }
+
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 64 * 1024 * 1024, 5, false)) {
+            full = journal.recover();
+            assertEquals(APPOINTMENTS, full.getState().size());
+
+            AppointmentJournal.SnapshotWriter snapshot = journal.openSnapshot(journal.getLastSeq());
+            for (Appointment appt : full.getState().values()) {
+                snapshot.add(appt);
+            }
+            snapshot.commit();
+            for (int i = 0; i < 10_000; i++) {
+                journal.append(events[i]);
+            }
+        }
+
+        AppointmentJournal.Recovery bounded;
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 64 * 1024 * 1024, 5, false)) {
+            bounded = journal.recover();
+            assertEquals(APPOINTMENTS, bounded.getState().size());
+        }
+        System.out.printf("journal: %.0f events/s appended, replay of %d events in %d ms, "
+                        + "snapshot of %d rows + %d events in %d ms%n",
+                perSecond, full.getReplayed(), full.getMillis(), bounded.getSnapshotRows(), bounded.getReplayed(), bounded.getMillis());
+
+        System.out.printf("journal, waiting for fsync: %.0f events/s with 1 writer, %.0f events/s with 64 writers%n",
+                durable(dir.resolve("durable-1"), events, 1), durable(dir.resolve("durable-64"), events, 64));
+
+        assertTrue(perSecond >= 100_000, "journal append throughput below 100k events/s: " + perSecond);
+    }
+
+    // Écrivains qui attendent chacun le fsync de leur événement : le commit groupé amortit un fsync sur tous ceux en attente
+    private static double durable(Path dir, JournalEvent[] events, int writers) throws Exception {
+        int perWriter = 20_000 / writers;
+        try (AppointmentJournal journal = new AppointmentJournal(dir, 64 * 1024 * 1024, 1, true)) {
+            ExecutorService executor = Executors.newFixedThreadPool(writers);
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int offset = w * perWriter;
+                futures.add(executor.submit(() -> {
+                    go.await();
+                    for (int i = 0; i < perWriter; i++) {
+                        journal.append(events[offset + i]);
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            go.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            executor.shutdown();
+            return writers * perWriter / seconds;
+        }
+    }
+}
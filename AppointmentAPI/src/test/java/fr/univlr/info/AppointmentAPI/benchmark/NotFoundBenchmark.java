@@ -0,0 +1,106 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentNotFoundException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Débit des 404 (liens périmés, robots qui énumèrent les identifiants) : rendez-vous, médecin,
+ * rendez-vous d'un médecin et suppression, chacun sur une ressource qui n'existe pas.
+ * Puis, hors HTTP, le coût d'une exception "introuvable" avec et sans pile d'appels,
+ * à la profondeur de pile d'une requête servie par Tomcat et Spring MVC.
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // un seul client qui envoie des milliers de requêtes : la limitation de débit fausserait la mesure
+        properties = {"spring.jpa.show-sql=false", "appointment.rate-limit.enabled=false"})
+public class NotFoundBenchmark {
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void notFoundThroughput() throws Exception {
+        String api = "http://localhost:" + port + "/api";
+        // un premier tour pour chauffer le serveur sur tous les cas, seul le second est affiché
+        for (int pass = 0; pass < 2; pass++) {
+            boolean print = pass == 1;
+            if (print) {
+                System.out.printf("%-26s %12s %12s %12s%n", "404", "p50 (us)", "p99 (us)", "req/s");
+            }
+            run("GET appointment", "GET", api + "/appointments/%d", print);
+            run("GET doctor", "GET", api + "/doctors/ghost%d", print);
+            run("GET doctor appointments", "GET", api + "/doctors/ghost%d/appointments", print);
+            run("DELETE appointment", "DELETE", api + "/appointments/%d", print);
+        }
+    }
+
+    @Test
+    public void exceptionCost() {
+        int rounds = 200_000;
+        // une pile de 120 appels, l'ordre de grandeur de celle d'un contrôleur appelé par Tomcat
+        double withStack = atDepth(120, () -> costPerException(rounds, () -> new RuntimeException("Could not find appointment 42")));
+        double stackless = atDepth(120, () -> costPerException(rounds, () -> new AppointmentNotFoundException(42L)));
+        System.out.printf("exception with stack trace: %.0f ns, stackless: %.0f ns%n", withStack, stackless);
+        assertTrue(stackless * 5 < withStack);
+    }
+
+    private static double costPerException(int rounds, Supplier<RuntimeException> factory) {
+        int sink = 0;
+        for (int i = 0; i < rounds; i++) {
+            sink += factory.get().getMessage().length();
+        }
+        long begin = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += factory.get().getMessage().length();
+        }
+        double nanos = (System.nanoTime() - begin) / (double) rounds;
+        return sink > 0 ? nanos : -1;
+    }
+
+    private static double atDepth(int depth, DoubleSupplier work) {
+        return depth == 0 ? work.getAsDouble() : atDepth(depth - 1, work);
+    }
+
+    private static void run(String label, String method, String urlPattern, boolean print) throws Exception {
+        long[] next = {1_000_000};
+        BenchmarkSupport.Result result = BenchmarkSupport.measure(5_000, 50_000, () -> {
+            assertEquals(404, call(method, String.format(urlPattern, next[0]++)));
+            return null;
+        });
+        if (print) {
+            System.out.printf("%-26s %12.1f %12.1f %12.0f%n", label, result.percentileMillis(50) * 1000,
+                    result.percentileMillis(99) * 1000, result.opsPerSecond());
+        }
+    }
+
+    private static int call(String method, String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", "application/json");
+        int status = connection.getResponseCode();
+        // on lit la réponse jusqu'au bout pour que la connexion soit réutilisée (keep-alive)
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                while (in.read() != -1) {
+                    // rien
+                }
+            }
+        }
+        return status;
+    }
+}
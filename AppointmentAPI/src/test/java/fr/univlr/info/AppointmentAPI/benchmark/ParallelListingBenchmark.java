@@ -0,0 +1,109 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentModelAssembler;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentImporter;
+import fr.univlr.info.AppointmentAPIV1.service.AppointmentService;
+import fr.univlr.info.AppointmentAPIV1.service.DoctorService;
+import fr.univlr.info.AppointmentAPIV1.service.ParallelListing;
+import fr.univlr.info.AppointmentAPIV1.store.AppointmentFilter;
+import fr.univlr.info.AppointmentAPIV1.store.ShardRouter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.hateoas.EntityModel;
+
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Listing complet avec mise en forme HAL (20 000 rendez-vous, 100 médecins) : une requête puis la mise en forme
+ * en séquence, contre le découpage par médecin sur un pool de 1 à N threads (N : au moins 4, au plus le nombre de coeurs).
+ * Le gain attendu suit le nombre de coeurs ; sur une machine à un coeur, le découpage coûte plus qu'il ne rapporte.
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        properties = {"spring.jpa.show-sql=false", "appointment.calendar.warm-on-startup=false"})
+public class ParallelListingBenchmark {
+    private static final int DOCTORS = 100;
+    private static final int PER_DOCTOR = 200;
+    private static final Sort SORT = Sort.by("startDate", "id");
+    private static final Comparator<Appointment> ORDER = Comparator.comparing(Appointment::getStartDate)
+            .thenComparing(Appointment::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    @Autowired
+    private AppointmentImporter importer;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private DoctorService doctorService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private AppointmentModelAssembler assembler;
+
+    @Test
+    public void listingScaling() throws Exception {
+        StringBuilder csv = new StringBuilder("doctor,startDate,endDate,patient\n");
+        long origin = Instant.parse("2035-01-01T08:00:00Z").toEpochMilli();
+        for (int slot = 0; slot < PER_DOCTOR; slot++) {
+            for (int doctor = 0; doctor < DOCTORS; doctor++) {
+                long start = origin + slot * 3_600_000L;
+                csv.append("doctor").append(doctor).append(',').append(Instant.ofEpochMilli(start)).append(',')
+                        .append(Instant.ofEpochMilli(start + 1_800_000L)).append(",patient").append(slot).append('\n');
+            }
+        }
+        importer.importFrom(new StringReader(csv.toString()), AppointmentImporter.Format.CSV);
+
+        Date now = new Date();
+        AppointmentFilter filter = new AppointmentFilter(null, null, null, null, null, now);
+        Date windowStart = new Date(0);
+        Date windowEnd = new Date(origin + 400L * 86_400_000L);
+        int total = appointmentService.search(filter, SORT, ORDER, windowStart, windowEnd).size();
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d rows, %d doctors, %d core(s)%n", total, DOCTORS, cores);
+        System.out.printf("%-12s %12s %12s%n", "mode", "mean (ms)", "p99 (ms)");
+
+        BenchmarkSupport.Result sequential = BenchmarkSupport.measure(10, 50, () -> {
+            List<EntityModel<Appointment>> models = appointmentService.search(filter, SORT, ORDER, windowStart, windowEnd)
+                    .stream().map(assembler::toModel).collect(Collectors.toList());
+            assertEquals(total, models.size());
+            return models;
+        });
+        System.out.printf("%-12s %12.1f %12.1f%n", "sequential", sequential.meanMillis(), sequential.percentileMillis(99));
+
+        List<Integer> threads = new ArrayList<>();
+        for (int n = 1; n <= Math.max(4, cores); n *= 2) {
+            threads.add(n);
+        }
+        for (int n : threads) {
+            ParallelListing listing = new ParallelListing(shardRouter, doctorService, true, n);
+            try {
+                BenchmarkSupport.Result parallel = BenchmarkSupport.measure(10, 50, () -> {
+                    List<EntityModel<Appointment>> models = listing.byDoctor(doctor -> appointmentService.search(
+                            filter.forDoctor(doctor), SORT, ORDER, windowStart, windowEnd), assembler::toModel, ORDER);
+                    assertEquals(total, models.size());
+                    return models;
+                });
+                System.out.printf("%-12s %12.1f %12.1f%n", n + " thread(s)", parallel.meanMillis(), parallel.percentileMillis(99));
+            } finally {
+                listing.destroy();
+            }
+        }
+    }
+}
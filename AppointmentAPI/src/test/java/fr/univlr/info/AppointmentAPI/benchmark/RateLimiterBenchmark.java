@@ -0,0 +1,74 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.controller.RateLimiter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coût propre du limiteur de débit : décisions par seconde, sur 1 thread puis sur tous les cœurs,
+ * avec 10 000 clients qui se partagent une dizaine d'endpoints (les seaux sont déjà créés après l'échauffement).
+ */
+@Tag("benchmark")
+public class RateLimiterBenchmark {
+    private static final int CLIENTS = 10_000;
+    private static final String[] ENDPOINTS = {"GET /api/appointments", "GET /api/appointments/*", "POST /api/appointments",
+            "GET /api/doctors", "GET /api/doctors/*", "DELETE /api/appointments/*", "PUT /api/appointments/*",
+            "GET /api/series/*", "GET /api/resources", "POST /api/series"};
+    private static final long DECISIONS_PER_THREAD = 5_000_000;
+
+    @Test
+    public void decisionsPerSecond() throws Exception {
+        String[] clients = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = "ip:10.0." + (i / 256) + "." + (i % 256);
+        }
+        RateLimiter limiter = new RateLimiter(100, 200, 1000, 2000, 100_000);
+        run(limiter, clients, 1);
+
+        double single = run(limiter, clients, 1);
+        int threads = Runtime.getRuntime().availableProcessors();
+        double all = run(limiter, clients, threads);
+        System.out.printf("rate limiter: %.1f M decisions/s on 1 thread, %.1f M decisions/s on %d threads (%d clients tracked)%n",
+                single / 1e6, all / 1e6, threads, limiter.trackedClients());
+
+        assertTrue(single > 1_000_000);
+    }
+
+    private static double run(RateLimiter limiter, String[] clients, int threads) throws Exception {
+        LongAdder granted = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            workers.add(executor.submit(() -> {
+                go.await();
+                long ok = 0;
+                int index = seed * 7919;
+                for (long i = 0; i < DECISIONS_PER_THREAD; i++) {
+                    index = (index + 104_729) % clients.length;
+                    if (limiter.tryAcquire(clients[index], ENDPOINTS[index % ENDPOINTS.length], 1 + (index & 1) * 9) == 0) {
+                        ok++;
+                    }
+                }
+                granted.add(ok);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        go.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+        return threads * DECISIONS_PER_THREAD / seconds;
+    }
+}
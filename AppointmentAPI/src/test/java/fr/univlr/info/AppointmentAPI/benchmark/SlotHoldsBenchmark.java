@@ -0,0 +1,82 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.store.SlotHolds;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Un médecin très demandé : 32 clients réservent chacun leurs propres créneaux (aucun chevauchement) et la
+ * transaction dure 2 ms (aller-retour vers une vraie base). Verrou par médecin (l'ancien ResourceLocks)
+ * contre prises de créneau : avec le verrou, les réservations passent une par une.
+ */
+@Tag("benchmark")
+public class SlotHoldsBenchmark {
+    private static final int CLIENTS = 32;
+    private static final int BOOKINGS_PER_CLIENT = 50;
+    private static final long TRANSACTION_MILLIS = 2;
+    private static final List<String> KEYS = Collections.singletonList("doctor:mjones");
+
+    @Test
+    public void hotDoctor() throws Exception {
+        ReentrantLock doctorLock = new ReentrantLock();
+        SlotHolds holds = new SlotHolds(10_000);
+
+        double locked = run((slot, work) -> {
+            doctorLock.lock();
+            try {
+                return work.get();
+            } finally {
+                doctorLock.unlock();
+            }
+        });
+        double held = run((slot, work) -> holds.withHolds(KEYS, slot * 1_800_000L, slot * 1_800_000L + 1_799_999L, work));
+        System.out.printf("hot doctor, %d clients on distinct slots: %.0f bookings/s with a doctor lock, %.0f bookings/s with slot holds%n",
+                CLIENTS, locked, held);
+
+        assertTrue(held > locked * 4);
+    }
+
+    private interface Booking {
+        Object book(long slot, Supplier<Object> work);
+    }
+
+    private static double run(Booking booking) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> clients = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            int client = c;
+            clients.add(executor.submit(() -> {
+                go.await();
+                for (int i = 0; i < BOOKINGS_PER_CLIENT; i++) {
+                    booking.book((long) i * CLIENTS + client, () -> {
+                        try {
+                            Thread.sleep(TRANSACTION_MILLIS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return null;
+                    });
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        go.countDown();
+        for (Future<?> client : clients) {
+            client.get();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+        return CLIENTS * BOOKINGS_PER_CLIENT / seconds;
+    }
+}
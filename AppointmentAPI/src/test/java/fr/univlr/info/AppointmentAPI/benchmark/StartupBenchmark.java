@@ -0,0 +1,131 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Démarrage à froid : temps jusqu'à la première réponse (time-to-first-request) et mémoire résidente (RSS)
+ * d'une JVM neuve, avec le profil par défaut, avec le profil startup, et avec le profil startup plus l'archive
+ * AppCDS quand elle a été construite (mvn package -Pcds -DskipTests avant mvn test -Pbenchmark).
+ *
+ * La RSS est lue dans /proc (Linux seulement), après la première réponse.
+ */
+@Tag("benchmark")
+public class StartupBenchmark {
+    private static final int RUNS = 3;
+    private static final long TIMEOUT_MILLIS = 120_000;
+    private static final Pattern PID = Pattern.compile("with PID (\\d+)");
+
+    @Test
+    public void startup() throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+        String main = AppointmentApiApplication.class.getName();
+
+        report("default", Arrays.asList(java, "-cp", classpath, main, "--spring.jpa.show-sql=false"));
+        report("startup", Arrays.asList(java, "-cp", classpath, main, "--spring.profiles.active=startup"));
+
+        File archive = new File("target/app-cds.jsa");
+        File thinJar = new File("target/AppointmentAPI-0.0.1-SNAPSHOT.jar");
+        if (archive.exists() && new File("target/lib").isDirectory()) {
+            report("startup+cds", Arrays.asList(java, "-XX:SharedArchiveFile=" + archive.getPath(), "-Xlog:cds=error",
+                    "-jar", thinJar.getPath(), "--spring.profiles.active=startup"));
+        } else {
+            System.out.println("startup+cds: skipped (run mvn package -Pcds -DskipTests first)");
+        }
+    }
+
+    private void report(String name, List<String> command) throws Exception {
+        List<Long> millis = new ArrayList<>();
+        List<Long> rss = new ArrayList<>();
+        for (int i = 0; i < RUNS; i++) {
+            long[] run = coldStart(command);
+            millis.add(run[0]);
+            rss.add(run[1]);
+        }
+        Collections.sort(millis);
+        Collections.sort(rss);
+        System.out.printf("%-12s time-to-first-request median=%5d ms (min %d, max %d)  rss median=%s%n",
+                name, millis.get(RUNS / 2), millis.get(0), millis.get(RUNS - 1),
+                rss.get(RUNS / 2) < 0 ? "n/a" : rss.get(RUNS / 2) / 1024 + " MB");
+    }
+
+    // { millisecondes jusqu'à la première réponse, RSS en Ko (-1 si inconnue) }
+    private long[] coldStart(List<String> command) throws Exception {
+        int port = freePort();
+        List<String> args = new ArrayList<>(command);
+        args.add("--server.port=" + port);
+        File log = File.createTempFile("startup-benchmark", ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(args).redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            while (!answers(port)) {
+                assertTrue(process.isAlive(), "application exited, see " + log);
+                assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS), "no answer, see " + log);
+                Thread.sleep(10);
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return new long[]{elapsed, residentKilobytes(log)};
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+            log.delete();
+        }
+    }
+
+    private static boolean answers(int port) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/api/doctors").openConnection();
+            connection.setRequestProperty("Accept", "application/json");
+            connection.setConnectTimeout(200);
+            return connection.getResponseCode() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Spring Boot écrit son PID dans la première ligne du journal ("Starting ... with PID 1234")
+    private static long residentKilobytes(File log) throws IOException {
+        Matcher pid = PID.matcher(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+        File status = pid.find() ? new File("/proc/" + pid.group(1) + "/status") : null;
+        if (status == null || !status.exists()) {
+            return -1;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(status.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.AppointmentApiApplication;
+import fr.univlr.info.AppointmentAPIV1.controller.AppointmentDateValidator;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coût d'une réservation refusée par la validation des dates (406), de bout en bout sur HTTP :
+ * c'est ce que paie le serveur pendant une rafale de requêtes invalides.
+ * Puis le coût de la validation seule, hors HTTP.
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = AppointmentApiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        // un seul client qui envoie des milliers de requêtes : la limitation de débit fausserait la mesure
+        properties = {"spring.jpa.show-sql=false", "appointment.rate-limit.enabled=false"})
+public class ValidationBenchmark {
+    private static final String INCOHERENT = "{\"doctor\":\"mjones\",\"patient\":\"p\","
+            + "\"startDate\":\"2040-01-13T10:15:00.000+00:00\",\"endDate\":\"2040-01-13T09:30:00.000+00:00\"}";
+    private static final String PAST = "{\"doctor\":\"mjones\",\"patient\":\"p\","
+            + "\"startDate\":\"2020-01-13T09:30:00.000+00:00\",\"endDate\":\"2020-01-13T10:15:00.000+00:00\"}";
+    private static final String MISSING = "{\"doctor\":\"mjones\",\"patient\":\"p\","
+            + "\"endDate\":\"2040-01-13T10:15:00.000+00:00\"}";
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void rejectedBookingCost() throws Exception {
+        String url = "http://localhost:" + port + "/api/appointments";
+        // un premier tour pour chauffer le serveur sur les trois cas, seul le second est affiché
+        for (int pass = 0; pass < 2; pass++) {
+            boolean print = pass == 1;
+            if (print) {
+                System.out.printf("%-11s %12s %12s %14s%n", "rejection", "mean (us)", "p99 (us)", "rejected/s");
+            }
+            run("incoherent", url, INCOHERENT, print);
+            run("past", url, PAST, print);
+            run("missing", url, MISSING, print);
+        }
+    }
+
+    @Test
+    public void validatorCost() {
+        AppointmentDateValidator validator = new AppointmentDateValidator(Clock.systemUTC());
+        long start = System.currentTimeMillis() + 86_400_000L;
+        Appointment incoherent = new Appointment("mjones", new Date(start + 3_600_000L), new Date(start), "p");
+        Appointment valid = new Appointment("mjones", new Date(start), new Date(start + 3_600_000L), "p");
+        int rounds = 10_000_000;
+        for (int i = 0; i < rounds; i++) {
+            validator.validate(i % 2 == 0 ? incoherent : valid);
+        }
+        long begin = System.nanoTime();
+        int rejected = 0;
+        for (int i = 0; i < rounds; i++) {
+            if (validator.validate(i % 2 == 0 ? incoherent : valid) != null) {
+                rejected++;
+            }
+        }
+        double nanos = (System.nanoTime() - begin) / (double) rounds;
+        System.out.printf("validate(): %.1f ns per call%n", nanos);
+        assertEquals(rounds / 2, rejected);
+        assertNotNull(validator.validate(incoherent));
+        assertTrue(nanos < 1_000);
+    }
+
+    private static void run(String label, String url, String body, boolean print) throws Exception {
+        BenchmarkSupport.Result result = BenchmarkSupport.measure(2_000, 20_000, () -> {
+            assertEquals(406, post(url, body));
+            return null;
+        });
+        if (print) {
+            System.out.printf("%-11s %12.1f %12.1f %14.0f%n", label, result.meanMillis() * 1000,
+                    result.percentileMillis(99) * 1000, result.opsPerSecond());
+        }
+    }
+
+    private static int post(String url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Accept", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        // on lit la réponse jusqu'au bout pour que la connexion soit réutilisée (keep-alive)
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                while (in.read() != -1) {
+                    // rien
+                }
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,65 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import fr.univlr.info.AppointmentAPIV1.model.WaitlistEntry;
+import fr.univlr.info.AppointmentAPIV1.store.WaitlistIndex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Coût d'une annulation pour la liste d'attente selon sa taille : 10 k, 100 k puis 500 k demandes réparties
+ * sur 100 médecins et les 30 prochains jours (fenêtres d'une heure à deux jours). Chaque créneau libéré
+ * est attribué puis la demande remise en place (comme après un échec de réservation) : la taille ne bouge pas.
+ */
+@Tag("benchmark")
+public class WaitlistBenchmark {
+    private static final int DOCTORS = 100;
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final int OPERATIONS = 200_000;
+
+    @Test
+    public void cancellationCost() {
+        double small = run(10_000);
+        double medium = run(100_000);
+        double large = run(500_000);
+        System.out.printf("waitlist: %.2f us per freed slot with 10k requests, %.2f us with 100k, %.2f us with 500k%n",
+                small, medium, large);
+
+        // 50 fois plus de demandes : le coût doit rester du même ordre (pas de parcours de toute la liste)
+        assertTrue(large < small * 10, "freed slot cost grows with the waitlist size");
+    }
+
+    private static double run(int requests) {
+        Random random = new Random(42);
+        long base = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        WaitlistIndex index = new WaitlistIndex();
+        for (int i = 0; i < requests; i++) {
+            long from = base + random.nextInt(30 * 24) * HOUR;
+            long to = from + (1 + random.nextInt(48)) * HOUR;
+            index.add(new WaitlistEntry("doctor" + random.nextInt(DOCTORS), "p" + i, new Date(from), new Date(to)), base + i);
+        }
+        for (int round = 0; round < 2; round++) {
+            long begin = System.nanoTime();
+            int matched = 0;
+            for (int i = 0; i < OPERATIONS; i++) {
+                long start = base + random.nextInt(30 * 24 * 2) * HOUR / 2;
+                WaitlistEntry entry = index.take("doctor" + random.nextInt(DOCTORS), start, start + HOUR / 2);
+                if (entry != null) {
+                    matched++;
+                    index.putBack(entry);
+                }
+            }
+            double micros = (System.nanoTime() - begin) / 1e3 / OPERATIONS;
+            if (round == 1) {
+                System.out.printf("waitlist: %d requests, %d/%d freed slots matched%n", requests, matched, OPERATIONS);
+                return micros;
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,89 @@
+package fr.univlr.info.AppointmentAPI.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.univlr.info.AppointmentAPIV1.controller.SmileConfiguration;
+import fr.univlr.info.AppointmentAPIV1.model.Appointment;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.EntityModel;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.mediatype.MessageResolver;
+import org.springframework.hateoas.mediatype.hal.CurieProvider;
+import org.springframework.hateoas.mediatype.hal.Jackson2HalModule;
+import org.springframework.hateoas.server.core.DefaultLinkRelationProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compare JSON, HAL+JSON et Smile sur un listing de 10 000 rendez-vous : taille du corps et temps de sérialisation.
+ */
+@Tag("benchmark")
+public class WireFormatBenchmark {
+    private static final int ROWS = 10_000;
+    private static final String BASE = "http://localhost:8080";
+
+    @Test
+    public void compareFormatsOnLargeListing() throws Exception {
+        List<Appointment> appointments = appointments();
+
+        ObjectMapper json = builder().build();
+        ObjectMapper hal = builder().build();
+        hal.registerModule(new Jackson2HalModule());
+        hal.setHandlerInstantiator(new Jackson2HalModule.HalHandlerInstantiator(
+                new DefaultLinkRelationProvider(), CurieProvider.NONE, MessageResolver.DEFAULTS_ONLY));
+        ObjectMapper smile = SmileConfiguration.smileObjectMapper(builder());
+
+        // mêmes liens que AppointmentModelAssembler
+        CollectionModel<EntityModel<Appointment>> halListing = CollectionModel.of(appointments.stream()
+                .map(appt -> EntityModel.of(appt,
+                        Link.of(BASE + "/api/appointments/" + appt.getId()),
+                        Link.of(BASE + "/api/appointments{?date}", "appointments")))
+                .collect(Collectors.toList()), Link.of(BASE + "/api/appointments{?date}"));
+
+        int jsonBytes = json.writeValueAsBytes(appointments).length;
+        int halBytes = hal.writeValueAsBytes(halListing).length;
+        int smileBytes = smile.writeValueAsBytes(appointments).length;
+
+        BenchmarkSupport.Result jsonTime = BenchmarkSupport.measure(20, 50, () -> json.writeValueAsBytes(appointments));
+        BenchmarkSupport.Result halTime = BenchmarkSupport.measure(20, 50, () -> hal.writeValueAsBytes(halListing));
+        BenchmarkSupport.Result smileTime = BenchmarkSupport.measure(20, 50, () -> smile.writeValueAsBytes(appointments));
+
+        System.out.printf("%-10s %12s %12s %12s%n", "format", "bytes", "mean (ms)", "p99 (ms)");
+        print("json", jsonBytes, jsonTime);
+        print("hal+json", halBytes, halTime);
+        print("smile", smileBytes, smileTime);
+
+        assertTrue(smileBytes < jsonBytes);
+    }
+
+    private static void print(String format, int bytes, BenchmarkSupport.Result result) {
+        System.out.printf("%-10s %12d %12.2f %12.2f%n", format, bytes, result.meanMillis(), result.percentileMillis(99));
+    }
+
+    private static Jackson2ObjectMapperBuilder builder() {
+        // même inclusion que spring.jackson.default-property-inclusion
+        return Jackson2ObjectMapperBuilder.json().serializationInclusion(JsonInclude.Include.NON_ABSENT);
+    }
+
+    private static List<Appointment> appointments() {
+        String[] doctors = {"mjones", "jsmith", "jdoe"};
+        long start = System.currentTimeMillis();
+        List<Appointment> appointments = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            Date begin = new Date(start + i * 3_600_000L);
+            Appointment appt = new Appointment(doctors[i % doctors.length], begin,
+                    new Date(begin.getTime() + 1_800_000L), "patient" + (i % 500));
+            appt.setId((long) i + 1);
+            appointments.add(appt);
+        }
+        return appointments;
+    }
+}